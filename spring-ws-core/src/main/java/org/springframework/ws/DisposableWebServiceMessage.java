@@ -0,0 +1,41 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws;
+
+/**
+ * Sub-interface of {@link WebServiceMessage} for messages that hold on to resources outside of the heap, such as
+ * attachments cached in temporary files.
+ * <p>
+ * On the server side, the framework disposes the request and response messages of a
+ * {@link org.springframework.ws.context.MessageContext MessageContext} once the response has been sent. On the client
+ * side, the {@link org.springframework.ws.client.core.WebServiceTemplate WebServiceTemplate} disposes both once the
+ * result has been extracted from the response, unless its
+ * {@link org.springframework.ws.client.core.WebServiceTemplate#setDisposeExtractedResponses(boolean)
+ * disposeExtractedResponses} property is set to {@code false}.
+ *
+ * @see org.springframework.ws.transport.support.TransportUtils#disposeMessages(org.springframework.ws.context.MessageContext)
+ * @since 3.1
+ */
+public interface DisposableWebServiceMessage extends WebServiceMessage {
+
+	/**
+	 * Releases the resources held by this message. The message should not be used afterwards. Calling this method more
+	 * than once has no effect.
+	 */
+	void dispose();
+
+}
@@ -19,6 +19,7 @@ package org.springframework.ws.client.core;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.List;
 
 import javax.xml.transform.Result;
@@ -43,6 +44,7 @@ import org.springframework.ws.client.WebServiceTransformerException;
 import org.springframework.ws.client.WebServiceTransportException;
 import org.springframework.ws.client.support.WebServiceAccessor;
 import org.springframework.ws.client.support.destination.DestinationProvider;
+import org.springframework.ws.client.support.destination.LoadBalancingDestinationProvider;
 import org.springframework.ws.client.support.interceptor.ClientInterceptor;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
@@ -113,6 +115,14 @@ public class WebServiceTemplate extends WebServiceAccessor implements WebService
 	/** Log category to use for message tracing. */
 	public static final String MESSAGE_TRACING_LOG_CATEGORY = "org.springframework.ws.client.MessageTracing";
 
+	/**
+	 * Name of the {@link MessageContext} property that holds the destination {@link URI} of the request. Allows
+	 * interceptors to determine the destination without using the connection.
+	 *
+	 * @since 3.1
+	 */
+	public static final String DESTINATION_URI_PROPERTY = WebServiceTemplate.class.getName() + ".DESTINATION_URI";
+
 	/** Additional logger to use for sent message tracing. */
 	protected static final Log sentMessageTracingLogger = LogFactory
 			.getLog(WebServiceTemplate.MESSAGE_TRACING_LOG_CATEGORY + ".sent");
@@ -131,6 +141,8 @@ public class WebServiceTemplate extends WebServiceAccessor implements WebService
 
 	private boolean checkConnectionForFault = true;
 
+	private boolean disposeExtractedResponses = true;
+
 	private ClientInterceptor[] interceptors;
 
 	private DestinationProvider destinationProvider;
@@ -314,6 +326,22 @@ public class WebServiceTemplate extends WebServiceAccessor implements WebService
 		this.checkConnectionForFault = checkConnectionForFault;
 	}
 
+	/**
+	 * Indicates whether response messages are {@linkplain org.springframework.ws.DisposableWebServiceMessage#dispose()
+	 * disposed} once a result has been extracted from them ({@code true}), or whether they are left to the caller
+	 * ({@code false}). The default is {@code true}.
+	 * <p>
+	 * Disposing a response releases the resources it holds outside of the heap, such as attachments cached in temporary
+	 * files, so their content must be read within the {@link WebServiceMessageExtractor}. Setting this property to
+	 * {@code false} keeps these resources available after the invocation, for instance for a returned
+	 * {@link javax.activation.DataHandler}. The caller then owns them, and must delete their files, for instance through
+	 * {@link org.springframework.ws.mime.FileDataHandler#getFile()}. Responses from which no result could be extracted
+	 * are always disposed.
+	 */
+	public void setDisposeExtractedResponses(boolean disposeExtractedResponses) {
+		this.disposeExtractedResponses = disposeExtractedResponses;
+	}
+
 	/**
 	 * Returns the client interceptors to apply to all web service invocations made by this template.
 	 *
@@ -533,19 +561,31 @@ public class WebServiceTemplate extends WebServiceAccessor implements WebService
 		Assert.notNull(responseExtractor, "'responseExtractor' must not be null");
 		Assert.hasLength(uriString, "'uri' must not be empty");
 		TransportContext previousTransportContext = TransportContextHolder.getTransportContext();
+		URI uri = URI.create(uriString);
 		WebServiceConnection connection = null;
+		MessageContext messageContext = null;
+		boolean extracted = false;
 		try {
-			connection = createConnection(URI.create(uriString));
+			connection = createConnection(uri);
 			TransportContextHolder.setTransportContext(new DefaultTransportContext(connection));
-			MessageContext messageContext = new DefaultMessageContext(getMessageFactory());
+			messageContext = new DefaultMessageContext(getMessageFactory());
+			messageContext.setProperty(DESTINATION_URI_PROPERTY, uri);
 
-			return doSendAndReceive(messageContext, connection, requestCallback, responseExtractor);
+			T result = doSendAndReceive(messageContext, connection, requestCallback, responseExtractor);
+			extracted = true;
+			return result;
 		} catch (TransportException ex) {
 			throw new WebServiceTransportException("Could not use transport: " + ex.getMessage(), ex);
 		} catch (IOException ex) {
 			throw new WebServiceIOException("I/O error: " + ex.getMessage(), ex);
 		} finally {
 			TransportUtils.closeConnection(connection);
+			if (extracted && !disposeExtractedResponses) {
+				// the extracted result may refer to resources of the response, such as cached attachments
+				TransportUtils.disposeMessage(messageContext.getRequest());
+			} else {
+				TransportUtils.disposeMessages(messageContext);
+			}
 			TransportContextHolder.setTransportContext(previousTransportContext);
 		}
 	}
@@ -585,13 +625,21 @@ public class WebServiceTemplate extends WebServiceAccessor implements WebService
 			// no send/receive if an interceptor has set a response or if the chain
 			// has been interrupted
 			if (!messageContext.hasResponse() && !intercepted) {
-				sendRequest(connection, messageContext.getRequest());
-				if (hasError(connection, messageContext.getRequest())) {
-					triggerAfterCompletion(interceptorIndex, messageContext, null);
-					return (T) handleError(connection, messageContext.getRequest());
+				LoadBalancingDestinationProvider loadBalancer = getLoadBalancer();
+				if (loadBalancer != null) {
+					if (!sendAndReceive(loadBalancer, messageContext, connection)) {
+						triggerAfterCompletion(interceptorIndex, messageContext, null);
+						return (T) handleError(connection, messageContext.getRequest());
+					}
+				} else {
+					sendRequest(connection, messageContext.getRequest());
+					if (hasError(connection, messageContext.getRequest())) {
+						triggerAfterCompletion(interceptorIndex, messageContext, null);
+						return (T) handleError(connection, messageContext.getRequest());
+					}
+					WebServiceMessage response = connection.receive(getMessageFactory());
+					messageContext.setResponse(response);
 				}
-				WebServiceMessage response = connection.receive(getMessageFactory());
-				messageContext.setResponse(response);
 			}
 			logResponse(messageContext);
 			if (messageContext.hasResponse()) {
@@ -622,6 +670,44 @@ public class WebServiceTemplate extends WebServiceAccessor implements WebService
 		}
 	}
 
+	private LoadBalancingDestinationProvider getLoadBalancer() {
+		return destinationProvider instanceof LoadBalancingDestinationProvider
+				? (LoadBalancingDestinationProvider) destinationProvider : null;
+	}
+
+	/**
+	 * Sends the request and receives the response like {@link #doSendAndReceive}, and reports the outcome to the given
+	 * load balancer.
+	 *
+	 * @return {@code false} if the connection has an error; {@code true} otherwise
+	 */
+	private boolean sendAndReceive(LoadBalancingDestinationProvider loadBalancer, MessageContext messageContext,
+			WebServiceConnection connection) throws IOException {
+		URI destination;
+		try {
+			destination = connection.getUri();
+		} catch (URISyntaxException ex) {
+			throw new IllegalStateException("Could not obtain connection URI: " + ex.getMessage(), ex);
+		}
+		LoadBalancingDestinationProvider.ExchangeOutcome outcome = LoadBalancingDestinationProvider.ExchangeOutcome.ERROR;
+		loadBalancer.exchangeStarted(destination);
+		long start = System.nanoTime();
+		try {
+			sendRequest(connection, messageContext.getRequest());
+			if (hasError(connection, messageContext.getRequest())) {
+				return false;
+			}
+			WebServiceMessage response = connection.receive(getMessageFactory());
+			messageContext.setResponse(response);
+			outcome = response != null && hasFault(connection, response)
+					? LoadBalancingDestinationProvider.ExchangeOutcome.FAULT
+					: LoadBalancingDestinationProvider.ExchangeOutcome.SUCCESS;
+			return true;
+		} finally {
+			loadBalancer.exchangeCompleted(destination, System.nanoTime() - start, outcome);
+		}
+	}
+
 	/** Sends the request in the given message context over the connection. */
 	private void sendRequest(WebServiceConnection connection, WebServiceMessage request) throws IOException {
 		if (sentMessageTracingLogger.isTraceEnabled()) {
@@ -700,7 +786,8 @@ public class WebServiceTemplate extends WebServiceAccessor implements WebService
 	 * {@link #setCheckConnectionForFault(boolean) checkConnectionForFault} property is true, and defaults to the
 	 * {@link FaultAwareWebServiceMessage#hasFault() message} otherwise.
 	 *
-	 * @param connection the connection (possibly a {@link FaultAwareWebServiceConnection}
+	 * @param connection the connection (possibly a {@link FaultAwareWebServiceConnection}, or {@code null} if no
+	 *          connection was created, because an interceptor provided the response
 	 * @param response the response message (possibly a {@link FaultAwareWebServiceMessage}
 	 * @return {@code true} if either the connection or the message has a fault; {@code false} otherwise
 	 * @throws IOException in case of I/O errors
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.destination;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Abstract base class for {@link LoadBalancingDestinationProvider} implementations. Keeps track of the outstanding
+ * requests and the latency of each destination, and leaves the choice between the available destinations to
+ * subclasses.
+ * <p>
+ * Destinations that fail repeatedly are temporarily ejected: after {@link #setMaxConsecutiveFailures(int)
+ * maxConsecutiveFailures} failed exchanges in a row, a destination is not provided for the
+ * {@link #setEjectionTime(long) ejectionTime}, multiplied by the number of times it has been ejected in a row. Transport
+ * errors always count as failures, faults only if {@link #setFaultIsFailure(boolean) faultIsFailure} is enabled. If all
+ * destinations are ejected, all of them are considered available, so that a request is always sent somewhere.
+ * <p>
+ * The destinations can be read from a WSDL with {@link Wsdl11DestinationProvider#getDestinations()}.
+ *
+ * @see org.springframework.ws.client.core.WebServiceTemplate#setDestinationProvider(DestinationProvider)
+ * @since 3.1
+ */
+public abstract class AbstractLoadBalancingDestinationProvider implements LoadBalancingDestinationProvider {
+
+	/** Default number of consecutive failures after which a destination is ejected. */
+	public static final int DEFAULT_MAX_CONSECUTIVE_FAILURES = 5;
+
+	/** Default base ejection time, in milliseconds. */
+	public static final long DEFAULT_EJECTION_TIME = 30 * 1000;
+
+	private static final int MAX_EJECTION_MULTIPLIER = 10;
+
+	/** Logger available to subclasses. */
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private volatile Map<URI, DestinationState> destinations = Collections.emptyMap();
+
+	private int maxConsecutiveFailures = DEFAULT_MAX_CONSECUTIVE_FAILURES;
+
+	private long ejectionTime = DEFAULT_EJECTION_TIME;
+
+	private boolean faultIsFailure = true;
+
+	/** Sets the destination URIs to choose from. */
+	public void setDestinations(List<URI> destinations) {
+		Assert.notEmpty(destinations, "'destinations' must not be empty");
+		Map<URI, DestinationState> states = new LinkedHashMap<URI, DestinationState>();
+		for (URI destination : destinations) {
+			Assert.notNull(destination, "'destinations' must not contain null");
+			states.put(destination, new DestinationState(destination));
+		}
+		this.destinations = states;
+	}
+
+	/** Returns the destination URIs to choose from. */
+	public List<URI> getDestinations() {
+		return new ArrayList<URI>(destinations.keySet());
+	}
+
+	/**
+	 * Sets the number of consecutive failures after which a destination is ejected. Defaults to
+	 * {@value #DEFAULT_MAX_CONSECUTIVE_FAILURES}. Setting this property to {@code 0} disables ejection.
+	 */
+	public void setMaxConsecutiveFailures(int maxConsecutiveFailures) {
+		Assert.isTrue(maxConsecutiveFailures >= 0, "'maxConsecutiveFailures' must not be negative");
+		this.maxConsecutiveFailures = maxConsecutiveFailures;
+	}
+
+	/**
+	 * Sets the time, in milliseconds, for which a destination is ejected the first time. Subsequent ejections, without
+	 * a successful exchange in between, last proportionally longer, up to ten times this value. Defaults to
+	 * {@value #DEFAULT_EJECTION_TIME}.
+	 */
+	public void setEjectionTime(long ejectionTime) {
+		Assert.isTrue(ejectionTime >= 0, "'ejectionTime' must not be negative");
+		this.ejectionTime = ejectionTime;
+	}
+
+	/**
+	 * Sets whether a fault response counts as a failure of the destination that sent it. Defaults to {@code true}.
+	 * Disable this when the service uses faults to report application errors.
+	 */
+	public void setFaultIsFailure(boolean faultIsFailure) {
+		this.faultIsFailure = faultIsFailure;
+	}
+
+	@Override
+	public URI getDestination() {
+		Map<URI, DestinationState> destinations = this.destinations;
+		Assert.state(!destinations.isEmpty(), "No destinations set");
+		long now = System.nanoTime();
+		List<DestinationState> candidates = new ArrayList<DestinationState>(destinations.size());
+		for (DestinationState state : destinations.values()) {
+			if (!state.isEjected(now)) {
+				candidates.add(state);
+			}
+		}
+		if (candidates.isEmpty()) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("All destinations are ejected, choosing from all of " + destinations.keySet());
+			}
+			candidates.addAll(destinations.values());
+		}
+		return candidates.size() == 1 ? candidates.get(0).getUri() : selectDestination(candidates).getUri();
+	}
+
+	/**
+	 * Template method that chooses between the given available destinations.
+	 *
+	 * @param candidates the available destinations, at least two, in the order in which they were set
+	 * @return the chosen destination
+	 */
+	protected abstract DestinationState selectDestination(List<DestinationState> candidates);
+
+	@Override
+	public void exchangeStarted(URI destination) {
+		DestinationState state = destinations.get(destination);
+		if (state != null) {
+			state.outstanding.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void exchangeCompleted(URI destination, long elapsedNanos, ExchangeOutcome outcome) {
+		DestinationState state = destinations.get(destination);
+		if (state == null) {
+			return;
+		}
+		state.outstanding.decrementAndGet();
+		if (outcome != ExchangeOutcome.ERROR) {
+			latencyRecorded(state, elapsedNanos);
+		} else {
+			failureRecorded(state, elapsedNanos);
+		}
+		if (outcome == ExchangeOutcome.ERROR || (outcome == ExchangeOutcome.FAULT && faultIsFailure)) {
+			int failures = state.consecutiveFailures.incrementAndGet();
+			if (maxConsecutiveFailures > 0 && failures >= maxConsecutiveFailures) {
+				eject(state);
+			}
+		} else {
+			state.consecutiveFailures.set(0);
+			state.ejections.set(0);
+		}
+	}
+
+	private void eject(DestinationState state) {
+		state.consecutiveFailures.set(0);
+		int ejections = Math.min(state.ejections.incrementAndGet(), MAX_EJECTION_MULTIPLIER);
+		long duration = TimeUnit.MILLISECONDS.toNanos(ejectionTime) * ejections;
+		state.ejectedUntil = System.nanoTime() + duration;
+		if (logger.isWarnEnabled()) {
+			logger.warn("Ejecting destination [" + state.getUri() + "] for " + TimeUnit.NANOSECONDS.toMillis(duration)
+					+ " ms after " + maxConsecutiveFailures + " consecutive failures");
+		}
+	}
+
+	/**
+	 * Template method invoked when a response, or no response at all, has been received from the given destination.
+	 * Not invoked for transport errors, as these tend to fail fast, and would make the destination look quick; see
+	 * {@link #failureRecorded(DestinationState, long)}. Empty by default.
+	 *
+	 * @param state the destination
+	 * @param elapsedNanos the duration of the exchange, in nanoseconds
+	 */
+	protected void latencyRecorded(DestinationState state, long elapsedNanos) {
+	}
+
+	/**
+	 * Template method invoked when an exchange with the given destination failed with a transport error. Empty by
+	 * default.
+	 *
+	 * @param state the destination
+	 * @param elapsedNanos the duration of the exchange, in nanoseconds
+	 */
+	protected void failureRecorded(DestinationState state, long elapsedNanos) {
+	}
+
+	/** The state of a single destination, as used for choosing between destinations. */
+	protected static class DestinationState {
+
+		private final URI uri;
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+		private final AtomicInteger ejections = new AtomicInteger();
+
+		private volatile long ejectedUntil;
+
+		private volatile double averageLatency;
+
+		DestinationState(URI uri) {
+			this.uri = uri;
+		}
+
+		/** Returns the destination URI. */
+		public URI getUri() {
+			return uri;
+		}
+
+		/** Returns the number of requests that have been sent to this destination, but not completed yet. */
+		public int getOutstanding() {
+			return Math.max(outstanding.get(), 0);
+		}
+
+		/**
+		 * Returns the average latency of this destination in nanoseconds, as maintained by the subclass, or {@code 0} if
+		 * not measured yet.
+		 */
+		public double getAverageLatency() {
+			return averageLatency;
+		}
+
+		/** Sets the average latency of this destination, in nanoseconds. */
+		public void setAverageLatency(double averageLatency) {
+			this.averageLatency = averageLatency;
+		}
+
+		boolean isEjected(long now) {
+			if (ejectedUntil == 0) {
+				return false;
+			}
+			if (now - ejectedUntil < 0) {
+				return true;
+			}
+			ejectedUntil = 0;
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return uri.toString();
+		}
+	}
+
+}
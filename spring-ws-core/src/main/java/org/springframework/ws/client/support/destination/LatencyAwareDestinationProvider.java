@@ -0,0 +1,107 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.destination;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link LoadBalancingDestinationProvider} that provides the available destination with the lowest expected latency.
+ * <p>
+ * The latency of each destination is tracked as an exponentially weighted moving average (EWMA), and multiplied by the
+ * number of outstanding requests plus one, so that a fast destination is not overloaded. Destinations without measured
+ * latency are preferred, so that new destinations are tried out quickly. Ties are broken in turn.
+ * <p>
+ * As transport errors tend to fail fast, a failed exchange is not recorded with its own duration, but with a penalty:
+ * the {@link #setFailurePenalty(long) failurePenalty}, or twice the current average, if that is longer.
+ *
+ * @since 3.1
+ */
+public class LatencyAwareDestinationProvider extends AbstractLoadBalancingDestinationProvider {
+
+	/** Default weight of the latest latency measurement in the moving average. */
+	public static final double DEFAULT_SMOOTHING_FACTOR = 0.3;
+
+	/** Default latency recorded for a failed exchange, in milliseconds. */
+	public static final long DEFAULT_FAILURE_PENALTY = 1000;
+
+	private final AtomicInteger counter = new AtomicInteger();
+
+	private double smoothingFactor = DEFAULT_SMOOTHING_FACTOR;
+
+	private long failurePenalty = DEFAULT_FAILURE_PENALTY;
+
+	/**
+	 * Sets the weight of the latest latency measurement in the moving average, between {@code 0} (exclusive) and
+	 * {@code 1} (inclusive). Higher values make the average react faster to changes. Defaults to
+	 * {@value #DEFAULT_SMOOTHING_FACTOR}.
+	 */
+	public void setSmoothingFactor(double smoothingFactor) {
+		Assert.isTrue(smoothingFactor > 0 && smoothingFactor <= 1, "'smoothingFactor' must be in (0, 1]");
+		this.smoothingFactor = smoothingFactor;
+	}
+
+	/**
+	 * Sets the minimum latency recorded for an exchange that failed with a transport error, in milliseconds. Defaults to
+	 * one second.
+	 */
+	public void setFailurePenalty(long failurePenalty) {
+		Assert.isTrue(failurePenalty >= 0, "'failurePenalty' must not be negative");
+		this.failurePenalty = failurePenalty;
+	}
+
+	@Override
+	protected DestinationState selectDestination(List<DestinationState> candidates) {
+		int size = candidates.size();
+		int offset = (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+		DestinationState selected = null;
+		double selectedCost = 0;
+		for (int i = 0; i < size; i++) {
+			DestinationState candidate = candidates.get((offset + i) % size);
+			double cost = candidate.getAverageLatency() * (candidate.getOutstanding() + 1);
+			if (selected == null || cost < selectedCost) {
+				selected = candidate;
+				selectedCost = cost;
+			}
+		}
+		return selected;
+	}
+
+	@Override
+	protected void latencyRecorded(DestinationState state, long elapsedNanos) {
+		synchronized (state) {
+			record(state, elapsedNanos);
+		}
+	}
+
+	@Override
+	protected void failureRecorded(DestinationState state, long elapsedNanos) {
+		synchronized (state) {
+			double penalty = Math.max(TimeUnit.MILLISECONDS.toNanos(failurePenalty), 2 * state.getAverageLatency());
+			record(state, Math.max(elapsedNanos, penalty));
+		}
+	}
+
+	private void record(DestinationState state, double latency) {
+		double average = state.getAverageLatency();
+		state.setAverageLatency(average == 0 ? latency : average + smoothingFactor * (latency - average));
+	}
+
+}
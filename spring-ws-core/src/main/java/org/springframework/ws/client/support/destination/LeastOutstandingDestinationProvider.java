@@ -0,0 +1,46 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.destination;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link LoadBalancingDestinationProvider} that provides the available destination with the fewest outstanding
+ * requests. Ties are broken in turn, so that idle destinations are used evenly.
+ *
+ * @since 3.1
+ */
+public class LeastOutstandingDestinationProvider extends AbstractLoadBalancingDestinationProvider {
+
+	private final AtomicInteger counter = new AtomicInteger();
+
+	@Override
+	protected DestinationState selectDestination(List<DestinationState> candidates) {
+		int size = candidates.size();
+		int offset = (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+		DestinationState selected = null;
+		for (int i = 0; i < size; i++) {
+			DestinationState candidate = candidates.get((offset + i) % size);
+			if (selected == null || candidate.getOutstanding() < selected.getOutstanding()) {
+				selected = candidate;
+			}
+		}
+		return selected;
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.destination;
+
+import java.net.URI;
+
+/**
+ * Extension of the {@link DestinationProvider} interface for providers that choose between several destinations, and
+ * want to be informed about the exchanges with the destination they provided.
+ * <p>
+ * The {@link org.springframework.ws.client.core.WebServiceTemplate} calls {@link #exchangeStarted(URI)} right before
+ * a request is sent, and {@link #exchangeCompleted(URI, long, ExchangeOutcome)} once the response has been received,
+ * or the exchange has failed. Exchanges for which no request is sent, for instance because an interceptor has
+ * provided a response, are not reported.
+ *
+ * @see org.springframework.ws.client.core.WebServiceTemplate#setDestinationProvider(DestinationProvider)
+ * @see AbstractLoadBalancingDestinationProvider
+ * @since 3.1
+ */
+public interface LoadBalancingDestinationProvider extends DestinationProvider {
+
+	/**
+	 * Invoked when a request is about to be sent to the given destination.
+	 *
+	 * @param destination the destination URI, which might not have been provided by this provider
+	 */
+	void exchangeStarted(URI destination);
+
+	/**
+	 * Invoked when an exchange with the given destination has completed.
+	 *
+	 * @param destination the destination URI, which might not have been provided by this provider
+	 * @param elapsedNanos the time it took to send the request and receive the response, in nanoseconds
+	 * @param outcome the outcome of the exchange
+	 */
+	void exchangeCompleted(URI destination, long elapsedNanos, ExchangeOutcome outcome);
+
+	/** The outcome of an exchange with a destination. */
+	enum ExchangeOutcome {
+
+		/** A regular response, or no response at all, has been received. */
+		SUCCESS,
+
+		/** A fault response has been received. */
+		FAULT,
+
+		/** The exchange failed because of a transport error, such as an I/O exception or an HTTP error status. */
+		ERROR
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.destination;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link LoadBalancingDestinationProvider} that provides the available destinations in turn.
+ *
+ * @since 3.1
+ */
+public class RoundRobinDestinationProvider extends AbstractLoadBalancingDestinationProvider {
+
+	private final AtomicInteger counter = new AtomicInteger();
+
+	@Override
+	protected DestinationState selectDestination(List<DestinationState> candidates) {
+		int index = (counter.getAndIncrement() & Integer.MAX_VALUE) % candidates.size();
+		return candidates.get(index);
+	}
+
+}
@@ -18,7 +18,9 @@ package org.springframework.ws.client.support.destination;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.transform.Transformer;
@@ -28,6 +30,7 @@ import javax.xml.transform.dom.DOMResult;
 
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.springframework.ws.client.WebServiceIOException;
 import org.springframework.ws.client.WebServiceTransformerException;
 import org.springframework.xml.transform.ResourceSource;
@@ -35,6 +38,7 @@ import org.springframework.xml.transform.TransformerFactoryUtils;
 import org.springframework.xml.xpath.XPathExpression;
 import org.springframework.xml.xpath.XPathExpressionFactory;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 /**
  * Implementation of the {@link DestinationProvider} that resolves a destination URI from a WSDL file.
@@ -109,16 +113,40 @@ public class Wsdl11DestinationProvider extends AbstractCachingDestinationProvide
 
 	@Override
 	protected URI lookupDestination() {
+		String location = locationXPathExpression.evaluateAsString(readDefinition());
+		if (logger.isDebugEnabled()) {
+			logger.debug("Found location [" + location + "] in " + wsdlResource);
+		}
+		return location != null ? URI.create(location) : null;
+	}
+
+	/**
+	 * Resolves all destination {@code URI}s from the WSDL, in document order. Useful for providing the destinations of
+	 * an {@link AbstractLoadBalancingDestinationProvider}. The result is not cached.
+	 *
+	 * @return the locations matched by the {@link #setLocationExpression(String) locationExpression}
+	 */
+	public List<URI> getDestinations() {
+		List<Node> nodes = locationXPathExpression.evaluateAsNodeList(readDefinition());
+		List<URI> destinations = new ArrayList<URI>(nodes.size());
+		for (Node node : nodes) {
+			String location = node.getNodeType() == Node.ELEMENT_NODE ? node.getTextContent() : node.getNodeValue();
+			if (StringUtils.hasText(location)) {
+				destinations.add(URI.create(location.trim()));
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Found locations " + destinations + " in " + wsdlResource);
+		}
+		return destinations;
+	}
+
+	private Document readDefinition() {
 		try {
 			DOMResult result = new DOMResult();
 			Transformer transformer = transformerFactory.newTransformer();
 			transformer.transform(new ResourceSource(wsdlResource), result);
-			Document definitionDocument = (Document) result.getNode();
-			String location = locationXPathExpression.evaluateAsString(definitionDocument);
-			if (logger.isDebugEnabled()) {
-				logger.debug("Found location [" + location + "] in " + wsdlResource);
-			}
-			return location != null ? URI.create(location) : null;
+			return (Document) result.getNode();
 		} catch (IOException ex) {
 			throw new WebServiceIOException("Error extracting location from WSDL [" + wsdlResource + "]", ex);
 		} catch (TransformerException ex) {
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.interceptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.ws.FaultAwareWebServiceMessage;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.client.WebServiceClientException;
+import org.springframework.ws.client.WebServiceTransformerException;
+import org.springframework.ws.client.core.WebServiceTemplate;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.mime.MimeMessage;
+import org.springframework.ws.server.endpoint.support.PayloadRootUtils;
+import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.support.PayloadDigestUtils;
+import org.springframework.ws.transport.context.TransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
+import org.springframework.xml.transform.TransformerObjectSupport;
+import org.w3c.dom.Document;
+
+/**
+ * Client-side interceptor that caches the response payloads of operations whose response only depends on the request,
+ * such as reference data lookups. When a cached response is found, it is copied into the response message in
+ * {@link #handleRequest(MessageContext) handleRequest}, and the {@link WebServiceTemplate} does not send the request:
+ * the connection that the message sender created is closed without being used.
+ * <p>
+ * Responses are cached by the destination URI, the SOAP action, and a SHA-256 hash of the canonical form of the
+ * request payload, as computed by {@link PayloadDigestUtils}. The cache is bounded by the total size of the cached
+ * responses, evicting the least recently used ones first, and entries expire after the
+ * {@link #setTimeToLive(long) timeToLive}. Faults are never cached. Only the response payload is cached: SOAP headers
+ * and attachments of the response are not. Requests with attachments are never cached, and caching can be limited to
+ * requests with given {@link #setPayloadRootQNames(QName...) payload root names}; other requests are sent without
+ * computing their hash.
+ * <p>
+ * Concurrent identical requests are coalesced: while a request is being sent, identical requests wait for its
+ * response, rather than sending the same request again. If the response cannot be cached, because it is a fault or
+ * because an error occurred, or if it does not arrive within the {@link #setCoalescingTimeout(long)
+ * coalescingTimeout}, the waiting requests are sent themselves.
+ * <p>
+ * If a {@link #setStaleWhileRevalidate(long) staleWhileRevalidate} period is set, expired responses are still returned
+ * for that period, while a single request is sent to refresh the response.
+ * <p>
+ * Only use this interceptor for operations that have no side effects.
+ *
+ * @since 3.1
+ */
+public class ResponseCachingClientInterceptor extends TransformerObjectSupport implements ClientInterceptor {
+
+	/** Default maximum size of the cache, in bytes: 16 MB. */
+	public static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+	/** Default time to live of cached responses, in milliseconds. */
+	public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+
+	/** Default maximum time to wait for the response of an identical request, in milliseconds. */
+	public static final long DEFAULT_COALESCING_TIMEOUT = 60 * 1000;
+
+	private static final String EXCHANGE_PROPERTY = ResponseCachingClientInterceptor.class.getName() + ".EXCHANGE";
+
+	private static final Log logger = LogFactory.getLog(ResponseCachingClientInterceptor.class);
+
+	private final Map<String, CachedResponse> cache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+
+	private final Map<String, Exchange> exchanges = new HashMap<String, Exchange>();
+
+	private long size;
+
+	private long maxSize = DEFAULT_MAX_SIZE;
+
+	private long maxEntrySize = -1;
+
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	private long staleWhileRevalidate = 0;
+
+	private long coalescingTimeout = DEFAULT_COALESCING_TIMEOUT;
+
+	private Set<QName> payloadRootQNames;
+
+	/**
+	 * Sets the maximum total size of the cached responses, in bytes. The size of a response is the size of its
+	 * serialized payload. Defaults to 16 MB.
+	 */
+	public void setMaxSize(long maxSize) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be larger than 0");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Sets the maximum size of a single cached response, in bytes. Larger responses are not cached. Defaults to a tenth
+	 * of the {@link #setMaxSize(long) maxSize}.
+	 */
+	public void setMaxEntrySize(long maxEntrySize) {
+		Assert.isTrue(maxEntrySize > 0, "'maxEntrySize' must be larger than 0");
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/** Sets the time to live of cached responses, in milliseconds. Defaults to one minute. */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be larger than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Sets the period after the {@link #setTimeToLive(long) timeToLive} during which expired responses are still
+	 * returned, in milliseconds. During this period, the first request for an expired response is sent to refresh it,
+	 * while other requests get the expired response without waiting. Defaults to {@code 0}, which disables this.
+	 */
+	public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+		Assert.isTrue(staleWhileRevalidate >= 0, "'staleWhileRevalidate' must not be negative");
+		this.staleWhileRevalidate = staleWhileRevalidate;
+	}
+
+	/**
+	 * Sets the maximum time to wait for the response of an identical request that is being sent, in milliseconds. When
+	 * it elapses, the waiting request is sent itself. Should match the read timeout of the message sender. Defaults to
+	 * one minute, the default read timeout of the {@code HttpUrlConnectionMessageSender}.
+	 */
+	public void setCoalescingTimeout(long coalescingTimeout) {
+		Assert.isTrue(coalescingTimeout > 0, "'coalescingTimeout' must be larger than 0");
+		this.coalescingTimeout = coalescingTimeout;
+	}
+
+	/**
+	 * Sets the qualified names of the payload roots of the requests to cache. Other requests are sent as is. By default,
+	 * all requests are cached.
+	 */
+	public void setPayloadRootQNames(QName... payloadRootQNames) {
+		this.payloadRootQNames = new HashSet<QName>(Arrays.asList(payloadRootQNames));
+	}
+
+	/** Returns the number of cached responses. */
+	public int getCacheCount() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/** Returns the total size of the cached responses, in bytes. */
+	public long getCacheSize() {
+		synchronized (cache) {
+			return size;
+		}
+	}
+
+	/** Removes all cached responses. */
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+			size = 0;
+		}
+	}
+
+	/**
+	 * Looks up the response for the request in the given message context. If found, the cached response payload is
+	 * copied into the response. If an identical request is being sent, waits for its response.
+	 *
+	 * @return {@code false} if a cached response was found; {@code true} otherwise
+	 */
+	@Override
+	public boolean handleRequest(MessageContext messageContext) throws WebServiceClientException {
+		if (!isCacheable(messageContext.getRequest())) {
+			return true;
+		}
+		Source payloadSource = messageContext.getRequest().getPayloadSource();
+		if (payloadSource == null) {
+			return true;
+		}
+		String key = createKey(messageContext, payloadSource);
+		CachedResponse cachedResponse;
+		Exchange exchange;
+		synchronized (cache) {
+			long now = System.nanoTime();
+			cachedResponse = cache.get(key);
+			if (cachedResponse != null && now - cachedResponse.staleAt >= 0) {
+				remove(key);
+				cachedResponse = null;
+			}
+			exchange = exchanges.get(key);
+			if (exchange == null && (cachedResponse == null || now - cachedResponse.expiresAt >= 0)) {
+				exchange = new Exchange(key);
+				exchanges.put(key, exchange);
+				messageContext.setProperty(EXCHANGE_PROPERTY, exchange);
+				return true;
+			}
+		}
+		if (cachedResponse == null) {
+			cachedResponse = exchange.await(coalescingTimeout);
+			if (cachedResponse == null) {
+				return true;
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Found cached response for request [" + messageContext.getRequest() + "]");
+		}
+		transformPayload(new StreamSource(new ByteArrayInputStream(cachedResponse.payload)),
+				messageContext.getResponse().getPayloadResult());
+		return false;
+	}
+
+	/** Caches the response payload, if the request was sent. */
+	@Override
+	public boolean handleResponse(MessageContext messageContext) throws WebServiceClientException {
+		Exchange exchange = (Exchange) messageContext.getProperty(EXCHANGE_PROPERTY);
+		if (exchange == null || !messageContext.hasResponse()) {
+			return true;
+		}
+		WebServiceMessage response = messageContext.getResponse();
+		if (response instanceof FaultAwareWebServiceMessage && ((FaultAwareWebServiceMessage) response).hasFault()) {
+			return true;
+		}
+		Source payloadSource = response.getPayloadSource();
+		if (payloadSource != null) {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			transformPayload(payloadSource, new StreamResult(os));
+			complete(exchange, put(exchange.key, os.toByteArray()));
+		}
+		return true;
+	}
+
+	/** Does nothing by default. Faults are not cached. */
+	@Override
+	public boolean handleFault(MessageContext messageContext) throws WebServiceClientException {
+		return true;
+	}
+
+	/** Releases the requests waiting for the response, if they have not been released yet. */
+	@Override
+	public void afterCompletion(MessageContext messageContext, Exception ex) throws WebServiceClientException {
+		Exchange exchange = (Exchange) messageContext.getProperty(EXCHANGE_PROPERTY);
+		if (exchange != null) {
+			complete(exchange, null);
+		}
+	}
+
+	/**
+	 * Indicates whether the response to the given request can be cached, without transforming its payload: it has no
+	 * attachments, and its payload root is one of the configured names, if any.
+	 */
+	private boolean isCacheable(WebServiceMessage request) {
+		if (request instanceof MimeMessage && ((MimeMessage) request).getAttachments().hasNext()) {
+			return false;
+		}
+		if (payloadRootQNames == null) {
+			return true;
+		}
+		try {
+			QName payloadRootQName = PayloadRootUtils.getPayloadRootQName(request.getPayloadSource(),
+					getTransformerFactory());
+			return payloadRootQName != null && payloadRootQNames.contains(payloadRootQName);
+		} catch (TransformerException ex) {
+			throw new WebServiceTransformerException("Could not determine payload root: " + ex.getMessage(), ex);
+		}
+	}
+
+	private String createKey(MessageContext messageContext, Source payloadSource) {
+		DOMResult result = new DOMResult();
+		transformPayload(payloadSource, result);
+		MessageDigest digest = PayloadDigestUtils.createDigest();
+		URI destination = getDestination(messageContext);
+		PayloadDigestUtils.update(digest, destination != null ? destination.toString() : null);
+		WebServiceMessage request = messageContext.getRequest();
+		PayloadDigestUtils.update(digest, request instanceof SoapMessage ? ((SoapMessage) request).getSoapAction() : null);
+		PayloadDigestUtils.update(digest, ((Document) result.getNode()).getDocumentElement());
+		return PayloadDigestUtils.toHexString(digest);
+	}
+
+	private URI getDestination(MessageContext messageContext) {
+		URI destination = (URI) messageContext.getProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY);
+		if (destination == null) {
+			TransportContext transportContext = TransportContextHolder.getTransportContext();
+			if (transportContext != null) {
+				try {
+					destination = transportContext.getConnection().getUri();
+				} catch (URISyntaxException ex) {
+					// ignore
+				}
+			}
+		}
+		return destination;
+	}
+
+	private void transformPayload(Source source, Result result) {
+		try {
+			transform(source, result);
+		} catch (TransformerException ex) {
+			throw new WebServiceTransformerException("Could not transform payload: " + ex.getMessage(), ex);
+		}
+	}
+
+	private CachedResponse put(String key, byte[] payload) {
+		long limit = maxEntrySize > 0 ? maxEntrySize : maxSize / 10;
+		if (payload.length > limit) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Not caching response of " + payload.length + " bytes, exceeds " + limit + " bytes");
+			}
+			return null;
+		}
+		long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeToLive);
+		CachedResponse cachedResponse = new CachedResponse(payload, expiresAt,
+				expiresAt + TimeUnit.MILLISECONDS.toNanos(staleWhileRevalidate));
+		synchronized (cache) {
+			remove(key);
+			cache.put(key, cachedResponse);
+			size += payload.length;
+			for (Iterator<CachedResponse> iterator = cache.values().iterator(); size > maxSize && iterator.hasNext();) {
+				size -= iterator.next().payload.length;
+				iterator.remove();
+			}
+		}
+		return cachedResponse;
+	}
+
+	private void remove(String key) {
+		CachedResponse removed = cache.remove(key);
+		if (removed != null) {
+			size -= removed.payload.length;
+		}
+	}
+
+	private void complete(Exchange exchange, CachedResponse response) {
+		synchronized (cache) {
+			if (exchanges.get(exchange.key) == exchange) {
+				exchanges.remove(exchange.key);
+			}
+		}
+		exchange.complete(response);
+	}
+
+	private static class CachedResponse {
+
+		private final byte[] payload;
+
+		private final long expiresAt;
+
+		private final long staleAt;
+
+		private CachedResponse(byte[] payload, long expiresAt, long staleAt) {
+			this.payload = payload;
+			this.expiresAt = expiresAt;
+			this.staleAt = staleAt;
+		}
+	}
+
+	/** A request that is being sent, on whose response identical requests wait. */
+	private static class Exchange {
+
+		private final String key;
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		private volatile CachedResponse response;
+
+		private Exchange(String key) {
+			this.key = key;
+		}
+
+		private synchronized void complete(CachedResponse response) {
+			if (latch.getCount() > 0) {
+				this.response = response;
+				latch.countDown();
+			}
+		}
+
+		/** Waits for the response, and returns it; or {@code null} if it cannot be cached, or does not arrive in time. */
+		private CachedResponse await(long timeout) {
+			try {
+				if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+					logger.debug("Timed out waiting for response of identical request; sending request");
+					return null;
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			return response;
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.context;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.util.Assert;
+
+/**
+ * Generic utility methods for working with asynchronously produced responses. Mainly for internal use within the
+ * framework.
+ * <p>
+ * An endpoint adapter that does not produce the response on the invoking thread registers a {@link CompletionStage}
+ * with the {@link MessageContext}. The stage completes once the response has been set on the message context, or
+ * completes exceptionally if the invocation failed. Until then, the message context must not be used to send a
+ * response.
+ *
+ * @since 3.1
+ */
+public abstract class AsyncResponseUtils {
+
+	/** Name of the message context property that holds the pending response. */
+	public static final String ASYNC_RESPONSE_PROPERTY = AsyncResponseUtils.class.getName() + ".ASYNC_RESPONSE";
+
+	/**
+	 * Registers a pending response with the given message context, replacing any existing one.
+	 *
+	 * @param messageContext the message context
+	 * @param asyncResponse the stage that completes when the response is available
+	 */
+	public static void setAsyncResponse(MessageContext messageContext, CompletionStage<?> asyncResponse) {
+		Assert.notNull(messageContext, "'messageContext' must not be null");
+		Assert.notNull(asyncResponse, "'asyncResponse' must not be null");
+		messageContext.setProperty(ASYNC_RESPONSE_PROPERTY, asyncResponse);
+	}
+
+	/**
+	 * Returns the pending response of the given message context.
+	 *
+	 * @param messageContext the message context
+	 * @return the stage that completes when the response is available, or {@code null} if the response was produced
+	 *         synchronously
+	 */
+	public static CompletionStage<?> getAsyncResponse(MessageContext messageContext) {
+		return (CompletionStage<?>) messageContext.getProperty(ASYNC_RESPONSE_PROPERTY);
+	}
+
+	/**
+	 * Indicates whether the response of the given message context is produced asynchronously.
+	 *
+	 * @param messageContext the message context
+	 * @return {@code true} if a pending response is registered; {@code false} otherwise
+	 */
+	public static boolean isAsyncResponse(MessageContext messageContext) {
+		return messageContext.containsProperty(ASYNC_RESPONSE_PROPERTY);
+	}
+
+	/**
+	 * Blocks until the pending response of the given message context, if any, is available. If the asynchronous
+	 * processing failed, the original exception is rethrown.
+	 *
+	 * @param messageContext the message context
+	 * @throws Exception in case the asynchronous processing failed
+	 */
+	public static void awaitAsyncResponse(MessageContext messageContext) throws Exception {
+		CompletionStage<?> asyncResponse = getAsyncResponse(messageContext);
+		if (asyncResponse != null) {
+			await(asyncResponse);
+		}
+	}
+
+	/**
+	 * Blocks until the given stage is completed. If it completed exceptionally, the original exception is rethrown.
+	 *
+	 * @param stage the stage to wait for
+	 * @throws Exception in case the stage completed exceptionally
+	 */
+	public static void await(CompletionStage<?> stage) throws Exception {
+		try {
+			stage.toCompletableFuture().get();
+		} catch (ExecutionException ex) {
+			throw toException(ex.getCause());
+		}
+	}
+
+	/**
+	 * Unwraps the given failure of a {@link CompletionStage} into the exception that caused it. {@link Error}s are
+	 * rethrown as is.
+	 *
+	 * @param failure the failure, as passed to a completion callback
+	 * @return the exception to handle
+	 */
+	public static Exception toException(Throwable failure) {
+		Throwable cause = failure;
+		while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return cause instanceof Exception ? (Exception) cause : new UndeclaredThrowableException(cause);
+	}
+
+}
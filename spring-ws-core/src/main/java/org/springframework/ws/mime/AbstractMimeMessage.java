@@ -23,7 +23,6 @@ import java.io.OutputStream;
 
 import javax.activation.DataHandler;
 import javax.activation.DataSource;
-import javax.activation.FileDataSource;
 
 import org.springframework.core.io.InputStreamSource;
 import org.springframework.core.io.Resource;
@@ -41,8 +40,7 @@ public abstract class AbstractMimeMessage implements MimeMessage {
 	public final Attachment addAttachment(String contentId, File file) throws AttachmentException {
 		Assert.hasLength(contentId, "contentId must not be empty");
 		Assert.notNull(file, "File must not be null");
-		DataHandler dataHandler = new DataHandler(new FileDataSource(file));
-		return addAttachment(contentId, dataHandler);
+		return addAttachment(contentId, new FileDataHandler(file));
 	}
 
 	@Override
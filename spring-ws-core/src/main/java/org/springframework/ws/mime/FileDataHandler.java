@@ -0,0 +1,144 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.mime;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.activation.DataHandler;
+import javax.activation.FileDataSource;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link DataHandler} for attachments backed by a file, optimized for large files.
+ * <p>
+ * Rather than copying the file through an {@link java.io.InputStream} in small blocks, this handler writes the file
+ * with {@link FileChannel#transferTo(long, long, WritableByteChannel)} when the stream it is written to is backed by a
+ * channel, such as a {@link FileOutputStream}, which lets the operating system copy the bytes without passing them
+ * through the JVM. Otherwise, it reads the file in large blocks with positional {@link FileChannel} reads. The file is
+ * not mapped into memory, since mapped regions are only released when they are garbage collected.
+ * <p>
+ * Note that the HTTP transports write messages to the {@code OutputStream} of the servlet response or of the HTTP
+ * connection, wrapped by the MIME encoder, which is not backed by a channel. The {@code transferTo} path is therefore
+ * only taken when a message is written to a file.
+ * <p>
+ * Used by {@link AbstractMimeMessage#addAttachment(String, File)}.
+ *
+ * @since 3.1
+ */
+public class FileDataHandler extends DataHandler {
+
+	/** Default size of the blocks in which the file is read: 64 KB. */
+	static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private final File file;
+
+	private final int blockSize;
+
+	/**
+	 * Creates a new {@code FileDataHandler} for the given file. The content type is determined from the file name.
+	 *
+	 * @param file the file
+	 */
+	public FileDataHandler(File file) {
+		this(new FileDataSource(file), DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new {@code FileDataHandler} for the given file, with the given content type.
+	 *
+	 * @param file the file
+	 * @param contentType the content type of the file
+	 */
+	public FileDataHandler(File file, final String contentType) {
+		this(new FileDataSource(file) {
+
+			@Override
+			public String getContentType() {
+				return contentType;
+			}
+		}, DEFAULT_BLOCK_SIZE);
+	}
+
+	FileDataHandler(File file, int blockSize) {
+		this(new FileDataSource(file), blockSize);
+	}
+
+	private FileDataHandler(FileDataSource dataSource, int blockSize) {
+		super(dataSource);
+		Assert.isTrue(blockSize > 0, "'blockSize' must be larger than 0");
+		this.file = dataSource.getFile();
+		this.blockSize = blockSize;
+	}
+
+	/** Returns the file of this handler. */
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public void writeTo(OutputStream os) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			WritableByteChannel target = getChannel(os);
+			if (target != null) {
+				transfer(channel, target);
+			} else {
+				copy(channel, os);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static WritableByteChannel getChannel(OutputStream os) {
+		if (os instanceof WritableByteChannel) {
+			return (WritableByteChannel) os;
+		} else if (os.getClass() == FileOutputStream.class) {
+			return ((FileOutputStream) os).getChannel();
+		}
+		return null;
+	}
+
+	private static void transfer(FileChannel channel, WritableByteChannel target) throws IOException {
+		long size = channel.size();
+		long position = 0;
+		while (position < size) {
+			position += channel.transferTo(position, size - position, target);
+		}
+	}
+
+	private void copy(FileChannel channel, OutputStream os) throws IOException {
+		byte[] block = new byte[(int) Math.max(1, Math.min(blockSize, channel.size()))];
+		ByteBuffer buffer = ByteBuffer.wrap(block);
+		long position = 0;
+		int length;
+		while ((length = channel.read(buffer, position)) != -1) {
+			os.write(block, 0, length);
+			position += length;
+			buffer.clear();
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2010 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -74,6 +74,11 @@ public interface MimeMessage extends WebServiceMessage {
 	 * <p>
 	 * The content type will be determined by the name of the given content file. Do not use this for temporary files with
 	 * arbitrary filenames (possibly ending in ".tmp" or the like)!
+	 * <p>
+	 * The file is not read into memory, but written straight from disk when the message is written, which makes this
+	 * method suitable for large files. The file is only copied without passing through the JVM when the message is
+	 * written to a file; the HTTP transports write to streams that are not backed by a channel, to which the file is
+	 * copied in large blocks.
 	 *
 	 * @param contentId the content Id of the attachment
 	 * @param file the file to take the content from
@@ -22,6 +22,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,6 +42,7 @@ import org.springframework.web.servlet.DispatcherServlet;
 import org.springframework.ws.FaultAwareWebServiceMessage;
 import org.springframework.ws.NoEndpointFoundException;
 import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.server.endpoint.MessageEndpoint;
 import org.springframework.ws.server.endpoint.PayloadEndpoint;
@@ -45,6 +51,8 @@ import org.springframework.ws.server.endpoint.adapter.PayloadEndpointAdapter;
 import org.springframework.ws.soap.server.SoapMessageDispatcher;
 import org.springframework.ws.support.DefaultStrategiesHelper;
 import org.springframework.ws.transport.WebServiceMessageReceiver;
+import org.springframework.ws.transport.context.TransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
 
 /**
  * Central dispatcher for use within Spring-WS, dispatching Web service messages to registered endpoints.
@@ -160,7 +168,7 @@ public class MessageDispatcher implements WebServiceMessageReceiver, BeanNameAwa
 	}
 
 	@Override
-	public void receive(MessageContext messageContext) throws Exception {
+	public void receive(final MessageContext messageContext) throws Exception {
 		// Let's keep a reference to the request content as it came in, it might be changed by interceptors in dispatch()
 		String requestContent = "";
 		if (receivedMessageTracingLogger.isTraceEnabled() || sentMessageTracingLogger.isTraceEnabled()) {
@@ -172,6 +180,27 @@ public class MessageDispatcher implements WebServiceMessageReceiver, BeanNameAwa
 			receivedMessageTracingLogger.debug("Received request [" + messageContext.getRequest() + "]");
 		}
 		dispatch(messageContext);
+		CompletionStage<?> asyncResponse = AsyncResponseUtils.getAsyncResponse(messageContext);
+		if (asyncResponse != null) {
+			final String finalRequestContent = requestContent;
+			AsyncResponseUtils.setAsyncResponse(messageContext, asyncResponse.thenApply(new Function<Object, Object>() {
+
+				@Override
+				public Object apply(Object value) {
+					try {
+						logResponse(messageContext, finalRequestContent);
+					} catch (IOException ex) {
+						throw new CompletionException(ex);
+					}
+					return value;
+				}
+			}));
+		} else {
+			logResponse(messageContext, requestContent);
+		}
+	}
+
+	private void logResponse(MessageContext messageContext, String requestContent) throws IOException {
 		if (messageContext.hasResponse()) {
 			WebServiceMessage response = messageContext.getResponse();
 			if (sentMessageTracingLogger.isTraceEnabled()) {
@@ -229,6 +258,14 @@ public class MessageDispatcher implements WebServiceMessageReceiver, BeanNameAwa
 				EndpointAdapter endpointAdapter = getEndpointAdapter(mappedEndpoint.getEndpoint());
 				endpointAdapter.invoke(messageContext, mappedEndpoint.getEndpoint());
 
+				CompletionStage<?> asyncResponse = AsyncResponseUtils.getAsyncResponse(messageContext);
+				if (asyncResponse != null) {
+					// The interceptor response chain is resumed when the response is available
+					AsyncResponseUtils.setAsyncResponse(messageContext,
+							resumeDispatch(asyncResponse, mappedEndpoint, interceptorIndex, messageContext));
+					return;
+				}
+
 				// Apply handleResponse methods of registered interceptors
 				triggerHandleResponse(mappedEndpoint, interceptorIndex, messageContext);
 			} catch (NoEndpointFoundException ex) {
@@ -252,6 +289,50 @@ public class MessageDispatcher implements WebServiceMessageReceiver, BeanNameAwa
 		}
 	}
 
+	/**
+	 * Resumes the dispatch of the given message context once its asynchronous response is available, by applying the
+	 * {@code handleResponse} or {@code handleFault}, and {@code afterCompletion} methods of the registered interceptors.
+	 * The callbacks are invoked in the transport context of the original request.
+	 *
+	 * @return a stage that completes when the interceptor chain has been applied
+	 */
+	private CompletionStage<Void> resumeDispatch(CompletionStage<?> asyncResponse,
+			final EndpointInvocationChain mappedEndpoint, final int interceptorIndex, final MessageContext messageContext) {
+		final TransportContext transportContext = TransportContextHolder.getTransportContext();
+		final CompletableFuture<Void> result = new CompletableFuture<Void>();
+		asyncResponse.whenComplete(new BiConsumer<Object, Throwable>() {
+
+			@Override
+			public void accept(Object value, Throwable failure) {
+				TransportContext previousTransportContext = TransportContextHolder.getTransportContext();
+				TransportContextHolder.setTransportContext(transportContext);
+				try {
+					try {
+						try {
+							if (failure != null) {
+								throw AsyncResponseUtils.toException(failure);
+							}
+							triggerHandleResponse(mappedEndpoint, interceptorIndex, messageContext);
+						} catch (Exception ex) {
+							processEndpointException(messageContext, mappedEndpoint.getEndpoint(), ex);
+							triggerHandleResponse(mappedEndpoint, interceptorIndex, messageContext);
+						}
+						triggerAfterCompletion(mappedEndpoint, interceptorIndex, messageContext, null);
+						result.complete(null);
+					} catch (Exception ex) {
+						triggerAfterCompletion(mappedEndpoint, interceptorIndex, messageContext, ex);
+						result.completeExceptionally(ex);
+					}
+				} catch (Throwable ex) {
+					result.completeExceptionally(ex);
+				} finally {
+					TransportContextHolder.setTransportContext(previousTransportContext);
+				}
+			}
+		});
+		return result;
+	}
+
 	/**
 	 * Returns the endpoint for this request. All endpoint mappings are tried, in order.
 	 *
@@ -16,16 +16,23 @@
 
 package org.springframework.ws.server.endpoint.adapter;
 
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.BeanClassLoaderAware;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.server.endpoint.MethodEndpoint;
 import org.springframework.ws.server.endpoint.adapter.method.MessageContextMethodArgumentResolver;
@@ -45,6 +52,11 @@ import org.springframework.ws.server.endpoint.adapter.method.jaxb.XmlRootElement
  * Default extension of {@link AbstractMethodEndpointAdapter} with support for pluggable
  * {@linkplain MethodArgumentResolver argument resolvers} and {@linkplain MethodReturnValueHandler return value
  * handlers}.
+ * <p>
+ * Endpoint methods can also return a {@link CompletionStage}, such as a {@link CompletableFuture}, of any supported
+ * return type. In that case, the return value is handled once the stage completes, and the pending response is
+ * registered with the message context through {@link AsyncResponseUtils}, so that the invoking thread can be released
+ * in the meantime.
  *
  * @author Arjen Poutsma
  * @since 2.0
@@ -263,6 +275,12 @@ public class DefaultMethodEndpointAdapter extends AbstractMethodEndpointAdapter
 	}
 
 	private boolean supportsReturnType(MethodParameter methodReturnType) {
+		if (isAsyncReturnType(methodReturnType.getParameterType())) {
+			methodReturnType = new AsyncMethodReturnType(methodReturnType);
+			if (Void.class.equals(methodReturnType.getParameterType())) {
+				return true;
+			}
+		}
 		if (Void.TYPE.equals(methodReturnType.getParameterType())) {
 			return true;
 		}
@@ -289,11 +307,17 @@ public class DefaultMethodEndpointAdapter extends AbstractMethodEndpointAdapter
 		}
 
 		Class<?> returnType = methodEndpoint.getMethod().getReturnType();
-		if (!Void.TYPE.equals(returnType)) {
+		if (isAsyncReturnType(returnType)) {
+			handleAsyncReturnValue(messageContext, (CompletionStage<?>) returnValue, methodEndpoint);
+		} else if (!Void.TYPE.equals(returnType)) {
 			handleMethodReturnValue(messageContext, returnValue, methodEndpoint);
 		}
 	}
 
+	private boolean isAsyncReturnType(Class<?> returnType) {
+		return CompletionStage.class.isAssignableFrom(returnType);
+	}
+
 	/**
 	 * Returns the argument array for the given method endpoint.
 	 * <p>
@@ -332,7 +356,47 @@ public class DefaultMethodEndpointAdapter extends AbstractMethodEndpointAdapter
 	 */
 	protected void handleMethodReturnValue(MessageContext messageContext, Object returnValue,
 			MethodEndpoint methodEndpoint) throws Exception {
-		MethodParameter returnType = methodEndpoint.getReturnType();
+		handleReturnValue(messageContext, returnValue, methodEndpoint.getReturnType());
+	}
+
+	/**
+	 * Handle the {@link CompletionStage} returned by the given method endpoint.
+	 * <p>
+	 * This implementation registers a pending response with the message context, which completes after the result of
+	 * the stage has been handled by the {@linkplain #setMethodReturnValueHandlers(java.util.List) return value
+	 * handlers}.
+	 *
+	 * @param messageContext the current message context
+	 * @param returnValue the returned stage, may be {@code null}
+	 * @param methodEndpoint the method endpoint that returned the stage
+	 * @see AsyncResponseUtils#setAsyncResponse(MessageContext, CompletionStage)
+	 */
+	protected void handleAsyncReturnValue(final MessageContext messageContext, CompletionStage<?> returnValue,
+			final MethodEndpoint methodEndpoint) {
+		final MethodParameter returnType = new AsyncMethodReturnType(methodEndpoint.getReturnType());
+		CompletionStage<?> result = returnValue != null ? returnValue : CompletableFuture.completedFuture(null);
+		CompletionStage<Object> response = result.thenApply(new Function<Object, Object>() {
+
+			@Override
+			public Object apply(Object value) {
+				if (logger.isTraceEnabled()) {
+					logger.trace("Method [" + methodEndpoint + "] completed with [" + value + "]");
+				}
+				if (!Void.class.equals(returnType.getParameterType())) {
+					try {
+						handleReturnValue(messageContext, value, returnType);
+					} catch (Exception ex) {
+						throw new CompletionException(ex);
+					}
+				}
+				return value;
+			}
+		});
+		AsyncResponseUtils.setAsyncResponse(messageContext, response);
+	}
+
+	private void handleReturnValue(MessageContext messageContext, Object returnValue, MethodParameter returnType)
+			throws Exception {
 		for (MethodReturnValueHandler methodReturnValueHandler : methodReturnValueHandlers) {
 			if (methodReturnValueHandler.supportsReturnType(returnType)) {
 				methodReturnValueHandler.handleReturnValue(messageContext, returnType, returnValue);
@@ -341,4 +405,39 @@ public class DefaultMethodEndpointAdapter extends AbstractMethodEndpointAdapter
 		}
 		throw new IllegalStateException("Return value [" + returnValue + "] not resolved by any MethodReturnValueHandler");
 	}
+
+	/**
+	 * Return type of an asynchronous endpoint method, which exposes the type produced by the {@link CompletionStage}
+	 * instead of the stage itself to the return value handlers.
+	 */
+	private static class AsyncMethodReturnType extends MethodParameter {
+
+		private final ResolvableType resultType;
+
+		private AsyncMethodReturnType(MethodParameter returnType) {
+			super(returnType);
+			this.resultType = ResolvableType.forMethodParameter(returnType).as(CompletionStage.class).getGeneric();
+		}
+
+		private AsyncMethodReturnType(AsyncMethodReturnType original) {
+			super(original);
+			this.resultType = original.resultType;
+		}
+
+		@Override
+		public Class<?> getParameterType() {
+			return resultType.resolve(Object.class);
+		}
+
+		@Override
+		public Type getGenericParameterType() {
+			return resultType.getType();
+		}
+
+		@Override
+		public AsyncMethodReturnType clone() {
+			return new AsyncMethodReturnType(this);
+		}
+	}
+
 }
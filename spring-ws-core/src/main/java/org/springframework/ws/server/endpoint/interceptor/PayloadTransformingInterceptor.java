@@ -22,8 +22,12 @@ import java.io.ByteArrayOutputStream;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -37,7 +41,12 @@ import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.server.EndpointInterceptor;
 import org.springframework.xml.transform.ResourceSource;
 import org.springframework.xml.transform.TransformerObjectSupport;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
 
 /**
@@ -47,6 +56,12 @@ import org.xml.sax.helpers.XMLReaderFactory;
  * <p>
  * The stylesheets to use can be set using the {@code requestXslt} and {@code responseXslt} properties. Both of these
  * are optional: if not set, the message is simply not transformed. Setting one of the two is required, though.
+ * <p>
+ * By default, the transformation result is serialized to a byte array, which is then parsed into the message payload.
+ * In {@linkplain #setSinglePass(boolean) single-pass} mode, the output of the stylesheet is written directly into the
+ * {@linkplain WebServiceMessage#getPayloadResult() payload result} through SAX instead, and the {@code Transformer}s
+ * are cached per thread. This relies on the XSLT processor reading its complete input before it produces output, which
+ * holds for all non-streaming processors, such as the XSLTC processor of the JDK, Xalan, and Saxon HE.
  *
  * @author Arjen Poutsma
  * @see #setRequestXslt(org.springframework.core.io.Resource)
@@ -66,6 +81,12 @@ public class PayloadTransformingInterceptor extends TransformerObjectSupport
 
 	private Templates responseTemplates;
 
+	private boolean singlePass = false;
+
+	private final ThreadLocal<Transformer> requestTransformer = new ThreadLocal<Transformer>();
+
+	private final ThreadLocal<Transformer> responseTransformer = new ThreadLocal<Transformer>();
+
 	/** Sets the XSLT stylesheet to use for transforming incoming request. */
 	public void setRequestXslt(Resource requestXslt) {
 		this.requestXslt = requestXslt;
@@ -76,6 +97,19 @@ public class PayloadTransformingInterceptor extends TransformerObjectSupport
 		this.responseXslt = responseXslt;
 	}
 
+	/**
+	 * Sets whether messages are transformed in a single pass, writing the output of the stylesheet directly into the
+	 * payload result, rather than via an intermediate byte array. Defaults to {@code false}.
+	 * <p>
+	 * Should not be enabled when using a streaming XSLT processor, as the payload source and the payload result belong
+	 * to the same message.
+	 *
+	 * @since 3.1
+	 */
+	public void setSinglePass(boolean singlePass) {
+		this.singlePass = singlePass;
+	}
+
 	/**
 	 * Transforms the request message in the given message context using a provided stylesheet. Transformation only occurs
 	 * if the {@code requestXslt} has been set.
@@ -88,8 +122,12 @@ public class PayloadTransformingInterceptor extends TransformerObjectSupport
 	public boolean handleRequest(MessageContext messageContext, Object endpoint) throws Exception {
 		if (requestTemplates != null) {
 			WebServiceMessage request = messageContext.getRequest();
-			Transformer transformer = requestTemplates.newTransformer();
-			transformMessage(request, transformer);
+			if (singlePass) {
+				transformMessage(request, requestTemplates, requestTransformer);
+			} else {
+				Transformer transformer = requestTemplates.newTransformer();
+				transformMessage(request, transformer);
+			}
 			logger.debug("Request message transformed");
 		}
 		return true;
@@ -107,8 +145,12 @@ public class PayloadTransformingInterceptor extends TransformerObjectSupport
 	public boolean handleResponse(MessageContext messageContext, Object endpoint) throws Exception {
 		if (responseTemplates != null) {
 			WebServiceMessage response = messageContext.getResponse();
-			Transformer transformer = responseTemplates.newTransformer();
-			transformMessage(response, transformer);
+			if (singlePass) {
+				transformMessage(response, responseTemplates, responseTransformer);
+			} else {
+				Transformer transformer = responseTemplates.newTransformer();
+				transformMessage(response, transformer);
+			}
 			logger.debug("Response message transformed");
 		}
 		return true;
@@ -121,6 +163,23 @@ public class PayloadTransformingInterceptor extends TransformerObjectSupport
 		transform(new StreamSource(is), message.getPayloadResult());
 	}
 
+	private void transformMessage(WebServiceMessage message, Templates templates, ThreadLocal<Transformer> transformers)
+			throws TransformerException {
+		Transformer transformer = transformers.get();
+		if (transformer == null) {
+			transformer = templates.newTransformer();
+			transformers.set(transformer);
+		}
+		PayloadResultHandler handler = new PayloadResultHandler(message);
+		SAXResult result = new SAXResult(handler);
+		result.setLexicalHandler(handler);
+		try {
+			transformer.transform(message.getPayloadSource(), result);
+		} finally {
+			transformer.reset();
+		}
+	}
+
 	/** Does nothing by default. Faults are not transformed. */
 	@Override
 	public boolean handleFault(MessageContext messageContext, Object endpoint) throws Exception {
@@ -137,6 +196,11 @@ public class PayloadTransformingInterceptor extends TransformerObjectSupport
 			throw new IllegalArgumentException("Setting either 'requestXslt' or 'responseXslt' is required");
 		}
 		TransformerFactory transformerFactory = getTransformerFactory();
+		if (singlePass) {
+			Assert.state(transformerFactory.getFeature(SAXTransformerFactory.FEATURE)
+					&& transformerFactory.getFeature(SAXResult.FEATURE),
+					"Single-pass transformation requires a TransformerFactory that supports SAX");
+		}
 		XMLReader xmlReader = XMLReaderFactory.createXMLReader();
 		xmlReader.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
 		if (requestXslt != null) {
@@ -156,4 +220,121 @@ public class PayloadTransformingInterceptor extends TransformerObjectSupport
 			responseTemplates = transformerFactory.newTemplates(responseSource);
 		}
 	}
+
+	/**
+	 * SAX handler that writes the output of a stylesheet into the payload result of a message. The payload result is
+	 * only obtained when the output starts, as doing so typically replaces the current payload.
+	 */
+	private class PayloadResultHandler implements ContentHandler, LexicalHandler {
+
+		private final WebServiceMessage message;
+
+		private TransformerHandler delegate;
+
+		private Locator locator;
+
+		private PayloadResultHandler(WebServiceMessage message) {
+			this.message = message;
+		}
+
+		@Override
+		public void setDocumentLocator(Locator locator) {
+			this.locator = locator;
+		}
+
+		@Override
+		public void startDocument() throws SAXException {
+			try {
+				delegate = ((SAXTransformerFactory) getTransformerFactory()).newTransformerHandler();
+			} catch (TransformerConfigurationException ex) {
+				throw new SAXException(ex);
+			}
+			delegate.setResult(message.getPayloadResult());
+			if (locator != null) {
+				delegate.setDocumentLocator(locator);
+			}
+			delegate.startDocument();
+		}
+
+		@Override
+		public void endDocument() throws SAXException {
+			delegate.endDocument();
+		}
+
+		@Override
+		public void startPrefixMapping(String prefix, String uri) throws SAXException {
+			delegate.startPrefixMapping(prefix, uri);
+		}
+
+		@Override
+		public void endPrefixMapping(String prefix) throws SAXException {
+			delegate.endPrefixMapping(prefix);
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+			delegate.startElement(uri, localName, qName, atts);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			delegate.endElement(uri, localName, qName);
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			delegate.characters(ch, start, length);
+		}
+
+		@Override
+		public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+			delegate.ignorableWhitespace(ch, start, length);
+		}
+
+		@Override
+		public void processingInstruction(String target, String data) throws SAXException {
+			delegate.processingInstruction(target, data);
+		}
+
+		@Override
+		public void skippedEntity(String name) throws SAXException {
+			delegate.skippedEntity(name);
+		}
+
+		@Override
+		public void startDTD(String name, String publicId, String systemId) throws SAXException {
+			delegate.startDTD(name, publicId, systemId);
+		}
+
+		@Override
+		public void endDTD() throws SAXException {
+			delegate.endDTD();
+		}
+
+		@Override
+		public void startEntity(String name) throws SAXException {
+			delegate.startEntity(name);
+		}
+
+		@Override
+		public void endEntity(String name) throws SAXException {
+			delegate.endEntity(name);
+		}
+
+		@Override
+		public void startCDATA() throws SAXException {
+			delegate.startCDATA();
+		}
+
+		@Override
+		public void endCDATA() throws SAXException {
+			delegate.endCDATA();
+		}
+
+		@Override
+		public void comment(char[] ch, int start, int length) throws SAXException {
+			delegate.comment(ch, start, length);
+		}
+	}
+
 }
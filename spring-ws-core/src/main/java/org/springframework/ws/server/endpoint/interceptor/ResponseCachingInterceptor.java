@@ -0,0 +1,557 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.server.endpoint.interceptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+import org.springframework.ws.FaultAwareWebServiceMessage;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.server.EndpointInterceptor;
+import org.springframework.ws.server.endpoint.support.PayloadRootUtils;
+import org.springframework.ws.stream.StreamingPayload;
+import org.springframework.ws.stream.StreamingWebServiceMessage;
+import org.springframework.ws.support.PayloadDigestUtils;
+import org.springframework.xml.XMLInputFactoryUtils;
+import org.springframework.xml.transform.TransformerObjectSupport;
+import org.springframework.xml.xpath.XPathExpression;
+import org.springframework.xml.xpath.XPathExpressionFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Interceptor that caches the response payloads of operations whose response only depends on the request payload, such
+ * as reference data lookups. When a cached response is found, it is copied into the response message in
+ * {@link #handleRequest(MessageContext, Object) handleRequest}, and the endpoint is not invoked.
+ * <p>
+ * Responses are cached by a SHA-256 hash of the canonical form of the request payload, as computed by
+ * {@link PayloadDigestUtils}. The canonical form ignores namespace prefixes, the order of attributes, comments, and
+ * whitespace-only text, so that requests that differ only in those respects share a response. The hash can be
+ * restricted to parts of the payload by setting {@link #setKeyExpressions(List) keyExpressions}.
+ * <p>
+ * The cache is bounded by the total size of the cached responses, evicting the least recently used ones first, and
+ * entries expire after the {@link #setTimeToLive(long) timeToLive}. Faults are never cached. Only requests with one of
+ * the configured {@link #setPayloadRoots(Collection) payloadRoots} are cached; the payload root of other requests is
+ * read without transforming the payload, and they are passed on without computing their hash. If no payload roots are
+ * configured, all requests handled by this interceptor are cached. Alternatively, the interceptor can be registered
+ * for specific payload roots only, using a
+ * {@link org.springframework.ws.soap.server.endpoint.interceptor.PayloadRootSmartSoapEndpointInterceptor}.
+ * <p>
+ * Concurrent identical requests are coalesced: while the endpoint handles a request, identical requests wait for its
+ * response, rather than invoking the endpoint again. As waiting requests block their threads just like invoking the
+ * endpoint would, they only wait until the request they wait for has taken twice the average time the endpoint takes,
+ * and at most for the {@link #setCoalescingTimeout(long) coalescingTimeout}. If the response cannot be cached, because
+ * it is a fault or because an error occurred, or if it is not available in time, the waiting requests invoke the
+ * endpoint themselves.
+ * <p>
+ * Cached responses are kept as serialized bytes. They are written as is to {@link StreamingWebServiceMessage streaming
+ * messages}, such as Axiom messages, when the response is serialized, and to stream results; other messages, such as
+ * SAAJ messages, parse them into their object model.
+ * <p>
+ * Only use this interceptor for operations that have no side effects, and whose response does not depend on anything
+ * but the request payload, such as SOAP headers or the authenticated user.
+ *
+ * @since 3.1
+ */
+public class ResponseCachingInterceptor extends TransformerObjectSupport
+		implements EndpointInterceptor, InitializingBean {
+
+	/** Default maximum size of the cache, in bytes: 16 MB. */
+	public static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+	/** Default time to live of cached responses, in milliseconds. */
+	public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+
+	/** Default maximum time to wait for the response of an identical request, in milliseconds. */
+	public static final long DEFAULT_COALESCING_TIMEOUT = 60 * 1000;
+
+	private static final String EXCHANGE_PROPERTY = ResponseCachingInterceptor.class.getName() + ".EXCHANGE";
+
+	/** Number of invocations over which the latency of the endpoint is averaged. */
+	private static final int LATENCY_WINDOW = 10;
+
+	private static final Log logger = LogFactory.getLog(ResponseCachingInterceptor.class);
+
+	/** The cached responses, in access order; guarded by itself. */
+	private final Map<String, CachedResponse> cache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+
+	private final ConcurrentMap<String, Exchange> exchanges = new ConcurrentHashMap<String, Exchange>();
+
+	private final Object latencyMonitor = new Object();
+
+	/** Total size of the cached responses; guarded by {@link #cache}. */
+	private long size;
+
+	/** Average latency of the endpoint, in nanoseconds, or {@code 0} if unknown. */
+	private volatile long latency;
+
+	private final XMLInputFactory inputFactory = XMLInputFactoryUtils.newInstance();
+
+	private long maxSize = DEFAULT_MAX_SIZE;
+
+	private long maxEntrySize = -1;
+
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	private long coalescingTimeout = DEFAULT_COALESCING_TIMEOUT;
+
+	private Set<QName> payloadRoots = Collections.emptySet();
+
+	private Map<String, String> namespaces = new HashMap<String, String>();
+
+	private List<String> keyExpressions = Collections.emptyList();
+
+	private List<XPathExpression> keyXPathExpressions = Collections.emptyList();
+
+	/** Sets the maximum total size of the cached responses, in bytes. Defaults to 16 MB. */
+	public void setMaxSize(long maxSize) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be larger than 0");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Sets the maximum size of a single cached response, in bytes. Larger responses are not cached. Defaults to a tenth
+	 * of the {@link #setMaxSize(long) maxSize}.
+	 */
+	public void setMaxEntrySize(long maxEntrySize) {
+		Assert.isTrue(maxEntrySize > 0, "'maxEntrySize' must be larger than 0");
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/** Sets the time after which a cached response expires, in milliseconds. Defaults to one minute. */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be larger than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Sets the maximum time to wait for the response of an identical request that is being handled, in milliseconds.
+	 * When it elapses, the waiting request invokes the endpoint itself. Requests wait shorter once the average time the
+	 * endpoint takes is known: until the request they wait for has taken twice that time. Defaults to one minute.
+	 */
+	public void setCoalescingTimeout(long coalescingTimeout) {
+		Assert.isTrue(coalescingTimeout > 0, "'coalescingTimeout' must be larger than 0");
+		this.coalescingTimeout = coalescingTimeout;
+	}
+
+	/**
+	 * Sets the qualified names of the payload roots of the requests whose responses are cached. If not set, the responses
+	 * of all requests handled by this interceptor are cached.
+	 */
+	public void setPayloadRoots(Collection<QName> payloadRoots) {
+		Assert.notNull(payloadRoots, "'payloadRoots' must not be null");
+		this.payloadRoots = new HashSet<QName>(payloadRoots);
+	}
+
+	/** Sets the namespaces used in the {@link #setKeyExpressions(List) keyExpressions}, with prefixes as keys. */
+	public void setNamespaces(Map<String, String> namespaces) {
+		Assert.notNull(namespaces, "'namespaces' must not be null");
+		this.namespaces = namespaces;
+	}
+
+	/**
+	 * Sets the XPath expressions that select the parts of the request payload that determine the response. If set, only
+	 * the nodes selected by these expressions, and the name of the payload root, are hashed.
+	 */
+	public void setKeyExpressions(List<String> keyExpressions) {
+		Assert.notNull(keyExpressions, "'keyExpressions' must not be null");
+		this.keyExpressions = keyExpressions;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		List<XPathExpression> expressions = new ArrayList<XPathExpression>(keyExpressions.size());
+		for (String keyExpression : keyExpressions) {
+			expressions.add(XPathExpressionFactory.createXPathExpression(keyExpression, namespaces));
+		}
+		this.keyXPathExpressions = expressions;
+	}
+
+	/** Returns the number of cached responses. */
+	public int getCacheCount() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/** Returns the total size of the cached responses, in bytes. */
+	public long getCacheSize() {
+		synchronized (cache) {
+			return size;
+		}
+	}
+
+	/** Removes all cached responses. */
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+			size = 0;
+		}
+	}
+
+	/**
+	 * Looks up the response for the request in the given message context. If found, the cached response payload is
+	 * copied into the response, and the endpoint is not invoked. If an identical request is being handled, waits for its
+	 * response.
+	 *
+	 * @return {@code false} if a cached response was found; {@code true} otherwise
+	 */
+	@Override
+	public boolean handleRequest(MessageContext messageContext, Object endpoint) throws Exception {
+		WebServiceMessage request = messageContext.getRequest();
+		if (!payloadRoots.isEmpty()) {
+			QName payloadRoot = PayloadRootUtils.getPayloadRootQName(request.getPayloadSource(), getTransformerFactory());
+			if (payloadRoot == null || !payloadRoots.contains(payloadRoot)) {
+				return true;
+			}
+		}
+		Source payloadSource = request.getPayloadSource();
+		if (payloadSource == null) {
+			return true;
+		}
+		DOMResult result = new DOMResult();
+		transform(payloadSource, result);
+		Element payload = ((Document) result.getNode()).getDocumentElement();
+		QName payloadRoot = new QName(namespaceUri(payload), localName(payload));
+		String key = payloadRoot + "#" + hash(payload);
+		CachedResponse cachedResponse = get(key);
+		if (cachedResponse == null) {
+			Exchange exchange = new Exchange(key);
+			Exchange current = exchanges.putIfAbsent(key, exchange);
+			if (current != null) {
+				cachedResponse = current.await(getCoalescingTimeout(current));
+				// so that only the time the endpoint takes is recorded, not the time spent waiting
+				exchange = new Exchange(key);
+			} else {
+				// the response may have been cached since the lookup
+				cachedResponse = get(key);
+				if (cachedResponse != null) {
+					complete(exchange, cachedResponse);
+				}
+			}
+			if (cachedResponse == null) {
+				messageContext.setProperty(EXCHANGE_PROPERTY, exchange);
+				return true;
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Found cached response for " + payloadRoot);
+		}
+		writeResponse(cachedResponse, messageContext.getResponse());
+		return false;
+	}
+
+	/** Caches the response payload, if the request was not answered from the cache. */
+	@Override
+	public boolean handleResponse(MessageContext messageContext, Object endpoint) throws Exception {
+		Exchange exchange = (Exchange) messageContext.getProperty(EXCHANGE_PROPERTY);
+		if (exchange == null || !messageContext.hasResponse()) {
+			return true;
+		}
+		WebServiceMessage response = messageContext.getResponse();
+		if (response instanceof FaultAwareWebServiceMessage && ((FaultAwareWebServiceMessage) response).hasFault()) {
+			return true;
+		}
+		Source payloadSource = response.getPayloadSource();
+		if (payloadSource != null) {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			Transformer transformer = createTransformer();
+			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+			transformer.transform(payloadSource, new StreamResult(os));
+			complete(exchange, put(exchange.key, os.toByteArray()));
+		}
+		return true;
+	}
+
+	/** Does nothing by default. Faults are not cached. */
+	@Override
+	public boolean handleFault(MessageContext messageContext, Object endpoint) throws Exception {
+		return true;
+	}
+
+	/**
+	 * Releases the requests waiting for the response, if they have not been released yet, and records the time the
+	 * endpoint took.
+	 */
+	@Override
+	public void afterCompletion(MessageContext messageContext, Object endpoint, Exception ex) throws Exception {
+		Exchange exchange = (Exchange) messageContext.getProperty(EXCHANGE_PROPERTY);
+		if (exchange != null) {
+			complete(exchange, null);
+			recordLatency(System.nanoTime() - exchange.startedAt);
+		}
+	}
+
+	private void writeResponse(CachedResponse cachedResponse, WebServiceMessage response) throws Exception {
+		if (response instanceof StreamingWebServiceMessage) {
+			((StreamingWebServiceMessage) response).setStreamingPayload(cachedResponse);
+			return;
+		}
+		Result result = response.getPayloadResult();
+		if (result instanceof StreamResult && ((StreamResult) result).getOutputStream() != null) {
+			OutputStream os = ((StreamResult) result).getOutputStream();
+			os.write(cachedResponse.payload);
+			os.flush();
+		} else if (result instanceof StreamResult && ((StreamResult) result).getWriter() != null) {
+			Writer writer = ((StreamResult) result).getWriter();
+			writer.write(new String(cachedResponse.payload, StandardCharsets.UTF_8));
+			writer.flush();
+		} else {
+			transform(new StreamSource(new ByteArrayInputStream(cachedResponse.payload)), result);
+		}
+	}
+
+	private CachedResponse get(String key) {
+		synchronized (cache) {
+			CachedResponse cachedResponse = cache.get(key);
+			if (cachedResponse != null && System.nanoTime() - cachedResponse.expiresAt >= 0) {
+				cache.remove(key);
+				size -= cachedResponse.payload.length;
+				return null;
+			}
+			return cachedResponse;
+		}
+	}
+
+	private CachedResponse put(String key, byte[] payload) throws XMLStreamException {
+		long limit = maxEntrySize > 0 ? maxEntrySize : maxSize / 10;
+		if (payload.length > limit) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Not caching response of " + payload.length + " bytes, exceeds " + limit + " bytes");
+			}
+			return null;
+		}
+		CachedResponse cachedResponse = new CachedResponse(payload, readName(payload),
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeToLive));
+		synchronized (cache) {
+			CachedResponse previous = cache.put(key, cachedResponse);
+			size += previous != null ? payload.length - previous.payload.length : payload.length;
+			// removes the least recently used responses until the cache fits
+			Iterator<CachedResponse> iterator = cache.values().iterator();
+			while (size > maxSize) {
+				size -= iterator.next().payload.length;
+				iterator.remove();
+			}
+		}
+		return cachedResponse;
+	}
+
+	/**
+	 * Returns the time to wait for the response of the given exchange, in milliseconds: until it has taken twice the
+	 * average latency of the endpoint, if known, but at most the {@link #setCoalescingTimeout(long) coalescingTimeout}.
+	 */
+	private long getCoalescingTimeout(Exchange exchange) {
+		long latency = this.latency;
+		if (latency == 0) {
+			return coalescingTimeout;
+		}
+		long remaining = exchange.startedAt + 2 * latency - System.nanoTime();
+		return Math.min(coalescingTimeout, TimeUnit.NANOSECONDS.toMillis(Math.max(remaining, 0)));
+	}
+
+	private void recordLatency(long sample) {
+		synchronized (latencyMonitor) {
+			long current = latency;
+			latency = current == 0 ? Math.max(sample, 1) : Math.max(current + (sample - current) / LATENCY_WINDOW, 1);
+		}
+	}
+
+	private void complete(Exchange exchange, CachedResponse response) {
+		exchanges.remove(exchange.key, exchange);
+		exchange.complete(response);
+	}
+
+	private QName readName(byte[] payload) throws XMLStreamException {
+		XMLStreamReader streamReader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(payload));
+		try {
+			streamReader.nextTag();
+			return streamReader.getName();
+		} finally {
+			streamReader.close();
+		}
+	}
+
+	private String hash(Element payload) {
+		MessageDigest digest = PayloadDigestUtils.createDigest();
+		if (keyXPathExpressions.isEmpty()) {
+			PayloadDigestUtils.update(digest, payload);
+		} else {
+			for (XPathExpression keyExpression : keyXPathExpressions) {
+				for (Node node : keyExpression.evaluateAsNodeList(payload.getOwnerDocument())) {
+					PayloadDigestUtils.update(digest, node);
+				}
+				PayloadDigestUtils.update(digest, (String) null);
+			}
+		}
+		return PayloadDigestUtils.toHexString(digest);
+	}
+
+	private static String namespaceUri(Node node) {
+		return node.getNamespaceURI() != null ? node.getNamespaceURI() : "";
+	}
+
+	private static String localName(Node node) {
+		return node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+	}
+
+	private static String nullToEmpty(String s) {
+		return s != null ? s : "";
+	}
+
+	/** A cached response payload, which is written to streaming messages by copying its events. */
+	private class CachedResponse implements StreamingPayload {
+
+		private final byte[] payload;
+
+		private final QName name;
+
+		private final long expiresAt;
+
+		private CachedResponse(byte[] payload, QName name, long expiresAt) {
+			this.payload = payload;
+			this.name = name;
+			this.expiresAt = expiresAt;
+		}
+
+		@Override
+		public QName getName() {
+			return name;
+		}
+
+		@Override
+		public void writeTo(XMLStreamWriter streamWriter) throws XMLStreamException {
+			XMLStreamReader streamReader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(payload));
+			try {
+				while (streamReader.hasNext()) {
+					switch (streamReader.next()) {
+						case XMLStreamConstants.START_ELEMENT:
+							streamWriter.writeStartElement(nullToEmpty(streamReader.getPrefix()),
+									streamReader.getLocalName(), nullToEmpty(streamReader.getNamespaceURI()));
+							for (int i = 0; i < streamReader.getNamespaceCount(); i++) {
+								streamWriter.writeNamespace(nullToEmpty(streamReader.getNamespacePrefix(i)),
+										nullToEmpty(streamReader.getNamespaceURI(i)));
+							}
+							for (int i = 0; i < streamReader.getAttributeCount(); i++) {
+								streamWriter.writeAttribute(nullToEmpty(streamReader.getAttributePrefix(i)),
+										nullToEmpty(streamReader.getAttributeNamespace(i)), streamReader.getAttributeLocalName(i),
+										streamReader.getAttributeValue(i));
+							}
+							break;
+						case XMLStreamConstants.END_ELEMENT:
+							streamWriter.writeEndElement();
+							break;
+						case XMLStreamConstants.CHARACTERS:
+						case XMLStreamConstants.SPACE:
+							streamWriter.writeCharacters(streamReader.getTextCharacters(), streamReader.getTextStart(),
+									streamReader.getTextLength());
+							break;
+						case XMLStreamConstants.CDATA:
+							streamWriter.writeCData(streamReader.getText());
+							break;
+						case XMLStreamConstants.COMMENT:
+							streamWriter.writeComment(streamReader.getText());
+							break;
+						case XMLStreamConstants.PROCESSING_INSTRUCTION:
+							streamWriter.writeProcessingInstruction(streamReader.getPITarget(), streamReader.getPIData());
+							break;
+						default:
+							break;
+					}
+				}
+			} finally {
+				streamReader.close();
+			}
+		}
+	}
+
+	/** A request that is being handled, on whose response identical requests wait. */
+	private static class Exchange {
+
+		private final String key;
+
+		private final long startedAt = System.nanoTime();
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		private volatile CachedResponse response;
+
+		private Exchange(String key) {
+			this.key = key;
+		}
+
+		private synchronized void complete(CachedResponse response) {
+			if (latch.getCount() > 0) {
+				this.response = response;
+				latch.countDown();
+			}
+		}
+
+		/** Waits for the response, and returns it; or {@code null} if it cannot be cached, or is not available in time. */
+		private CachedResponse await(long timeout) {
+			try {
+				if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+					logger.debug("Timed out waiting for response of identical request; invoking endpoint");
+					return null;
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			return response;
+		}
+	}
+
+}
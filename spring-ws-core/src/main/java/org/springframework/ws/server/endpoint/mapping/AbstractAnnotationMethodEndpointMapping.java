@@ -17,17 +17,23 @@
 package org.springframework.ws.server.endpoint.mapping;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Proxy;
+import java.util.Set;
 
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactoryUtils;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
 import org.springframework.ws.server.endpoint.annotation.Endpoint;
+import org.springframework.ws.server.endpoint.support.EndpointIndex;
 
 /**
  * Abstract base for {@link org.springframework.ws.server.EndpointMapping} implementations that map classes tagged with
  * an annotation. By default the annotation is {@link Endpoint}, but this can be overriden in subclasses.
  * <p>
- * The methods of each bean carrying @Endpoint will be registered using {@link #registerMethods(String)}.
+ * The methods of each bean carrying @Endpoint will be registered using {@link #registerMethods(String)}. If an
+ * {@link EndpointIndex} generated at build time is available, it is used to find the endpoint beans and their mapped
+ * methods, rather than inspecting the annotations of every bean in the application context.
  *
  * @author Arjen Poutsma
  * @since 1.0.0
@@ -64,9 +70,25 @@ public abstract class AbstractAnnotationMethodEndpointMapping<T> extends Abstrac
 				? BeanFactoryUtils.beanNamesForTypeIncludingAncestors(getApplicationContext(), Object.class)
 				: getApplicationContext().getBeanNamesForType(Object.class));
 
+		EndpointIndex endpointIndex = null;
+		if (Endpoint.class.equals(getEndpointAnnotationType())) {
+			endpointIndex = EndpointIndex.loadIndex(getApplicationContext().getClassLoader());
+			if (endpointIndex != null && logger.isDebugEnabled()) {
+				logger.debug("Using endpoint index to detect endpoints");
+			}
+		}
+
 		for (String beanName : beanNames) {
 			Class<?> endpointClass = getApplicationContext().getType(beanName);
-			if (endpointClass != null && AnnotationUtils.findAnnotation(endpointClass, getEndpointAnnotationType()) != null) {
+			if (endpointClass == null) {
+				continue;
+			}
+			if (endpointIndex != null && !Proxy.isProxyClass(endpointClass)) {
+				Set<String> methodNames = endpointIndex.getEndpointMethodNames(ClassUtils.getUserClass(endpointClass));
+				if (methodNames != null) {
+					registerMethods(beanName, methodNames);
+				}
+			} else if (AnnotationUtils.findAnnotation(endpointClass, getEndpointAnnotationType()) != null) {
 				registerMethods(beanName);
 			}
 		}
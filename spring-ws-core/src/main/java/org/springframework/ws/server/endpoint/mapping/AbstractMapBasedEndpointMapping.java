@@ -19,6 +19,8 @@ package org.springframework.ws.server.endpoint.mapping;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContextException;
@@ -31,6 +33,9 @@ import org.springframework.ws.context.MessageContext;
  * <p>
  * Subclasses determine the exact nature of the key in the enpoint map; this can be a qualified name, a SOAP Header, the
  * result of a XPath validation. The values are always endpoint objects, or bean names of endpoint objects.
+ * <p>
+ * Endpoints are kept in a concurrent map, so lookups do not lock, and endpoints can safely be registered or
+ * {@linkplain #unregisterEndpoint(String) unregistered} while messages are being dispatched.
  *
  * @author Arjen Poutsma
  * @since 1.0.0
@@ -41,7 +46,8 @@ public abstract class AbstractMapBasedEndpointMapping extends AbstractEndpointMa
 
 	private boolean registerBeanNames = false;
 
-	private final Map<String, Object> endpointMap = new HashMap<String, Object>();
+	// keyed by the map keys of the registration keys, see toMapKey
+	private final ConcurrentMap<Object, Object> endpointMap = new ConcurrentHashMap<Object, Object>();
 
 	// holds mappings set via setEndpointMap and setMappings
 	private Map<String, Object> temporaryEndpointMap = new HashMap<String, Object>();
@@ -99,6 +105,25 @@ public abstract class AbstractMapBasedEndpointMapping extends AbstractEndpointMa
 	 */
 	protected abstract String getLookupKeyForMessage(MessageContext messageContext) throws Exception;
 
+	/**
+	 * Returns the key of the endpoint map for the given registration key. Defaults to the registration key itself.
+	 * Subclasses in this package can store a parsed form of the key instead, which they can then resolve from messages
+	 * directly.
+	 *
+	 * @see #getMapKeyForMessage(MessageContext)
+	 */
+	Object toMapKey(String key) {
+		return key;
+	}
+
+	/**
+	 * Returns the key of the endpoint map for the given message, in the form returned by {@link #toMapKey(String)}.
+	 * Defaults to the {@linkplain #getLookupKeyForMessage(MessageContext) lookup key}.
+	 */
+	Object getMapKeyForMessage(MessageContext messageContext) throws Exception {
+		return getLookupKeyForMessage(messageContext);
+	}
+
 	/**
 	 * Lookup an endpoint for the given message. The extraction of the endpoint key is delegated to the concrete subclass.
 	 *
@@ -106,14 +131,23 @@ public abstract class AbstractMapBasedEndpointMapping extends AbstractEndpointMa
 	 */
 	@Override
 	protected final Object getEndpointInternal(MessageContext messageContext) throws Exception {
-		String key = getLookupKeyForMessage(messageContext);
-		if (!StringUtils.hasLength(key)) {
+		Object key = getMapKeyForMessage(messageContext);
+		if (key == null || (key instanceof String && !StringUtils.hasLength((String) key))) {
 			return null;
 		}
 		if (logger.isDebugEnabled()) {
 			logger.debug("Looking up endpoint for [" + key + "]");
 		}
-		return lookupEndpoint(key);
+		return key instanceof String ? lookupEndpoint((String) key) : lookupMappedEndpoint(key);
+	}
+
+	/**
+	 * Looks up an endpoint instance for the given key of the endpoint map, in the form returned by
+	 * {@link #toMapKey(String)}. Subclasses in this package that store a parsed form of the key route this through
+	 * their own overridable lookup method. Defaults to the endpoint stored under the key.
+	 */
+	Object lookupMappedEndpoint(Object mapKey) {
+		return getMappedEndpoint(mapKey);
 	}
 
 	/**
@@ -123,7 +157,12 @@ public abstract class AbstractMapBasedEndpointMapping extends AbstractEndpointMa
 	 * @return the associated endpoint instance, or {@code null} if not found
 	 */
 	protected Object lookupEndpoint(String key) {
-		return endpointMap.get(key);
+		return endpointMap.get(toMapKey(key));
+	}
+
+	/** Returns the endpoint stored under the given key of the endpoint map, or {@code null} if not found. */
+	final Object getMappedEndpoint(Object mapKey) {
+		return endpointMap.get(mapKey);
 	}
 
 	/**
@@ -134,24 +173,42 @@ public abstract class AbstractMapBasedEndpointMapping extends AbstractEndpointMa
 	 * @throws org.springframework.beans.BeansException if the endpoint could not be registered
 	 */
 	protected void registerEndpoint(String key, Object endpoint) throws BeansException {
-		Object mappedEndpoint = endpointMap.get(key);
+		Object mapKey = toMapKey(key);
+		Object mappedEndpoint = endpointMap.get(mapKey);
+		if (mappedEndpoint == null) {
+			if (!lazyInitEndpoints && endpoint instanceof String) {
+				String endpointName = (String) endpoint;
+				endpoint = resolveStringEndpoint(endpointName);
+			}
+			if (endpoint == null) {
+				throw new ApplicationContextException("Could not find endpoint for key [" + key + "]");
+			}
+			mappedEndpoint = endpointMap.putIfAbsent(mapKey, endpoint);
+		}
 		if (mappedEndpoint != null) {
 			throw new ApplicationContextException("Cannot map endpoint [" + endpoint + "] on registration key [" + key
 					+ "]: there's already endpoint [" + mappedEndpoint + "] mapped");
 		}
-		if (!lazyInitEndpoints && endpoint instanceof String) {
-			String endpointName = (String) endpoint;
-			endpoint = resolveStringEndpoint(endpointName);
-		}
-		if (endpoint == null) {
-			throw new ApplicationContextException("Could not find endpoint for key [" + key + "]");
-		}
-		endpointMap.put(key, endpoint);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Mapped key [" + key + "] onto endpoint [" + endpoint + "]");
 		}
 	}
 
+	/**
+	 * Unregister the endpoint registered under the given key, if any.
+	 *
+	 * @param key the string representation of the registration key
+	 * @return the endpoint that was unregistered, or {@code null} if none was registered under the key
+	 * @since 3.1
+	 */
+	protected Object unregisterEndpoint(String key) {
+		Object endpoint = endpointMap.remove(toMapKey(key));
+		if (endpoint != null && logger.isDebugEnabled()) {
+			logger.debug("Unmapped key [" + key + "] from endpoint [" + endpoint + "]");
+		}
+		return endpoint;
+	}
+
 	/**
 	 * Registers annd checks the set endpoints. Checks the beans set through {@code setEndpointMap} and
 	 * {@code setMappings}, and registers the bean names found in the application context, if {@code registerBeanNames} is
@@ -20,11 +20,11 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.BeansException;
@@ -42,13 +42,16 @@ import org.springframework.ws.server.endpoint.MethodEndpoint;
  * Subclasses typically implement {@link org.springframework.beans.factory.config.BeanPostProcessor} to look for beans
  * that qualify as endpoint. The methods of this bean are then registered under a specific key with
  * {@link #registerEndpoint(Object, MethodEndpoint)}.
+ * <p>
+ * Endpoints are kept in a concurrent map, so lookups do not lock, and endpoints can safely be registered or
+ * {@linkplain #unregisterEndpoint(Object) unregistered} while messages are being dispatched.
  *
  * @author Arjen Poutsma
  * @since 1.0.0
  */
 public abstract class AbstractMethodEndpointMapping<T> extends AbstractEndpointMapping {
 
-	private final Map<T, MethodEndpoint> endpointMap = new HashMap<T, MethodEndpoint>();
+	private final ConcurrentMap<T, MethodEndpoint> endpointMap = new ConcurrentHashMap<T, MethodEndpoint>();
 
 	/**
 	 * Lookup an endpoint for the given message. The extraction of the endpoint key is delegated to the concrete subclass.
@@ -94,19 +97,36 @@ public abstract class AbstractMethodEndpointMapping<T> extends AbstractEndpointM
 	 */
 	protected void registerEndpoint(T key, MethodEndpoint endpoint) throws BeansException {
 		Object mappedEndpoint = endpointMap.get(key);
+		if (mappedEndpoint == null) {
+			if (endpoint == null) {
+				throw new ApplicationContextException("Could not find endpoint for key [" + key + "]");
+			}
+			mappedEndpoint = endpointMap.putIfAbsent(key, endpoint);
+		}
 		if (mappedEndpoint != null) {
 			throw new ApplicationContextException("Cannot map endpoint [" + endpoint + "] on registration key [" + key
 					+ "]: there's already endpoint [" + mappedEndpoint + "] mapped");
 		}
-		if (endpoint == null) {
-			throw new ApplicationContextException("Could not find endpoint for key [" + key + "]");
-		}
-		endpointMap.put(key, endpoint);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Mapped [" + key + "] onto endpoint [" + endpoint + "]");
 		}
 	}
 
+	/**
+	 * Unregister the endpoint registered under the given key, if any.
+	 *
+	 * @param key the lookup key
+	 * @return the endpoint that was unregistered, or {@code null} if none was registered under the key
+	 * @since 3.1
+	 */
+	protected MethodEndpoint unregisterEndpoint(T key) {
+		MethodEndpoint endpoint = endpointMap.remove(key);
+		if (endpoint != null && logger.isDebugEnabled()) {
+			logger.debug("Unmapped [" + key + "] from endpoint [" + endpoint + "]");
+		}
+		return endpoint;
+	}
+
 	/**
 	 * Helper method that registers the methods of the given bean. This method iterates over the methods of the bean, and
 	 * calls {@link #getLookupKeyForMethod(Method)} for each. If this returns a string, the method is registered using
@@ -137,13 +157,28 @@ public abstract class AbstractMethodEndpointMapping<T> extends AbstractEndpointM
 	 * @see #getLookupKeysForMethod(Method)
 	 */
 	protected void registerMethods(String beanName) {
+		registerMethods(beanName, null);
+	}
+
+	/**
+	 * Helper method that registers the methods of the given class, considering only the methods with the given names.
+	 * Used when the candidate methods are known in advance, for instance from an
+	 * {@link org.springframework.ws.server.endpoint.support.EndpointIndex EndpointIndex}.
+	 *
+	 * @param beanName the name of the endpoint bean
+	 * @param methodNames the names of the methods to consider, or {@code null} to consider all methods
+	 * @see #registerMethods(String)
+	 * @since 3.1
+	 */
+	protected void registerMethods(String beanName, final Set<String> methodNames) {
 		Assert.hasText(beanName, "'beanName' must not be empty");
 		Class<?> endpointType = getApplicationContext().getType(beanName);
 		endpointType = ClassUtils.getUserClass(endpointType);
 
 		Set<Method> methods = findEndpointMethods(endpointType, new ReflectionUtils.MethodFilter() {
 			public boolean matches(Method method) {
-				return !getLookupKeysForMethod(method).isEmpty();
+				return (methodNames == null || methodNames.contains(method.getName()))
+						&& !getLookupKeysForMethod(method).isEmpty();
 			}
 		});
 
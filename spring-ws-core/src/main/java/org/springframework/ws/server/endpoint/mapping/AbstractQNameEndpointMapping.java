@@ -18,17 +18,55 @@ package org.springframework.ws.server.endpoint.mapping;
 
 import javax.xml.namespace.QName;
 
+import org.springframework.util.ReflectionUtils;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.xml.namespace.QNameUtils;
 
 /**
  * Abstract base class for {@code EndpointMapping}s that resolve qualified names as registration keys.
+ * <p>
+ * Registered endpoints are stored under their parsed {@link QName}, so that the resolved qualified name of a message is
+ * looked up directly, without converting it to a string first. Messages are looked up through
+ * {@link #lookupEndpoint(QName)}. Subclasses that override {@link #lookupEndpoint(String)} instead still have it
+ * invoked for every message, with the qualified name in its {@link QName#toString() string form}.
  *
  * @author Arjen Poutsma
  * @since 1.0.0
  */
 public abstract class AbstractQNameEndpointMapping extends AbstractMapBasedEndpointMapping {
 
+	// whether a subclass overrides lookupEndpoint(String), which then has to see every lookup
+	private final boolean stringLookupOverridden = ReflectionUtils
+			.findMethod(getClass(), "lookupEndpoint", String.class)
+			.getDeclaringClass() != AbstractMapBasedEndpointMapping.class;
+
+	@Override
+	Object toMapKey(String key) {
+		return QNameUtils.parseQNameString(key);
+	}
+
+	@Override
+	Object getMapKeyForMessage(MessageContext messageContext) throws Exception {
+		return resolveQName(messageContext);
+	}
+
+	@Override
+	Object lookupMappedEndpoint(Object mapKey) {
+		return lookupEndpoint((QName) mapKey);
+	}
+
+	/**
+	 * Looks up an endpoint instance for the given qualified name. If a subclass overrides
+	 * {@link #lookupEndpoint(String)}, delegates to it with the string form of the qualified name.
+	 *
+	 * @param qName the qualified name the endpoint is mapped to
+	 * @return the associated endpoint instance, or {@code null} if not found
+	 * @since 3.1
+	 */
+	protected Object lookupEndpoint(QName qName) {
+		return stringLookupOverridden ? lookupEndpoint(qName.toString()) : getMappedEndpoint(qName);
+	}
+
 	@Override
 	protected final String getLookupKeyForMessage(MessageContext messageContext) throws Exception {
 		QName qName = resolveQName(messageContext);
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.server.endpoint.support;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.SpringProperties;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * Index of {@link org.springframework.ws.server.endpoint.annotation.Endpoint @Endpoint} classes and the names of their
+ * mapped methods, generated at build time by the {@link EndpointIndexProcessor}.
+ * <p>
+ * When an index is present on the classpath, annotation-based endpoint mappings use it to decide which beans are
+ * endpoints, and which of their methods to inspect, instead of reflecting over every bean in the application context.
+ * The index is read from all {@value #INDEX_LOCATION} files found by the class loader. Like the Spring component index,
+ * it is authoritative when present: endpoints in jars that were compiled without the processor are not detected. Set
+ * the {@value #IGNORE_INDEX} property to {@code true} to ignore the index and fall back to reflection.
+ * <p>
+ * The index is used by the subclasses of
+ * {@link org.springframework.ws.server.endpoint.mapping.AbstractAnnotationMethodEndpointMapping}. The
+ * {@link org.springframework.ws.soap.addressing.server.AnnotationActionEndpointMapping}, which inspects each bean as it
+ * is created, still detects endpoints through their annotation, but only inspects the indexed methods of indexed
+ * endpoints.
+ *
+ * @see EndpointIndexProcessor
+ * @see org.springframework.ws.server.endpoint.mapping.AbstractAnnotationMethodEndpointMapping
+ * @since 3.1
+ */
+public final class EndpointIndex {
+
+	/** The location of the endpoint index files. */
+	public static final String INDEX_LOCATION = "META-INF/spring-ws.endpoints";
+
+	/**
+	 * System property that instructs Spring Web Services to ignore the endpoint index, and use reflection instead.
+	 *
+	 * @see SpringProperties
+	 */
+	public static final String IGNORE_INDEX = "spring.ws.index.ignore";
+
+	private static final Log logger = LogFactory.getLog(EndpointIndex.class);
+
+	private static final EndpointIndex NO_INDEX = new EndpointIndex(Collections.<String, Set<String>> emptyMap());
+
+	private static final ConcurrentMap<ClassLoader, EndpointIndex> cache = new ConcurrentReferenceHashMap<ClassLoader, EndpointIndex>();
+
+	private final Map<String, Set<String>> endpoints;
+
+	private EndpointIndex(Map<String, Set<String>> endpoints) {
+		this.endpoints = endpoints;
+	}
+
+	/**
+	 * Loads the endpoint index from all {@value #INDEX_LOCATION} files found by the given class loader. Returns
+	 * {@code null} if no index is available, or if the index should be {@linkplain #IGNORE_INDEX ignored}.
+	 *
+	 * @param classLoader the class loader to load the index with, may be {@code null} to use the default
+	 * @return the endpoint index, or {@code null}
+	 */
+	public static EndpointIndex loadIndex(ClassLoader classLoader) {
+		if (SpringProperties.getFlag(IGNORE_INDEX)) {
+			return null;
+		}
+		ClassLoader classLoaderToUse = classLoader != null ? classLoader : EndpointIndex.class.getClassLoader();
+		EndpointIndex index = cache.get(classLoaderToUse);
+		if (index == null) {
+			index = doLoadIndex(classLoaderToUse);
+			EndpointIndex existing = cache.putIfAbsent(classLoaderToUse, index);
+			if (existing != null) {
+				index = existing;
+			}
+		}
+		return index != NO_INDEX ? index : null;
+	}
+
+	private static EndpointIndex doLoadIndex(ClassLoader classLoader) {
+		try {
+			Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+			if (!urls.hasMoreElements()) {
+				return NO_INDEX;
+			}
+			Map<String, Set<String>> endpoints = new HashMap<String, Set<String>>();
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				Properties properties = PropertiesLoaderUtils.loadProperties(new UrlResource(url));
+				for (String className : properties.stringPropertyNames()) {
+					Set<String> methodNames = endpoints.get(className);
+					if (methodNames == null) {
+						methodNames = new LinkedHashSet<String>();
+						endpoints.put(className, methodNames);
+					}
+					methodNames.addAll(StringUtils.commaDelimitedListToSet(properties.getProperty(className)));
+				}
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Loaded endpoint index with " + endpoints.size() + " endpoints");
+			}
+			return new EndpointIndex(endpoints);
+		} catch (IOException ex) {
+			throw new IllegalStateException("Unable to load endpoint index from location [" + INDEX_LOCATION + "]", ex);
+		}
+	}
+
+	/**
+	 * Indicates whether the given class is an indexed endpoint.
+	 *
+	 * @param endpointClass the endpoint class
+	 * @return {@code true} if the class is indexed; {@code false} otherwise
+	 */
+	public boolean isEndpoint(Class<?> endpointClass) {
+		return endpoints.containsKey(endpointClass.getName());
+	}
+
+	/**
+	 * Returns the names of the mapped methods of the given endpoint class, including inherited ones.
+	 *
+	 * @param endpointClass the endpoint class
+	 * @return the method names, or {@code null} if the class is not an indexed endpoint
+	 */
+	public Set<String> getEndpointMethodNames(Class<?> endpointClass) {
+		Set<String> methodNames = endpoints.get(endpointClass.getName());
+		return methodNames != null ? Collections.unmodifiableSet(methodNames) : null;
+	}
+
+}
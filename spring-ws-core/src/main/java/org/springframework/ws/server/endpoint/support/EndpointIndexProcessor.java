@@ -0,0 +1,288 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.server.endpoint.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that generates the {@link EndpointIndex} of an application at build time.
+ * <p>
+ * The processor records every class annotated (or meta-annotated) with
+ * {@link org.springframework.ws.server.endpoint.annotation.Endpoint @Endpoint}, directly or through one of its
+ * superclasses or interfaces, together with the names of its methods
+ * that carry a {@code @PayloadRoot}, {@code @SoapAction}, or {@code @Action} mapping, and writes them to
+ * {@value EndpointIndex#INDEX_LOCATION}. It is not registered as a service, so it has to be enabled explicitly, for
+ * instance through the {@code annotationProcessorPaths} of the Maven compiler plugin, or the {@code -processor} option
+ * of {@code javac}.
+ * <p>
+ * Incremental builds only pass the changed classes to the processor. Therefore, the processor merges the index it
+ * generates with the index that an earlier build left in the class output directory: entries for classes that were not
+ * compiled again are kept, as long as these classes still exist, while entries for recompiled classes are replaced.
+ * <p>
+ * When the {@value #NATIVE_IMAGE_HINTS_OPTION} option is set to {@code true}, the processor also writes a GraalVM
+ * {@code reflect-config.json} that registers the endpoint classes for reflection.
+ *
+ * @see EndpointIndex
+ * @since 3.1
+ */
+public class EndpointIndexProcessor extends AbstractProcessor {
+
+	/** Processor option that enables the generation of GraalVM native image reflection hints. */
+	public static final String NATIVE_IMAGE_HINTS_OPTION = "spring.ws.index.nativeImageHints";
+
+	static final String NATIVE_IMAGE_HINTS_LOCATION = "META-INF/native-image/spring-ws-endpoints/reflect-config.json";
+
+	private static final String ENDPOINT_ANNOTATION = "org.springframework.ws.server.endpoint.annotation.Endpoint";
+
+	private static final Set<String> MAPPING_ANNOTATIONS = new HashSet<String>(Arrays.asList(
+			"org.springframework.ws.server.endpoint.annotation.PayloadRoot",
+			"org.springframework.ws.server.endpoint.annotation.PayloadRoots",
+			"org.springframework.ws.soap.server.endpoint.annotation.SoapAction",
+			"org.springframework.ws.soap.server.endpoint.annotation.SoapActions",
+			"org.springframework.ws.soap.addressing.server.annotation.Action"));
+
+	private final Map<String, Set<String>> endpoints = new TreeMap<String, Set<String>>();
+
+	private final Set<String> processedTypes = new HashSet<String>();
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		// also look at classes with custom stereotypes that are meta-annotated with @Endpoint
+		return Collections.singleton("*");
+	}
+
+	@Override
+	public Set<String> getSupportedOptions() {
+		return Collections.singleton(NATIVE_IMAGE_HINTS_OPTION);
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			processType(type);
+		}
+		if (roundEnv.processingOver()) {
+			Properties previousIndex = readPreviousIndex();
+			if (previousIndex != null) {
+				mergePreviousIndex(previousIndex);
+			}
+			if (!endpoints.isEmpty() || previousIndex != null) {
+				writeIndex();
+				if (Boolean.parseBoolean(processingEnv.getOptions().get(NATIVE_IMAGE_HINTS_OPTION))) {
+					writeNativeImageHints();
+				}
+			}
+		}
+		return false;
+	}
+
+	private void processType(TypeElement type) {
+		processedTypes.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+		if (type.getKind() == ElementKind.CLASS && isEndpoint(type, new HashSet<String>())) {
+			Set<String> methodNames = new LinkedHashSet<String>();
+			collectMappedMethodNames(type, methodNames, new HashSet<String>());
+			endpoints.put(processingEnv.getElementUtils().getBinaryName(type).toString(), methodNames);
+		}
+		for (TypeElement nestedType : ElementFilter.typesIn(type.getEnclosedElements())) {
+			processType(nestedType);
+		}
+	}
+
+	/**
+	 * Indicates whether the given type, or one of its supertypes, is annotated with {@code @Endpoint}, like
+	 * {@link org.springframework.core.annotation.AnnotationUtils#findAnnotation(Class, Class)} does at runtime.
+	 */
+	private boolean isEndpoint(TypeElement type, Set<String> visited) {
+		if (!visited.add(type.getQualifiedName().toString())) {
+			return false;
+		}
+		if (hasAnnotation(type, ENDPOINT_ANNOTATION, new HashSet<String>())) {
+			return true;
+		}
+		for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type.asType())) {
+			if (supertype instanceof DeclaredType
+					&& isEndpoint((TypeElement) ((DeclaredType) supertype).asElement(), visited)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasAnnotation(Element element, String annotationName, Set<String> visited) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			String name = annotationType.getQualifiedName().toString();
+			if (name.equals(annotationName)) {
+				return true;
+			}
+			if (!name.startsWith("java.lang.annotation.") && visited.add(name)
+					&& hasAnnotation(annotationType, annotationName, visited)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void collectMappedMethodNames(TypeElement type, Set<String> methodNames, Set<String> visited) {
+		if (!visited.add(type.getQualifiedName().toString()) || type.getQualifiedName().contentEquals("java.lang.Object")) {
+			return;
+		}
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+				TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+				if (MAPPING_ANNOTATIONS.contains(annotationType.getQualifiedName().toString())) {
+					methodNames.add(method.getSimpleName().toString());
+				}
+			}
+		}
+		for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type.asType())) {
+			if (supertype instanceof DeclaredType) {
+				collectMappedMethodNames((TypeElement) ((DeclaredType) supertype).asElement(), methodNames, visited);
+			}
+		}
+	}
+
+	/**
+	 * Reads the index written by an earlier build from the class output directory. Returns {@code null} if there is
+	 * none.
+	 */
+	private Properties readPreviousIndex() {
+		try {
+			FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+					EndpointIndex.INDEX_LOCATION);
+			InputStream inputStream = file.openInputStream();
+			try {
+				Properties index = new Properties();
+				index.load(inputStream);
+				return index;
+			} finally {
+				inputStream.close();
+			}
+		} catch (IOException ex) {
+			// no index yet; depending on the file manager, this is a FileNotFoundException or a NoSuchFileException
+			return null;
+		}
+	}
+
+	/**
+	 * Adds the entries of the given previous index for classes that were not processed in this build, but still exist.
+	 */
+	private void mergePreviousIndex(Properties previousIndex) {
+		for (String className : previousIndex.stringPropertyNames()) {
+			if (processedTypes.contains(className) || endpoints.containsKey(className)) {
+				continue;
+			}
+			if (processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) == null) {
+				continue;
+			}
+			Set<String> methodNames = new LinkedHashSet<String>();
+			for (String methodName : previousIndex.getProperty(className).split(",")) {
+				if (!methodName.isEmpty()) {
+					methodNames.add(methodName);
+				}
+			}
+			endpoints.put(className, methodNames);
+		}
+	}
+
+	private void writeIndex() {
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+					EndpointIndex.INDEX_LOCATION);
+			Writer writer = new OutputStreamWriter(file.openOutputStream(), "ISO-8859-1");
+			try {
+				for (Map.Entry<String, Set<String>> entry : endpoints.entrySet()) {
+					writer.write(entry.getKey());
+					writer.write('=');
+					writer.write(join(entry.getValue()));
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException ex) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Unable to write endpoint index: " + ex.getMessage());
+		}
+	}
+
+	private void writeNativeImageHints() {
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+					NATIVE_IMAGE_HINTS_LOCATION);
+			Writer writer = new OutputStreamWriter(file.openOutputStream(), "UTF-8");
+			try {
+				writer.write("[\n");
+				for (Iterator<String> iterator = endpoints.keySet().iterator(); iterator.hasNext();) {
+					writer.write("  {\"name\": \"" + iterator.next() + "\", \"allDeclaredConstructors\": true, "
+							+ "\"allPublicMethods\": true, \"allDeclaredMethods\": true}");
+					writer.write(iterator.hasNext() ? ",\n" : "\n");
+				}
+				writer.write("]\n");
+			} finally {
+				writer.close();
+			}
+		} catch (IOException ex) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Unable to write native image hints: " + ex.getMessage());
+		}
+	}
+
+	private static String join(Set<String> values) {
+		StringBuilder builder = new StringBuilder();
+		for (String value : values) {
+			if (builder.length() > 0) {
+				builder.append(',');
+			}
+			builder.append(value);
+		}
+		return builder.toString();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2010 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.ws.soap.addressing.server;
 
 import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.Set;
 
 import org.springframework.aop.support.AopUtils;
 import org.springframework.util.Assert;
@@ -40,10 +41,25 @@ public abstract class AbstractActionMethodEndpointMapping extends AbstractAction
 	 * @see #getActionForMethod (java.lang.reflect.Method)
 	 */
 	protected void registerMethods(Object endpoint) {
+		registerMethods(endpoint, null);
+	}
+
+	/**
+	 * Helper method that registers the methods of the given bean, considering only the methods with the given names.
+	 * Used when the candidate methods are known in advance, for instance from an
+	 * {@link org.springframework.ws.server.endpoint.support.EndpointIndex EndpointIndex}.
+	 *
+	 * @param endpoint the endpoint bean
+	 * @param methodNames the names of the methods to consider, or {@code null} to consider all methods
+	 * @see #registerMethods(Object)
+	 * @since 3.1
+	 */
+	protected void registerMethods(Object endpoint, Set<String> methodNames) {
 		Assert.notNull(endpoint, "'endpoint' must not be null");
 		Method[] methods = AopUtils.getTargetClass(endpoint).getMethods();
 		for (Method method : methods) {
-			if (method.isSynthetic() || method.getDeclaringClass().equals(Object.class)) {
+			if (method.isSynthetic() || method.getDeclaringClass().equals(Object.class)
+					|| (methodNames != null && !methodNames.contains(method.getName()))) {
 				continue;
 			}
 			URI action = getActionForMethod(method);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2014 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Set;
 
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.BeansException;
@@ -28,6 +29,7 @@ import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.ws.server.endpoint.MethodEndpoint;
 import org.springframework.ws.server.endpoint.annotation.Endpoint;
+import org.springframework.ws.server.endpoint.support.EndpointIndex;
 import org.springframework.ws.soap.addressing.core.MessageAddressingProperties;
 import org.springframework.ws.soap.addressing.server.annotation.Action;
 import org.springframework.ws.soap.addressing.server.annotation.Address;
@@ -52,6 +54,9 @@ import org.springframework.ws.soap.addressing.server.annotation.Address;
  * If set, the {@link Address @Address} annotation on the endpoint class should be equal to the
  * {@link org.springframework.ws.soap.addressing.core.MessageAddressingProperties#getTo() destination} property of the
  * incoming message.
+ * <p>
+ * If an {@link EndpointIndex} generated at build time is available, only the indexed methods of indexed endpoints are
+ * inspected for {@code @Action} annotations.
  *
  * @author Arjen Poutsma
  * @see Action
@@ -140,9 +145,23 @@ public class AnnotationActionEndpointMapping extends AbstractActionMethodEndpoin
 
 	@Override
 	public final Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
-		if (AopUtils.getTargetClass(bean).getAnnotation(getEndpointAnnotationType()) != null) {
-			registerMethods(bean);
+		Class<?> endpointClass = AopUtils.getTargetClass(bean);
+		if (endpointClass.getAnnotation(getEndpointAnnotationType()) != null) {
+			registerMethods(bean, getIndexedMethodNames(endpointClass));
 		}
 		return bean;
 	}
+
+	/**
+	 * Returns the names of the mapped methods of the given endpoint class from the {@link EndpointIndex}, or {@code null}
+	 * if there is no index, or the class is not indexed.
+	 */
+	private Set<String> getIndexedMethodNames(Class<?> endpointClass) {
+		if (!Endpoint.class.equals(getEndpointAnnotationType())) {
+			return null;
+		}
+		ClassLoader classLoader = getApplicationContext() != null ? getApplicationContext().getClassLoader() : null;
+		EndpointIndex endpointIndex = EndpointIndex.loadIndex(classLoader);
+		return endpointIndex != null ? endpointIndex.getEndpointMethodNames(endpointClass) : null;
+	}
 }
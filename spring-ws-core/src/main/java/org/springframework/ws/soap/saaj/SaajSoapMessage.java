@@ -18,9 +18,12 @@ package org.springframework.ws.soap.saaj;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.activation.DataHandler;
 import javax.xml.soap.AttachmentPart;
@@ -34,8 +37,11 @@ import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 import javax.xml.soap.SOAPPart;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
+import org.springframework.ws.DisposableWebServiceMessage;
 import org.springframework.ws.mime.Attachment;
 import org.springframework.ws.mime.AttachmentException;
 import org.springframework.ws.soap.AbstractSoapMessage;
@@ -61,7 +67,9 @@ import org.w3c.dom.ls.LSSerializer;
  * @see SOAPMessage
  * @since 1.0.0
  */
-public class SaajSoapMessage extends AbstractSoapMessage {
+public class SaajSoapMessage extends AbstractSoapMessage implements DisposableWebServiceMessage {
+
+	private static final Log logger = LogFactory.getLog(SaajSoapMessage.class);
 
 	private static final String CONTENT_TYPE_XOP = "application/xop+xml";
 
@@ -73,6 +81,8 @@ public class SaajSoapMessage extends AbstractSoapMessage {
 
 	private final boolean langAttributeOnSoap11FaultString;
 
+	private List<File> cachedAttachments;
+
 	/**
 	 * Create a new {@code SaajSoapMessage} based on the given SAAJ {@code SOAPMessage}.
 	 *
@@ -332,6 +342,27 @@ public class SaajSoapMessage extends AbstractSoapMessage {
 		return new SaajAttachment(attachmentPart);
 	}
 
+	/** Registers a temporary file that holds the content of an attachment of this message. */
+	void addCachedAttachment(File file) {
+		if (cachedAttachments == null) {
+			cachedAttachments = new ArrayList<File>();
+		}
+		cachedAttachments.add(file);
+	}
+
+	/** Deletes the temporary files that hold the content of cached attachments, if any. */
+	@Override
+	public void dispose() {
+		if (cachedAttachments != null) {
+			for (File file : cachedAttachments) {
+				if (!file.delete() && file.exists()) {
+					logger.warn("Could not delete cached attachment [" + file + "]");
+				}
+			}
+			cachedAttachments = null;
+		}
+	}
+
 	public String toString() {
 		StringBuilder builder = new StringBuilder("SaajSoapMessage");
 		try {
@@ -17,13 +17,19 @@
 package org.springframework.ws.soap.saaj;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PushbackInputStream;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.xml.soap.AttachmentPart;
 import javax.xml.soap.MessageFactory;
 import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.SOAPConstants;
@@ -33,10 +39,12 @@ import javax.xml.soap.SOAPMessage;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.ws.InvalidXmlException;
+import org.springframework.ws.mime.FileDataHandler;
 import org.springframework.ws.soap.SoapMessageCreationException;
 import org.springframework.ws.soap.SoapMessageFactory;
 import org.springframework.ws.soap.SoapVersion;
@@ -52,6 +60,13 @@ import org.xml.sax.SAXParseException;
  * A SAAJ {@link MessageFactory} can be injected to the {@link #SaajSoapMessageFactory(javax.xml.soap.MessageFactory)
  * constructor}, or by the {@link #setMessageFactory(javax.xml.soap.MessageFactory)} property. When a SAAJ message
  * factory is injected, the {@link #setSoapVersion(org.springframework.ws.soap.SoapVersion)} property is ignored.
+ * <p>
+ * This message factory can cache large incoming attachments to disk by setting the
+ * {@link #setAttachmentCaching(boolean) attachmentCaching} property to {@code true} (default is {@code false}).
+ * Optionally, the location where attachments are stored can be defined via the {@link #setAttachmentCacheDir(File)
+ * attachmentCacheDir} property (defaults to the system temp file path). The cached attachments are deleted when the
+ * message is {@linkplain SaajSoapMessage#dispose() disposed}, which the framework does once the exchange has completed. Attachments are moved to disk after SAAJ has parsed the message, so caching does not
+ * lower the peak memory use while a message is read.
  *
  * @author Arjen Poutsma
  * @author Greg Turnquist
@@ -70,6 +85,16 @@ public class SaajSoapMessageFactory implements SoapMessageFactory, InitializingB
 
 	private Map<String, ?> messageProperties;
 
+	private boolean attachmentCaching = false;
+
+	private File attachmentCacheDir;
+
+	private int attachmentCacheThreshold = 4096;
+
+	private final AtomicLong cachedAttachmentBytes = new AtomicLong();
+
+	private final AtomicLong inMemoryAttachmentBytes = new AtomicLong();
+
 	/** Default, empty constructor. */
 	public SaajSoapMessageFactory() {}
 
@@ -109,6 +134,68 @@ public class SaajSoapMessageFactory implements SoapMessageFactory, InitializingB
 		this.langAttributeOnSoap11FaultString = langAttributeOnSoap11FaultString;
 	}
 
+	/**
+	 * Indicates whether incoming SOAP attachments should be cached or not. Default is {@code false}.
+	 * <p>
+	 * Setting this to {@code true} will cause attachments larger than the {@link #setAttachmentCacheThreshold(int)
+	 * attachmentCacheThreshold} to be stored on disk, rather than in memory, once the message has been read. This
+	 * decreases memory consumption for the rest of the exchange, but decreases performance. It does not lower the peak
+	 * memory use while a message is read, since the SAAJ API offers no portable way to stream attachments to disk while
+	 * parsing.
+	 * <p>
+	 * On the server side, cached attachments are deleted once the response has been sent. On the client side, they are
+	 * deleted once the result has been extracted, so their content must be read in the
+	 * {@link org.springframework.ws.client.core.WebServiceMessageExtractor}, unless the
+	 * {@link org.springframework.ws.client.core.WebServiceTemplate#setDisposeExtractedResponses(boolean)
+	 * disposeExtractedResponses} property of the template is set to {@code false}.
+	 */
+	public void setAttachmentCaching(boolean attachmentCaching) {
+		this.attachmentCaching = attachmentCaching;
+	}
+
+	/**
+	 * Sets the directory where SOAP attachments will be stored. Only used when {@link #setAttachmentCaching(boolean)
+	 * attachmentCaching} is set to {@code true}.
+	 * <p>
+	 * The parameter should be an existing, writable directory. This property defaults to the temporary directory of the
+	 * operating system (i.e. the value of the {@code java.io.tmpdir} system property).
+	 */
+	public void setAttachmentCacheDir(File attachmentCacheDir) {
+		Assert.notNull(attachmentCacheDir, "'attachmentCacheDir' must not be null");
+		Assert.isTrue(attachmentCacheDir.isDirectory(), "'attachmentCacheDir' must be a directory");
+		Assert.isTrue(attachmentCacheDir.canWrite(), "'attachmentCacheDir' must be writable");
+		this.attachmentCacheDir = attachmentCacheDir;
+	}
+
+	/**
+	 * Sets the threshold for attachments caching, in bytes. Attachments larger than this threshold will be cached in the
+	 * {@link #setAttachmentCacheDir(File) attachment cache directory}. Only used when
+	 * {@link #setAttachmentCaching(boolean) attachmentCaching} is set to {@code true}.
+	 * <p>
+	 * Defaults to 4096 bytes (i.e. 4 kilobytes).
+	 */
+	public void setAttachmentCacheThreshold(int attachmentCacheThreshold) {
+		Assert.isTrue(attachmentCacheThreshold > 0, "'attachmentCacheThreshold' must be larger than 0");
+		this.attachmentCacheThreshold = attachmentCacheThreshold;
+	}
+
+	/**
+	 * Returns the total number of attachment bytes that have been cached on disk by this factory. Only incremented when
+	 * {@link #setAttachmentCaching(boolean) attachmentCaching} is set to {@code true}.
+	 */
+	public long getCachedAttachmentBytes() {
+		return cachedAttachmentBytes.get();
+	}
+
+	/**
+	 * Returns the total number of attachment bytes that have been kept in memory because they did not exceed the
+	 * {@link #setAttachmentCacheThreshold(int) attachmentCacheThreshold}. Only incremented when
+	 * {@link #setAttachmentCaching(boolean) attachmentCaching} is set to {@code true}.
+	 */
+	public long getInMemoryAttachmentBytes() {
+		return inMemoryAttachmentBytes.get();
+	}
+
 	@Override
 	public void setSoapVersion(SoapVersion version) {
 		if (SaajUtils.getSaajVersion() >= SaajUtils.SAAJ_13) {
@@ -180,7 +267,7 @@ public class SaajSoapMessageFactory implements SoapMessageFactory, InitializingB
 			SOAPMessage saajMessage = messageFactory.createMessage(mimeHeaders, inputStream);
 			saajMessage.getSOAPPart().getEnvelope();
 			postProcess(saajMessage);
-			return new SaajSoapMessage(saajMessage, langAttributeOnSoap11FaultString, messageFactory);
+			return cacheAttachments(new SaajSoapMessage(saajMessage, langAttributeOnSoap11FaultString, messageFactory));
 		} catch (SOAPException ex) {
 			// SAAJ 1.3 RI has a issue with handling multipart XOP content types which contain "startinfo" rather than
 			// "start-info", so let's try and do something about it
@@ -192,7 +279,7 @@ public class SaajSoapMessageFactory implements SoapMessageFactory, InitializingB
 				try {
 					SOAPMessage saajMessage = messageFactory.createMessage(mimeHeaders, inputStream);
 					postProcess(saajMessage);
-					return new SaajSoapMessage(saajMessage, langAttributeOnSoap11FaultString);
+					return cacheAttachments(new SaajSoapMessage(saajMessage, langAttributeOnSoap11FaultString));
 				} catch (SOAPException e) {
 					// fall-through
 				}
@@ -206,6 +293,58 @@ public class SaajSoapMessageFactory implements SoapMessageFactory, InitializingB
 		}
 	}
 
+	/**
+	 * Stores the attachments of the given message that exceed the threshold in temporary files, if
+	 * {@linkplain #setAttachmentCaching(boolean) attachment caching} is enabled.
+	 */
+	@SuppressWarnings("unchecked")
+	private SaajSoapMessage cacheAttachments(SaajSoapMessage message) throws IOException, SOAPException {
+		if (!attachmentCaching) {
+			return message;
+		}
+		try {
+			for (Iterator<AttachmentPart> iterator = message.getSaajMessage().getAttachments(); iterator.hasNext();) {
+				AttachmentPart attachmentPart = iterator.next();
+				int size = attachmentPart.getSize();
+				if (size >= 0 && size <= attachmentCacheThreshold) {
+					inMemoryAttachmentBytes.addAndGet(size);
+				} else {
+					cacheAttachment(message, attachmentPart);
+				}
+			}
+			return message;
+		} catch (IOException ex) {
+			message.dispose();
+			throw ex;
+		} catch (SOAPException ex) {
+			message.dispose();
+			throw ex;
+		} catch (RuntimeException ex) {
+			message.dispose();
+			throw ex;
+		}
+	}
+
+	private void cacheAttachment(SaajSoapMessage message, AttachmentPart attachmentPart)
+			throws IOException, SOAPException {
+		File file = File.createTempFile("spring-ws-", ".attachment", attachmentCacheDir);
+		message.addCachedAttachment(file);
+		String contentType = attachmentPart.getContentType();
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			attachmentPart.getDataHandler().writeTo(os);
+		} finally {
+			os.close();
+		}
+		attachmentPart.setDataHandler(new FileDataHandler(file, contentType));
+		long length = file.length();
+		cachedAttachmentBytes.addAndGet(length);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Cached attachment [" + attachmentPart.getContentId() + "] of " + length + " bytes in [" + file
+					+ "]");
+		}
+	}
+
 	private SAXParseException getSAXParseException(Throwable ex) {
 		if (ex instanceof SAXParseException) {
 			return (SAXParseException) ex;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2010 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,15 +20,40 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
 
+import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
+import org.springframework.util.xml.StaxUtils;
+import org.springframework.ws.NoEndpointFoundException;
+import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.context.AsyncResponseUtils;
+import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.server.EndpointAdapter;
 import org.springframework.ws.server.EndpointInterceptor;
 import org.springframework.ws.server.EndpointInvocationChain;
 import org.springframework.ws.server.MessageDispatcher;
+import org.springframework.ws.server.endpoint.MessageEndpoint;
+import org.springframework.ws.server.endpoint.adapter.MessageEndpointAdapter;
 import org.springframework.ws.soap.SoapBody;
 import org.springframework.ws.soap.SoapFault;
 import org.springframework.ws.soap.SoapHeader;
@@ -36,10 +61,32 @@ import org.springframework.ws.soap.SoapHeaderElement;
 import org.springframework.ws.soap.SoapMessage;
 import org.springframework.ws.soap.soap11.Soap11Header;
 import org.springframework.ws.soap.soap12.Soap12Header;
+import org.springframework.ws.transport.context.TransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
+import org.springframework.xml.DocumentBuilderFactoryUtils;
+import org.springframework.xml.transform.TransformerHelper;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  * SOAP-specific subclass of the {@link MessageDispatcher}. Adds functionality for adding actor roles to a endpoint
  * invocation chain, and endpoint interception using {@link SoapEndpointInterceptor} objects.
+ * <p>
+ * Optionally, this dispatcher can handle batches of operations. When {@link #setBatchDispatch(boolean) batchDispatch}
+ * is enabled, a request whose SOAP body contains several payload elements is split: each element is dispatched in a
+ * message of its own to the endpoint it maps to, and the responses are assembled into a single response body, in the
+ * order of the request elements. The SOAP Fault of an element that fails is wrapped in a {@link #BATCH_FAULT_NAME} element,
+ * so that the batch response itself is not a fault. The SOAP headers of the batch are processed once, by the
+ * {@link #setBatchInterceptors(EndpointInterceptor[]) batchInterceptors}, such as a WS-Security interceptor; the
+ * messages of the individual elements have no headers. The elements can be dispatched in parallel by setting a
+ * {@link #setBatchExecutor(Executor) batchExecutor}.
+ * <p>
+ * To detect a batch, the dispatcher reads the SOAP body only as far as the start of its second element, without
+ * transforming it. A body that only contains an {@code xenc:EncryptedData} element is treated as a batch if batch
+ * interceptors are set, as these could decrypt it into several elements; the body is split after the batch interceptors
+ * have handled the request.
  *
  * @author Arjen Poutsma
  * @see org.springframework.ws.soap.SoapMessage
@@ -51,10 +98,40 @@ public class SoapMessageDispatcher extends MessageDispatcher {
 	/** Default message used when creating a SOAP MustUnderstand fault. */
 	public static final String DEFAULT_MUST_UNDERSTAND_FAULT_STRING = "One or more mandatory SOAP header blocks not understood";
 
+	/** Default maximum number of payload elements in a batch. */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+	/** Default maximum time to wait for the elements of a batch, in milliseconds: one minute. */
+	public static final long DEFAULT_BATCH_TIMEOUT = 60 * 1000;
+
+	/** Name of the element that wraps the SOAP Fault of a failed element in the response to a batch. */
+	public static final QName BATCH_FAULT_NAME = new QName("http://springframework.org/spring-ws/batch", "BatchFault",
+			"batch");
+
+	private static final QName ENCRYPTED_DATA_NAME = new QName("http://www.w3.org/2001/04/xmlenc#", "EncryptedData");
+
+	private static final SoapEndpointInterceptor[] NO_SOAP_INTERCEPTORS = new SoapEndpointInterceptor[0];
+
+	private static final EndpointAdapter BATCH_ENDPOINT_ADAPTER = new MessageEndpointAdapter();
+
 	private String mustUnderstandFaultString = DEFAULT_MUST_UNDERSTAND_FAULT_STRING;
 
 	private Locale mustUnderstandFaultStringLocale = Locale.ENGLISH;
 
+	private final TransformerHelper transformerHelper = new TransformerHelper();
+
+	private final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactoryUtils.newInstance();
+
+	private boolean batchDispatch = false;
+
+	private EndpointInterceptor[] batchInterceptors;
+
+	private Executor batchExecutor;
+
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	private long batchTimeout = DEFAULT_BATCH_TIMEOUT;
+
 	/**
 	 * Sets the message used for {@code MustUnderstand} fault. Default to {@link #DEFAULT_MUST_UNDERSTAND_FAULT_STRING}.
 	 */
@@ -67,6 +144,163 @@ public class SoapMessageDispatcher extends MessageDispatcher {
 		this.mustUnderstandFaultStringLocale = mustUnderstandFaultStringLocale;
 	}
 
+	/**
+	 * Indicates whether requests whose SOAP body contains several payload elements should be dispatched as a batch, one
+	 * element at a time. Defaults to {@code false}.
+	 *
+	 * @since 3.1
+	 */
+	public void setBatchDispatch(boolean batchDispatch) {
+		this.batchDispatch = batchDispatch;
+	}
+
+	/**
+	 * Sets the interceptors that are applied to a batch as a whole. These interceptors process the SOAP headers of the
+	 * batch request once, and are invoked with a {@code null} endpoint. The interceptors of the endpoint mappings are
+	 * applied to each element, as usual.
+	 *
+	 * @since 3.1
+	 */
+	public void setBatchInterceptors(EndpointInterceptor[] batchInterceptors) {
+		this.batchInterceptors = batchInterceptors;
+	}
+
+	/**
+	 * Sets the executor used to dispatch the elements of a batch in parallel. Use a bounded executor: if it rejects an
+	 * element, the element is dispatched in the calling thread. By default, elements are dispatched one after the other
+	 * in the calling thread.
+	 * <p>
+	 * The transport context is propagated to the executor threads; other thread-bound state, such as a security context,
+	 * is not.
+	 *
+	 * @since 3.1
+	 */
+	public void setBatchExecutor(Executor batchExecutor) {
+		this.batchExecutor = batchExecutor;
+	}
+
+	/**
+	 * Sets the maximum number of payload elements in a batch. Larger batches are rejected with a fault. Defaults to
+	 * {@value #DEFAULT_MAX_BATCH_SIZE}.
+	 *
+	 * @since 3.1
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		Assert.isTrue(maxBatchSize > 1, "'maxBatchSize' must be larger than 1");
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Sets the maximum time to wait for the elements of a batch, in milliseconds, including the asynchronous responses
+	 * of their endpoints. Elements that do not complete in time result in a fault. Defaults to one minute.
+	 *
+	 * @since 3.1
+	 */
+	public void setBatchTimeout(long batchTimeout) {
+		Assert.isTrue(batchTimeout > 0, "'batchTimeout' must be larger than 0");
+		this.batchTimeout = batchTimeout;
+	}
+
+	/**
+	 * Returns an endpoint that dispatches the elements of the batch if {@link #setBatchDispatch(boolean) batchDispatch}
+	 * is enabled, and the request is a batch. Otherwise, uses the endpoint mappings.
+	 */
+	@Override
+	protected EndpointInvocationChain getEndpoint(MessageContext messageContext) throws Exception {
+		if (batchDispatch && messageContext instanceof DefaultMessageContext
+				&& messageContext.getRequest() instanceof SoapMessage
+				&& isBatch((SoapMessage) messageContext.getRequest())) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Dispatching batch request");
+			}
+			return new SoapEndpointInvocationChain(new BatchEndpoint(), batchInterceptors);
+		}
+		return super.getEndpoint(messageContext);
+	}
+
+	@Override
+	protected EndpointAdapter getEndpointAdapter(Object endpoint) {
+		if (endpoint instanceof BatchEndpoint) {
+			return BATCH_ENDPOINT_ADAPTER;
+		}
+		return super.getEndpointAdapter(endpoint);
+	}
+
+	/**
+	 * Indicates whether the given request is a batch: whether its SOAP body contains several payload elements, or an
+	 * encrypted element that the batch interceptors could decrypt into several.
+	 */
+	private boolean isBatch(SoapMessage request) throws Exception {
+		List<QName> names = getPayloadNames(request.getSoapBody().getSource(), 2);
+		if (names.size() > 1) {
+			return true;
+		}
+		return names.size() == 1 && ENCRYPTED_DATA_NAME.equals(names.get(0)) && !ObjectUtils.isEmpty(batchInterceptors);
+	}
+
+	/**
+	 * Returns the names of at most {@code max} payload elements of the given body. Streaming bodies are only read as far
+	 * as the start of the last returned element.
+	 */
+	private List<QName> getPayloadNames(Source bodySource, int max) throws Exception {
+		List<QName> names = new ArrayList<QName>(max);
+		XMLStreamReader streamReader = StaxUtils.isStaxSource(bodySource) ? StaxUtils.getXMLStreamReader(bodySource)
+				: null;
+		if (streamReader != null) {
+			addPayloadNames(streamReader, names, max);
+			return names;
+		}
+		for (Node child = getBody(bodySource).getFirstChild(); child != null
+				&& names.size() < max; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				names.add(new QName(child.getNamespaceURI(), child.getLocalName()));
+			}
+		}
+		return names;
+	}
+
+	private static void addPayloadNames(XMLStreamReader streamReader, List<QName> names, int max)
+			throws XMLStreamException {
+		int depth = streamReader.getEventType() == XMLStreamConstants.START_ELEMENT ? 1 : 0;
+		while (names.size() < max && streamReader.hasNext()) {
+			int event = streamReader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				if (depth == 2) {
+					names.add(streamReader.getName());
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				if (depth == 0) {
+					return;
+				}
+			}
+		}
+	}
+
+	/** Returns the SOAP body element of the given source, transforming it to DOM if necessary. */
+	private Node getBody(Source bodySource) throws Exception {
+		if (bodySource instanceof DOMSource && ((DOMSource) bodySource).getNode() != null) {
+			Node node = ((DOMSource) bodySource).getNode();
+			return node instanceof Document ? ((Document) node).getDocumentElement() : node;
+		}
+		DOMResult result = new DOMResult();
+		transformerHelper.transform(bodySource, result);
+		return ((Document) result.getNode()).getDocumentElement();
+	}
+
+	/** Returns the payload elements of the given request. */
+	private List<Element> getPayloadElements(SoapMessage request) throws Exception {
+		List<Element> payloads = new ArrayList<Element>();
+		for (Node child = getBody(request.getSoapBody().getSource()).getFirstChild(); child != null; child = child
+				.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				payloads.add((Element) child);
+			}
+		}
+		return payloads;
+	}
+
 	/**
 	 * Process the headers targeted at the actor or role fullfilled by the endpoint. Also processed the
 	 * {@code MustUnderstand} headers in the incoming SOAP request message. Iterates over all SOAP headers which should be
@@ -107,18 +341,28 @@ public class SoapMessageDispatcher extends MessageDispatcher {
 		} else {
 			headerIterator = ((Soap12Header) soapHeader).examineHeaderElementsToProcess(actorsOrRoles, isUltimateReceiver);
 		}
-		List<QName> notUnderstoodHeaderNames = new ArrayList<QName>();
+		SoapEndpointInterceptor[] soapInterceptors = null;
+		List<QName> notUnderstoodHeaderNames = null;
 		while (headerIterator.hasNext()) {
 			SoapHeaderElement headerElement = headerIterator.next();
+			if (!headerElement.getMustUnderstand()) {
+				continue;
+			}
 			QName headerName = headerElement.getName();
-			if (headerElement.getMustUnderstand() && logger.isDebugEnabled()) {
+			if (logger.isDebugEnabled()) {
 				logger.debug("Handling MustUnderstand header " + headerName);
 			}
-			if (headerElement.getMustUnderstand() && !headerUnderstood(mappedEndpoint, headerElement)) {
+			if (soapInterceptors == null) {
+				soapInterceptors = getSoapEndpointInterceptors(mappedEndpoint);
+			}
+			if (!headerUnderstood(soapInterceptors, headerElement)) {
+				if (notUnderstoodHeaderNames == null) {
+					notUnderstoodHeaderNames = new ArrayList<QName>();
+				}
 				notUnderstoodHeaderNames.add(headerName);
 			}
 		}
-		if (notUnderstoodHeaderNames.isEmpty()) {
+		if (notUnderstoodHeaderNames == null) {
 			return true;
 		} else {
 			SoapMessage response = (SoapMessage) messageContext.getResponse();
@@ -127,6 +371,24 @@ public class SoapMessageDispatcher extends MessageDispatcher {
 		}
 	}
 
+	/**
+	 * Returns the {@link SoapEndpointInterceptor}s of the given chain. Determined once per request, rather than once per
+	 * {@code MustUnderstand} header.
+	 */
+	private SoapEndpointInterceptor[] getSoapEndpointInterceptors(EndpointInvocationChain mappedEndpoint) {
+		EndpointInterceptor[] interceptors = mappedEndpoint.getInterceptors();
+		if (ObjectUtils.isEmpty(interceptors)) {
+			return NO_SOAP_INTERCEPTORS;
+		}
+		List<SoapEndpointInterceptor> soapInterceptors = new ArrayList<SoapEndpointInterceptor>(interceptors.length);
+		for (EndpointInterceptor interceptor : interceptors) {
+			if (interceptor instanceof SoapEndpointInterceptor) {
+				soapInterceptors.add((SoapEndpointInterceptor) interceptor);
+			}
+		}
+		return soapInterceptors.toArray(new SoapEndpointInterceptor[soapInterceptors.size()]);
+	}
+
 	/**
 	 * Handles the request for a single SOAP actor/role. Iterates over all {@code MustUnderstand} headers for a specific
 	 * SOAP 1.1 actor or SOAP 1.2 role, and determines whether these are understood by any of the registered
@@ -135,14 +397,9 @@ public class SoapMessageDispatcher extends MessageDispatcher {
 	 *
 	 * @see SoapEndpointInterceptor#understands(org.springframework.ws.soap.SoapHeaderElement)
 	 */
-	private boolean headerUnderstood(EndpointInvocationChain mappedEndpoint, SoapHeaderElement headerElement) {
-		EndpointInterceptor[] interceptors = mappedEndpoint.getInterceptors();
-		if (ObjectUtils.isEmpty(interceptors)) {
-			return false;
-		}
-		for (EndpointInterceptor interceptor : interceptors) {
-			if (interceptor instanceof SoapEndpointInterceptor
-					&& ((SoapEndpointInterceptor) interceptor).understands(headerElement)) {
+	private boolean headerUnderstood(SoapEndpointInterceptor[] soapInterceptors, SoapHeaderElement headerElement) {
+		for (SoapEndpointInterceptor interceptor : soapInterceptors) {
+			if (interceptor.understands(headerElement)) {
 				return true;
 			}
 		}
@@ -169,4 +426,157 @@ public class SoapMessageDispatcher extends MessageDispatcher {
 		}
 	}
 
+	/**
+	 * Endpoint that dispatches each payload element of a batch request in a message of its own, and assembles the
+	 * responses. The request is split when the endpoint is invoked, after the batch interceptors have handled it.
+	 */
+	private class BatchEndpoint implements MessageEndpoint {
+
+		@Override
+		public void invoke(MessageContext messageContext) throws Exception {
+			List<Element> payloads = getPayloadElements((SoapMessage) messageContext.getRequest());
+			if (logger.isDebugEnabled()) {
+				logger.debug("Dispatching batch of " + payloads.size() + " payload elements");
+			}
+			SoapMessage response = (SoapMessage) messageContext.getResponse();
+			if (payloads.size() > maxBatchSize) {
+				response.getSoapBody().addClientOrSenderFault(
+						"Batch of " + payloads.size() + " operations exceeds maximum of " + maxBatchSize, Locale.ENGLISH);
+				return;
+			}
+			WebServiceMessageFactory messageFactory = ((DefaultMessageContext) messageContext).getMessageFactory();
+			List<MessageContext> elementContexts = new ArrayList<MessageContext>(payloads.size());
+			List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(payloads.size());
+			TransportContext transportContext = TransportContextHolder.getTransportContext();
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeout);
+			for (Element payload : payloads) {
+				MessageContext elementContext = createElementContext(messageContext, messageFactory, payload);
+				elementContexts.add(elementContext);
+				futures.add(dispatchElement(elementContext, transportContext, deadline));
+			}
+			DocumentFragment responseFragment = createDocument().createDocumentFragment();
+			for (int i = 0; i < elementContexts.size(); i++) {
+				CompletableFuture<Void> future = futures.get(i);
+				try {
+					future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				} catch (TimeoutException ex) {
+					// the element is abandoned; skip it if it has not started yet
+					future.cancel(false);
+					logger.warn("Batch element " + i + " did not complete within " + batchTimeout + " ms");
+					SoapMessage faultMessage = (SoapMessage) messageFactory.createWebServiceMessage();
+					SoapFault fault = faultMessage.getSoapBody().addServerOrReceiverFault("Batch element timed out",
+							Locale.ENGLISH);
+					addBatchFault(fault, responseFragment);
+					continue;
+				}
+				MessageContext elementContext = elementContexts.get(i);
+				if (elementContext.hasResponse()) {
+					SoapBody elementBody = ((SoapMessage) elementContext.getResponse()).getSoapBody();
+					if (elementBody.hasFault()) {
+						addBatchFault(elementBody.getFault(), responseFragment);
+					} else {
+						Source source = elementBody.getPayloadSource();
+						if (source != null) {
+							transformerHelper.transform(source, new DOMResult(responseFragment));
+						}
+					}
+				}
+			}
+			transformerHelper.transform(new DOMSource(responseFragment), response.getSoapBody().getPayloadResult());
+		}
+
+		/**
+		 * Adds the given fault of an element to the batch response, wrapped in a {@link #BATCH_FAULT_NAME} element. A SOAP
+		 * Fault as direct child of the response body would turn the whole batch response into a fault.
+		 */
+		private void addBatchFault(SoapFault fault, DocumentFragment responseFragment) throws TransformerException {
+			Element batchFault = responseFragment.getOwnerDocument().createElementNS(BATCH_FAULT_NAME.getNamespaceURI(),
+					BATCH_FAULT_NAME.getPrefix() + ":" + BATCH_FAULT_NAME.getLocalPart());
+			batchFault.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+					XMLConstants.XMLNS_ATTRIBUTE + ":" + BATCH_FAULT_NAME.getPrefix(), BATCH_FAULT_NAME.getNamespaceURI());
+			responseFragment.appendChild(batchFault);
+			transformerHelper.transform(fault.getSource(), new DOMResult(batchFault));
+		}
+
+		private Document createDocument() throws ParserConfigurationException {
+			synchronized (documentBuilderFactory) {
+				return documentBuilderFactory.newDocumentBuilder().newDocument();
+			}
+		}
+
+		private MessageContext createElementContext(MessageContext messageContext,
+				WebServiceMessageFactory messageFactory, Element payload) throws Exception {
+			SoapMessage request = (SoapMessage) messageFactory.createWebServiceMessage();
+			transformerHelper.transform(new DOMSource(payload), request.getPayloadResult());
+			MessageContext elementContext = new DefaultMessageContext(request, messageFactory);
+			for (String name : messageContext.getPropertyNames()) {
+				elementContext.setProperty(name, messageContext.getProperty(name));
+			}
+			return elementContext;
+		}
+
+		private CompletableFuture<Void> dispatchElement(final MessageContext elementContext,
+				final TransportContext transportContext, final long deadline) {
+			final CompletableFuture<Void> future = new CompletableFuture<Void>();
+			Runnable task = new Runnable() {
+
+				@Override
+				public void run() {
+					if (future.isDone()) {
+						return;
+					}
+					TransportContext previousTransportContext = TransportContextHolder.getTransportContext();
+					TransportContextHolder.setTransportContext(transportContext);
+					try {
+						dispatchElement(elementContext, deadline);
+						future.complete(null);
+					} catch (Throwable ex) {
+						future.completeExceptionally(ex);
+					} finally {
+						TransportContextHolder.setTransportContext(previousTransportContext);
+					}
+				}
+			};
+			if (batchExecutor != null) {
+				try {
+					batchExecutor.execute(task);
+					return future;
+				} catch (RejectedExecutionException ex) {
+					// dispatch in the calling thread instead
+				}
+			}
+			task.run();
+			return future;
+		}
+
+		/**
+		 * Dispatches a single element. Exceptions that are not resolved, and asynchronous responses that do not complete
+		 * before the deadline, result in a fault for the element.
+		 */
+		private void dispatchElement(MessageContext elementContext, long deadline) throws Exception {
+			try {
+				dispatch(elementContext);
+				CompletionStage<?> asyncResponse = AsyncResponseUtils.getAsyncResponse(elementContext);
+				if (asyncResponse != null) {
+					asyncResponse.toCompletableFuture().get(Math.max(0, deadline - System.nanoTime()),
+							TimeUnit.NANOSECONDS);
+				}
+			} catch (TimeoutException ex) {
+				logger.warn("Asynchronous response of batch element did not complete within " + batchTimeout + " ms");
+				elementContext.clearResponse();
+				((SoapMessage) elementContext.getResponse()).getSoapBody()
+						.addServerOrReceiverFault("Batch element timed out", Locale.ENGLISH);
+			} catch (NoEndpointFoundException ex) {
+				elementContext.clearResponse();
+				((SoapMessage) elementContext.getResponse()).getSoapBody().addClientOrSenderFault(
+						"No endpoint mapping found for [" + elementContext.getRequest() + "]", Locale.ENGLISH);
+			} catch (Exception ex) {
+				logger.warn("Could not dispatch batch element", ex);
+				elementContext.clearResponse();
+				((SoapMessage) elementContext.getResponse()).getSoapBody().addServerOrReceiverFault(
+						String.valueOf(ex.getMessage()), Locale.ENGLISH);
+			}
+		}
+	}
+
 }
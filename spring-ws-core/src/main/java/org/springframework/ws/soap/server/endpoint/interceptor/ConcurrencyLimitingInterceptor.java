@@ -0,0 +1,387 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.server.endpoint.interceptor;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.TransformerException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.server.endpoint.support.PayloadRootUtils;
+import org.springframework.ws.soap.SoapHeaderElement;
+import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.server.SoapEndpointInterceptor;
+import org.springframework.ws.transport.WebServiceConnection;
+import org.springframework.ws.transport.context.TransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
+import org.springframework.ws.transport.http.HttpServletConnection;
+import org.springframework.xml.transform.TransformerHelper;
+
+/**
+ * Interceptor that limits the number of requests that are processed concurrently, per endpoint or per payload root, and
+ * rejects requests that exceed the limit. This prevents requests from piling up when an endpoint, or a resource it
+ * depends on, slows down.
+ * <p>
+ * The limits adapt to the observed latency, using a gradient algorithm. Each limiter keeps a short-term average of the
+ * latency, over about the last 10 requests, and a long-term average, over about the last 500, and compares the two.
+ * While the short-term latency stays close to the long-term one, the limit grows by about the square root of the
+ * current limit; as the short-term latency rises above the long-term one by more than the
+ * {@link #setTolerance(double) tolerance}, the limit shrinks proportionally, down to half of its value. Requests that
+ * end in an exception decrease the limit by ten percent. Changes are smoothed by the
+ * {@link #setSmoothing(double) smoothing} factor, and the limit stays between the {@link #setMinLimit(int) minLimit}
+ * and the {@link #setMaxLimit(int) maxLimit}. The limit does not grow while less than half of it is used.
+ * <p>
+ * When limiting by payload root, at most {@link #setMaxLimiters(int) maxLimiters} limiters are created; requests with
+ * other payload roots share a single limiter, so that requests with arbitrary payload roots cannot grow the number of
+ * limiters without bound.
+ * <p>
+ * Rejected requests get a SOAP {@code Server} or {@code Receiver} fault, with the configured
+ * {@link #setFaultStringOrReason(String) faultStringOrReason}. Alternatively, when
+ * {@link #setSendServiceUnavailable(boolean) sendServiceUnavailable} is enabled and the request came in over a
+ * {@link HttpServletConnection}, they get an HTTP 503 "Service Unavailable" response without content.
+ * <p>
+ * The {@link #getLimits() limits}, the number of {@link #getInFlight() requests in flight}, and the
+ * {@link #getRejectedCount() number of rejected requests} can be monitored.
+ *
+ * @since 3.1
+ */
+public class ConcurrencyLimitingInterceptor implements SoapEndpointInterceptor {
+
+	/** Default SOAP Fault string used when a request is rejected. */
+	public static final String DEFAULT_FAULTSTRING_OR_REASON = "Service overloaded, try again later";
+
+	/** Default initial limit of each limiter. */
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+	/** Default maximum limit of each limiter. */
+	public static final int DEFAULT_MAX_LIMIT = 200;
+
+	/** Default ratio by which the latency may exceed the long-term average before the limit shrinks. */
+	public static final double DEFAULT_TOLERANCE = 1.5;
+
+	/** Default weight of a new limit in the smoothed limit. */
+	public static final double DEFAULT_SMOOTHING = 0.2;
+
+	/** Default maximum number of limiters. */
+	public static final int DEFAULT_MAX_LIMITERS = 1000;
+
+	private static final String LIMITER_PROPERTY = ConcurrencyLimitingInterceptor.class.getName() + ".LIMITER";
+
+	private static final String START_PROPERTY = ConcurrencyLimitingInterceptor.class.getName() + ".START";
+
+	/** Number of measurements over which the short-term latency is averaged. */
+	private static final int SHORT_WINDOW = 10;
+
+	/** Number of measurements over which the long-term latency is averaged. */
+	private static final int LONG_WINDOW = 500;
+
+	/** Key of the limiter shared by the payload roots that exceed the maximum number of limiters. */
+	private static final String OVERFLOW_KEY = "(other)";
+
+	private static final double ERROR_BACKOFF_RATIO = 0.9;
+
+	private static final Log logger = LogFactory.getLog(ConcurrencyLimitingInterceptor.class);
+
+	private final ConcurrentMap<Object, Limiter> limiters = new ConcurrentHashMap<Object, Limiter>();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private final TransformerHelper transformerHelper = new TransformerHelper();
+
+	private boolean limitByPayloadRoot = false;
+
+	private int initialLimit = DEFAULT_INITIAL_LIMIT;
+
+	private int minLimit = 1;
+
+	private int maxLimit = DEFAULT_MAX_LIMIT;
+
+	private double tolerance = DEFAULT_TOLERANCE;
+
+	private double smoothing = DEFAULT_SMOOTHING;
+
+	private int maxLimiters = DEFAULT_MAX_LIMITERS;
+
+	private String faultStringOrReason = DEFAULT_FAULTSTRING_OR_REASON;
+
+	private Locale faultStringOrReasonLocale = Locale.ENGLISH;
+
+	private boolean sendServiceUnavailable = false;
+
+	private int retryAfter = 0;
+
+	/**
+	 * Indicates whether requests are limited per payload root, rather than per endpoint. Defaults to {@code false}.
+	 */
+	public void setLimitByPayloadRoot(boolean limitByPayloadRoot) {
+		this.limitByPayloadRoot = limitByPayloadRoot;
+	}
+
+	/** Sets the initial limit of each limiter. Defaults to {@value #DEFAULT_INITIAL_LIMIT}. */
+	public void setInitialLimit(int initialLimit) {
+		Assert.isTrue(initialLimit > 0, "'initialLimit' must be larger than 0");
+		this.initialLimit = initialLimit;
+	}
+
+	/** Sets the minimum limit of each limiter. Defaults to {@code 1}. */
+	public void setMinLimit(int minLimit) {
+		Assert.isTrue(minLimit > 0, "'minLimit' must be larger than 0");
+		this.minLimit = minLimit;
+	}
+
+	/** Sets the maximum limit of each limiter. Defaults to {@value #DEFAULT_MAX_LIMIT}. */
+	public void setMaxLimit(int maxLimit) {
+		Assert.isTrue(maxLimit > 0, "'maxLimit' must be larger than 0");
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * Sets the ratio by which the latency may exceed its long-term average before the limit shrinks. Defaults to
+	 * {@value #DEFAULT_TOLERANCE}.
+	 */
+	public void setTolerance(double tolerance) {
+		Assert.isTrue(tolerance >= 1, "'tolerance' must be at least 1");
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Sets the weight of a new limit in the smoothed limit, between {@code 0} (exclusive) and {@code 1} (inclusive).
+	 * Defaults to {@value #DEFAULT_SMOOTHING}.
+	 */
+	public void setSmoothing(double smoothing) {
+		Assert.isTrue(smoothing > 0 && smoothing <= 1, "'smoothing' must be in (0, 1]");
+		this.smoothing = smoothing;
+	}
+
+	/**
+	 * Sets the maximum number of limiters. Requests for other endpoints or payload roots share a single limiter. Defaults
+	 * to {@value #DEFAULT_MAX_LIMITERS}.
+	 */
+	public void setMaxLimiters(int maxLimiters) {
+		Assert.isTrue(maxLimiters > 0, "'maxLimiters' must be larger than 0");
+		this.maxLimiters = maxLimiters;
+	}
+
+	/**
+	 * Sets the SOAP {@code faultstring} or {@code Reason} used when a request is rejected. Defaults to
+	 * {@link #DEFAULT_FAULTSTRING_OR_REASON}.
+	 */
+	public void setFaultStringOrReason(String faultStringOrReason) {
+		Assert.hasLength(faultStringOrReason, "'faultStringOrReason' must not be empty");
+		this.faultStringOrReason = faultStringOrReason;
+	}
+
+	/** Sets the SOAP fault reason locale used when a request is rejected. Defaults to English. */
+	public void setFaultStringOrReasonLocale(Locale faultStringOrReasonLocale) {
+		Assert.notNull(faultStringOrReasonLocale, "'faultStringOrReasonLocale' must not be null");
+		this.faultStringOrReasonLocale = faultStringOrReasonLocale;
+	}
+
+	/**
+	 * Indicates whether rejected requests that came in over HTTP get a 503 "Service Unavailable" status code, rather
+	 * than a SOAP fault. Defaults to {@code false}.
+	 *
+	 * @see HttpServletConnection#serviceUnavailable(int)
+	 */
+	public void setSendServiceUnavailable(boolean sendServiceUnavailable) {
+		this.sendServiceUnavailable = sendServiceUnavailable;
+	}
+
+	/**
+	 * Sets the number of seconds sent in the {@code Retry-After} header of 503 "Service Unavailable" responses. Defaults
+	 * to {@code 0}, which means no header is sent.
+	 */
+	public void setRetryAfter(int retryAfter) {
+		Assert.isTrue(retryAfter >= 0, "'retryAfter' must not be negative");
+		this.retryAfter = retryAfter;
+	}
+
+	/** Returns the current limit of each limiter, by endpoint or payload root. */
+	public Map<String, Integer> getLimits() {
+		Map<String, Integer> limits = new LinkedHashMap<String, Integer>();
+		for (Map.Entry<Object, Limiter> entry : limiters.entrySet()) {
+			limits.put(entry.getKey().toString(), entry.getValue().getLimit());
+		}
+		return limits;
+	}
+
+	/** Returns the total number of requests that are being processed. */
+	public int getInFlight() {
+		int inFlight = 0;
+		for (Limiter limiter : limiters.values()) {
+			inFlight += limiter.getInFlight();
+		}
+		return inFlight;
+	}
+
+	/** Returns the total number of rejected requests. */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Admits the request if the limit for its endpoint or payload root has not been reached; rejects it otherwise.
+	 *
+	 * @return {@code true} if the request is admitted; {@code false} if it is rejected
+	 */
+	@Override
+	public boolean handleRequest(MessageContext messageContext, Object endpoint) throws Exception {
+		Object key = getKey(messageContext, endpoint);
+		if (key == null) {
+			return true;
+		}
+		Limiter limiter = limiters.get(key);
+		if (limiter == null) {
+			if (limiters.size() >= maxLimiters) {
+				key = OVERFLOW_KEY;
+			}
+			limiter = new Limiter();
+			Limiter existing = limiters.putIfAbsent(key, limiter);
+			if (existing != null) {
+				limiter = existing;
+			}
+		}
+		if (!limiter.tryAcquire()) {
+			rejectedCount.incrementAndGet();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Rejecting request for [" + key + "]: limit of " + limiter.getLimit() + " reached");
+			}
+			reject(messageContext);
+			return false;
+		}
+		messageContext.setProperty(LIMITER_PROPERTY, limiter);
+		messageContext.setProperty(START_PROPERTY, System.nanoTime());
+		return true;
+	}
+
+	/** Does nothing by default. */
+	@Override
+	public boolean handleResponse(MessageContext messageContext, Object endpoint) throws Exception {
+		return true;
+	}
+
+	/** Does nothing by default. */
+	@Override
+	public boolean handleFault(MessageContext messageContext, Object endpoint) throws Exception {
+		return true;
+	}
+
+	/** Releases the request, and adapts the limit to its latency. */
+	@Override
+	public void afterCompletion(MessageContext messageContext, Object endpoint, Exception ex) throws Exception {
+		Limiter limiter = (Limiter) messageContext.getProperty(LIMITER_PROPERTY);
+		if (limiter != null) {
+			messageContext.removeProperty(LIMITER_PROPERTY);
+			long start = (Long) messageContext.getProperty(START_PROPERTY);
+			limiter.release(System.nanoTime() - start, ex != null);
+		}
+	}
+
+	/** Returns {@code false}: this interceptor does not understand any headers. */
+	@Override
+	public boolean understands(SoapHeaderElement header) {
+		return false;
+	}
+
+	private Object getKey(MessageContext messageContext, Object endpoint) throws TransformerException {
+		if (limitByPayloadRoot) {
+			return PayloadRootUtils.getPayloadRootQName(messageContext.getRequest().getPayloadSource(), transformerHelper);
+		}
+		return endpoint;
+	}
+
+	private void reject(MessageContext messageContext) throws Exception {
+		if (sendServiceUnavailable) {
+			TransportContext transportContext = TransportContextHolder.getTransportContext();
+			WebServiceConnection connection = transportContext != null ? transportContext.getConnection() : null;
+			if (connection instanceof HttpServletConnection) {
+				((HttpServletConnection) connection).serviceUnavailable(retryAfter);
+				return;
+			}
+		}
+		WebServiceMessage response = messageContext.getResponse();
+		if (response instanceof SoapMessage) {
+			((SoapMessage) response).getSoapBody().addServerOrReceiverFault(faultStringOrReason,
+					faultStringOrReasonLocale);
+		}
+	}
+
+	/** Adaptive limit for a single endpoint or payload root. */
+	private class Limiter {
+
+		private double limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+		private int inFlight;
+
+		private double shortLatency;
+
+		private double longLatency;
+
+		private synchronized int getLimit() {
+			return (int) limit;
+		}
+
+		private synchronized int getInFlight() {
+			return inFlight;
+		}
+
+		private synchronized boolean tryAcquire() {
+			if (inFlight >= (int) limit) {
+				return false;
+			}
+			inFlight++;
+			return true;
+		}
+
+		private synchronized void release(long latency, boolean error) {
+			int used = inFlight;
+			inFlight--;
+			if (error) {
+				setLimit(limit * ERROR_BACKOFF_RATIO);
+				return;
+			}
+			double sample = Math.max(latency, 1);
+			if (longLatency == 0) {
+				shortLatency = sample;
+				longLatency = sample;
+			} else {
+				shortLatency += (sample - shortLatency) / SHORT_WINDOW;
+				longLatency += (sample - longLatency) / LONG_WINDOW;
+			}
+			double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatency / shortLatency));
+			double newLimit = limit * gradient + Math.sqrt(limit);
+			if (newLimit > limit && used < limit / 2) {
+				return;
+			}
+			setLimit(limit * (1 - smoothing) + newLimit * smoothing);
+		}
+
+		private void setLimit(double newLimit) {
+			limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+		}
+	}
+
+}
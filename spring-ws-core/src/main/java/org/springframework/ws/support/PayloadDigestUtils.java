@@ -0,0 +1,133 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.support;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Helper class for caches that are keyed by message payloads. Computes SHA-256 digests of the canonical form of XML
+ * nodes.
+ * <p>
+ * The canonical form ignores namespace prefixes, the order of attributes, comments, processing instructions, and
+ * whitespace-only text, so that payloads that differ only in those respects have the same digest. Note that prefixes
+ * used in content, such as in {@code xsi:type} attributes, are not normalized.
+ *
+ * @since 3.1
+ */
+public abstract class PayloadDigestUtils {
+
+	private PayloadDigestUtils() {}
+
+	/** Creates a new SHA-256 {@link MessageDigest}. */
+	public static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Updates the given digest with the canonical form of the given node and its descendants.
+	 *
+	 * @param digest the digest to update
+	 * @param node the element, attribute, or text node
+	 */
+	public static void update(MessageDigest digest, Node node) {
+		switch (node.getNodeType()) {
+			case Node.ELEMENT_NODE:
+				update(digest, '<', "{" + namespaceUri(node) + "}" + localName(node));
+				NamedNodeMap attributes = node.getAttributes();
+				List<String> canonicalAttributes = new ArrayList<String>(attributes.getLength());
+				for (int i = 0; i < attributes.getLength(); i++) {
+					Attr attribute = (Attr) attributes.item(i);
+					if (!"http://www.w3.org/2000/xmlns/".equals(attribute.getNamespaceURI())) {
+						canonicalAttributes.add("{" + namespaceUri(attribute) + "}" + localName(attribute) + "="
+								+ attribute.getValue());
+					}
+				}
+				String[] sortedAttributes = canonicalAttributes.toArray(new String[0]);
+				Arrays.sort(sortedAttributes);
+				for (String attribute : sortedAttributes) {
+					update(digest, '@', attribute);
+				}
+				for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+					update(digest, child);
+				}
+				update(digest, '>', "");
+				break;
+			case Node.ATTRIBUTE_NODE:
+				update(digest, '@', "{" + namespaceUri(node) + "}" + localName(node) + "=" + node.getNodeValue());
+				break;
+			case Node.TEXT_NODE:
+			case Node.CDATA_SECTION_NODE:
+				String text = node.getNodeValue();
+				if (text.trim().length() > 0) {
+					update(digest, '"', text);
+				}
+				break;
+			default:
+				// comments and processing instructions do not contribute
+		}
+	}
+
+	/**
+	 * Updates the given digest with the given string. The string is length-prefixed, so that consecutive strings cannot
+	 * be confused with a single one.
+	 *
+	 * @param digest the digest to update
+	 * @param value the string value, may be {@code null}
+	 */
+	public static void update(MessageDigest digest, String value) {
+		update(digest, '|', value != null ? value : "");
+	}
+
+	/** Completes the given digest, and returns it as a lower-case hexadecimal string. */
+	public static String toHexString(MessageDigest digest) {
+		StringBuilder builder = new StringBuilder();
+		for (byte b : digest.digest()) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
+
+	private static void update(MessageDigest digest, char type, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		digest.update((byte) type);
+		digest.update(new byte[] { (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+				(byte) (bytes.length >>> 8), (byte) bytes.length });
+		digest.update(bytes);
+	}
+
+	private static String namespaceUri(Node node) {
+		return node.getNamespaceURI() != null ? node.getNamespaceURI() : "";
+	}
+
+	private static String localName(Node node) {
+		return node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+	}
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.transport.http;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Buffer for a HTTP message body that is kept in memory up to a given size, and spilled to a temporary file beyond
+ * that. The in-memory part consists of a list of fixed-size chunks, so that it is never copied while growing.
+ * <p>
+ * The buffer is written to as an {@link OutputStream}, and read from through {@link #getInputStream()}. It should be
+ * {@linkplain #dispose() disposed} when no longer used, to delete the temporary file. Writes beyond the maximum size of
+ * the buffer, if any, fail with a {@link BodyTooLargeException}, so that a single body cannot fill the disk.
+ * <p>
+ * A disposed buffer is empty, and can be reused for another body. It keeps up to {@link #MAX_RETAINED_SIZE} bytes of
+ * its chunks, so that reusing it for small bodies does not allocate any memory.
+ *
+ * @since 3.1
+ */
+class BodyBuffer extends OutputStream {
+
+	/** Maximum number of bytes of memory that a disposed buffer keeps for reuse: 64 KB. */
+	static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+	private static final int CHUNK_SIZE = 8 * 1024;
+
+	private static final Log logger = LogFactory.getLog(BodyBuffer.class);
+
+	private final int maxInMemorySize;
+
+	private final File tempDirectory;
+
+	private final List<byte[]> chunks = new ArrayList<byte[]>();
+
+	private long maxSize;
+
+	private File file;
+
+	private OutputStream fileOutputStream;
+
+	private long size;
+
+	/**
+	 * Creates a new buffer.
+	 *
+	 * @param maxInMemorySize the number of bytes to keep in memory
+	 * @param maxSize the maximum number of bytes of the body, or -1 for no limit
+	 * @param tempDirectory the directory to create the temporary file in, or {@code null} for the default
+	 */
+	BodyBuffer(int maxInMemorySize, long maxSize, File tempDirectory) {
+		this.maxInMemorySize = maxInMemorySize;
+		this.maxSize = maxSize;
+		this.tempDirectory = tempDirectory;
+	}
+
+	/** Sets the maximum number of bytes of the body, or -1 for no limit. */
+	void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (prepareWrite(1)) {
+			fileOutputStream.write(b);
+		} else {
+			getChunk(size)[(int) (size % CHUNK_SIZE)] = (byte) b;
+		}
+		size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (prepareWrite(len)) {
+			fileOutputStream.write(b, off, len);
+		} else {
+			int written = 0;
+			while (written < len) {
+				long position = size + written;
+				int offset = (int) (position % CHUNK_SIZE);
+				int count = Math.min(len - written, CHUNK_SIZE - offset);
+				System.arraycopy(b, off + written, getChunk(position), offset, count);
+				written += count;
+			}
+		}
+		size += len;
+	}
+
+	/**
+	 * Prepares writing the given number of bytes, spilling the buffer to a temporary file if they do not fit in memory.
+	 *
+	 * @return {@code true} if the bytes are to be written to the temporary file; {@code false} if to memory
+	 */
+	private boolean prepareWrite(int len) throws IOException {
+		if (maxSize >= 0 && size + len > maxSize) {
+			throw new BodyTooLargeException(maxSize);
+		}
+		if (fileOutputStream != null) {
+			return true;
+		} else if (size + len <= maxInMemorySize) {
+			return false;
+		}
+		file = File.createTempFile("spring-ws-", ".body", tempDirectory);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Body exceeds " + maxInMemorySize + " bytes, spilling to [" + file + "]");
+		}
+		fileOutputStream = new BufferedOutputStream(new FileOutputStream(file));
+		for (int i = 0; i * (long) CHUNK_SIZE < size; i++) {
+			fileOutputStream.write(chunks.get(i), 0, getChunkLength(i));
+		}
+		return true;
+	}
+
+	private byte[] getChunk(long position) {
+		int index = (int) (position / CHUNK_SIZE);
+		if (index == chunks.size()) {
+			chunks.add(new byte[CHUNK_SIZE]);
+		}
+		return chunks.get(index);
+	}
+
+	private int getChunkLength(int index) {
+		return (int) Math.min(CHUNK_SIZE, size - index * (long) CHUNK_SIZE);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (fileOutputStream != null) {
+			fileOutputStream.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	/** Returns the number of bytes written to this buffer. */
+	long size() {
+		return size;
+	}
+
+	/** Indicates whether this buffer has been spilled to a temporary file. */
+	boolean isSpilled() {
+		return file != null;
+	}
+
+	/** Returns a stream that reads the contents of this buffer from the start. */
+	InputStream getInputStream() throws IOException {
+		if (file != null) {
+			fileOutputStream.flush();
+			return new FileInputStream(file);
+		}
+		List<InputStream> inputStreams = new ArrayList<InputStream>();
+		for (int i = 0; i * (long) CHUNK_SIZE < size; i++) {
+			inputStreams.add(new ByteArrayInputStream(chunks.get(i), 0, getChunkLength(i)));
+		}
+		return new SequenceInputStream(Collections.enumeration(inputStreams));
+	}
+
+	/**
+	 * Empties this buffer, so that it can be reused, and deletes its temporary file, if any. Memory beyond
+	 * {@link #MAX_RETAINED_SIZE} is released.
+	 */
+	void dispose() {
+		size = 0;
+		while (chunks.size() * CHUNK_SIZE > MAX_RETAINED_SIZE) {
+			chunks.remove(chunks.size() - 1);
+		}
+		if (file != null) {
+			try {
+				fileOutputStream.close();
+			} catch (IOException ex) {
+				logger.debug("Could not close temporary file [" + file + "]", ex);
+			}
+			if (!file.delete() && file.exists()) {
+				logger.warn("Could not delete temporary file [" + file + "]");
+			}
+			file = null;
+			fileOutputStream = null;
+		}
+	}
+
+	/** Exception thrown when a body exceeds the maximum size of its buffer. */
+	static class BodyTooLargeException extends IOException {
+
+		private static final long serialVersionUID = -4425066612766524542L;
+
+		BodyTooLargeException(long maxSize) {
+			super("Body exceeds maximum size of " + maxSize + " bytes");
+		}
+	}
+
+}
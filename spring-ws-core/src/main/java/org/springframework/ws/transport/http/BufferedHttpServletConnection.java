@@ -0,0 +1,57 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.transport.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * {@link HttpServletConnection} that reads the request body from, and writes the response body to, a
+ * {@link BodyBuffer} rather than the streams of the Servlet API. Used by the
+ * {@link WebServiceMessageReceiverHandlerAdapter} for non-blocking I/O, where the request body has been received
+ * before the connection is handled, and the response body is written after the connection has been closed.
+ *
+ * @since 3.1
+ */
+class BufferedHttpServletConnection extends HttpServletConnection {
+
+	private final BodyBuffer requestBody;
+
+	private final BodyBuffer responseBody;
+
+	BufferedHttpServletConnection(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+			BodyBuffer requestBody, BodyBuffer responseBody) {
+		super(httpServletRequest, httpServletResponse);
+		this.requestBody = requestBody;
+		this.responseBody = responseBody;
+	}
+
+	@Override
+	protected InputStream getRequestInputStream() throws IOException {
+		return requestBody.getInputStream();
+	}
+
+	@Override
+	protected OutputStream getResponseOutputStream() throws IOException {
+		return responseBody;
+	}
+
+}
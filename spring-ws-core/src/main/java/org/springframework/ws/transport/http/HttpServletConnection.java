@@ -75,6 +75,22 @@ public class HttpServletConnection extends AbstractReceiverConnection
 		statusCodeSet = true;
 	}
 
+	/**
+	 * Indicates that the request was rejected because the service is overloaded, by setting the "503 Service
+	 * Unavailable" status code. No response message should be sent afterwards.
+	 *
+	 * @param retryAfter the number of seconds after which the client may retry, or {@code 0} to not send a
+	 *          {@code Retry-After} header
+	 * @since 3.1
+	 */
+	public void serviceUnavailable(int retryAfter) {
+		if (retryAfter > 0) {
+			getHttpServletResponse().setHeader(HttpTransportConstants.HEADER_RETRY_AFTER, Integer.toString(retryAfter));
+		}
+		getHttpServletResponse().setStatus(HttpTransportConstants.STATUS_SERVICE_UNAVAILABLE);
+		statusCodeSet = true;
+	}
+
 	/*
 	 * Errors
 	 */
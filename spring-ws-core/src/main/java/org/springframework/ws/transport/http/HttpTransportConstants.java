@@ -32,6 +32,9 @@ public interface HttpTransportConstants extends TransportConstants {
 	/** The "Accept-Encoding" header. */
 	String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
 
+	/** The "Retry-After" header. */
+	String HEADER_RETRY_AFTER = "Retry-After";
+
 	/** Header value that indicates a compressed "Content-Encoding". */
 	String CONTENT_ENCODING_GZIP = "gzip";
 
@@ -56,6 +59,9 @@ public interface HttpTransportConstants extends TransportConstants {
 	/** The "500 Server Error" status code. */
 	int STATUS_INTERNAL_SERVER_ERROR = 500;
 
+	/** The "503 Service Unavailable" status code. */
+	int STATUS_SERVICE_UNAVAILABLE = 503;
+
 	/** The "http" URI scheme. */
 	String HTTP_URI_SCHEME = "http";
 
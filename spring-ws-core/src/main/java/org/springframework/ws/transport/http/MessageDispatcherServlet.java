@@ -122,6 +122,8 @@ public class MessageDispatcherServlet extends FrameworkServlet {
 
 	private boolean transformSchemaLocations = false;
 
+	private boolean nonBlockingIo = false;
+
 	/**
 	 * Public constructor, necessary for some Web application servers.
 	 */
@@ -233,6 +235,26 @@ public class MessageDispatcherServlet extends FrameworkServlet {
 		this.transformSchemaLocations = transformSchemaLocations;
 	}
 
+	/**
+	 * Indicates whether request and response bodies are read and written with non-blocking I/O.
+	 *
+	 * @since 3.1
+	 */
+	public boolean isNonBlockingIo() {
+		return nonBlockingIo;
+	}
+
+	/**
+	 * Sets whether request and response bodies are read and written with non-blocking I/O. Requires asynchronous support
+	 * to be enabled for this servlet. Defaults to {@code false}.
+	 *
+	 * @since 3.1
+	 * @see WebServiceMessageReceiverHandlerAdapter#setNonBlockingIo(boolean)
+	 */
+	public void setNonBlockingIo(boolean nonBlockingIo) {
+		this.nonBlockingIo = nonBlockingIo;
+	}
+
 	/** Returns the bean name used to lookup a {@link WebServiceMessageReceiverHandlerAdapter}. */
 	public String getMessageReceiverHandlerAdapterBeanName() {
 		return messageReceiverHandlerAdapterBeanName;
@@ -375,6 +397,9 @@ public class MessageDispatcherServlet extends FrameworkServlet {
 				messageReceiverHandlerAdapter = new WebServiceMessageReceiverHandlerAdapter();
 			}
 			initWebServiceMessageFactory(context);
+			if (isNonBlockingIo()) {
+				messageReceiverHandlerAdapter.setNonBlockingIo(true);
+			}
 			messageReceiverHandlerAdapter.afterPropertiesSet();
 		} catch (Exception ex) {
 			throw new BeanInitializationException("Could not initialize WebServiceMessageReceiverHandlerAdapter", ex);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2014 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,33 @@
 
 package org.springframework.ws.transport.http;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.servlet.HandlerAdapter;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.ws.InvalidXmlException;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.transport.WebServiceConnection;
 import org.springframework.ws.transport.WebServiceMessageReceiver;
 import org.springframework.ws.transport.support.WebServiceMessageReceiverObjectSupport;
@@ -35,6 +56,23 @@ import org.springframework.ws.transport.support.WebServiceMessageReceiverObjectS
  * <p>
  * Note that the {@code MessageDispatcher} implements the {@code WebServiceMessageReceiver} interface, enabling this
  * adapter to function as a gateway to further message handling logic.
+ * <p>
+ * If the receiver produces its response asynchronously, for instance because the endpoint method returns a
+ * {@link java.util.concurrent.CompletableFuture CompletableFuture}, and the request supports it, this adapter starts
+ * asynchronous request processing through the {@link WebAsyncManager}, so that the container thread is released until
+ * the response is available. The response is then sent from the asynchronous dispatch of the request. If the request
+ * {@linkplain #setAsyncTimeout(long) times out} first, the pending response is cancelled, and
+ * {@link #handleAsyncTimeout(HttpServletRequest, HttpServletResponse, Object)} is invoked instead. Note that
+ * asynchronous support has to be enabled on the servlet and all filters for that to happen; otherwise, the container
+ * thread waits for the response.
+ * <p>
+ * When {@linkplain #setNonBlockingIo(boolean) non-blocking I/O} is enabled, the request body is received with a Servlet
+ * 3.1 {@link ReadListener}, and buffered in memory up to the {@linkplain #setMaxInMemorySize(int) maximum in-memory
+ * size}, or in a temporary file beyond that. Only once the body has been received completely is it passed on to the
+ * message factory, so that slow clients do not tie up a container thread. Likewise, the response is buffered, and
+ * written with a {@link WriteListener}. Request bodies beyond the {@linkplain #setMaxRequestSize(long) maximum request
+ * size} are rejected, and a timeout or error cancels the pending response and deletes the temporary files. The buffers
+ * of completed requests are pooled, so that their memory is reused by later requests.
  *
  * @author Arjen Poutsma
  * @see #setMessageFactory(org.springframework.ws.WebServiceMessageFactory)
@@ -46,6 +84,83 @@ import org.springframework.ws.transport.support.WebServiceMessageReceiverObjectS
 public class WebServiceMessageReceiverHandlerAdapter extends WebServiceMessageReceiverObjectSupport
 		implements HandlerAdapter {
 
+	/** Default maximum number of bytes of a message body that is kept in memory in non-blocking mode: 256 KB. */
+	public static final int DEFAULT_MAX_IN_MEMORY_SIZE = 256 * 1024;
+
+	/** Default maximum number of bytes of a request body that is accepted in non-blocking mode: 10 MB. */
+	public static final long DEFAULT_MAX_REQUEST_SIZE = 10 * 1024 * 1024;
+
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private static final int BODY_BUFFER_POOL_SIZE = 32;
+
+	private long asyncTimeout = -1;
+
+	private boolean nonBlockingIo = false;
+
+	private int maxInMemorySize = DEFAULT_MAX_IN_MEMORY_SIZE;
+
+	private long maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+
+	private File tempDirectory;
+
+	private final Queue<BodyBuffer> bodyBufferPool = new ArrayBlockingQueue<BodyBuffer>(BODY_BUFFER_POOL_SIZE);
+
+	/**
+	 * Sets the timeout, in milliseconds, of asynchronous requests. Defaults to -1, which means that the timeout of the
+	 * Servlet container is used.
+	 *
+	 * @since 3.1
+	 */
+	public void setAsyncTimeout(long asyncTimeout) {
+		this.asyncTimeout = asyncTimeout;
+	}
+
+	/**
+	 * Sets whether request and response bodies are read and written with non-blocking I/O, if the request supports
+	 * asynchronous processing. Defaults to {@code false}.
+	 *
+	 * @since 3.1
+	 */
+	public void setNonBlockingIo(boolean nonBlockingIo) {
+		this.nonBlockingIo = nonBlockingIo;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of a message body that is kept in memory when using non-blocking I/O. Larger
+	 * bodies are written to a temporary file. Defaults to {@link #DEFAULT_MAX_IN_MEMORY_SIZE}.
+	 *
+	 * @since 3.1
+	 */
+	public void setMaxInMemorySize(int maxInMemorySize) {
+		Assert.isTrue(maxInMemorySize >= 0, "'maxInMemorySize' must not be negative");
+		this.maxInMemorySize = maxInMemorySize;
+		bodyBufferPool.clear();
+	}
+
+	/**
+	 * Sets the maximum number of bytes of a request body that is accepted when using non-blocking I/O. Larger requests
+	 * are rejected with {@link #handleRequestTooLarge(HttpServletRequest, HttpServletResponse, Object)}, without
+	 * buffering more than this number of bytes. Defaults to {@link #DEFAULT_MAX_REQUEST_SIZE}; set to -1 for no limit.
+	 *
+	 * @since 3.1
+	 */
+	public void setMaxRequestSize(long maxRequestSize) {
+		Assert.isTrue(maxRequestSize >= -1, "'maxRequestSize' must not be smaller than -1");
+		this.maxRequestSize = maxRequestSize;
+	}
+
+	/**
+	 * Sets the directory in which temporary files are created when using non-blocking I/O. Defaults to the default
+	 * temporary-file directory of the system.
+	 *
+	 * @since 3.1
+	 */
+	public void setTempDirectory(File tempDirectory) {
+		this.tempDirectory = tempDirectory;
+		bodyBufferPool.clear();
+	}
+
 	@Override
 	public long getLastModified(HttpServletRequest request, Object handler) {
 		return -1L;
@@ -54,10 +169,38 @@ public class WebServiceMessageReceiverHandlerAdapter extends WebServiceMessageRe
 	@Override
 	public ModelAndView handle(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
 			Object handler) throws Exception {
-		if (HttpTransportConstants.METHOD_POST.equals(httpServletRequest.getMethod())) {
+		WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(httpServletRequest);
+		if (asyncManager.hasConcurrentResult()
+				&& asyncManager.getConcurrentResultContext()[0] instanceof PendingConnection) {
+			Object result = asyncManager.getConcurrentResult();
+			PendingConnection pendingConnection = (PendingConnection) asyncManager.getConcurrentResultContext()[0];
+			asyncManager.clearConcurrentResult();
+			handleAsyncResult(httpServletRequest, httpServletResponse, handler, pendingConnection, result);
+		} else if (HttpTransportConstants.METHOD_POST.equals(httpServletRequest.getMethod())
+				&& nonBlockingIo && isAsyncSupported(httpServletRequest)) {
+			if (maxRequestSize >= 0 && httpServletRequest.getContentLengthLong() > maxRequestSize) {
+				handleRequestTooLarge(httpServletRequest, httpServletResponse, handler);
+				return null;
+			}
+			AsyncContext asyncContext = startAsync(httpServletRequest, httpServletResponse);
+			NonBlockingExchange exchange = new NonBlockingExchange(httpServletRequest, httpServletResponse, handler,
+					asyncContext);
+			asyncContext.addListener(exchange);
+			httpServletRequest.getInputStream().setReadListener(exchange);
+		} else if (HttpTransportConstants.METHOD_POST.equals(httpServletRequest.getMethod())) {
 			WebServiceConnection connection = new HttpServletConnection(httpServletRequest, httpServletResponse);
 			try {
-				handleConnection(connection, (WebServiceMessageReceiver) handler);
+				if (isAsyncSupported(httpServletRequest)) {
+					PendingConnection pendingConnection = handleConnectionAsync(connection,
+							(WebServiceMessageReceiver) handler);
+					if (pendingConnection != null && pendingConnection.getResponse().toCompletableFuture().isDone()) {
+						completeConnection(pendingConnection);
+					} else if (pendingConnection != null) {
+						startAsync(httpServletRequest, httpServletResponse, asyncManager, pendingConnection);
+					}
+				} else {
+					handleConnection(connection, (WebServiceMessageReceiver) handler);
+				}
 			} catch (InvalidXmlException ex) {
 				handleInvalidXmlException(httpServletRequest, httpServletResponse, handler, ex);
 			}
@@ -72,6 +215,121 @@ public class WebServiceMessageReceiverHandlerAdapter extends WebServiceMessageRe
 		return handler instanceof WebServiceMessageReceiver;
 	}
 
+	private boolean isAsyncSupported(HttpServletRequest httpServletRequest) {
+		try {
+			return httpServletRequest.isAsyncSupported();
+		} catch (AbstractMethodError ex) {
+			// pre-Servlet 3.0 container
+			return false;
+		}
+	}
+
+	private AsyncContext startAsync(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) {
+		AsyncContext asyncContext = httpServletRequest.startAsync(httpServletRequest, httpServletResponse);
+		if (asyncTimeout >= 0) {
+			asyncContext.setTimeout(asyncTimeout);
+		}
+		return asyncContext;
+	}
+
+	/**
+	 * Puts the request in asynchronous mode through the given {@link WebAsyncManager}, and only then attaches the
+	 * continuation to the pending response, so that the response is never handled while the request is still in
+	 * synchronous mode. The response is sent from the asynchronous dispatch that follows, on a container thread.
+	 */
+	private void startAsync(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+			WebAsyncManager asyncManager, final PendingConnection pendingConnection) throws Exception {
+		asyncManager.setAsyncWebRequest(WebAsyncUtils.createAsyncWebRequest(httpServletRequest, httpServletResponse));
+		final DeferredResult<Object> deferredResult = asyncTimeout >= 0 ? new DeferredResult<Object>(asyncTimeout)
+				: new DeferredResult<Object>();
+		deferredResult.onTimeout(new Runnable() {
+
+			@Override
+			public void run() {
+				deferredResult.setErrorResult(new AsyncRequestTimeoutException());
+				pendingConnection.cancel();
+			}
+		});
+		deferredResult.onError(new Consumer<Throwable>() {
+
+			@Override
+			public void accept(Throwable ex) {
+				deferredResult.setErrorResult(ex);
+				pendingConnection.cancel();
+			}
+		});
+		asyncManager.startDeferredResultProcessing(deferredResult, pendingConnection);
+		pendingConnection.getResponse().whenComplete(new BiConsumer<Object, Throwable>() {
+
+			@Override
+			public void accept(Object value, Throwable failure) {
+				// has no effect if the request timed out, or the container reported an error, in the meantime
+				deferredResult.setResult(failure != null ? failure : pendingConnection);
+			}
+		});
+	}
+
+	/**
+	 * Handles the result of an asynchronously processed request, in the asynchronous dispatch: sends the response if it
+	 * is available, or discards it if the request failed or timed out.
+	 */
+	private void handleAsyncResult(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+			Object handler, PendingConnection pendingConnection, Object result) throws Exception {
+		if (result == pendingConnection) {
+			completeConnection(pendingConnection);
+		} else {
+			abortConnection(pendingConnection);
+			if (result instanceof AsyncRequestTimeoutException) {
+				handleAsyncTimeout(httpServletRequest, httpServletResponse, handler);
+			} else {
+				handleAsyncException(httpServletRequest, httpServletResponse, handler,
+						AsyncResponseUtils.toException((Throwable) result));
+			}
+		}
+	}
+
+	/**
+	 * Template method that is invoked when an asynchronously processed request times out before its response is
+	 * available. Called from the asynchronous dispatch of the request, once the pending response has been cancelled.
+	 * <p>
+	 * Default implementation sets the response status to 503: Service Unavailable if the response has not been
+	 * committed yet. Can be overridden in subclasses.
+	 *
+	 * @param httpServletRequest current HTTP request
+	 * @param httpServletResponse current HTTP response
+	 * @param handler current handler
+	 * @since 3.1
+	 */
+	protected void handleAsyncTimeout(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+			Object handler) throws Exception {
+		logger.warn("Asynchronous processing of request timed out");
+		if (!httpServletResponse.isCommitted()) {
+			httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		}
+	}
+
+	/**
+	 * Template method that is invoked when an asynchronously processed request fails with an exception that was not
+	 * resolved into a fault, or when the container reports an error. Called from the asynchronous dispatch of the
+	 * request, or, when using non-blocking I/O, from the thread that completed the request.
+	 * <p>
+	 * Default implementation logs the exception, and sets the response status to 500: Internal Server Error if the
+	 * response has not been committed yet. Can be overridden in subclasses.
+	 *
+	 * @param httpServletRequest current HTTP request
+	 * @param httpServletResponse current HTTP response
+	 * @param handler current handler
+	 * @param ex the exception that resulted in this method being called
+	 * @since 3.1
+	 */
+	protected void handleAsyncException(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+			Object handler, Exception ex) throws Exception {
+		logger.error("Asynchronous processing of request failed", ex);
+		if (!httpServletResponse.isCommitted()) {
+			httpServletResponse.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+	}
+
 	/**
 	 * Template method that is invoked when the request method is not {@code POST}. Called from
 	 * {@link #handle(HttpServletRequest, HttpServletResponse, Object)}.
@@ -103,4 +361,359 @@ public class WebServiceMessageReceiverHandlerAdapter extends WebServiceMessageRe
 		httpServletResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
 	}
 
+	/**
+	 * Template method that is invoked when the request body exceeds the {@linkplain #setMaxRequestSize(long) maximum
+	 * request size} when using non-blocking I/O.
+	 * <p>
+	 * Default implementation sets the response status to 413: Payload Too Large. Can be overridden in subclasses.
+	 *
+	 * @param httpServletRequest current HTTP request
+	 * @param httpServletResponse current HTTP response
+	 * @param handler current handler
+	 * @since 3.1
+	 */
+	protected void handleRequestTooLarge(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+			Object handler) throws Exception {
+		logger.warn("Request body exceeds maximum size of " + maxRequestSize + " bytes");
+		httpServletResponse.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+	}
+
+	/** Returns an empty body buffer from the pool, or a new one if the pool is empty. */
+	private BodyBuffer acquireBodyBuffer(long maxSize) {
+		BodyBuffer bodyBuffer = bodyBufferPool.poll();
+		if (bodyBuffer == null) {
+			return new BodyBuffer(maxInMemorySize, maxSize, tempDirectory);
+		}
+		bodyBuffer.setMaxSize(maxSize);
+		return bodyBuffer;
+	}
+
+	/** Disposes of the given body buffer, and returns it to the pool, unless the pool is full. */
+	private void releaseBodyBuffer(BodyBuffer bodyBuffer) {
+		bodyBuffer.dispose();
+		bodyBufferPool.offer(bodyBuffer);
+	}
+
+	/**
+	 * Exchange that receives the request body, handles the connection, and writes the response body, using non-blocking
+	 * I/O. Also listens to the {@link AsyncContext}, so that a timeout or error cancels the pending response, and
+	 * releases the buffers.
+	 * <p>
+	 * The state of the exchange is guarded by the exchange itself, so that the response is only written to while the
+	 * request has not been completed, possibly by the container. The buffers are only accessed under this lock, or by
+	 * the connection while it is being dispatched, as they are returned to the pool once the exchange is completed.
+	 */
+	private class NonBlockingExchange implements ReadListener, WriteListener, AsyncListener {
+
+		private final HttpServletRequest httpServletRequest;
+
+		private final HttpServletResponse httpServletResponse;
+
+		private final Object handler;
+
+		private final AsyncContext asyncContext;
+
+		private final BodyBuffer requestBody = acquireBodyBuffer(maxRequestSize);
+
+		private final BodyBuffer responseBody = acquireBodyBuffer(-1);
+
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+
+		private PendingConnection pendingConnection;
+
+		private InputStream responseInputStream;
+
+		private boolean dispatching;
+
+		private boolean completed;
+
+		private boolean released;
+
+		private NonBlockingExchange(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+				Object handler, AsyncContext asyncContext) {
+			this.httpServletRequest = httpServletRequest;
+			this.httpServletResponse = httpServletResponse;
+			this.handler = handler;
+			this.asyncContext = asyncContext;
+		}
+
+		@Override
+		public void onDataAvailable() throws IOException {
+			ServletInputStream inputStream = httpServletRequest.getInputStream();
+			while (!isCompleted() && inputStream.isReady()) {
+				int read = inputStream.read(buffer);
+				if (read == -1) {
+					return;
+				}
+				try {
+					synchronized (this) {
+						if (completed) {
+							return;
+						}
+						requestBody.write(buffer, 0, read);
+					}
+				} catch (BodyBuffer.BodyTooLargeException ex) {
+					onRequestTooLarge();
+					return;
+				}
+			}
+		}
+
+		@Override
+		public void onAllDataRead() {
+			synchronized (this) {
+				if (completed) {
+					return;
+				}
+				// a timeout or error leaves the buffers to this thread from now on
+				dispatching = true;
+				if (logger.isDebugEnabled()) {
+					logger.debug("Received request body of " + requestBody.size() + " bytes"
+							+ (requestBody.isSpilled() ? ", buffered in temporary file" : ""));
+				}
+			}
+			WebServiceConnection connection = new BufferedHttpServletConnection(httpServletRequest, httpServletResponse,
+					requestBody, responseBody);
+			final PendingConnection pendingConnection;
+			try {
+				pendingConnection = handleConnectionAsync(connection, (WebServiceMessageReceiver) handler);
+			} catch (InvalidXmlException ex) {
+				synchronized (this) {
+					dispatching = false;
+					if (completed) {
+						disposeBuffers();
+						return;
+					}
+					try {
+						handleInvalidXmlException(httpServletRequest, httpServletResponse, handler, ex);
+					} catch (Throwable ex2) {
+						logger.error("Could not handle invalid XML", ex2);
+					}
+				}
+				complete();
+				return;
+			} catch (Throwable ex) {
+				onFailure(ex);
+				return;
+			}
+			if (pendingConnection == null) {
+				writeResponse();
+				return;
+			}
+			synchronized (this) {
+				dispatching = false;
+				if (completed) {
+					// timed out, or failed, while the request was being dispatched
+					abortPendingConnection(pendingConnection);
+					return;
+				}
+				this.pendingConnection = pendingConnection;
+			}
+			// the request is in asynchronous mode already, so the response can be handled on any thread
+			pendingConnection.getResponse().whenComplete(new BiConsumer<Object, Throwable>() {
+
+				@Override
+				public void accept(Object value, Throwable failure) {
+					synchronized (NonBlockingExchange.this) {
+						if (completed) {
+							// the connection has been aborted by the timeout or error, which disposes of the buffers
+							return;
+						}
+						NonBlockingExchange.this.pendingConnection = null;
+						try {
+							completeConnection(pendingConnection);
+						} catch (Throwable ex) {
+							onFailure(ex);
+							return;
+						}
+						writeResponse();
+					}
+				}
+			});
+		}
+
+		private void writeResponse() {
+			synchronized (this) {
+				dispatching = false;
+				if (completed) {
+					disposeBuffers();
+					return;
+				}
+				try {
+					if (responseBody.size() == 0) {
+						complete();
+						return;
+					}
+					httpServletResponse.setContentLengthLong(responseBody.size());
+					responseInputStream = responseBody.getInputStream();
+					httpServletResponse.getOutputStream().setWriteListener(this);
+				} catch (Throwable ex) {
+					onFailure(ex);
+				}
+			}
+		}
+
+		@Override
+		public void onWritePossible() throws IOException {
+			ServletOutputStream outputStream = httpServletResponse.getOutputStream();
+			while (outputStream.isReady()) {
+				synchronized (this) {
+					if (completed) {
+						return;
+					}
+					int read = responseInputStream.read(buffer);
+					if (read != -1) {
+						outputStream.write(buffer, 0, read);
+						continue;
+					}
+				}
+				complete();
+				return;
+			}
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			logger.debug("Non-blocking I/O failed", ex);
+			abort(false);
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			abort(true);
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			logger.debug("Asynchronous request failed", event.getThrowable());
+			abort(false);
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+		}
+
+		private void onRequestTooLarge() {
+			synchronized (this) {
+				if (completed) {
+					return;
+				}
+				try {
+					handleRequestTooLarge(httpServletRequest, httpServletResponse, handler);
+				} catch (Throwable ex) {
+					logger.error("Could not handle request that is too large", ex);
+				}
+			}
+			complete();
+		}
+
+		private void onFailure(Throwable failure) {
+			synchronized (this) {
+				dispatching = false;
+				if (completed) {
+					disposeBuffers();
+					return;
+				}
+				try {
+					// discard any partially written response
+					responseBody.dispose();
+					handleAsyncException(httpServletRequest, httpServletResponse, handler,
+							AsyncResponseUtils.toException(failure));
+				} catch (Throwable ex) {
+					logger.error("Could not handle failure of asynchronous request", ex);
+				}
+			}
+			complete();
+		}
+
+		private synchronized boolean isCompleted() {
+			return completed;
+		}
+
+		/**
+		 * Completes the exchange after a timeout or error. A pending connection is aborted on the calling container
+		 * thread, so that nothing is written to the Servlet response once the request has been completed. Since the
+		 * endpoint may still be reading the request body, or writing the response body, on another thread, the buffers
+		 * of a pending connection are only disposed of once its dispatch has completed, and those of a connection that
+		 * is being dispatched by the thread that received the request once that thread returns.
+		 */
+		private void abort(boolean timeout) {
+			boolean pending;
+			synchronized (this) {
+				if (completed) {
+					return;
+				}
+				completed = true;
+				pending = pendingConnection != null || dispatching;
+				if (pendingConnection != null) {
+					abortPendingConnection(pendingConnection);
+					pendingConnection = null;
+				}
+				if (timeout) {
+					try {
+						handleAsyncTimeout(httpServletRequest, httpServletResponse, handler);
+					} catch (Throwable ex) {
+						logger.error("Could not handle timeout of asynchronous request", ex);
+					}
+				}
+			}
+			if (!pending) {
+				disposeBuffers();
+			}
+			completeAsyncContext();
+		}
+
+		private void abortPendingConnection(PendingConnection pendingConnection) {
+			abortConnection(pendingConnection);
+			pendingConnection.getDispatch().whenComplete(new BiConsumer<Object, Throwable>() {
+
+				@Override
+				public void accept(Object value, Throwable failure) {
+					disposeBuffers();
+				}
+			});
+		}
+
+		private void complete() {
+			synchronized (this) {
+				if (completed) {
+					return;
+				}
+				completed = true;
+			}
+			disposeBuffers();
+			completeAsyncContext();
+		}
+
+		private synchronized void disposeBuffers() {
+			if (released) {
+				return;
+			}
+			released = true;
+			if (responseInputStream != null) {
+				try {
+					responseInputStream.close();
+				} catch (IOException ex) {
+					logger.debug("Could not close response body", ex);
+				}
+				responseInputStream = null;
+			}
+			releaseBodyBuffer(requestBody);
+			releaseBodyBuffer(responseBody);
+		}
+
+		private void completeAsyncContext() {
+			try {
+				asyncContext.complete();
+			} catch (IllegalStateException ex) {
+				// completed by the container in the meantime
+				logger.debug("Could not complete asynchronous request", ex);
+			}
+		}
+	}
+
 }
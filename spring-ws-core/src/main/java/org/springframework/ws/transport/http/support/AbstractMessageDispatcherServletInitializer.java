@@ -90,6 +90,7 @@ public abstract class AbstractMessageDispatcherServletInitializer extends Abstra
 
 		registration.setLoadOnStartup(1);
 		registration.addMapping(getServletMappings());
+		registration.setAsyncSupported(isAsyncSupported());
 
 		this.customizeRegistration(registration);
 	}
@@ -141,6 +142,17 @@ public abstract class AbstractMessageDispatcherServletInitializer extends Abstra
 		return false;
 	}
 
+	/**
+	 * Indicates whether the {@code MessageDispatcherServlet} supports asynchronous request processing, so that the
+	 * container thread is released while endpoints that return a {@link java.util.concurrent.CompletionStage} are
+	 * executing. Defaults to {@code true}.
+	 *
+	 * @since 3.1
+	 */
+	protected boolean isAsyncSupported() {
+		return true;
+	}
+
 	/**
 	 * Optionally perform further registration customization once
 	 * {@link #registerMessageDispatcherServlet(ServletContext)} has completed.
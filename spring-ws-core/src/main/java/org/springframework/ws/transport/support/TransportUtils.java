@@ -20,6 +20,9 @@ import java.io.IOException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.ws.DisposableWebServiceMessage;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.transport.WebServiceConnection;
 
 /**
@@ -50,4 +53,35 @@ public abstract class TransportUtils {
 		}
 	}
 
+	/**
+	 * Dispose the request and response of the given {@link MessageContext}, if they are
+	 * {@link DisposableWebServiceMessage}s, and ignore any thrown exception. This is useful for typical {@code finally}
+	 * blocks.
+	 *
+	 * @param messageContext the message context whose messages to dispose (may be {@code null})
+	 */
+	public static void disposeMessages(MessageContext messageContext) {
+		if (messageContext != null) {
+			disposeMessage(messageContext.getRequest());
+			if (messageContext.hasResponse()) {
+				disposeMessage(messageContext.getResponse());
+			}
+		}
+	}
+
+	/**
+	 * Dispose the given message, if it is a {@link DisposableWebServiceMessage}, and ignore any thrown exception.
+	 *
+	 * @param message the message to dispose (may be {@code null})
+	 */
+	public static void disposeMessage(WebServiceMessage message) {
+		if (message instanceof DisposableWebServiceMessage) {
+			try {
+				((DisposableWebServiceMessage) message).dispose();
+			} catch (Throwable ex) {
+				logger.debug("Unexpected exception on disposing WebServiceMessage", ex);
+			}
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2014 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,11 @@
 
 package org.springframework.ws.transport.support;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -26,6 +30,7 @@ import org.springframework.ws.FaultAwareWebServiceMessage;
 import org.springframework.ws.NoEndpointFoundException;
 import org.springframework.ws.WebServiceMessage;
 import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.transport.EndpointAwareWebServiceConnection;
@@ -71,10 +76,12 @@ public abstract class WebServiceMessageReceiverObjectSupport implements Initiali
 	 * from it, passing it to the {@link WebServiceMessageReceiver#receive(MessageContext) receiver}, and
 	 * {@link WebServiceConnection#send(WebServiceMessage) sending} the response (if any).
 	 * <p>
-	 * Stores the given connection in the {@link TransportContext}.
+	 * Stores the given connection in the {@link TransportContext}. If the receiver produces the response
+	 * asynchronously, this method blocks until it is available.
 	 *
 	 * @param connection the incoming connection
 	 * @param receiver the handler of the message, typically a {@link org.springframework.ws.server.MessageDispatcher}
+	 * @see #handleConnectionAsync(WebServiceConnection, WebServiceMessageReceiver)
 	 */
 	protected final void handleConnection(WebServiceConnection connection, WebServiceMessageReceiver receiver)
 			throws Exception {
@@ -82,27 +89,126 @@ public abstract class WebServiceMessageReceiverObjectSupport implements Initiali
 		TransportContext previousTransportContext = TransportContextHolder.getTransportContext();
 		TransportContextHolder.setTransportContext(new DefaultTransportContext(connection));
 
+		MessageContext messageContext = null;
 		try {
 			WebServiceMessage request = connection.receive(getMessageFactory());
-			MessageContext messageContext = new DefaultMessageContext(request, getMessageFactory());
+			messageContext = new DefaultMessageContext(request, getMessageFactory());
 			receiver.receive(messageContext);
-			if (messageContext.hasResponse()) {
-				WebServiceMessage response = messageContext.getResponse();
-				if (response instanceof FaultAwareWebServiceMessage && connection instanceof FaultAwareWebServiceConnection) {
-					FaultAwareWebServiceMessage faultResponse = (FaultAwareWebServiceMessage) response;
-					FaultAwareWebServiceConnection faultConnection = (FaultAwareWebServiceConnection) connection;
-					faultConnection.setFaultCode(faultResponse.getFaultCode());
-				}
-				connection.send(messageContext.getResponse());
-			}
+			AsyncResponseUtils.awaitAsyncResponse(messageContext);
+			sendResponse(connection, messageContext);
 		} catch (NoEndpointFoundException ex) {
 			handleNoEndpointFoundException(ex, connection, receiver);
 		} finally {
 			TransportUtils.closeConnection(connection);
+			TransportUtils.disposeMessages(messageContext);
+			TransportContextHolder.setTransportContext(previousTransportContext);
+		}
+	}
+
+	/**
+	 * Handles an incoming connection like {@link #handleConnection(WebServiceConnection, WebServiceMessageReceiver)},
+	 * but does not block when the receiver produces the response asynchronously. Instead, the connection is left open,
+	 * and returned as a {@link PendingConnection}. Once its {@linkplain PendingConnection#getResponse() response} is
+	 * available, the caller either sends it with {@link #completeConnection(PendingConnection)}, or discards it with
+	 * {@link #abortConnection(PendingConnection)}.
+	 * <p>
+	 * No callback is attached to the pending response, so that the caller can prepare the transport, for instance by
+	 * putting a Servlet request in asynchronous mode, before the response is handled.
+	 *
+	 * @param connection the incoming connection
+	 * @param receiver the handler of the message, typically a {@link org.springframework.ws.server.MessageDispatcher}
+	 * @return the pending connection, or {@code null} if the connection was handled synchronously
+	 * @since 3.1
+	 */
+	protected final PendingConnection handleConnectionAsync(WebServiceConnection connection,
+			WebServiceMessageReceiver receiver) throws Exception {
+		logUri(connection);
+		TransportContext previousTransportContext = TransportContextHolder.getTransportContext();
+		TransportContext transportContext = new DefaultTransportContext(connection);
+		TransportContextHolder.setTransportContext(transportContext);
+
+		PendingConnection pendingConnection = null;
+		MessageContext messageContext = null;
+		try {
+			WebServiceMessage request = connection.receive(getMessageFactory());
+			messageContext = new DefaultMessageContext(request, getMessageFactory());
+			receiver.receive(messageContext);
+			CompletionStage<?> asyncResponse = AsyncResponseUtils.getAsyncResponse(messageContext);
+			if (asyncResponse == null) {
+				sendResponse(connection, messageContext);
+				return null;
+			}
+			pendingConnection = new PendingConnection(connection, transportContext, messageContext, asyncResponse);
+			return pendingConnection;
+		} catch (NoEndpointFoundException ex) {
+			handleNoEndpointFoundException(ex, connection, receiver);
+			return null;
+		} finally {
+			if (pendingConnection == null) {
+				TransportUtils.closeConnection(connection);
+				TransportUtils.disposeMessages(messageContext);
+			}
+			TransportContextHolder.setTransportContext(previousTransportContext);
+		}
+	}
+
+	/**
+	 * Sends the response of the given pending connection, and closes the connection. Must only be called once the
+	 * {@linkplain PendingConnection#getResponse() response} is available. If the asynchronous processing failed, the
+	 * connection is closed without sending anything, and the original exception is rethrown.
+	 *
+	 * @param pendingConnection the connection, as returned by
+	 *          {@link #handleConnectionAsync(WebServiceConnection, WebServiceMessageReceiver)}
+	 * @since 3.1
+	 */
+	protected final void completeConnection(PendingConnection pendingConnection) throws Exception {
+		Assert.isTrue(pendingConnection.response.isDone(), "Response of pending connection is not available yet");
+		TransportContext previousTransportContext = TransportContextHolder.getTransportContext();
+		TransportContextHolder.setTransportContext(pendingConnection.transportContext);
+		try {
+			AsyncResponseUtils.await(pendingConnection.response);
+			sendResponse(pendingConnection.connection, pendingConnection.messageContext);
+		} finally {
+			TransportUtils.closeConnection(pendingConnection.connection);
+			TransportUtils.disposeMessages(pendingConnection.messageContext);
 			TransportContextHolder.setTransportContext(previousTransportContext);
 		}
 	}
 
+	/**
+	 * Discards the response of the given pending connection, for instance because the transport timed out, and closes
+	 * the connection. The pending response is cancelled. Since the endpoint and interceptors may still be using the
+	 * messages on another thread, they are only disposed of once the dispatch itself has completed, not when the
+	 * cancelled response does.
+	 *
+	 * @param pendingConnection the connection, as returned by
+	 *          {@link #handleConnectionAsync(WebServiceConnection, WebServiceMessageReceiver)}
+	 * @since 3.1
+	 */
+	protected final void abortConnection(final PendingConnection pendingConnection) {
+		pendingConnection.cancel();
+		TransportUtils.closeConnection(pendingConnection.connection);
+		pendingConnection.dispatch.whenComplete(new BiConsumer<Object, Throwable>() {
+
+			@Override
+			public void accept(Object value, Throwable failure) {
+				TransportUtils.disposeMessages(pendingConnection.messageContext);
+			}
+		});
+	}
+
+	private void sendResponse(WebServiceConnection connection, MessageContext messageContext) throws IOException {
+		if (messageContext.hasResponse()) {
+			WebServiceMessage response = messageContext.getResponse();
+			if (response instanceof FaultAwareWebServiceMessage && connection instanceof FaultAwareWebServiceConnection) {
+				FaultAwareWebServiceMessage faultResponse = (FaultAwareWebServiceMessage) response;
+				FaultAwareWebServiceConnection faultConnection = (FaultAwareWebServiceConnection) connection;
+				faultConnection.setFaultCode(faultResponse.getFaultCode());
+			}
+			connection.send(messageContext.getResponse());
+		}
+	}
+
 	/**
 	 * Template method for handling {@code NoEndpointFoundException}s.
 	 * <p>
@@ -131,4 +237,72 @@ public abstract class WebServiceMessageReceiverObjectSupport implements Initiali
 		}
 	}
 
+	/**
+	 * An incoming connection whose response is produced asynchronously.
+	 *
+	 * @since 3.1
+	 * @see #handleConnectionAsync(WebServiceConnection, WebServiceMessageReceiver)
+	 */
+	public static final class PendingConnection {
+
+		private final WebServiceConnection connection;
+
+		private final TransportContext transportContext;
+
+		private final MessageContext messageContext;
+
+		private final CompletionStage<?> dispatch;
+
+		private final CompletableFuture<Object> response = new CompletableFuture<Object>();
+
+		private PendingConnection(WebServiceConnection connection, TransportContext transportContext,
+				MessageContext messageContext, CompletionStage<?> dispatch) {
+			this.connection = connection;
+			this.transportContext = transportContext;
+			this.messageContext = messageContext;
+			this.dispatch = dispatch;
+			// a separate future, so that cancelling the response does not complete the dispatch
+			dispatch.whenComplete(new BiConsumer<Object, Throwable>() {
+
+				@Override
+				public void accept(Object value, Throwable failure) {
+					if (failure != null) {
+						response.completeExceptionally(failure);
+					} else {
+						response.complete(value);
+					}
+				}
+			});
+		}
+
+		/** Returns the connection. */
+		public WebServiceConnection getConnection() {
+			return connection;
+		}
+
+		/**
+		 * Returns the stage that completes when the response is available, or completes exceptionally when the
+		 * asynchronous processing failed.
+		 */
+		public CompletionStage<?> getResponse() {
+			return response;
+		}
+
+		/**
+		 * Returns the stage that completes when the processing itself has completed, even if the response has been
+		 * cancelled. Resources that the endpoint and interceptors may still use should only be released after it.
+		 */
+		public CompletionStage<?> getDispatch() {
+			return dispatch;
+		}
+
+		/**
+		 * Cancels the pending response, if it is not available yet. This does not stop the processing, which may continue
+		 * on another thread; its result is discarded.
+		 */
+		public void cancel() {
+			response.cancel(false);
+		}
+	}
+
 }
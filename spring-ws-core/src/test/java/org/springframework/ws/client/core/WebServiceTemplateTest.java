@@ -29,11 +29,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.oxm.Marshaller;
 import org.springframework.oxm.Unmarshaller;
+import org.springframework.ws.DisposableWebServiceMessage;
 import org.springframework.ws.MockWebServiceMessage;
 import org.springframework.ws.MockWebServiceMessageFactory;
 import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.client.WebServiceIOException;
 import org.springframework.ws.client.WebServiceTransportException;
 import org.springframework.ws.client.support.destination.DestinationProvider;
+import org.springframework.ws.client.support.destination.LoadBalancingDestinationProvider;
+import org.springframework.ws.client.support.destination.LoadBalancingDestinationProvider.ExchangeOutcome;
 import org.springframework.ws.client.support.interceptor.ClientInterceptor;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
@@ -139,6 +143,69 @@ public class WebServiceTemplateTest {
 		verify(connectionMock, requestCallback, extractorMock);
 	}
 
+	@Test
+	public void testSendAndReceiveDisposesExtractedResponse() throws Exception {
+
+		DisposableWebServiceMessage response = createMock(DisposableWebServiceMessage.class);
+		response.dispose();
+
+		connectionMock.send(isA(WebServiceMessage.class));
+		expect(connectionMock.hasError()).andReturn(false);
+		expect(connectionMock.receive(messageFactory)).andReturn(response);
+		expect(connectionMock.hasFault()).andReturn(false);
+		connectionMock.close();
+
+		replay(connectionMock, response);
+
+		Object result = template.sendAndReceive(null, (WebServiceMessageExtractor<Object>) message -> message);
+
+		assertThat(result).isSameAs(response);
+
+		verify(connectionMock, response);
+	}
+
+	@Test
+	public void testSendAndReceiveKeepsExtractedResponse() throws Exception {
+
+		DisposableWebServiceMessage response = createMock(DisposableWebServiceMessage.class);
+
+		connectionMock.send(isA(WebServiceMessage.class));
+		expect(connectionMock.hasError()).andReturn(false);
+		expect(connectionMock.receive(messageFactory)).andReturn(response);
+		expect(connectionMock.hasFault()).andReturn(false);
+		connectionMock.close();
+
+		replay(connectionMock, response);
+
+		template.setDisposeExtractedResponses(false);
+		Object result = template.sendAndReceive(null, (WebServiceMessageExtractor<Object>) message -> message);
+
+		assertThat(result).isSameAs(response);
+
+		verify(connectionMock, response);
+	}
+
+	@Test
+	public void testSendAndReceiveDisposesResponseOnError() throws Exception {
+
+		DisposableWebServiceMessage response = createMock(DisposableWebServiceMessage.class);
+		response.dispose();
+
+		connectionMock.send(isA(WebServiceMessage.class));
+		expect(connectionMock.hasError()).andReturn(false);
+		expect(connectionMock.receive(messageFactory)).andReturn(response);
+		expect(connectionMock.hasFault()).andReturn(false);
+		connectionMock.close();
+
+		replay(connectionMock, response);
+
+		assertThatIllegalStateException().isThrownBy(() -> template.sendAndReceive(null, (WebServiceMessageExtractor<Object>) message -> {
+			throw new IllegalStateException();
+		}));
+
+		verify(connectionMock, response);
+	}
+
 	@Test
 	public void testSendAndReceiveMessageNoResponse() throws Exception {
 
@@ -527,4 +594,91 @@ public class WebServiceTemplateTest {
 
 		verify(connectionMock, extractorMock, providerMock);
 	}
+
+	@Test
+	public void testLoadBalancingDestinationProvider() throws Exception {
+
+		URI providerUri = new URI("http://www.springframework.org/spring-ws");
+		LoadBalancingDestinationProvider providerMock = createMock(LoadBalancingDestinationProvider.class);
+		template.setDestinationProvider(providerMock);
+		expect(providerMock.getDestination()).andReturn(providerUri);
+		providerMock.exchangeStarted(providerUri);
+		providerMock.exchangeCompleted(eq(providerUri), anyLong(), eq(ExchangeOutcome.SUCCESS));
+
+		WebServiceMessageExtractor extractorMock = createMock(WebServiceMessageExtractor.class);
+		Object extracted = new Object();
+		expect(extractorMock.extractData(isA(WebServiceMessage.class))).andReturn(extracted);
+
+		connectionMock.send(isA(WebServiceMessage.class));
+		expect(connectionMock.hasError()).andReturn(false);
+		expect(connectionMock.receive(messageFactory)).andReturn(new MockWebServiceMessage("<response/>"));
+		expect(connectionMock.hasFault()).andReturn(false).times(2);
+		connectionMock.close();
+
+		replay(connectionMock, extractorMock, providerMock);
+
+		Object result = template.sendAndReceive(null, extractorMock);
+
+		assertThat(result).isEqualTo(extracted);
+
+		verify(connectionMock, extractorMock, providerMock);
+	}
+
+	@Test
+	public void testLoadBalancingDestinationProviderFault() throws Exception {
+
+		URI providerUri = new URI("http://www.springframework.org/spring-ws");
+		LoadBalancingDestinationProvider providerMock = createMock(LoadBalancingDestinationProvider.class);
+		template.setDestinationProvider(providerMock);
+		expect(providerMock.getDestination()).andReturn(providerUri);
+		providerMock.exchangeStarted(providerUri);
+		providerMock.exchangeCompleted(eq(providerUri), anyLong(), eq(ExchangeOutcome.FAULT));
+
+		WebServiceMessageExtractor extractorMock = createMock(WebServiceMessageExtractor.class);
+
+		FaultMessageResolver faultMessageResolverMock = createMock(FaultMessageResolver.class);
+		template.setFaultMessageResolver(faultMessageResolverMock);
+		faultMessageResolverMock.resolveFault(isA(WebServiceMessage.class));
+
+		MockWebServiceMessage response = new MockWebServiceMessage("<response/>");
+		response.setFault(true);
+
+		connectionMock.send(isA(WebServiceMessage.class));
+		expect(connectionMock.hasError()).andReturn(false);
+		expect(connectionMock.receive(messageFactory)).andReturn(response);
+		expect(connectionMock.hasFault()).andReturn(true).times(2);
+		connectionMock.close();
+
+		replay(connectionMock, extractorMock, faultMessageResolverMock, providerMock);
+
+		Object result = template.sendAndReceive(null, extractorMock);
+
+		assertThat(result).isNull();
+
+		verify(connectionMock, extractorMock, faultMessageResolverMock, providerMock);
+	}
+
+	@Test
+	public void testLoadBalancingDestinationProviderError() throws Exception {
+
+		URI providerUri = new URI("http://www.springframework.org/spring-ws");
+		LoadBalancingDestinationProvider providerMock = createMock(LoadBalancingDestinationProvider.class);
+		template.setDestinationProvider(providerMock);
+		expect(providerMock.getDestination()).andReturn(providerUri);
+		providerMock.exchangeStarted(providerUri);
+		providerMock.exchangeCompleted(eq(providerUri), anyLong(), eq(ExchangeOutcome.ERROR));
+
+		WebServiceMessageExtractor extractorMock = createMock(WebServiceMessageExtractor.class);
+
+		connectionMock.send(isA(WebServiceMessage.class));
+		expectLastCall().andThrow(new IOException("connection refused"));
+		connectionMock.close();
+
+		replay(connectionMock, extractorMock, providerMock);
+
+		assertThatExceptionOfType(WebServiceIOException.class)
+				.isThrownBy(() -> template.sendAndReceive(null, extractorMock));
+
+		verify(connectionMock, extractorMock, providerMock);
+	}
 }
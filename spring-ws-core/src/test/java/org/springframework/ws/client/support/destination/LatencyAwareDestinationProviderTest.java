@@ -0,0 +1,129 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.destination;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ws.client.support.destination.LoadBalancingDestinationProvider.ExchangeOutcome;
+
+public class LatencyAwareDestinationProviderTest {
+
+	private static final URI FAST = URI.create("http://fast.example.com/service");
+
+	private static final URI SLOW = URI.create("http://slow.example.com/service");
+
+	private LatencyAwareDestinationProvider provider;
+
+	@BeforeEach
+	public void setUp() {
+
+		provider = new LatencyAwareDestinationProvider();
+		provider.setDestinations(Arrays.asList(SLOW, FAST));
+	}
+
+	@Test
+	public void testLowestLatency() {
+
+		complete(SLOW, 50000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 10000000, ExchangeOutcome.SUCCESS);
+
+		assertThat(provider.getDestination()).isEqualTo(FAST);
+		assertThat(provider.getDestination()).isEqualTo(FAST);
+	}
+
+	@Test
+	public void testUnmeasuredPreferred() {
+
+		complete(SLOW, 50000000, ExchangeOutcome.SUCCESS);
+
+		assertThat(provider.getDestination()).isEqualTo(FAST);
+	}
+
+	@Test
+	public void testOutstandingRequests() {
+
+		complete(SLOW, 20000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 10000000, ExchangeOutcome.SUCCESS);
+		provider.exchangeStarted(FAST);
+		provider.exchangeStarted(FAST);
+
+		assertThat(provider.getDestination()).isEqualTo(SLOW);
+	}
+
+	@Test
+	public void testMovingAverage() {
+
+		provider.setSmoothingFactor(0.5);
+
+		complete(SLOW, 10000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 20000000, ExchangeOutcome.SUCCESS);
+		complete(SLOW, 50000000, ExchangeOutcome.SUCCESS);
+
+		assertThat(provider.getDestination()).isEqualTo(FAST);
+	}
+
+	@Test
+	public void testFastErrorOnSlowDestination() {
+
+		complete(SLOW, 50000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 10000000, ExchangeOutcome.SUCCESS);
+		complete(SLOW, 1000, ExchangeOutcome.ERROR);
+
+		assertThat(provider.getDestination()).isEqualTo(FAST);
+	}
+
+	@Test
+	public void testErrorPenalty() {
+
+		complete(SLOW, 50000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 10000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 1000, ExchangeOutcome.ERROR);
+
+		assertThat(provider.getDestination()).isEqualTo(SLOW);
+	}
+
+	@Test
+	public void testErrorPenaltyForUnmeasuredDestination() {
+
+		complete(SLOW, 50000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 1000, ExchangeOutcome.ERROR);
+
+		assertThat(provider.getDestination()).isEqualTo(SLOW);
+	}
+
+	@Test
+	public void testErrorPenaltyGrowsWithAverage() {
+
+		provider.setFailurePenalty(0);
+		complete(SLOW, 50000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 40000000, ExchangeOutcome.SUCCESS);
+		complete(FAST, 1000, ExchangeOutcome.ERROR);
+
+		assertThat(provider.getDestination()).isEqualTo(SLOW);
+	}
+
+	private void complete(URI destination, long elapsedNanos, ExchangeOutcome outcome) {
+		provider.exchangeStarted(destination);
+		provider.exchangeCompleted(destination, elapsedNanos, outcome);
+	}
+
+}
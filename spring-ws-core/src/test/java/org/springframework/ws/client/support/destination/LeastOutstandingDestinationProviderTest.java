@@ -0,0 +1,66 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.destination;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ws.client.support.destination.LoadBalancingDestinationProvider.ExchangeOutcome;
+
+public class LeastOutstandingDestinationProviderTest {
+
+	private static final URI FIRST = URI.create("http://first.example.com/service");
+
+	private static final URI SECOND = URI.create("http://second.example.com/service");
+
+	private LeastOutstandingDestinationProvider provider;
+
+	@BeforeEach
+	public void setUp() {
+
+		provider = new LeastOutstandingDestinationProvider();
+		provider.setDestinations(Arrays.asList(FIRST, SECOND));
+	}
+
+	@Test
+	public void testLeastOutstanding() {
+
+		provider.exchangeStarted(FIRST);
+		provider.exchangeStarted(FIRST);
+		provider.exchangeStarted(SECOND);
+
+		assertThat(provider.getDestination()).isEqualTo(SECOND);
+		assertThat(provider.getDestination()).isEqualTo(SECOND);
+
+		provider.exchangeCompleted(FIRST, 1000, ExchangeOutcome.SUCCESS);
+		provider.exchangeCompleted(FIRST, 1000, ExchangeOutcome.SUCCESS);
+
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+	}
+
+	@Test
+	public void testIdle() {
+
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+		assertThat(provider.getDestination()).isEqualTo(SECOND);
+	}
+
+}
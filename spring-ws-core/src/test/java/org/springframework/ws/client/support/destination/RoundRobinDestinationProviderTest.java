@@ -0,0 +1,132 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.destination;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ws.client.support.destination.LoadBalancingDestinationProvider.ExchangeOutcome;
+
+public class RoundRobinDestinationProviderTest {
+
+	private static final URI FIRST = URI.create("http://first.example.com/service");
+
+	private static final URI SECOND = URI.create("http://second.example.com/service");
+
+	private static final URI THIRD = URI.create("http://third.example.com/service");
+
+	private RoundRobinDestinationProvider provider;
+
+	@BeforeEach
+	public void setUp() {
+
+		provider = new RoundRobinDestinationProvider();
+		provider.setDestinations(Arrays.asList(FIRST, SECOND, THIRD));
+	}
+
+	@Test
+	public void testRoundRobin() {
+
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+		assertThat(provider.getDestination()).isEqualTo(SECOND);
+		assertThat(provider.getDestination()).isEqualTo(THIRD);
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+	}
+
+	@Test
+	public void testEjection() {
+
+		provider.setMaxConsecutiveFailures(2);
+
+		fail(SECOND, ExchangeOutcome.ERROR);
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+		assertThat(provider.getDestination()).isEqualTo(SECOND);
+
+		fail(SECOND, ExchangeOutcome.FAULT);
+		for (int i = 0; i < 4; i++) {
+			assertThat(provider.getDestination()).isNotEqualTo(SECOND);
+		}
+	}
+
+	@Test
+	public void testSuccessResetsFailures() {
+
+		provider.setMaxConsecutiveFailures(2);
+
+		fail(FIRST, ExchangeOutcome.ERROR);
+		provider.exchangeStarted(FIRST);
+		provider.exchangeCompleted(FIRST, 1000, ExchangeOutcome.SUCCESS);
+		fail(FIRST, ExchangeOutcome.ERROR);
+
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+	}
+
+	@Test
+	public void testFaultIsNoFailure() {
+
+		provider.setMaxConsecutiveFailures(1);
+		provider.setFaultIsFailure(false);
+
+		fail(FIRST, ExchangeOutcome.FAULT);
+
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+	}
+
+	@Test
+	public void testEjectionExpires() {
+
+		provider.setMaxConsecutiveFailures(1);
+		provider.setEjectionTime(0);
+
+		fail(FIRST, ExchangeOutcome.ERROR);
+
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+	}
+
+	@Test
+	public void testAllEjected() {
+
+		provider.setMaxConsecutiveFailures(1);
+
+		fail(FIRST, ExchangeOutcome.ERROR);
+		fail(SECOND, ExchangeOutcome.ERROR);
+		fail(THIRD, ExchangeOutcome.ERROR);
+
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+		assertThat(provider.getDestination()).isEqualTo(SECOND);
+	}
+
+	@Test
+	public void testUnknownDestination() {
+
+		provider.setMaxConsecutiveFailures(1);
+
+		fail(URI.create("http://unknown.example.com/service"), ExchangeOutcome.ERROR);
+
+		assertThat(provider.getDestination()).isEqualTo(FIRST);
+	}
+
+	private void fail(URI destination, ExchangeOutcome outcome) {
+		provider.exchangeStarted(destination);
+		provider.exchangeCompleted(destination, 1000, outcome);
+	}
+
+}
@@ -20,6 +20,7 @@ import static org.assertj.core.api.Assertions.*;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -66,4 +67,15 @@ public class Wsdl11DestinationProviderTest {
 
 		assertThat(result).isEqualTo(new URI("http://example.com/soap12"));
 	}
+
+	@Test
+	public void testDestinations() throws URISyntaxException {
+		provider.setLocationExpression("/wsdl:definitions/wsdl:service/wsdl:port/*/@location");
+		Resource wsdl = new ClassPathResource("complex.wsdl", getClass());
+		provider.setWsdl(wsdl);
+
+		List<URI> result = provider.getDestinations();
+
+		assertThat(result).containsExactly(new URI("http://example.com/soap11"), new URI("http://example.com/soap12"));
+	}
 }
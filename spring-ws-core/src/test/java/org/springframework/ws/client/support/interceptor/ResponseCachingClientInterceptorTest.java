@@ -0,0 +1,230 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.client.support.interceptor;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.easymock.EasyMock.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ws.MockWebServiceMessage;
+import org.springframework.ws.MockWebServiceMessageFactory;
+import org.springframework.ws.client.core.WebServiceTemplate;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.transport.WebServiceConnection;
+import org.springframework.ws.transport.WebServiceMessageSender;
+import org.springframework.xml.transform.StringResult;
+import org.xmlunit.assertj.XmlAssert;
+
+public class ResponseCachingClientInterceptorTest {
+
+	private static final String REQUEST = "<p:getCountry xmlns:p='http://example.com'><p:name>Spain</p:name></p:getCountry>";
+
+	private static final String RESPONSE = "<getCountryResponse xmlns='http://example.com'><capital>Madrid</capital></getCountryResponse>";
+
+	private ResponseCachingClientInterceptor interceptor;
+
+	@BeforeEach
+	public void setUp() {
+		interceptor = new ResponseCachingClientInterceptor();
+	}
+
+	@Test
+	public void testTemplate() throws Exception {
+
+		final AtomicInteger sent = new AtomicInteger();
+		WebServiceTemplate template = new WebServiceTemplate(new MockWebServiceMessageFactory());
+		template.setInterceptors(new ClientInterceptor[] { interceptor });
+		template.setMessageSender(new WebServiceMessageSender() {
+
+			@Override
+			public WebServiceConnection createConnection(URI uri) throws IOException {
+				WebServiceConnection connection = createNiceMock(WebServiceConnection.class);
+				connection.send(anyObject());
+				expectLastCall().andAnswer(() -> {
+					sent.incrementAndGet();
+					return null;
+				});
+				expect(connection.receive(anyObject())).andReturn(new MockWebServiceMessage(RESPONSE));
+				replay(connection);
+				return connection;
+			}
+
+			@Override
+			public boolean supports(URI uri) {
+				return true;
+			}
+		});
+
+		for (int i = 0; i < 3; i++) {
+			StringResult result = new StringResult();
+			template.sendSourceAndReceiveToResult("http://example.com/a", new StreamSource(new StringReader(REQUEST)),
+					result);
+			XmlAssert.assertThat(result.toString()).and(RESPONSE).ignoreWhitespace().areSimilar();
+		}
+
+		assertThat(sent.get()).isEqualTo(1);
+
+		template.sendSourceAndReceiveToResult("http://example.com/b", new StreamSource(new StringReader(REQUEST)),
+				new StringResult());
+
+		assertThat(sent.get()).isEqualTo(2);
+		assertThat(interceptor.getCacheCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testFaultNotCached() throws Exception {
+
+		MessageContext context = createContext();
+
+		assertThat(interceptor.handleRequest(context)).isTrue();
+		MockWebServiceMessage response = (MockWebServiceMessage) context.getResponse();
+		response.setPayload(RESPONSE);
+		response.setFault(true);
+		interceptor.handleFault(context);
+		interceptor.afterCompletion(context, null);
+
+		assertThat(interceptor.getCacheCount()).isEqualTo(0);
+		assertThat(interceptor.handleRequest(createContext())).isTrue();
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+
+		interceptor.setTimeToLive(1);
+		cache();
+
+		Thread.sleep(5);
+
+		assertThat(interceptor.handleRequest(createContext())).isTrue();
+		assertThat(interceptor.getCacheCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testStaleWhileRevalidate() throws Exception {
+
+		interceptor.setTimeToLive(1);
+		interceptor.setStaleWhileRevalidate(60000);
+		cache();
+
+		Thread.sleep(5);
+
+		MessageContext revalidating = createContext();
+		assertThat(interceptor.handleRequest(revalidating)).isTrue();
+
+		MessageContext stale = createContext();
+		assertThat(interceptor.handleRequest(stale)).isFalse();
+		XmlAssert.assertThat(((MockWebServiceMessage) stale.getResponse()).getPayloadAsString()).and(RESPONSE)
+				.ignoreWhitespace().areSimilar();
+	}
+
+	@Test
+	public void testCoalescing() throws Exception {
+
+		MessageContext first = createContext();
+		assertThat(interceptor.handleRequest(first)).isTrue();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final MessageContext second = createContext();
+			Future<Boolean> future = executor.submit(() -> interceptor.handleRequest(second));
+
+			Thread.sleep(50);
+			assertThat(future.isDone()).isFalse();
+
+			((MockWebServiceMessage) first.getResponse()).setPayload(RESPONSE);
+			interceptor.handleResponse(first);
+			interceptor.afterCompletion(first, null);
+
+			assertThat(future.get(5, TimeUnit.SECONDS)).isFalse();
+			XmlAssert.assertThat(((MockWebServiceMessage) second.getResponse()).getPayloadAsString()).and(RESPONSE)
+					.ignoreWhitespace().areSimilar();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCoalescingError() throws Exception {
+
+		MessageContext first = createContext();
+		assertThat(interceptor.handleRequest(first)).isTrue();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final MessageContext second = createContext();
+			Future<Boolean> future = executor.submit(() -> interceptor.handleRequest(second));
+
+			interceptor.afterCompletion(first, new IOException());
+
+			assertThat(future.get(5, TimeUnit.SECONDS)).isTrue();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCoalescingTimeout() throws Exception {
+
+		interceptor.setCoalescingTimeout(50);
+		MessageContext first = createContext();
+		assertThat(interceptor.handleRequest(first)).isTrue();
+
+		assertThat(interceptor.handleRequest(createContext())).isTrue();
+	}
+
+	@Test
+	public void testPayloadRootQNames() throws Exception {
+
+		interceptor.setPayloadRootQNames(new QName("http://example.com", "getCapital"));
+		cache();
+
+		assertThat(interceptor.getCacheCount()).isEqualTo(0);
+
+		interceptor.setPayloadRootQNames(new QName("http://example.com", "getCountry"));
+		cache();
+
+		assertThat(interceptor.getCacheCount()).isEqualTo(1);
+		assertThat(interceptor.handleRequest(createContext())).isFalse();
+	}
+
+	private void cache() {
+		MessageContext context = createContext();
+		interceptor.handleRequest(context);
+		((MockWebServiceMessage) context.getResponse()).setPayload(RESPONSE);
+		interceptor.handleResponse(context);
+		interceptor.afterCompletion(context, null);
+	}
+
+	private MessageContext createContext() {
+		return new DefaultMessageContext(new MockWebServiceMessage(REQUEST), new MockWebServiceMessageFactory());
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.mime;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import javax.activation.DataHandler;
+import javax.activation.FileDataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileDataHandlerTest {
+
+	@TempDir
+	File tempDirectory;
+
+	private File file;
+
+	private byte[] contents;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+
+		contents = new byte[200 * 1024 + 17];
+		new Random(42).nextBytes(contents);
+		file = new File(tempDirectory, "contents.bin");
+		Files.write(file.toPath(), contents);
+	}
+
+	@Test
+	public void testWriteToStream() throws Exception {
+
+		FileDataHandler dataHandler = new FileDataHandler(file, 1000);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		dataHandler.writeTo(os);
+
+		assertThat(os.toByteArray()).isEqualTo(contents);
+	}
+
+	@Test
+	public void testWriteToFile() throws Exception {
+
+		FileDataHandler dataHandler = new FileDataHandler(file);
+		File target = new File(tempDirectory, "target.bin");
+
+		try (OutputStream os = new FileOutputStream(target)) {
+			os.write('A');
+			dataHandler.writeTo(os);
+			os.write('Z');
+		}
+
+		byte[] result = Files.readAllBytes(target.toPath());
+		assertThat(result).hasSize(contents.length + 2);
+		assertThat(result[0]).isEqualTo((byte) 'A');
+		assertThat(result[result.length - 1]).isEqualTo((byte) 'Z');
+		byte[] copy = new byte[contents.length];
+		System.arraycopy(result, 1, copy, 0, contents.length);
+		assertThat(copy).isEqualTo(contents);
+	}
+
+	@Test
+	public void testComparedToDataHandler() throws Exception {
+
+		contents = new byte[4 * 1024 * 1024];
+		new Random(42).nextBytes(contents);
+		Files.write(file.toPath(), contents);
+		DataHandler plain = new DataHandler(new FileDataSource(file));
+		FileDataHandler dataHandler = new FileDataHandler(file);
+
+		// this handler writes in blocks that are eight times larger, so the stream is called far less often
+		CountingOutputStream plainStream = new CountingOutputStream();
+		CountingOutputStream blockStream = new CountingOutputStream();
+		plain.writeTo(plainStream);
+		dataHandler.writeTo(blockStream);
+
+		assertThat(blockStream.size()).isEqualTo(contents.length);
+		assertThat(blockStream.writes).isEqualTo(contents.length / FileDataHandler.DEFAULT_BLOCK_SIZE);
+		assertThat(plainStream.writes).isGreaterThanOrEqualTo(blockStream.writes * 8);
+	}
+
+	@Test
+	public void testEmptyFile() throws Exception {
+
+		File empty = new File(tempDirectory, "empty.bin");
+		Files.write(empty.toPath(), new byte[0]);
+		FileDataHandler dataHandler = new FileDataHandler(empty);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		dataHandler.writeTo(os);
+
+		assertThat(os.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testDataSource() throws Exception {
+
+		FileDataHandler dataHandler = new FileDataHandler(file);
+
+		assertThat(dataHandler.getName()).isEqualTo("contents.bin");
+		assertThat(dataHandler.getFile()).isEqualTo(file);
+	}
+
+	private static class CountingOutputStream extends ByteArrayOutputStream {
+
+		private int writes;
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			writes++;
+			super.write(b, off, len);
+		}
+	}
+
+}
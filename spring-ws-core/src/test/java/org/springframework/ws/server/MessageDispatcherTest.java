@@ -20,6 +20,8 @@ import static org.assertj.core.api.Assertions.*;
 import static org.easymock.EasyMock.*;
 
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,6 +29,7 @@ import org.springframework.context.support.StaticApplicationContext;
 import org.springframework.ws.MockWebServiceMessage;
 import org.springframework.ws.NoEndpointFoundException;
 import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.server.endpoint.adapter.PayloadEndpointAdapter;
@@ -384,6 +387,111 @@ public class MessageDispatcherTest {
 		verify(mappingMock, interceptorMock, adapterMock, factoryMock);
 	}
 
+	@Test
+	public void testAsyncFlow() throws Exception {
+
+		EndpointAdapter adapterMock = createMock(EndpointAdapter.class);
+		dispatcher.setEndpointAdapters(Collections.singletonList(adapterMock));
+
+		Object endpoint = new Object();
+		expect(adapterMock.supports(endpoint)).andReturn(true);
+
+		EndpointMapping mappingMock = createMock(EndpointMapping.class);
+		dispatcher.setEndpointMappings(Collections.singletonList(mappingMock));
+
+		EndpointInterceptor interceptorMock = createStrictMock("interceptor", EndpointInterceptor.class);
+
+		expect(interceptorMock.handleRequest(messageContext, endpoint)).andReturn(true);
+
+		final CompletableFuture<Object> asyncResult = new CompletableFuture<Object>();
+		adapterMock.invoke(messageContext, endpoint);
+		expectLastCall().andAnswer(() -> {
+			AsyncResponseUtils.setAsyncResponse(messageContext, asyncResult);
+			return null;
+		});
+
+		EndpointInvocationChain chain = new EndpointInvocationChain(endpoint,
+				new EndpointInterceptor[] { interceptorMock });
+
+		expect(mappingMock.getEndpoint(messageContext)).andReturn(chain);
+		expect(factoryMock.createWebServiceMessage()).andReturn(new MockWebServiceMessage());
+
+		replay(mappingMock, interceptorMock, adapterMock, factoryMock);
+
+		// response required for interceptor invocation
+		messageContext.getResponse();
+		dispatcher.dispatch(messageContext);
+
+		CompletionStage<?> asyncResponse = AsyncResponseUtils.getAsyncResponse(messageContext);
+		assertThat(asyncResponse).isNotSameAs(asyncResult);
+		assertThat(asyncResponse.toCompletableFuture()).isNotDone();
+
+		verify(mappingMock, interceptorMock, adapterMock, factoryMock);
+		reset(interceptorMock);
+
+		expect(interceptorMock.handleResponse(messageContext, endpoint)).andReturn(true);
+		interceptorMock.afterCompletion(messageContext, endpoint, null);
+
+		replay(interceptorMock);
+
+		asyncResult.complete(null);
+
+		assertThat(asyncResponse.toCompletableFuture()).isCompleted();
+
+		verify(interceptorMock);
+	}
+
+	@Test
+	public void testAsyncResolveException() throws Exception {
+
+		EndpointAdapter adapterMock = createMock(EndpointAdapter.class);
+		dispatcher.setEndpointAdapters(Collections.singletonList(adapterMock));
+
+		Object endpoint = new Object();
+		expect(adapterMock.supports(endpoint)).andReturn(true);
+
+		EndpointMapping mappingMock = createMock(EndpointMapping.class);
+		dispatcher.setEndpointMappings(Collections.singletonList(mappingMock));
+
+		EndpointExceptionResolver resolverMock = createMock(EndpointExceptionResolver.class);
+		dispatcher.setEndpointExceptionResolvers(Collections.singletonList(resolverMock));
+
+		EndpointInterceptor interceptorMock = createStrictMock("interceptor", EndpointInterceptor.class);
+
+		expect(interceptorMock.handleRequest(messageContext, endpoint)).andReturn(true);
+
+		RuntimeException exception = new RuntimeException();
+		adapterMock.invoke(messageContext, endpoint);
+		expectLastCall().andAnswer(() -> {
+			CompletableFuture<Object> asyncResult = new CompletableFuture<Object>();
+			asyncResult.completeExceptionally(exception);
+			AsyncResponseUtils.setAsyncResponse(messageContext, asyncResult);
+			return null;
+		});
+
+		expect(resolverMock.resolveException(messageContext, endpoint, exception)).andReturn(true);
+
+		expect(interceptorMock.handleResponse(messageContext, endpoint)).andReturn(true);
+
+		interceptorMock.afterCompletion(messageContext, endpoint, null);
+
+		EndpointInvocationChain chain = new EndpointInvocationChain(endpoint,
+				new EndpointInterceptor[] { interceptorMock });
+
+		expect(mappingMock.getEndpoint(messageContext)).andReturn(chain);
+		expect(factoryMock.createWebServiceMessage()).andReturn(new MockWebServiceMessage());
+
+		replay(mappingMock, interceptorMock, adapterMock, factoryMock, resolverMock);
+
+		// response required for interceptor invocation
+		messageContext.getResponse();
+		dispatcher.dispatch(messageContext);
+
+		AsyncResponseUtils.awaitAsyncResponse(messageContext);
+
+		verify(mappingMock, interceptorMock, adapterMock, factoryMock, resolverMock);
+	}
+
 	@Test
 	public void testNoEndpointFound() throws Exception {
 
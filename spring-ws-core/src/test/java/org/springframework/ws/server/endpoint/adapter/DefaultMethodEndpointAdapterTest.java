@@ -22,12 +22,16 @@ import static org.easymock.EasyMock.*;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
+import org.easymock.Capture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.MethodParameter;
 import org.springframework.ws.MockWebServiceMessage;
 import org.springframework.ws.MockWebServiceMessageFactory;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.server.endpoint.MethodEndpoint;
@@ -53,8 +57,12 @@ public class DefaultMethodEndpointAdapterTest {
 
 	private MethodEndpoint exceptionEndpoint;
 
+	private MethodEndpoint asyncEndpoint;
+
 	private String supportedArgument;
 
+	private CompletableFuture<String> asyncResult;
+
 	@BeforeEach
 	public void setUp() throws Exception {
 
@@ -68,6 +76,8 @@ public class DefaultMethodEndpointAdapterTest {
 		nullReturnValue = new MethodEndpoint(this, "nullReturnValue", String.class);
 		unsupportedEndpoint = new MethodEndpoint(this, "unsupported", String.class);
 		exceptionEndpoint = new MethodEndpoint(this, "exception", String.class);
+		asyncEndpoint = new MethodEndpoint(this, "async", String.class);
+		asyncResult = new CompletableFuture<String>();
 	}
 
 	@Test
@@ -204,6 +214,79 @@ public class DefaultMethodEndpointAdapterTest {
 		verify(argumentResolver1, argumentResolver2, returnValueHandler);
 	}
 
+	@Test
+	public void supportsAsync() {
+
+		Capture<MethodParameter> returnType = newCapture();
+		expect(argumentResolver1.supportsParameter(isA(MethodParameter.class))).andReturn(true);
+		expect(returnValueHandler.supportsReturnType(capture(returnType))).andReturn(true);
+
+		replay(argumentResolver1, argumentResolver2, returnValueHandler);
+
+		assertThat(adapter.supports(asyncEndpoint)).isTrue();
+		assertThat(returnType.getValue().getParameterType()).isEqualTo(String.class);
+
+		verify(argumentResolver1, argumentResolver2, returnValueHandler);
+	}
+
+	@Test
+	public void invokeAsync() throws Exception {
+
+		MockWebServiceMessage request = new MockWebServiceMessage("<root xmlns='http://springframework.org'/>");
+		MessageContext messageContext = new DefaultMessageContext(request, new MockWebServiceMessageFactory());
+
+		String value = "Foo";
+
+		expect(argumentResolver1.supportsParameter(isA(MethodParameter.class))).andReturn(true);
+		expect(argumentResolver1.resolveArgument(eq(messageContext), isA(MethodParameter.class))).andReturn(value);
+
+		replay(argumentResolver1, argumentResolver2, returnValueHandler);
+
+		adapter.invoke(messageContext, asyncEndpoint);
+
+		CompletionStage<?> asyncResponse = AsyncResponseUtils.getAsyncResponse(messageContext);
+		assertThat(asyncResponse).isNotNull();
+		assertThat(asyncResponse.toCompletableFuture()).isNotDone();
+
+		verify(argumentResolver1, argumentResolver2, returnValueHandler);
+		reset(returnValueHandler);
+
+		expect(returnValueHandler.supportsReturnType(isA(MethodParameter.class))).andReturn(true);
+		returnValueHandler.handleReturnValue(eq(messageContext), isA(MethodParameter.class), eq(value));
+
+		replay(returnValueHandler);
+
+		asyncResult.complete(value);
+
+		assertThat(asyncResponse.toCompletableFuture()).isCompleted();
+
+		verify(returnValueHandler);
+	}
+
+	@Test
+	public void invokeAsyncException() throws Exception {
+
+		MockWebServiceMessage request = new MockWebServiceMessage("<root xmlns='http://springframework.org'/>");
+		MessageContext messageContext = new DefaultMessageContext(request, new MockWebServiceMessageFactory());
+
+		expect(argumentResolver1.supportsParameter(isA(MethodParameter.class))).andReturn(true);
+		expect(argumentResolver1.resolveArgument(eq(messageContext), isA(MethodParameter.class))).andReturn("Foo");
+
+		replay(argumentResolver1, argumentResolver2, returnValueHandler);
+
+		adapter.invoke(messageContext, asyncEndpoint);
+		asyncResult.completeExceptionally(new IOException("Foo"));
+
+		try {
+			AsyncResponseUtils.awaitAsyncResponse(messageContext);
+			fail("IOException expected");
+		} catch (IOException expected) {
+			// expected
+		}
+
+		verify(argumentResolver1, argumentResolver2, returnValueHandler);
+	}
+
 	public String supported(String s, Integer i) {
 
 		supportedArgument = s;
@@ -226,4 +309,10 @@ public class DefaultMethodEndpointAdapterTest {
 		supportedArgument = s;
 		throw new IOException(s);
 	}
+
+	public CompletableFuture<String> async(String s) {
+
+		supportedArgument = s;
+		return asyncResult;
+	}
 }
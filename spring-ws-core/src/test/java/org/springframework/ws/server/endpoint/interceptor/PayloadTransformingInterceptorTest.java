@@ -34,6 +34,8 @@ import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.pox.dom.DomPoxMessage;
 import org.springframework.ws.pox.dom.DomPoxMessageFactory;
+import org.springframework.ws.soap.axiom.AxiomSoapMessage;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
 import org.springframework.ws.soap.saaj.SaajSoapMessage;
 import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
 import org.springframework.xml.sax.SaxUtils;
@@ -182,6 +184,110 @@ public class PayloadTransformingInterceptorTest {
 
 	}
 
+	@Test
+	public void testHandleRequestSinglePass() throws Exception {
+
+		interceptor.setRequestXslt(xslt);
+		interceptor.setSinglePass(true);
+		interceptor.afterPropertiesSet();
+
+		StringResult expected = new StringResult();
+		transformer.transform(new SAXSource(SaxUtils.createInputSource(output)), expected);
+
+		// twice, to reuse the cached transformer
+		for (int i = 0; i < 2; i++) {
+			MockWebServiceMessage request = new MockWebServiceMessage(input);
+			MessageContext context = new DefaultMessageContext(request, new MockWebServiceMessageFactory());
+
+			assertThat(interceptor.handleRequest(context, null)).isTrue();
+
+			XmlAssert.assertThat(request.getPayloadAsString()).and(expected.toString()).ignoreWhitespace().areSimilar();
+		}
+	}
+
+	@Test
+	public void testHandleResponseSinglePass() throws Exception {
+
+		interceptor.setResponseXslt(xslt);
+		interceptor.setSinglePass(true);
+		interceptor.afterPropertiesSet();
+		MockWebServiceMessage request = new MockWebServiceMessage(input);
+		MessageContext context = new DefaultMessageContext(request, new MockWebServiceMessageFactory());
+		MockWebServiceMessage response = (MockWebServiceMessage) context.getResponse();
+		response.setPayload(input);
+
+		assertThat(interceptor.handleResponse(context, null)).isTrue();
+
+		StringResult expected = new StringResult();
+		transformer.transform(new SAXSource(SaxUtils.createInputSource(output)), expected);
+
+		XmlAssert.assertThat(response.getPayloadAsString()).and(expected.toString()).ignoreWhitespace().areSimilar();
+	}
+
+	@Test
+	public void testSaajSinglePass() throws Exception {
+
+		interceptor.setRequestXslt(xslt);
+		interceptor.setSinglePass(true);
+		interceptor.afterPropertiesSet();
+		MessageFactory messageFactory = MessageFactory.newInstance();
+		SOAPMessage saajMessage = messageFactory.createMessage();
+		SaajSoapMessage message = new SaajSoapMessage(saajMessage);
+		transformer.transform(new ResourceSource(input), message.getPayloadResult());
+		MessageContext context = new DefaultMessageContext(message, new SaajSoapMessageFactory(messageFactory));
+
+		assertThat(interceptor.handleRequest(context, null)).isTrue();
+
+		StringResult expected = new StringResult();
+		transformer.transform(new SAXSource(SaxUtils.createInputSource(output)), expected);
+		StringResult result = new StringResult();
+		transformer.transform(message.getPayloadSource(), result);
+
+		XmlAssert.assertThat(result.toString()).and(expected.toString()).ignoreWhitespace().areSimilar();
+	}
+
+	@Test
+	public void testAxiomSinglePass() throws Exception {
+
+		interceptor.setRequestXslt(xslt);
+		interceptor.setSinglePass(true);
+		interceptor.afterPropertiesSet();
+		AxiomSoapMessageFactory messageFactory = new AxiomSoapMessageFactory();
+		AxiomSoapMessage message = messageFactory.createWebServiceMessage();
+		transformer.transform(new ResourceSource(input), message.getPayloadResult());
+		MessageContext context = new DefaultMessageContext(message, messageFactory);
+
+		assertThat(interceptor.handleRequest(context, null)).isTrue();
+
+		StringResult expected = new StringResult();
+		transformer.transform(new SAXSource(SaxUtils.createInputSource(output)), expected);
+		StringResult result = new StringResult();
+		transformer.transform(message.getPayloadSource(), result);
+
+		XmlAssert.assertThat(result.toString()).and(expected.toString()).ignoreWhitespace().areSimilar();
+	}
+
+	@Test
+	public void testPoxSinglePass() throws Exception {
+
+		interceptor.setRequestXslt(xslt);
+		interceptor.setSinglePass(true);
+		interceptor.afterPropertiesSet();
+		DomPoxMessageFactory factory = new DomPoxMessageFactory();
+		DomPoxMessage message = factory.createWebServiceMessage();
+		transformer.transform(new ResourceSource(input), message.getPayloadResult());
+		MessageContext context = new DefaultMessageContext(message, factory);
+
+		assertThat(interceptor.handleRequest(context, null)).isTrue();
+
+		StringResult expected = new StringResult();
+		transformer.transform(new SAXSource(SaxUtils.createInputSource(output)), expected);
+		StringResult result = new StringResult();
+		transformer.transform(message.getPayloadSource(), result);
+
+		XmlAssert.assertThat(result.toString()).and(expected.toString()).ignoreWhitespace().areSimilar();
+	}
+
 	@Test
 	public void testNoStylesheetsSet() {
 		assertThatIllegalArgumentException().isThrownBy(() -> interceptor.afterPropertiesSet());
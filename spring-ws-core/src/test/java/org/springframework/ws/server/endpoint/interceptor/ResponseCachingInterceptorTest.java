@@ -0,0 +1,287 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.server.endpoint.interceptor;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ws.MockWebServiceMessage;
+import org.springframework.ws.MockWebServiceMessageFactory;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
+import org.xmlunit.assertj.XmlAssert;
+
+public class ResponseCachingInterceptorTest {
+
+	private static final String REQUEST = "<p:getCountry xmlns:p='http://example.com' a='1' b='2'><p:name>Spain</p:name></p:getCountry>";
+
+	private static final String RESPONSE = "<getCountryResponse xmlns='http://example.com'><capital>Madrid</capital></getCountryResponse>";
+
+	private ResponseCachingInterceptor interceptor;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+
+		interceptor = new ResponseCachingInterceptor();
+		interceptor.afterPropertiesSet();
+	}
+
+	@Test
+	public void testCacheMissAndHit() throws Exception {
+
+		MessageContext context = createContext(REQUEST);
+
+		assertThat(interceptor.handleRequest(context, null)).isTrue();
+		((MockWebServiceMessage) context.getResponse()).setPayload(RESPONSE);
+		assertThat(interceptor.handleResponse(context, null)).isTrue();
+		assertThat(interceptor.getCacheCount()).isEqualTo(1);
+
+		MessageContext cachedContext = createContext(REQUEST);
+
+		assertThat(interceptor.handleRequest(cachedContext, null)).isFalse();
+		XmlAssert.assertThat(((MockWebServiceMessage) cachedContext.getResponse()).getPayloadAsString()).and(RESPONSE)
+				.ignoreWhitespace().areSimilar();
+	}
+
+	@Test
+	public void testCanonicalRequest() throws Exception {
+
+		cache(REQUEST, RESPONSE);
+
+		MessageContext context = createContext("<q:getCountry b='2' a='1' xmlns:q='http://example.com'>\n"
+				+ "  <!-- comment --><q:name>Spain</q:name>\n</q:getCountry>");
+
+		assertThat(interceptor.handleRequest(context, null)).isFalse();
+	}
+
+	@Test
+	public void testDifferentRequest() throws Exception {
+
+		cache(REQUEST, RESPONSE);
+
+		MessageContext context = createContext(
+				"<p:getCountry xmlns:p='http://example.com' a='1' b='2'><p:name>Poland</p:name></p:getCountry>");
+
+		assertThat(interceptor.handleRequest(context, null)).isTrue();
+	}
+
+	@Test
+	public void testKeyExpressions() throws Exception {
+
+		interceptor.setNamespaces(Collections.singletonMap("p", "http://example.com"));
+		interceptor.setKeyExpressions(Collections.singletonList("/p:getCountry/p:name"));
+		interceptor.afterPropertiesSet();
+		cache(REQUEST, RESPONSE);
+
+		MessageContext context = createContext(
+				"<p:getCountry xmlns:p='http://example.com' a='3'><p:name>Spain</p:name></p:getCountry>");
+
+		assertThat(interceptor.handleRequest(context, null)).isFalse();
+	}
+
+	@Test
+	public void testPayloadRoots() throws Exception {
+
+		interceptor.setPayloadRoots(Collections.singleton(new QName("http://example.com", "getCity")));
+		cache(REQUEST, RESPONSE);
+
+		assertThat(interceptor.getCacheCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testFaultNotCached() throws Exception {
+
+		MessageContext context = createContext(REQUEST);
+
+		interceptor.handleRequest(context, null);
+		MockWebServiceMessage response = (MockWebServiceMessage) context.getResponse();
+		response.setPayload(RESPONSE);
+		response.setFault(true);
+		interceptor.handleResponse(context, null);
+
+		assertThat(interceptor.getCacheCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testMaxSize() throws Exception {
+
+		cache(REQUEST, RESPONSE);
+		long entrySize = interceptor.getCacheSize();
+		interceptor.setMaxSize(entrySize * 2);
+		interceptor.setMaxEntrySize(entrySize);
+
+		cache("<p:getCountry xmlns:p='http://example.com'><p:name>Poland</p:name></p:getCountry>", RESPONSE);
+		cache("<p:getCountry xmlns:p='http://example.com'><p:name>Italy</p:name></p:getCountry>", RESPONSE);
+
+		assertThat(interceptor.getCacheCount()).isEqualTo(2);
+		assertThat(interceptor.getCacheSize()).isEqualTo(entrySize * 2);
+		assertThat(interceptor.handleRequest(createContext(REQUEST), null)).isTrue();
+	}
+
+	@Test
+	public void testMaxEntrySize() throws Exception {
+
+		interceptor.setMaxEntrySize(10);
+
+		cache(REQUEST, RESPONSE);
+
+		assertThat(interceptor.getCacheCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+
+		interceptor.setTimeToLive(1);
+		cache(REQUEST, RESPONSE);
+
+		Thread.sleep(5);
+
+		assertThat(interceptor.handleRequest(createContext(REQUEST), null)).isTrue();
+		assertThat(interceptor.getCacheCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testStreamingResponse() throws Exception {
+
+		cache(REQUEST, RESPONSE);
+		AxiomSoapMessageFactory messageFactory = new AxiomSoapMessageFactory();
+		messageFactory.afterPropertiesSet();
+		MessageContext context = new DefaultMessageContext(new MockWebServiceMessage(REQUEST), messageFactory);
+
+		assertThat(interceptor.handleRequest(context, null)).isFalse();
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		context.getResponse().writeTo(os);
+
+		assertThat(os.toString("UTF-8")).contains("<capital>Madrid</capital>");
+	}
+
+	@Test
+	public void testCoalescing() throws Exception {
+
+		MessageContext first = createContext(REQUEST);
+		assertThat(interceptor.handleRequest(first, null)).isTrue();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final MessageContext second = createContext(REQUEST);
+			Future<Boolean> future = executor.submit(() -> interceptor.handleRequest(second, null));
+
+			Thread.sleep(50);
+			assertThat(future.isDone()).isFalse();
+
+			((MockWebServiceMessage) first.getResponse()).setPayload(RESPONSE);
+			interceptor.handleResponse(first, null);
+			interceptor.afterCompletion(first, null, null);
+
+			assertThat(future.get(5, TimeUnit.SECONDS)).isFalse();
+			XmlAssert.assertThat(((MockWebServiceMessage) second.getResponse()).getPayloadAsString()).and(RESPONSE)
+					.ignoreWhitespace().areSimilar();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCoalescingFault() throws Exception {
+
+		MessageContext first = createContext(REQUEST);
+		assertThat(interceptor.handleRequest(first, null)).isTrue();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final MessageContext second = createContext(REQUEST);
+			Future<Boolean> future = executor.submit(() -> interceptor.handleRequest(second, null));
+
+			MockWebServiceMessage response = (MockWebServiceMessage) first.getResponse();
+			response.setPayload(RESPONSE);
+			response.setFault(true);
+			interceptor.handleResponse(first, null);
+			interceptor.afterCompletion(first, null, null);
+
+			assertThat(future.get(5, TimeUnit.SECONDS)).isTrue();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCoalescingTimeout() throws Exception {
+
+		interceptor.setCoalescingTimeout(50);
+		assertThat(interceptor.handleRequest(createContext(REQUEST), null)).isTrue();
+
+		assertThat(interceptor.handleRequest(createContext(REQUEST), null)).isTrue();
+	}
+
+	@Test
+	public void testCoalescingBoundedByLatency() throws Exception {
+
+		cache("<p:getCountry xmlns:p='http://example.com'><p:name>Poland</p:name></p:getCountry>", RESPONSE);
+		assertThat(interceptor.handleRequest(createContext(REQUEST), null)).isTrue();
+		// the first request now takes longer than twice the time the endpoint took before
+		Thread.sleep(500);
+
+		long start = System.nanoTime();
+
+		assertThat(interceptor.handleRequest(createContext(REQUEST), null)).isTrue();
+		assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+
+		String poland = "<p:getCountry xmlns:p='http://example.com'><p:name>Poland</p:name></p:getCountry>";
+		cache(REQUEST, RESPONSE);
+		long entrySize = interceptor.getCacheSize();
+		interceptor.setMaxSize(entrySize * 2);
+		interceptor.setMaxEntrySize(entrySize);
+		cache(poland, RESPONSE);
+
+		assertThat(interceptor.handleRequest(createContext(REQUEST), null)).isFalse();
+
+		cache("<p:getCountry xmlns:p='http://example.com'><p:name>Italy</p:name></p:getCountry>", RESPONSE);
+
+		assertThat(interceptor.getCacheCount()).isEqualTo(2);
+		assertThat(interceptor.handleRequest(createContext(REQUEST), null)).isFalse();
+		assertThat(interceptor.handleRequest(createContext(poland), null)).isTrue();
+	}
+
+	private void cache(String request, String response) throws Exception {
+		MessageContext context = createContext(request);
+		interceptor.handleRequest(context, null);
+		((MockWebServiceMessage) context.getResponse()).setPayload(response);
+		interceptor.handleResponse(context, null);
+		interceptor.afterCompletion(context, null, null);
+	}
+
+	private MessageContext createContext(String request) {
+		return new DefaultMessageContext(new MockWebServiceMessage(request), new MockWebServiceMessageFactory());
+	}
+
+}
@@ -59,4 +59,62 @@ public class PayloadRootQNameEndpointMappingTest {
 		assertThat(qName).isNotNull();
 		assertThat(qName).isEqualTo(new QName("namespace", "localname", "prefix"));
 	}
+
+	@Test
+	public void testRegisterAndUnregisterEndpoint() throws Exception {
+
+		Object endpoint = new Object();
+		mapping.registerEndpoint("{namespace}localname", endpoint);
+
+		MockWebServiceMessage request = new MockWebServiceMessage("<prefix:localname xmlns:prefix=\"namespace\"/>");
+		MessageContext context = new DefaultMessageContext(request, new MockWebServiceMessageFactory());
+
+		assertThat(mapping.getEndpointInternal(context)).isSameAs(endpoint);
+		assertThat(mapping.lookupEndpoint(new QName("namespace", "localname"))).isSameAs(endpoint);
+		assertThat(mapping.lookupEndpoint("{namespace}localname")).isSameAs(endpoint);
+
+		assertThat(mapping.unregisterEndpoint("{namespace}localname")).isSameAs(endpoint);
+
+		context = new DefaultMessageContext(request, new MockWebServiceMessageFactory());
+
+		assertThat(mapping.getEndpointInternal(context)).isNull();
+		assertThat(mapping.unregisterEndpoint("{namespace}localname")).isNull();
+	}
+
+	@Test
+	public void testLookupEndpointStringOverride() throws Exception {
+
+		final Object endpoint = new Object();
+		PayloadRootQNameEndpointMapping mapping = new PayloadRootQNameEndpointMapping() {
+
+			@Override
+			protected Object lookupEndpoint(String key) {
+				return "{namespace}localname".equals(key) ? endpoint : null;
+			}
+		};
+
+		MockWebServiceMessage request = new MockWebServiceMessage("<prefix:localname xmlns:prefix=\"namespace\"/>");
+		MessageContext context = new DefaultMessageContext(request, new MockWebServiceMessageFactory());
+
+		assertThat(mapping.getEndpointInternal(context)).isSameAs(endpoint);
+		assertThat(mapping.lookupEndpoint(new QName("namespace", "localname"))).isSameAs(endpoint);
+	}
+
+	@Test
+	public void testLookupEndpointQNameOverride() throws Exception {
+
+		final Object endpoint = new Object();
+		PayloadRootQNameEndpointMapping mapping = new PayloadRootQNameEndpointMapping() {
+
+			@Override
+			protected Object lookupEndpoint(QName qName) {
+				return new QName("namespace", "localname").equals(qName) ? endpoint : null;
+			}
+		};
+
+		MockWebServiceMessage request = new MockWebServiceMessage("<prefix:localname xmlns:prefix=\"namespace\"/>");
+		MessageContext context = new DefaultMessageContext(request, new MockWebServiceMessageFactory());
+
+		assertThat(mapping.getEndpointInternal(context)).isSameAs(endpoint);
+	}
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.server.endpoint.support;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+public class EndpointIndexProcessorTest {
+
+	@TempDir Path tempDir;
+
+	@Test
+	public void index() throws Exception {
+
+		File output = compile("OrderEndpoint", "-A" + EndpointIndexProcessor.NATIVE_IMAGE_HINTS_OPTION + "=true",
+				"package sample;\n" //
+						+ "import org.springframework.ws.server.endpoint.annotation.*;\n" //
+						+ "@Endpoint public class OrderEndpoint extends BaseEndpoint {\n" //
+						+ "  @PayloadRoot(localPart = \"Order\", namespace = \"urn:orders\") public void order() {}\n" //
+						+ "  public void helper() {}\n" //
+						+ "  @Endpoint public static class Nested {\n" //
+						+ "    @PayloadRoots({ @PayloadRoot(localPart = \"A\"), @PayloadRoot(localPart = \"B\") }) public void ab() {}\n" //
+						+ "  }\n" //
+						+ "}\n" //
+						+ "class BaseEndpoint {\n" //
+						+ "  @PayloadRoot(localPart = \"Base\") public void base() {}\n" //
+						+ "}\n");
+
+		Properties index = PropertiesLoaderUtils
+				.loadProperties(new FileSystemResource(new File(output, EndpointIndex.INDEX_LOCATION)));
+
+		assertThat(index).hasSize(2);
+		assertThat(index.getProperty("sample.OrderEndpoint")).isEqualTo("order,base");
+		assertThat(index.getProperty("sample.OrderEndpoint$Nested")).isEqualTo("ab");
+
+		String hints = new String(
+				Files.readAllBytes(new File(output, EndpointIndexProcessor.NATIVE_IMAGE_HINTS_LOCATION).toPath()),
+				StandardCharsets.UTF_8);
+
+		assertThat(hints).contains("\"name\": \"sample.OrderEndpoint\"", "\"name\": \"sample.OrderEndpoint$Nested\"");
+	}
+
+	@Test
+	public void inheritedEndpointAnnotation() throws Exception {
+
+		File output = compile("OrderEndpoint", "-Aunused=true",
+				"package sample;\n" //
+						+ "import org.springframework.ws.server.endpoint.annotation.*;\n" //
+						+ "public class OrderEndpoint extends BaseEndpoint implements Endpoints {\n" //
+						+ "  @PayloadRoot(localPart = \"Order\") public void order() {}\n" //
+						+ "  public static class FromInterface implements Endpoints {\n" //
+						+ "    @PayloadRoot(localPart = \"Other\") public void other() {}\n" //
+						+ "  }\n" //
+						+ "}\n" //
+						+ "@Endpoint abstract class BaseEndpoint {}\n" //
+						+ "@Endpoint interface Endpoints {}\n");
+
+		Properties index = PropertiesLoaderUtils
+				.loadProperties(new FileSystemResource(new File(output, EndpointIndex.INDEX_LOCATION)));
+
+		assertThat(index).containsOnlyKeys("sample.OrderEndpoint", "sample.OrderEndpoint$FromInterface",
+				"sample.BaseEndpoint");
+		assertThat(index.getProperty("sample.OrderEndpoint")).isEqualTo("order");
+		assertThat(index.getProperty("sample.OrderEndpoint$FromInterface")).isEqualTo("other");
+	}
+
+	@Test
+	public void noEndpoints() throws Exception {
+
+		File output = compile("NoEndpoint", "-Aunused=true", "package sample;\n public class NoEndpoint {}\n");
+
+		assertThat(new File(output, EndpointIndex.INDEX_LOCATION)).doesNotExist();
+		assertThat(new File(output, EndpointIndexProcessor.NATIVE_IMAGE_HINTS_LOCATION)).doesNotExist();
+	}
+
+	@Test
+	public void incremental() throws Exception {
+
+		File output = Files.createDirectory(tempDir.resolve("classes")).toFile();
+		compile(output, false, "-Aunused=true", "OrderEndpoint",
+				"package sample;\n" //
+						+ "import org.springframework.ws.server.endpoint.annotation.*;\n" //
+						+ "@Endpoint public class OrderEndpoint {\n" //
+						+ "  @PayloadRoot(localPart = \"Order\") public void order() {}\n" //
+						+ "}\n");
+		compile(output, false, "-Aunused=true", "InvoiceEndpoint",
+				"package sample;\n" //
+						+ "import org.springframework.ws.server.endpoint.annotation.*;\n" //
+						+ "@Endpoint public class InvoiceEndpoint {\n" //
+						+ "  @PayloadRoot(localPart = \"Invoice\") public void invoice() {}\n" //
+						+ "}\n");
+
+		Properties index = PropertiesLoaderUtils
+				.loadProperties(new FileSystemResource(new File(output, EndpointIndex.INDEX_LOCATION)));
+
+		assertThat(index).hasSize(2);
+		assertThat(index.getProperty("sample.OrderEndpoint")).isEqualTo("order");
+		assertThat(index.getProperty("sample.InvoiceEndpoint")).isEqualTo("invoice");
+
+		// recompiled classes replace their entries, and deleted classes are dropped
+		Files.delete(new File(output, "sample/InvoiceEndpoint.class").toPath());
+		compile(output, false, "-Aunused=true", "OrderEndpoint",
+				"package sample;\n public class OrderEndpoint {}\n");
+
+		index = PropertiesLoaderUtils
+				.loadProperties(new FileSystemResource(new File(output, EndpointIndex.INDEX_LOCATION)));
+
+		assertThat(index).isEmpty();
+	}
+
+	private File compile(String className, String option, String source) throws Exception {
+
+		File output = Files.createDirectory(tempDir.resolve("classes")).toFile();
+		compile(output, true, option, className, source);
+		return output;
+	}
+
+	private void compile(File output, boolean procOnly, String option, String className, String source)
+			throws Exception {
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeTrue(compiler != null, "No Java compiler available");
+
+		File sourceFile = tempDir.resolve(className + ".java").toFile();
+		Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+		try {
+			fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(output));
+			List<File> classPath = new ArrayList<>();
+			classPath.add(output);
+			for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+				classPath.add(new File(entry));
+			}
+			fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+			Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(sourceFile);
+			StringWriter diagnostics = new StringWriter();
+			List<String> options = new ArrayList<>(Collections.singletonList(option));
+			if (procOnly) {
+				options.add("-proc:only");
+			}
+			JavaCompiler.CompilationTask task = compiler.getTask(diagnostics, fileManager, null, options, null, units);
+			task.setProcessors(Collections.singleton(new EndpointIndexProcessor()));
+
+			assertThat(task.call()).as(diagnostics.toString()).isTrue();
+		} finally {
+			fileManager.close();
+		}
+	}
+
+}
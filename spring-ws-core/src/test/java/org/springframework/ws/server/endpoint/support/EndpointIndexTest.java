@@ -0,0 +1,155 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.server.endpoint.support;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.namespace.QName;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.ws.server.endpoint.MethodEndpoint;
+import org.springframework.ws.server.endpoint.annotation.Endpoint;
+import org.springframework.ws.server.endpoint.annotation.PayloadRoot;
+import org.springframework.ws.server.endpoint.mapping.PayloadRootAnnotationMethodEndpointMapping;
+import org.springframework.ws.soap.addressing.server.AnnotationActionEndpointMapping;
+import org.springframework.ws.soap.addressing.server.annotation.Action;
+
+public class EndpointIndexTest {
+
+	@TempDir Path tempDir;
+
+	@Test
+	public void noIndex() {
+
+		ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+
+		assertThat(EndpointIndex.loadIndex(classLoader)).isNull();
+	}
+
+	@Test
+	public void loadIndex() throws Exception {
+
+		EndpointIndex index = EndpointIndex.loadIndex(createClassLoader(MyEndpoint.class.getName() + "=indexed\n"));
+
+		assertThat(index).isNotNull();
+		assertThat(index.isEndpoint(MyEndpoint.class)).isTrue();
+		assertThat(index.isEndpoint(Object.class)).isFalse();
+		assertThat(index.getEndpointMethodNames(MyEndpoint.class)).containsExactly("indexed");
+		assertThat(index.getEndpointMethodNames(Object.class)).isNull();
+	}
+
+	@Test
+	public void mappingUsesIndex() throws Exception {
+
+		StaticApplicationContext applicationContext = new StaticApplicationContext();
+		applicationContext.setClassLoader(createClassLoader(MyEndpoint.class.getName() + "=indexed\n"));
+		applicationContext.registerSingleton("endpoint", MyEndpoint.class);
+		applicationContext.registerSingleton("notIndexed", OtherEndpoint.class);
+		applicationContext.registerSingleton("mapping", PayloadRootAnnotationMethodEndpointMapping.class);
+		applicationContext.refresh();
+
+		IndexedMapping mapping = new IndexedMapping();
+		mapping.setApplicationContext(applicationContext);
+
+		MethodEndpoint endpoint = mapping.lookupEndpoint(new QName("indexed"));
+
+		assertThat(endpoint).isNotNull();
+		assertThat(endpoint.getMethod().getName()).isEqualTo("indexed");
+		assertThat(mapping.lookupEndpoint(new QName("other"))).isNull();
+		assertThat(mapping.lookupEndpoint(new QName("notIndexed"))).isNull();
+	}
+
+	@Test
+	public void actionMappingUsesIndex() throws Exception {
+
+		StaticApplicationContext applicationContext = new StaticApplicationContext();
+		applicationContext.setClassLoader(createClassLoader(MyActionEndpoint.class.getName() + "=indexed\n"));
+		applicationContext.registerSingleton("mapping", IndexedActionMapping.class);
+		applicationContext.registerSingleton("endpoint", MyActionEndpoint.class);
+		applicationContext.refresh();
+
+		IndexedActionMapping mapping = applicationContext.getBean(IndexedActionMapping.class);
+
+		MethodEndpoint endpoint = (MethodEndpoint) mapping.lookupEndpoint(new URI("urn:indexed"));
+
+		assertThat(endpoint).isNotNull();
+		assertThat(endpoint.getMethod().getName()).isEqualTo("indexed");
+		assertThat(mapping.lookupEndpoint(new URI("urn:other"))).isNull();
+	}
+
+	private ClassLoader createClassLoader(String contents) throws Exception {
+
+		File indexFile = tempDir.resolve(EndpointIndex.INDEX_LOCATION).toFile();
+		indexFile.getParentFile().mkdirs();
+		Files.write(indexFile.toPath(), contents.getBytes(StandardCharsets.ISO_8859_1));
+		return new URLClassLoader(new URL[] { tempDir.toUri().toURL() }, getClass().getClassLoader());
+	}
+
+	private static class IndexedMapping extends PayloadRootAnnotationMethodEndpointMapping {
+
+		@Override
+		public MethodEndpoint lookupEndpoint(QName key) {
+			return super.lookupEndpoint(key);
+		}
+	}
+
+	private static class IndexedActionMapping extends AnnotationActionEndpointMapping {
+
+		@Override
+		public Object lookupEndpoint(URI action) {
+			return super.lookupEndpoint(action);
+		}
+	}
+
+	@Endpoint
+	public static class MyActionEndpoint {
+
+		@Action("urn:indexed")
+		public void indexed() {}
+
+		@Action("urn:other")
+		public void other() {}
+	}
+
+	@Endpoint
+	public static class MyEndpoint {
+
+		@PayloadRoot(localPart = "indexed")
+		public void indexed() {}
+
+		@PayloadRoot(localPart = "other")
+		public void other() {}
+	}
+
+	@Endpoint
+	public static class OtherEndpoint {
+
+		@PayloadRoot(localPart = "notIndexed")
+		public void notIndexed() {}
+	}
+
+}
@@ -19,8 +19,11 @@ package org.springframework.ws.soap.saaj;
 import static org.assertj.core.api.Assertions.*;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.xml.soap.MessageFactory;
@@ -28,9 +31,13 @@ import javax.xml.soap.SOAPConstants;
 import javax.xml.soap.SOAPMessage;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.StreamUtils;
 import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.mime.Attachment;
 import org.springframework.ws.soap.SoapMessage;
 import org.springframework.ws.soap.soap11.AbstractSoap11MessageFactoryTestCase;
+import org.springframework.ws.transport.MockTransportInputStream;
 
 public class SaajSoap11MessageFactoryTest extends AbstractSoap11MessageFactoryTestCase {
 
@@ -53,4 +60,59 @@ public class SaajSoap11MessageFactoryTest extends AbstractSoap11MessageFactoryTe
 
 		assertThat(result).startsWith("<?xml version=\"1.0\"");
 	}
+
+	@Test
+	public void attachmentCaching(@TempDir File cacheDir) throws Exception {
+
+		SaajSoapMessageFactory factory = (SaajSoapMessageFactory) messageFactory;
+		byte[] expected = readAttachment(factory);
+
+		factory.setAttachmentCaching(true);
+		factory.setAttachmentCacheDir(cacheDir);
+		factory.setAttachmentCacheThreshold(1024);
+		SaajSoapMessage message = createSwAMessage(factory);
+
+		assertThat(cacheDir.list()).hasSize(1);
+		Attachment attachment = message.getAttachment("interface21");
+		assertThat(attachment.getContentType()).isEqualTo("image/jpeg");
+		assertThat(StreamUtils.copyToByteArray(attachment.getInputStream())).isEqualTo(expected);
+		assertThat(factory.getCachedAttachmentBytes()).isEqualTo(expected.length);
+		assertThat(factory.getInMemoryAttachmentBytes()).isEqualTo(0);
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		message.writeTo(os);
+		assertThat(os.size()).isGreaterThan(expected.length);
+
+		message.dispose();
+
+		assertThat(cacheDir.list()).isEmpty();
+	}
+
+	@Test
+	public void attachmentCachingBelowThreshold(@TempDir File cacheDir) throws Exception {
+
+		SaajSoapMessageFactory factory = (SaajSoapMessageFactory) messageFactory;
+		factory.setAttachmentCaching(true);
+		factory.setAttachmentCacheDir(cacheDir);
+		factory.setAttachmentCacheThreshold(64 * 1024);
+		SaajSoapMessage message = createSwAMessage(factory);
+
+		assertThat(cacheDir.list()).isEmpty();
+		assertThat(message.getAttachment("interface21")).isNotNull();
+		assertThat(factory.getCachedAttachmentBytes()).isEqualTo(0);
+		assertThat(factory.getInMemoryAttachmentBytes()).isGreaterThan(0);
+	}
+
+	private byte[] readAttachment(SaajSoapMessageFactory factory) throws IOException {
+		SaajSoapMessage message = createSwAMessage(factory);
+		return StreamUtils.copyToByteArray(message.getAttachment("interface21").getInputStream());
+	}
+
+	private SaajSoapMessage createSwAMessage(SaajSoapMessageFactory factory) throws IOException {
+		InputStream is = AbstractSoap11MessageFactoryTestCase.class.getResourceAsStream("soap11-attachment.bin");
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Content-Type",
+				"multipart/related;" + "type=\"text/xml\";" + "boundary=\"----=_Part_0_11416420.1149699787554\"");
+		return factory.createWebServiceMessage(new MockTransportInputStream(is, headers));
+	}
 }
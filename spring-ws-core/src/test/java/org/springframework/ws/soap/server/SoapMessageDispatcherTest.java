@@ -19,28 +19,53 @@ package org.springframework.ws.soap.server;
 import static org.assertj.core.api.Assertions.*;
 import static org.easymock.EasyMock.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.namespace.QName;
 import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPBody;
 import javax.xml.soap.SOAPConstants;
 import javax.xml.soap.SOAPHeaderElement;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamSource;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.ws.WebServiceMessage;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.server.EndpointInterceptor;
+import org.springframework.ws.server.EndpointInvocationChain;
+import org.springframework.ws.server.endpoint.MessageEndpoint;
+import org.springframework.ws.server.endpoint.adapter.MessageEndpointAdapter;
+import org.springframework.ws.server.endpoint.interceptor.EndpointInterceptorAdapter;
 import org.springframework.ws.soap.SoapBody;
 import org.springframework.ws.soap.SoapHeader;
 import org.springframework.ws.soap.SoapHeaderElement;
 import org.springframework.ws.soap.SoapMessage;
 import org.springframework.ws.soap.SoapMessageFactory;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
 import org.springframework.ws.soap.saaj.SaajSoapMessage;
 import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
 import org.springframework.ws.soap.soap11.Soap11Fault;
 import org.springframework.ws.soap.soap12.Soap12Fault;
+import org.springframework.ws.transport.MockTransportInputStream;
+import org.springframework.ws.transport.TransportConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 public class SoapMessageDispatcherTest {
 
@@ -105,6 +130,27 @@ public class SoapMessageDispatcherTest {
 		verify(interceptorMock);
 	}
 
+	@Test
+	public void testProcessOptionalHeadersNotExamined() throws Exception {
+
+		MessageFactory messageFactory = MessageFactory.newInstance(SOAPConstants.SOAP_1_1_PROTOCOL);
+		SOAPMessage request = messageFactory.createMessage();
+		request.getSOAPHeader().addHeaderElement(new QName("http://www.springframework.org", "Header"));
+		SoapMessageFactory factory = new SaajSoapMessageFactory(messageFactory);
+		MessageContext context = new DefaultMessageContext(new SaajSoapMessage(request), factory);
+
+		replay(interceptorMock);
+
+		SoapEndpointInvocationChain chain = new SoapEndpointInvocationChain(new Object(),
+				new SoapEndpointInterceptor[] { interceptorMock });
+
+		boolean result = dispatcher.handleRequest(chain, context);
+
+		assertThat(result).isTrue();
+
+		verify(interceptorMock);
+	}
+
 	@Test
 	public void testProcessMustUnderstandHeadersNotUnderstoodSoap11() throws Exception {
 
@@ -281,4 +327,180 @@ public class SoapMessageDispatcherTest {
 		verify(interceptorMock);
 	}
 
+	@Test
+	public void testBatchDispatchSaaj() throws Exception {
+		batchDispatch(new SaajSoapMessageFactory(MessageFactory.newInstance()), null);
+	}
+
+	@Test
+	public void testBatchDispatchAxiom() throws Exception {
+		batchDispatch(new AxiomSoapMessageFactory(), null);
+	}
+
+	@Test
+	public void testBatchDispatchParallel() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			batchDispatch(new SaajSoapMessageFactory(MessageFactory.newInstance()), executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testBatchDispatchMaxBatchSize() throws Exception {
+
+		SoapMessageFactory factory = new SaajSoapMessageFactory(MessageFactory.newInstance());
+		configureBatchDispatch();
+		dispatcher.setMaxBatchSize(2);
+		MessageContext context = createBatchContext(factory);
+
+		dispatcher.receive(context);
+
+		assertThat(((SoapMessage) context.getResponse()).getSoapBody().hasFault()).isTrue();
+	}
+
+	@Test
+	public void testBatchDispatchEncrypted() throws Exception {
+
+		SoapMessageFactory factory = new SaajSoapMessageFactory(MessageFactory.newInstance());
+		configureBatchDispatch();
+		dispatcher.setBatchInterceptors(new EndpointInterceptor[] { new EndpointInterceptorAdapter() {
+
+			@Override
+			public boolean handleRequest(MessageContext messageContext, Object endpoint) throws Exception {
+				SOAPBody body = ((SaajSoapMessage) messageContext.getRequest()).getSaajMessage().getSOAPBody();
+				body.removeContents();
+				body.addChildElement("echo", "", "http://example.com").addTextNode("a");
+				body.addChildElement("echo", "", "http://example.com").addTextNode("b");
+				return true;
+			}
+		} });
+		String envelope = "<SOAP-ENV:Envelope xmlns:SOAP-ENV='http://schemas.xmlsoap.org/soap/envelope/'><SOAP-ENV:Body>"
+				+ "<xenc:EncryptedData xmlns:xenc='http://www.w3.org/2001/04/xmlenc#'/></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+		MessageContext context = new DefaultMessageContext(createRequest(factory, envelope), factory);
+
+		dispatcher.receive(context);
+
+		assertThat(getResponses(context)).containsExactly("echoResponse:a", "echoResponse:b");
+	}
+
+	@Test
+	public void testBatchDispatchTimeout() throws Exception {
+
+		SoapMessageFactory factory = new SaajSoapMessageFactory(MessageFactory.newInstance());
+		configureBatchDispatch();
+		dispatcher.setBatchTimeout(100);
+		MessageEndpoint endpoint = messageContext -> {
+			String text = getPayload(messageContext).getTextContent();
+			if ("c".equals(text)) {
+				Thread.sleep(1000);
+			}
+			TransformerFactory.newInstance().newTransformer().transform(
+					new StreamSource(new StringReader("<echoResponse xmlns='http://example.com'>" + text + "</echoResponse>")),
+					messageContext.getResponse().getPayloadResult());
+		};
+		dispatcher.setEndpointMappings(Collections.singletonList(messageContext -> new EndpointInvocationChain(endpoint)));
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			dispatcher.setBatchExecutor(executor);
+			MessageContext context = createBatchContext(factory);
+
+			dispatcher.receive(context);
+
+			List<String> responses = getResponses(context);
+			assertThat(responses).hasSize(3);
+			assertThat(responses.get(0)).isEqualTo("echoResponse:a");
+			assertThat(responses.get(1)).isEqualTo("echoResponse:b");
+			assertThat(responses.get(2)).startsWith("BatchFault:");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void batchDispatch(SoapMessageFactory factory, Executor executor) throws Exception {
+
+		AtomicInteger batchRequests = configureBatchDispatch();
+		dispatcher.setBatchExecutor(executor);
+		MessageContext context = createBatchContext(factory);
+
+		dispatcher.receive(context);
+
+		assertThat(batchRequests.get()).isEqualTo(1);
+		assertThat(((SoapMessage) context.getResponse()).getSoapBody().hasFault()).isFalse();
+		List<String> responses = getResponses(context);
+		assertThat(responses).hasSize(3);
+		assertThat(responses.get(0)).isEqualTo("echoResponse:a");
+		assertThat(responses.get(1)).startsWith("BatchFault:");
+		assertThat(responses.get(2)).isEqualTo("echoResponse:c");
+	}
+
+	private AtomicInteger configureBatchDispatch() {
+
+		final AtomicInteger batchRequests = new AtomicInteger();
+		dispatcher.setBatchDispatch(true);
+		dispatcher.setBatchInterceptors(new EndpointInterceptor[] { new EndpointInterceptorAdapter() {
+
+			@Override
+			public boolean handleRequest(MessageContext messageContext, Object endpoint) {
+				batchRequests.incrementAndGet();
+				return true;
+			}
+		} });
+		MessageEndpoint endpoint = messageContext -> {
+			String text = getPayload(messageContext).getTextContent();
+			TransformerFactory.newInstance().newTransformer().transform(
+					new StreamSource(new StringReader("<echoResponse xmlns='http://example.com'>" + text + "</echoResponse>")),
+					messageContext.getResponse().getPayloadResult());
+		};
+		dispatcher.setEndpointMappings(Collections.singletonList(messageContext -> {
+			return "echo".equals(getPayload(messageContext).getLocalName()) ? new EndpointInvocationChain(endpoint) : null;
+		}));
+		dispatcher.setEndpointAdapters(Collections.singletonList(new MessageEndpointAdapter()));
+		return batchRequests;
+	}
+
+	private MessageContext createBatchContext(SoapMessageFactory factory) throws Exception {
+
+		String envelope = "<SOAP-ENV:Envelope xmlns:SOAP-ENV='http://schemas.xmlsoap.org/soap/envelope/'><SOAP-ENV:Body>"
+				+ "<echo xmlns='http://example.com'>a</echo>" + "<unmapped xmlns='http://example.com'>b</unmapped>"
+				+ "<echo xmlns='http://example.com'>c</echo>" + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+		return new DefaultMessageContext(createRequest(factory, envelope), factory);
+	}
+
+	private static WebServiceMessage createRequest(SoapMessageFactory factory, String envelope) throws Exception {
+
+		return factory.createWebServiceMessage(
+				new MockTransportInputStream(new ByteArrayInputStream(envelope.getBytes(StandardCharsets.UTF_8)),
+						Collections.singletonMap(TransportConstants.HEADER_CONTENT_TYPE, "text/xml")));
+	}
+
+	private static List<String> getResponses(MessageContext context) throws Exception {
+
+		DOMResult result = new DOMResult();
+		TransformerFactory.newInstance().newTransformer()
+				.transform(((SoapMessage) context.getResponse()).getSoapBody().getSource(), result);
+		List<String> responses = new ArrayList<>();
+		for (Node node = ((Document) result.getNode()).getDocumentElement().getFirstChild(); node != null; node = node
+				.getNextSibling()) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				if (SoapMessageDispatcher.BATCH_FAULT_NAME.getLocalPart().equals(node.getLocalName())) {
+					assertThat(node.getNamespaceURI()).isEqualTo(SoapMessageDispatcher.BATCH_FAULT_NAME.getNamespaceURI());
+					assertThat(node.getFirstChild().getLocalName()).isEqualTo("Fault");
+				}
+				responses.add(node.getLocalName() + ":" + node.getTextContent().trim());
+			}
+		}
+		return responses;
+	}
+
+	private static Node getPayload(MessageContext messageContext) throws Exception {
+
+		DOMResult result = new DOMResult();
+		TransformerFactory.newInstance().newTransformer().transform(messageContext.getRequest().getPayloadSource(),
+				result);
+		return ((Document) result.getNode()).getDocumentElement();
+	}
+
 }
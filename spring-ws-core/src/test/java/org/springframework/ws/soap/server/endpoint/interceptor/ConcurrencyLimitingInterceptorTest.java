@@ -0,0 +1,202 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.server.endpoint.interceptor;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPMessage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.saaj.SaajSoapMessage;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+import org.springframework.ws.transport.context.DefaultTransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
+import org.springframework.ws.transport.http.HttpServletConnection;
+
+public class ConcurrencyLimitingInterceptorTest {
+
+	private ConcurrencyLimitingInterceptor interceptor;
+
+	private SaajSoapMessageFactory messageFactory;
+
+	private Object endpoint;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+
+		interceptor = new ConcurrencyLimitingInterceptor();
+		interceptor.setInitialLimit(2);
+		messageFactory = new SaajSoapMessageFactory(MessageFactory.newInstance());
+		endpoint = new Object();
+	}
+
+	@Test
+	public void testRejectWithFault() throws Exception {
+
+		MessageContext first = createContext("request");
+		MessageContext second = createContext("request");
+		MessageContext third = createContext("request");
+
+		assertThat(interceptor.handleRequest(first, endpoint)).isTrue();
+		assertThat(interceptor.handleRequest(second, endpoint)).isTrue();
+		assertThat(interceptor.getInFlight()).isEqualTo(2);
+
+		assertThat(interceptor.handleRequest(third, endpoint)).isFalse();
+		assertThat(((SoapMessage) third.getResponse()).getSoapBody().hasFault()).isTrue();
+		assertThat(((SoapMessage) third.getResponse()).getSoapBody().getFault().getFaultStringOrReason())
+				.isEqualTo(ConcurrencyLimitingInterceptor.DEFAULT_FAULTSTRING_OR_REASON);
+		assertThat(interceptor.getRejectedCount()).isEqualTo(1);
+
+		interceptor.afterCompletion(third, endpoint, null);
+		interceptor.afterCompletion(first, endpoint, null);
+
+		assertThat(interceptor.getInFlight()).isEqualTo(1);
+		assertThat(interceptor.handleRequest(createContext("request"), endpoint)).isTrue();
+	}
+
+	@Test
+	public void testRejectWithServiceUnavailable() throws Exception {
+
+		interceptor.setInitialLimit(1);
+		interceptor.setSendServiceUnavailable(true);
+		interceptor.setRetryAfter(5);
+		MockHttpServletResponse httpResponse = new MockHttpServletResponse();
+		HttpServletConnection connection = new HttpServletConnection(new MockHttpServletRequest(), httpResponse) {};
+		TransportContextHolder.setTransportContext(new DefaultTransportContext(connection));
+		try {
+			assertThat(interceptor.handleRequest(createContext("request"), endpoint)).isTrue();
+
+			MessageContext rejected = createContext("request");
+
+			assertThat(interceptor.handleRequest(rejected, endpoint)).isFalse();
+			assertThat(rejected.hasResponse()).isFalse();
+			assertThat(httpResponse.getStatus()).isEqualTo(503);
+			assertThat(httpResponse.getHeader("Retry-After")).isEqualTo("5");
+		} finally {
+			TransportContextHolder.setTransportContext(null);
+		}
+	}
+
+	@Test
+	public void testLimitByPayloadRoot() throws Exception {
+
+		interceptor.setInitialLimit(1);
+		interceptor.setLimitByPayloadRoot(true);
+
+		assertThat(interceptor.handleRequest(createContext("first"), endpoint)).isTrue();
+		assertThat(interceptor.handleRequest(createContext("second"), endpoint)).isTrue();
+		assertThat(interceptor.handleRequest(createContext("first"), endpoint)).isFalse();
+		assertThat(interceptor.getLimits()).containsOnlyKeys("{http://example.com}first", "{http://example.com}second");
+	}
+
+	@Test
+	public void testLimitGrowsUnderSteadyLatency() throws Exception {
+
+		interceptor.setMaxLimit(10);
+
+		// latencies are measured, so a single slow round (e.g. a GC pause) may shrink the limit again
+		int maxObservedLimit = 0;
+		for (int i = 0; i < 50; i++) {
+			List<MessageContext> contexts = new ArrayList<>();
+			for (int j = 0; j < 10; j++) {
+				MessageContext context = createContext("request");
+				if (interceptor.handleRequest(context, endpoint)) {
+					contexts.add(context);
+				}
+			}
+			for (MessageContext context : contexts) {
+				interceptor.afterCompletion(context, endpoint, null);
+			}
+			maxObservedLimit = Math.max(maxObservedLimit, interceptor.getLimits().get(endpoint.toString()));
+		}
+
+		assertThat(maxObservedLimit).isEqualTo(10);
+	}
+
+	@Test
+	public void testLimitShrinksOnErrors() throws Exception {
+
+		interceptor.setInitialLimit(10);
+
+		for (int i = 0; i < 20; i++) {
+			MessageContext context = createContext("request");
+			interceptor.handleRequest(context, endpoint);
+			interceptor.afterCompletion(context, endpoint, new IOException());
+		}
+
+		assertThat(interceptor.getLimits().get(endpoint.toString())).isLessThan(2);
+	}
+
+	@Test
+	public void testLimitShrinksOnRisingLatency() throws Exception {
+
+		interceptor.setInitialLimit(10);
+
+		for (int i = 0; i < 100; i++) {
+			complete(1);
+		}
+		assertThat(interceptor.getLimits().get(endpoint.toString())).isEqualTo(10);
+
+		for (int i = 0; i < 20; i++) {
+			complete(10);
+		}
+		assertThat(interceptor.getLimits().get(endpoint.toString())).isLessThan(10);
+	}
+
+	@Test
+	public void testMaxLimiters() throws Exception {
+
+		interceptor.setInitialLimit(1);
+		interceptor.setLimitByPayloadRoot(true);
+		interceptor.setMaxLimiters(1);
+
+		assertThat(interceptor.handleRequest(createContext("first"), endpoint)).isTrue();
+		assertThat(interceptor.handleRequest(createContext("second"), endpoint)).isTrue();
+		assertThat(interceptor.handleRequest(createContext("third"), endpoint)).isFalse();
+		assertThat(interceptor.getLimits()).hasSize(2);
+	}
+
+	/** Processes a request that takes the given number of milliseconds. */
+	private void complete(long latency) throws Exception {
+
+		MessageContext context = createContext("request");
+		assertThat(interceptor.handleRequest(context, endpoint)).isTrue();
+		context.setProperty(ConcurrencyLimitingInterceptor.class.getName() + ".START",
+				System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(latency));
+		interceptor.afterCompletion(context, endpoint, null);
+	}
+
+	private MessageContext createContext(String localName) throws Exception {
+
+		SOAPMessage request = messageFactory.getMessageFactory().createMessage();
+		request.getSOAPBody().addChildElement(localName, "ns", "http://example.com");
+		return new DefaultMessageContext(new SaajSoapMessage(request), messageFactory);
+	}
+
+}
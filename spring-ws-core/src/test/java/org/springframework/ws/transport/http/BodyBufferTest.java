@@ -0,0 +1,123 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.transport.http;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.StreamUtils;
+
+public class BodyBufferTest {
+
+	@TempDir
+	File tempDirectory;
+
+	@Test
+	public void inMemory() throws Exception {
+
+		BodyBuffer buffer = new BodyBuffer(16, -1, tempDirectory);
+		buffer.write("0123456789".getBytes(StandardCharsets.UTF_8));
+		buffer.write('A');
+		buffer.close();
+
+		assertThat(buffer.size()).isEqualTo(11);
+		assertThat(buffer.isSpilled()).isFalse();
+		assertThat(read(buffer)).isEqualTo("0123456789A");
+		assertThat(tempDirectory.list()).isEmpty();
+	}
+
+	@Test
+	public void spill() throws Exception {
+
+		BodyBuffer buffer = new BodyBuffer(16, -1, tempDirectory);
+		buffer.write("0123456789".getBytes(StandardCharsets.UTF_8));
+		buffer.write("ABCDEFGHIJ".getBytes(StandardCharsets.UTF_8));
+		buffer.write('K');
+		buffer.close();
+
+		assertThat(buffer.size()).isEqualTo(21);
+		assertThat(buffer.isSpilled()).isTrue();
+		assertThat(read(buffer)).isEqualTo("0123456789ABCDEFGHIJK");
+		assertThat(read(buffer)).isEqualTo("0123456789ABCDEFGHIJK");
+		assertThat(tempDirectory.list()).hasSize(1);
+
+		buffer.dispose();
+
+		assertThat(tempDirectory.list()).isEmpty();
+	}
+
+	@Test
+	public void maxSize() throws Exception {
+
+		BodyBuffer buffer = new BodyBuffer(16, 20, tempDirectory);
+		buffer.write("0123456789".getBytes(StandardCharsets.UTF_8));
+		buffer.write("ABCDEFGHIJ".getBytes(StandardCharsets.UTF_8));
+
+		assertThatExceptionOfType(BodyBuffer.BodyTooLargeException.class).isThrownBy(() -> buffer.write('K'));
+		assertThat(buffer.size()).isEqualTo(20);
+
+		buffer.dispose();
+
+		assertThat(tempDirectory.list()).isEmpty();
+	}
+
+	@Test
+	public void reuse() throws Exception {
+
+		BodyBuffer buffer = new BodyBuffer(32 * 1024, -1, tempDirectory);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			builder.append("0123456789");
+		}
+		buffer.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+		assertThat(buffer.size()).isEqualTo(20000);
+		assertThat(buffer.isSpilled()).isFalse();
+		assertThat(read(buffer)).isEqualTo(builder.toString());
+
+		buffer.dispose();
+		buffer.write("ABCDEFGHIJ".getBytes(StandardCharsets.UTF_8));
+
+		assertThat(buffer.size()).isEqualTo(10);
+		assertThat(read(buffer)).isEqualTo("ABCDEFGHIJ");
+
+		buffer.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+		buffer.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+		buffer.close();
+
+		assertThat(buffer.isSpilled()).isTrue();
+		assertThat(read(buffer)).isEqualTo("ABCDEFGHIJ" + builder + builder);
+
+		buffer.dispose();
+
+		assertThat(buffer.size()).isEqualTo(0);
+		assertThat(read(buffer)).isEmpty();
+		assertThat(tempDirectory.list()).isEmpty();
+	}
+
+	private String read(BodyBuffer buffer) throws Exception {
+		try (InputStream inputStream = buffer.getInputStream()) {
+			return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+		}
+	}
+
+}
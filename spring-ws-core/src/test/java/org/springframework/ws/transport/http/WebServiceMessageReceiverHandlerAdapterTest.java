@@ -19,20 +19,36 @@ package org.springframework.ws.transport.http;
 import static org.assertj.core.api.Assertions.*;
 import static org.easymock.EasyMock.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.ws.FaultAwareWebServiceMessage;
 import org.springframework.ws.InvalidXmlException;
 import org.springframework.ws.NoEndpointFoundException;
 import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.soap.SoapVersion;
 import org.springframework.ws.transport.WebServiceMessageReceiver;
@@ -182,6 +198,323 @@ public class WebServiceMessageReceiverHandlerAdapterTest {
 		verifyMockControls();
 	}
 
+	@Test
+	public void testHandlePostAsyncResponse() throws Exception {
+
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(REQUEST.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setCharacterEncoding("UTF-8");
+		httpRequest.setAsyncSupported(true);
+		expect(factoryMock.createWebServiceMessage(isA(InputStream.class))).andReturn(requestMock);
+		expect(factoryMock.createWebServiceMessage()).andReturn(responseMock);
+		expect(responseMock.getFaultCode()).andReturn(null);
+		responseMock.writeTo(isA(OutputStream.class));
+
+		replayMockControls();
+
+		CompletableFuture<Object> asyncResult = new CompletableFuture<Object>();
+		WebServiceMessageReceiver receiver = messageContext -> AsyncResponseUtils.setAsyncResponse(messageContext,
+				asyncResult.thenApply(value -> messageContext.getResponse()));
+		adapter.handle(httpRequest, httpResponse, receiver);
+
+		assertThat(httpRequest.isAsyncStarted()).isTrue();
+		assertThat(WebAsyncUtils.getAsyncManager(httpRequest).hasConcurrentResult()).isFalse();
+
+		asyncResult.complete(null);
+
+		asyncDispatch(receiver);
+
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+
+		verifyMockControls();
+	}
+
+	@Test
+	public void testHandlePostAsyncException() throws Exception {
+
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(REQUEST.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setCharacterEncoding("UTF-8");
+		httpRequest.setAsyncSupported(true);
+		expect(factoryMock.createWebServiceMessage(isA(InputStream.class))).andReturn(requestMock);
+
+		replayMockControls();
+
+		CompletableFuture<Object> asyncResult = new CompletableFuture<Object>();
+		WebServiceMessageReceiver receiver = messageContext -> AsyncResponseUtils.setAsyncResponse(messageContext,
+				asyncResult);
+		adapter.handle(httpRequest, httpResponse, receiver);
+
+		assertThat(httpRequest.isAsyncStarted()).isTrue();
+
+		asyncResult.completeExceptionally(new IllegalStateException());
+
+		asyncDispatch(receiver);
+
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+
+		verifyMockControls();
+	}
+
+	@Test
+	public void testHandlePostAsyncTimeout() throws Exception {
+
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(REQUEST.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setCharacterEncoding("UTF-8");
+		httpRequest.setAsyncSupported(true);
+		expect(factoryMock.createWebServiceMessage(isA(InputStream.class))).andReturn(requestMock);
+
+		replayMockControls();
+
+		CompletableFuture<Object> asyncResult = new CompletableFuture<Object>();
+		WebServiceMessageReceiver receiver = messageContext -> AsyncResponseUtils.setAsyncResponse(messageContext,
+				asyncResult);
+		adapter.setAsyncTimeout(1000);
+		adapter.handle(httpRequest, httpResponse, receiver);
+
+		MockAsyncContext asyncContext = (MockAsyncContext) httpRequest.getAsyncContext();
+		assertThat(asyncContext.getTimeout()).isEqualTo(1000);
+
+		for (AsyncListener listener : asyncContext.getListeners()) {
+			listener.onTimeout(new AsyncEvent(asyncContext));
+		}
+
+		// the endpoint may still be processing, so only its response is discarded
+		assertThat(asyncResult.isDone()).isFalse();
+
+		asyncDispatch(receiver);
+
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+		verifyMockControls();
+	}
+
+	@Test
+	public void testHandlePostAsyncNotSupported() throws Exception {
+
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(REQUEST.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setCharacterEncoding("UTF-8");
+		httpRequest.setAsyncSupported(false);
+		expect(factoryMock.createWebServiceMessage(isA(InputStream.class))).andReturn(requestMock);
+		expect(factoryMock.createWebServiceMessage()).andReturn(responseMock);
+		expect(responseMock.getFaultCode()).andReturn(null);
+		responseMock.writeTo(isA(OutputStream.class));
+
+		replayMockControls();
+
+		adapter.handle(httpRequest, httpResponse, (WebServiceMessageReceiver) messageContext -> AsyncResponseUtils
+				.setAsyncResponse(messageContext, CompletableFuture.supplyAsync(messageContext::getResponse)));
+
+		assertThat(httpRequest.isAsyncStarted()).isFalse();
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+
+		verifyMockControls();
+	}
+
+	@Test
+	public void testHandlePostNonBlocking() throws Exception {
+
+		httpRequest = new NonBlockingHttpServletRequest();
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(REQUEST.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setCharacterEncoding("UTF-8");
+		httpRequest.setAsyncSupported(true);
+		ByteArrayOutputStream responseContent = new ByteArrayOutputStream();
+		httpResponse = new NonBlockingHttpServletResponse(responseContent);
+		adapter.setNonBlockingIo(true);
+		adapter.setMaxInMemorySize(16);
+
+		expect(factoryMock.createWebServiceMessage(isA(InputStream.class))).andAnswer(() -> {
+			InputStream inputStream = (InputStream) getCurrentArguments()[0];
+			assertThat(StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8)).isEqualTo(REQUEST);
+			return requestMock;
+		});
+		expect(factoryMock.createWebServiceMessage()).andReturn(responseMock);
+		expect(responseMock.getFaultCode()).andReturn(null);
+		responseMock.writeTo(isA(OutputStream.class));
+		expectLastCall().andAnswer(() -> {
+			OutputStream outputStream = (OutputStream) getCurrentArguments()[0];
+			outputStream.write(REQUEST.getBytes(StandardCharsets.UTF_8));
+			return null;
+		});
+
+		replayMockControls();
+
+		adapter.handle(httpRequest, httpResponse, (WebServiceMessageReceiver) MessageContext::getResponse);
+
+		assertThat(httpRequest.isAsyncStarted()).isFalse();
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+		assertThat(httpResponse.getContentLengthLong()).isEqualTo(responseContent.size());
+		assertThat(responseContent.toString("UTF-8")).isEqualTo(REQUEST);
+
+		verifyMockControls();
+	}
+
+	@Test
+	public void testHandlePostNonBlockingReusesBuffers() throws Exception {
+
+		adapter.setNonBlockingIo(true);
+		adapter.setMaxInMemorySize(1024);
+		String shortBody = "<response/>";
+		expect(factoryMock.createWebServiceMessage(isA(InputStream.class))).andAnswer(() -> {
+			InputStream inputStream = (InputStream) getCurrentArguments()[0];
+			assertThat(StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8)).isEqualTo(REQUEST);
+			return requestMock;
+		}).andAnswer(() -> {
+			InputStream inputStream = (InputStream) getCurrentArguments()[0];
+			assertThat(StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8)).isEqualTo(shortBody);
+			return requestMock;
+		});
+		expect(factoryMock.createWebServiceMessage()).andReturn(responseMock).times(2);
+		expect(responseMock.getFaultCode()).andReturn(null).times(2);
+		responseMock.writeTo(isA(OutputStream.class));
+		expectLastCall().andAnswer(() -> {
+			OutputStream outputStream = (OutputStream) getCurrentArguments()[0];
+			outputStream.write(REQUEST.getBytes(StandardCharsets.UTF_8));
+			return null;
+		}).andAnswer(() -> {
+			OutputStream outputStream = (OutputStream) getCurrentArguments()[0];
+			outputStream.write(shortBody.getBytes(StandardCharsets.UTF_8));
+			return null;
+		});
+
+		replayMockControls();
+
+		ByteArrayOutputStream responseContent = handleNonBlocking(REQUEST);
+
+		assertThat(responseContent.toString("UTF-8")).isEqualTo(REQUEST);
+
+		// the second exchange reuses the buffers of the first one, which held longer bodies
+		responseContent = handleNonBlocking(shortBody);
+
+		assertThat(httpResponse.getContentLengthLong()).isEqualTo(shortBody.length());
+		assertThat(responseContent.toString("UTF-8")).isEqualTo(shortBody);
+
+		verifyMockControls();
+	}
+
+	private ByteArrayOutputStream handleNonBlocking(String content) throws Exception {
+		httpRequest = new NonBlockingHttpServletRequest();
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(content.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setAsyncSupported(true);
+		ByteArrayOutputStream responseContent = new ByteArrayOutputStream();
+		httpResponse = new NonBlockingHttpServletResponse(responseContent);
+
+		adapter.handle(httpRequest, httpResponse, (WebServiceMessageReceiver) MessageContext::getResponse);
+
+		assertThat(httpRequest.isAsyncStarted()).isFalse();
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+		return responseContent;
+	}
+
+	@Test
+	public void testHandlePostNonBlockingTooLarge() throws Exception {
+
+		httpRequest = new NonBlockingHttpServletRequest();
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(REQUEST.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setAsyncSupported(true);
+		adapter.setNonBlockingIo(true);
+		adapter.setMaxRequestSize(16);
+
+		replayMockControls();
+
+		adapter.handle(httpRequest, httpResponse, (WebServiceMessageReceiver) MessageContext::getResponse);
+
+		assertThat(httpRequest.isAsyncStarted()).isFalse();
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+
+		verifyMockControls();
+	}
+
+	@Test
+	public void testHandlePostNonBlockingTooLargeWithoutContentLength(@TempDir File tempDirectory) throws Exception {
+
+		httpRequest = new NonBlockingHttpServletRequest() {
+
+			@Override
+			public long getContentLengthLong() {
+				return -1;
+			}
+		};
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(REQUEST.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setAsyncSupported(true);
+		adapter.setNonBlockingIo(true);
+		adapter.setMaxInMemorySize(16);
+		adapter.setMaxRequestSize(64);
+		adapter.setTempDirectory(tempDirectory);
+
+		replayMockControls();
+
+		adapter.handle(httpRequest, httpResponse, (WebServiceMessageReceiver) MessageContext::getResponse);
+
+		assertThat(httpRequest.isAsyncStarted()).isFalse();
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+		assertThat(tempDirectory.list()).isEmpty();
+
+		verifyMockControls();
+	}
+
+	@Test
+	public void testHandlePostNonBlockingTimeout(@TempDir File tempDirectory) throws Exception {
+
+		httpRequest = new NonBlockingHttpServletRequest();
+		httpRequest.setMethod(HttpTransportConstants.METHOD_POST);
+		httpRequest.setContent(REQUEST.getBytes(StandardCharsets.UTF_8));
+		httpRequest.setContentType("text/xml; charset=\"utf-8\"");
+		httpRequest.setAsyncSupported(true);
+		adapter.setNonBlockingIo(true);
+		adapter.setMaxInMemorySize(16);
+		adapter.setTempDirectory(tempDirectory);
+		expect(factoryMock.createWebServiceMessage(isA(InputStream.class))).andReturn(requestMock);
+
+		replayMockControls();
+
+		CompletableFuture<Object> asyncResult = new CompletableFuture<Object>();
+		adapter.handle(httpRequest, httpResponse,
+				(WebServiceMessageReceiver) messageContext -> AsyncResponseUtils.setAsyncResponse(messageContext, asyncResult));
+
+		assertThat(httpRequest.isAsyncStarted()).isTrue();
+		assertThat(tempDirectory.list()).hasSize(1);
+
+		MockAsyncContext asyncContext = (MockAsyncContext) httpRequest.getAsyncContext();
+		for (AsyncListener listener : asyncContext.getListeners()) {
+			listener.onTimeout(new AsyncEvent(asyncContext));
+		}
+
+		assertThat(asyncResult.isDone()).isFalse();
+		assertThat(httpRequest.isAsyncStarted()).isFalse();
+		assertThat(httpResponse.getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		// the endpoint may still be reading the request body
+		assertThat(tempDirectory.list()).hasSize(1);
+
+		asyncResult.complete(null);
+
+		assertThat(tempDirectory.list()).isEmpty();
+
+		verifyMockControls();
+	}
+
+	private void asyncDispatch(WebServiceMessageReceiver receiver) throws Exception {
+		assertThat(WebAsyncUtils.getAsyncManager(httpRequest).hasConcurrentResult()).isTrue();
+		httpRequest.setDispatcherType(DispatcherType.ASYNC);
+		httpRequest.setAsyncStarted(false);
+		adapter.handle(httpRequest, httpResponse, receiver);
+		assertThat(WebAsyncUtils.getAsyncManager(httpRequest).hasConcurrentResult()).isFalse();
+	}
+
 	private void replayMockControls() {
 		replay(factoryMock, requestMock, responseMock);
 	}
@@ -190,4 +523,78 @@ public class WebServiceMessageReceiverHandlerAdapterTest {
 		verify(factoryMock, requestMock, responseMock);
 	}
 
+	private static class NonBlockingHttpServletRequest extends MockHttpServletRequest {
+
+		private ServletInputStream inputStream;
+
+		@Override
+		public ServletInputStream getInputStream() {
+			if (inputStream == null) {
+				InputStream content = super.getInputStream();
+				inputStream = new ServletInputStream() {
+
+					@Override
+					public int read() throws IOException {
+						return content.read();
+					}
+
+					@Override
+					public boolean isFinished() {
+						return false;
+					}
+
+					@Override
+					public boolean isReady() {
+						return true;
+					}
+
+					@Override
+					public void setReadListener(ReadListener readListener) {
+						try {
+							readListener.onDataAvailable();
+							readListener.onAllDataRead();
+						} catch (IOException ex) {
+							readListener.onError(ex);
+						}
+					}
+				};
+			}
+			return inputStream;
+		}
+	}
+
+	private static class NonBlockingHttpServletResponse extends MockHttpServletResponse {
+
+		private final ServletOutputStream outputStream;
+
+		private NonBlockingHttpServletResponse(OutputStream content) {
+			outputStream = new ServletOutputStream() {
+
+				@Override
+				public void write(int b) throws IOException {
+					content.write(b);
+				}
+
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+					try {
+						writeListener.onWritePossible();
+					} catch (IOException ex) {
+						writeListener.onError(ex);
+					}
+				}
+			};
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			return outputStream;
+		}
+	}
+
 }
@@ -19,17 +19,22 @@ package org.springframework.ws.transport.support;
 import static org.assertj.core.api.Assertions.*;
 import static org.easymock.EasyMock.*;
 
+import java.util.concurrent.CompletableFuture;
+
 import javax.xml.namespace.QName;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.ws.DisposableWebServiceMessage;
 import org.springframework.ws.MockWebServiceMessage;
 import org.springframework.ws.MockWebServiceMessageFactory;
 import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.soap.SoapVersion;
 import org.springframework.ws.transport.FaultAwareWebServiceConnection;
 import org.springframework.ws.transport.WebServiceMessageReceiver;
+import org.springframework.ws.transport.support.WebServiceMessageReceiverObjectSupport.PendingConnection;
 
 public class WebServiceMessageReceiverObjectSupportTest {
 
@@ -76,6 +81,57 @@ public class WebServiceMessageReceiverObjectSupportTest {
 		verify(connectionMock);
 	}
 
+	@Test
+	public void handleConnectionDisposesMessages() throws Exception {
+
+		DisposableWebServiceMessage disposableRequest = createMock(DisposableWebServiceMessage.class);
+		expect(connectionMock.receive(messageFactory)).andReturn(disposableRequest);
+		disposableRequest.dispose();
+		connectionMock.close();
+
+		replay(connectionMock, disposableRequest);
+
+		WebServiceMessageReceiver receiver = new WebServiceMessageReceiver() {
+
+			@Override
+			public void receive(MessageContext messageContext) throws Exception {
+			}
+		};
+
+		receiverSupport.handleConnection(connectionMock, receiver);
+
+		verify(connectionMock, disposableRequest);
+	}
+
+	@Test
+	public void abortConnectionDisposesMessagesAfterDispatch() throws Exception {
+
+		DisposableWebServiceMessage disposableRequest = createMock(DisposableWebServiceMessage.class);
+		expect(connectionMock.receive(messageFactory)).andReturn(disposableRequest);
+		connectionMock.close();
+
+		replay(connectionMock, disposableRequest);
+
+		final CompletableFuture<Object> dispatch = new CompletableFuture<>();
+		WebServiceMessageReceiver receiver = messageContext -> AsyncResponseUtils.setAsyncResponse(messageContext,
+				dispatch);
+
+		PendingConnection pendingConnection = receiverSupport.handleConnectionAsync(connectionMock, receiver);
+		receiverSupport.abortConnection(pendingConnection);
+
+		assertThat(pendingConnection.getResponse().toCompletableFuture().isCancelled()).isTrue();
+		assertThat(dispatch.isDone()).isFalse();
+		verify(connectionMock, disposableRequest);
+
+		reset(disposableRequest);
+		disposableRequest.dispose();
+		replay(disposableRequest);
+
+		dispatch.complete(null);
+
+		verify(disposableRequest);
+	}
+
 	@Test
 	public void handleConnectionFaultResponse() throws Exception {
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2014 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,6 +35,7 @@ import org.springframework.ws.soap.SoapHeaderElement;
 import org.springframework.ws.soap.SoapMessage;
 import org.springframework.ws.soap.server.SoapEndpointInterceptor;
 import org.springframework.ws.soap.soap11.Soap11Body;
+import org.springframework.ws.soap.soap12.Soap12Fault;
 
 /**
  * Interceptor base class for interceptors that handle WS-Security. Can be used on the server side, registered in a
@@ -298,7 +299,8 @@ public abstract class AbstractWsSecurityInterceptor implements SoapEndpointInter
 
 	/**
 	 * Handles a fault exception.Default implementation logs the given exception, and creates a SOAP Fault with the
-	 * properties of the given exception, and returns {@code false}.
+	 * properties of the given exception, and returns {@code false}. The fault code of the exception is used as subcode
+	 * of a SOAP 1.2 Sender fault.
 	 *
 	 * @param ex the validation exception
 	 * @param messageContext the message context
@@ -314,6 +316,9 @@ public abstract class AbstractWsSecurityInterceptor implements SoapEndpointInter
 			fault = ((Soap11Body) response).addFault(ex.getFaultCode(), ex.getFaultString(), Locale.ENGLISH);
 		} else {
 			fault = response.addClientOrSenderFault(ex.getFaultString(), Locale.ENGLISH);
+			if (fault instanceof Soap12Fault) {
+				((Soap12Fault) fault).addFaultSubcode(ex.getFaultCode());
+			}
 		}
 		fault.setFaultActorOrRole(ex.getFaultActor());
 		return false;
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.support;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+import org.springframework.ws.support.PayloadDigestUtils;
+
+/**
+ * Cache of successful certificate path validations. Validating the certification path of a certificate against a set
+ * of trust anchors is expensive, while the same certificates are typically received over and over again.
+ * <p>
+ * Validations are cached by the SHA-256 fingerprints of the validated certificate chain, together with the version of
+ * the trust anchors they were validated against, and whether revocation checking was enabled. Callers compute the
+ * version of their trust anchors with {@link #getTrustAnchorsVersion(KeyStore...)} when their trust store is loaded, so
+ * that a reloaded trust store with different contents no longer matches earlier validations. Only successful
+ * validations are cached.
+ * <p>
+ * The cache holds at most {@link #setMaxSize(int) maxSize} validations, evicting the least recently used ones first.
+ * Validations expire after the {@link #setTimeToLive(long) timeToLive}, or after the shorter
+ * {@link #setRevocationTimeToLive(long) revocationTimeToLive} when revocation checking was enabled, so that revoked
+ * certificates are rejected soon after their revocation is published.
+ * <p>
+ * A cache instance can be shared between several handlers and interceptors.
+ *
+ * @see org.springframework.ws.soap.security.xwss.callback.KeyStoreCallbackHandler#setCertificateValidationCache(CertificateValidationCache)
+ * @see org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor#setCertificateValidationCache(CertificateValidationCache)
+ * @since 3.1
+ */
+public class CertificateValidationCache {
+
+	/** Default maximum number of cached validations. */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	/** Default time to live of cached validations, in milliseconds: ten minutes. */
+	public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+
+	/** Default time to live of validations with revocation checking, in milliseconds: one minute. */
+	public static final long DEFAULT_REVOCATION_TIME_TO_LIVE = 60 * 1000;
+
+	private final Map<String, Long> validations = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	private long revocationTimeToLive = DEFAULT_REVOCATION_TIME_TO_LIVE;
+
+	/** Sets the maximum number of cached validations. Defaults to 1000. */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be larger than 0");
+		this.maxSize = maxSize;
+	}
+
+	/** Sets the time after which a cached validation expires, in milliseconds. Defaults to ten minutes. */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be larger than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Sets the time after which a cached validation that included revocation checking expires, in milliseconds. Defaults
+	 * to one minute. The effective time to live is the smaller of this value and the {@link #setTimeToLive(long)
+	 * timeToLive}.
+	 */
+	public void setRevocationTimeToLive(long revocationTimeToLive) {
+		Assert.isTrue(revocationTimeToLive > 0, "'revocationTimeToLive' must be larger than 0");
+		this.revocationTimeToLive = revocationTimeToLive;
+	}
+
+	/**
+	 * Indicates whether the given certificate chain was successfully validated against the given version of the trust
+	 * anchors, and that validation has not expired yet.
+	 *
+	 * @param certificates the certificate chain, starting with the certificate to validate
+	 * @param trustAnchorsVersion the version of the trust anchors, as returned by
+	 *          {@link #getTrustAnchorsVersion(KeyStore...)}
+	 * @param revocationEnabled whether revocation checking is enabled
+	 * @return {@code true} if a successful validation is cached; {@code false} otherwise
+	 */
+	public boolean isValid(X509Certificate[] certificates, String trustAnchorsVersion, boolean revocationEnabled) {
+		String key = createKey(certificates, trustAnchorsVersion, revocationEnabled);
+		if (key != null) {
+			synchronized (validations) {
+				Long expiresAt = validations.get(key);
+				if (expiresAt != null) {
+					if (System.nanoTime() - expiresAt < 0) {
+						hitCount.incrementAndGet();
+						return true;
+					}
+					validations.remove(key);
+				}
+			}
+		}
+		missCount.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Caches the successful validation of the given certificate chain against the given version of the trust anchors.
+	 *
+	 * @param certificates the certificate chain, starting with the validated certificate
+	 * @param trustAnchorsVersion the version of the trust anchors, as returned by
+	 *          {@link #getTrustAnchorsVersion(KeyStore...)}
+	 * @param revocationEnabled whether revocation checking was enabled
+	 */
+	public void setValid(X509Certificate[] certificates, String trustAnchorsVersion, boolean revocationEnabled) {
+		String key = createKey(certificates, trustAnchorsVersion, revocationEnabled);
+		if (key == null) {
+			return;
+		}
+		long ttl = revocationEnabled ? Math.min(timeToLive, revocationTimeToLive) : timeToLive;
+		long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl);
+		synchronized (validations) {
+			validations.put(key, expiresAt);
+			while (validations.size() > maxSize) {
+				validations.remove(validations.keySet().iterator().next());
+			}
+		}
+	}
+
+	/** Removes all cached validations. The hit and miss counts are not reset. */
+	public void clear() {
+		synchronized (validations) {
+			validations.clear();
+		}
+	}
+
+	/** Returns the number of cached validations. */
+	public int getSize() {
+		synchronized (validations) {
+			return validations.size();
+		}
+	}
+
+	/** Returns the number of lookups that found a cached validation. */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/** Returns the number of lookups that did not find a cached validation. */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/** Returns the ratio of lookups that found a cached validation, or {@code 0} if there have been no lookups. */
+	public double getHitRatio() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total > 0 ? (double) hits / total : 0;
+	}
+
+	/**
+	 * Returns the version of the trust anchors contained in the given key stores: a hash of the fingerprints of their
+	 * certificates. Key stores with the same certificates have the same version.
+	 *
+	 * @param keyStores the key stores; {@code null} elements are ignored
+	 * @return the version of the trust anchors
+	 * @throws GeneralSecurityException in case of errors
+	 */
+	public static String getTrustAnchorsVersion(KeyStore... keyStores) throws GeneralSecurityException {
+		List<String> fingerprints = new ArrayList<String>();
+		for (KeyStore keyStore : keyStores) {
+			if (keyStore == null) {
+				continue;
+			}
+			Enumeration<String> aliases = keyStore.aliases();
+			while (aliases.hasMoreElements()) {
+				Certificate certificate = keyStore.getCertificate(aliases.nextElement());
+				if (certificate != null) {
+					fingerprints.add(getFingerprint(certificate));
+				}
+			}
+		}
+		Collections.sort(fingerprints);
+		MessageDigest digest = PayloadDigestUtils.createDigest();
+		for (String fingerprint : fingerprints) {
+			PayloadDigestUtils.update(digest, fingerprint);
+		}
+		return PayloadDigestUtils.toHexString(digest);
+	}
+
+	private static String createKey(X509Certificate[] certificates, String trustAnchorsVersion,
+			boolean revocationEnabled) {
+		if (certificates == null || certificates.length == 0) {
+			return null;
+		}
+		StringBuilder key = new StringBuilder();
+		try {
+			for (X509Certificate certificate : certificates) {
+				key.append(getFingerprint(certificate)).append(',');
+			}
+		} catch (GeneralSecurityException ex) {
+			return null;
+		}
+		return key.append(trustAnchorsVersion).append(revocationEnabled ? ";revocation" : "").toString();
+	}
+
+	private static String getFingerprint(Certificate certificate) throws GeneralSecurityException {
+		MessageDigest digest = PayloadDigestUtils.createDigest();
+		digest.update(certificate.getEncoded());
+		return PayloadDigestUtils.toHexString(digest);
+	}
+
+}
@@ -20,9 +20,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.Collections;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.Resource;
@@ -33,13 +36,18 @@ import org.springframework.util.StringUtils;
  * <p>
  * To load an existing key store, you must set the {@code location} property. If this property is not set, a new, empty
  * key store is created, which is most likely not what you want.
+ * <p>
+ * When a {@link #setReloadInterval(long) reloadInterval} is set, the key store is reloaded when its location changes,
+ * so that certificates can be rotated without restarting the application. The new key store is loaded on a background
+ * thread, and then swapped in atomically: the created key store is a {@link ReloadableKeyStore} that exposes the entries
+ * of the last successfully loaded one.
  *
  * @author Arjen Poutsma
  * @see #setLocation(org.springframework.core.io.Resource)
  * @see KeyStore
  * @since 1.0.0
  */
-public class KeyStoreFactoryBean implements FactoryBean<KeyStore>, InitializingBean {
+public class KeyStoreFactoryBean implements FactoryBean<KeyStore>, InitializingBean, DisposableBean {
 
 	private static final Log logger = LogFactory.getLog(KeyStoreFactoryBean.class);
 
@@ -53,6 +61,10 @@ public class KeyStoreFactoryBean implements FactoryBean<KeyStore>, InitializingB
 
 	private char[] password;
 
+	private long reloadInterval;
+
+	private ResourceModificationMonitor monitor;
+
 	/**
 	 * Sets the location of the key store to use. If this is not set, a new, empty key store will be used.
 	 *
@@ -86,6 +98,14 @@ public class KeyStoreFactoryBean implements FactoryBean<KeyStore>, InitializingB
 		this.type = type;
 	}
 
+	/**
+	 * Sets the interval at which the {@code location} is checked for modifications, in milliseconds. When it has been
+	 * modified, the key store is reloaded. Defaults to {@code 0}, which disables reloading.
+	 */
+	public void setReloadInterval(long reloadInterval) {
+		this.reloadInterval = reloadInterval;
+	}
+
 	@Override
 	public KeyStore getObject() {
 		return keyStore;
@@ -103,6 +123,34 @@ public class KeyStoreFactoryBean implements FactoryBean<KeyStore>, InitializingB
 
 	@Override
 	public final void afterPropertiesSet() throws GeneralSecurityException, IOException {
+		KeyStore loaded = loadKeyStore();
+		if (reloadInterval > 0 && location != null) {
+			final ReloadableKeyStore reloadableKeyStore = new ReloadableKeyStore(loaded);
+			keyStore = reloadableKeyStore;
+			monitor = new ResourceModificationMonitor("key store " + location, Collections.singletonList(location),
+					reloadInterval, new Callable<Object>() {
+
+						@Override
+						public Object call() throws Exception {
+							reloadableKeyStore.setSnapshot(loadKeyStore());
+							return null;
+						}
+					});
+			monitor.start();
+		} else {
+			keyStore = loaded;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (monitor != null) {
+			monitor.stop();
+		}
+	}
+
+	private KeyStore loadKeyStore() throws GeneralSecurityException, IOException {
+		KeyStore keyStore;
 		if (StringUtils.hasLength(provider) && StringUtils.hasLength(type)) {
 			keyStore = KeyStore.getInstance(type, provider);
 		} else if (StringUtils.hasLength(type)) {
@@ -126,5 +174,6 @@ public class KeyStoreFactoryBean implements FactoryBean<KeyStore>, InitializingB
 				is.close();
 			}
 		}
+		return keyStore;
 	}
 }
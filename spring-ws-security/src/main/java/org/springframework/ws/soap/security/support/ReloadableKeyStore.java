@@ -0,0 +1,280 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.NoSuchAlgorithmException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+/**
+ * {@link KeyStore} whose entries are those of a snapshot that can be replaced at runtime. Created by the
+ * {@link KeyStoreFactoryBean} when a {@link KeyStoreFactoryBean#setReloadInterval(long) reloadInterval} is set.
+ * <p>
+ * A replacement snapshot is fully loaded before it is swapped in, so that users of this key store see either all
+ * entries of the old snapshot or all entries of the new one. Users that derive state from the entries, such as indexes,
+ * should build it from a single {@link #getSnapshot() snapshot}, and can register a {@link ReloadListener} to build it
+ * for a replacement snapshot before that snapshot is exposed. Listeners should be removed when their owner is disposed.
+ * <p>
+ * Changes made through this key store apply to the current snapshot only, and are lost when it is replaced. The key
+ * store cannot be {@link #load(InputStream, char[]) loaded}; replace its snapshot instead.
+ *
+ * @since 3.1
+ */
+public class ReloadableKeyStore extends KeyStore {
+
+	private static final Log logger = LogFactory.getLog(ReloadableKeyStore.class);
+
+	private final DelegatingKeyStoreSpi spi;
+
+	private final CopyOnWriteArrayList<ReloadListener> listeners = new CopyOnWriteArrayList<ReloadListener>();
+
+	/**
+	 * Creates a new {@code ReloadableKeyStore} with the given initial snapshot.
+	 *
+	 * @param snapshot the loaded key store whose entries to expose
+	 */
+	public ReloadableKeyStore(KeyStore snapshot) {
+		this(new DelegatingKeyStoreSpi(snapshot), snapshot);
+	}
+
+	private ReloadableKeyStore(DelegatingKeyStoreSpi spi, KeyStore snapshot) {
+		super(spi, snapshot.getProvider(), snapshot.getType());
+		this.spi = spi;
+		try {
+			load(null, null);
+		} catch (GeneralSecurityException ex) {
+			throw new IllegalStateException(ex);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/** Returns the current snapshot. */
+	public KeyStore getSnapshot() {
+		return spi.snapshot;
+	}
+
+	/**
+	 * Notifies the registered listeners, and then replaces the current snapshot, so that state the listeners derive from
+	 * the new snapshot is ready by the time its entries are exposed.
+	 *
+	 * @param snapshot the loaded key store whose entries to expose from now on
+	 */
+	public void setSnapshot(KeyStore snapshot) {
+		Assert.notNull(snapshot, "'snapshot' must not be null");
+		for (ReloadListener listener : listeners) {
+			try {
+				listener.reloading(this, snapshot);
+			} catch (RuntimeException ex) {
+				logger.warn("Key store reload listener " + listener + " failed", ex);
+			}
+		}
+		spi.snapshot = snapshot;
+	}
+
+	/** Registers a listener that is notified when the snapshot of this key store is replaced, unless it already is. */
+	public void addReloadListener(ReloadListener listener) {
+		Assert.notNull(listener, "'listener' must not be null");
+		listeners.addIfAbsent(listener);
+	}
+
+	/** Unregisters a previously registered listener. */
+	public void removeReloadListener(ReloadListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the current snapshot of the given key store if it is a {@code ReloadableKeyStore}, or the key store itself
+	 * otherwise.
+	 */
+	public static KeyStore getSnapshot(KeyStore keyStore) {
+		return keyStore instanceof ReloadableKeyStore ? ((ReloadableKeyStore) keyStore).getSnapshot() : keyStore;
+	}
+
+	/** Listener that is notified when the snapshot of a {@link ReloadableKeyStore} is replaced. */
+	public interface ReloadListener {
+
+		/**
+		 * Invoked before the snapshot of the given key store is replaced, on the thread that replaces it. The key store
+		 * still exposes the entries of the old snapshot during this call.
+		 *
+		 * @param keyStore the reloadable key store
+		 * @param snapshot the new snapshot
+		 */
+		void reloading(ReloadableKeyStore keyStore, KeyStore snapshot);
+	}
+
+	private static class DelegatingKeyStoreSpi extends KeyStoreSpi {
+
+		private volatile KeyStore snapshot;
+
+		private boolean initialized;
+
+		private DelegatingKeyStoreSpi(KeyStore snapshot) {
+			Assert.notNull(snapshot, "'snapshot' must not be null");
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public Key engineGetKey(String alias, char[] password)
+				throws NoSuchAlgorithmException, UnrecoverableKeyException {
+			try {
+				return snapshot.getKey(alias, password);
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public Certificate[] engineGetCertificateChain(String alias) {
+			try {
+				return snapshot.getCertificateChain(alias);
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public Certificate engineGetCertificate(String alias) {
+			try {
+				return snapshot.getCertificate(alias);
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public Date engineGetCreationDate(String alias) {
+			try {
+				return snapshot.getCreationDate(alias);
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain)
+				throws KeyStoreException {
+			snapshot.setKeyEntry(alias, key, password, chain);
+		}
+
+		@Override
+		public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
+			snapshot.setKeyEntry(alias, key, chain);
+		}
+
+		@Override
+		public void engineSetCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
+			snapshot.setCertificateEntry(alias, cert);
+		}
+
+		@Override
+		public void engineDeleteEntry(String alias) throws KeyStoreException {
+			snapshot.deleteEntry(alias);
+		}
+
+		@Override
+		public Enumeration<String> engineAliases() {
+			try {
+				return snapshot.aliases();
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public boolean engineContainsAlias(String alias) {
+			try {
+				return snapshot.containsAlias(alias);
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public int engineSize() {
+			try {
+				return snapshot.size();
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public boolean engineIsKeyEntry(String alias) {
+			try {
+				return snapshot.isKeyEntry(alias);
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public boolean engineIsCertificateEntry(String alias) {
+			try {
+				return snapshot.isCertificateEntry(alias);
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public String engineGetCertificateAlias(Certificate cert) {
+			try {
+				return snapshot.getCertificateAlias(cert);
+			} catch (KeyStoreException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		@Override
+		public void engineStore(OutputStream stream, char[] password)
+				throws IOException, NoSuchAlgorithmException, CertificateException {
+			try {
+				snapshot.store(stream, password);
+			} catch (KeyStoreException ex) {
+				throw new IOException(ex);
+			}
+		}
+
+		@Override
+		public void engineLoad(InputStream stream, char[] password) throws IOException {
+			if (initialized) {
+				throw new IOException("A ReloadableKeyStore cannot be loaded; replace its snapshot instead");
+			}
+			// invoked once by the constructor, the snapshot itself is already loaded
+			initialized = true;
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.support;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Periodically checks the last-modified time of a number of resources, and invokes a reload task when any of them has
+ * changed. Used to reload key stores and WSS4J {@code Crypto} instances without restarting the application.
+ * <p>
+ * Checks and reloads run on a single daemon thread, so that the reload task can load and prepare the new state off
+ * the threads that process messages, and only has to swap it in when done. If the reload task fails, for instance
+ * because a file is still being written, it is retried at the next check.
+ *
+ * @see KeyStoreFactoryBean#setReloadInterval(long)
+ * @see org.springframework.ws.soap.security.wss4j2.support.CryptoFactoryBean#setReloadInterval(long)
+ * @since 3.1
+ */
+public class ResourceModificationMonitor {
+
+	private static final Log logger = LogFactory.getLog(ResourceModificationMonitor.class);
+
+	private final String name;
+
+	private final List<Resource> resources;
+
+	private final long interval;
+
+	private final Callable<?> reloadTask;
+
+	private final long[] lastModified;
+
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Creates a new {@code ResourceModificationMonitor}.
+	 *
+	 * @param name the name of the monitor, used for its thread and in log messages
+	 * @param resources the resources to monitor
+	 * @param interval the interval between checks, in milliseconds
+	 * @param reloadTask the task to invoke when a resource has changed
+	 */
+	public ResourceModificationMonitor(String name, List<Resource> resources, long interval, Callable<?> reloadTask) {
+		Assert.hasLength(name, "'name' must not be empty");
+		Assert.notEmpty(resources, "'resources' must not be empty");
+		Assert.isTrue(interval > 0, "'interval' must be larger than 0");
+		Assert.notNull(reloadTask, "'reloadTask' must not be null");
+		this.name = name;
+		this.resources = new ArrayList<Resource>(resources);
+		this.interval = interval;
+		this.reloadTask = reloadTask;
+		this.lastModified = new long[resources.size()];
+		for (int i = 0; i < lastModified.length; i++) {
+			lastModified[i] = lastModified(this.resources.get(i));
+		}
+	}
+
+	/** Starts checking the resources. */
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				check();
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/** Stops checking the resources. */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Checks whether any of the resources has changed since the last successful reload, and invokes the reload task if
+	 * so.
+	 *
+	 * @return {@code true} if the reload task was invoked and succeeded; {@code false} otherwise
+	 */
+	public synchronized boolean check() {
+		long[] current = new long[lastModified.length];
+		boolean modified = false;
+		for (int i = 0; i < current.length; i++) {
+			current[i] = lastModified(resources.get(i));
+			modified |= current[i] != lastModified[i];
+		}
+		if (!modified) {
+			return false;
+		}
+		try {
+			reloadTask.call();
+		} catch (Exception ex) {
+			logger.warn("Reloading " + name + " after modification of " + resources + " failed; retrying at next check",
+					ex);
+			return false;
+		}
+		System.arraycopy(current, 0, lastModified, 0, current.length);
+		if (logger.isInfoEnabled()) {
+			logger.info("Reloaded " + name + " after modification of " + resources);
+		}
+		return true;
+	}
+
+	private static long lastModified(Resource resource) {
+		try {
+			return resource.exists() ? resource.lastModified() : 0;
+		} catch (IOException ex) {
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.support;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.util.Assert;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Short-lived cache of successful username and password verifications. Verifying a password against a deliberately
+ * slow password encoder, such as BCrypt, is expensive, while machine clients typically present the same credentials
+ * with every message.
+ * <p>
+ * Verifications are cached by {@link AuthenticationManager} and username, so that a verification by one authentication
+ * manager is never accepted on behalf of another one: a cache instance can be shared between several handlers, even if
+ * they authenticate against different managers. Managers are compared by identity.
+ * <p>
+ * The presented password itself is not kept: the cache holds an HMAC-SHA256 of the username and password, keyed with a
+ * random secret that is generated for each cache instance, and compares it in constant time. Presenting a wrong
+ * password therefore never matches a cached verification, and always results in a full verification. Only successful
+ * verifications are cached.
+ * <p>
+ * The cache holds at most {@link #setMaxSize(int) maxSize} verifications, evicting the least recently used ones first.
+ * Verifications expire after the {@link #setTimeToLive(long) timeToLive}; as a changed or revoked password is still
+ * accepted until then, this time should be kept short.
+ * <p>
+ * The resulting authentication is stored in serialized form, after its credentials have been erased through
+ * {@link CredentialsContainer#eraseCredentials()}; authentications that cannot be serialized are not cached. Every hit
+ * deserializes a new authentication of the same type, with the same principal, authorities, and details, so that
+ * callers can modify the returned authentication without affecting other threads. Its credentials are erased as well.
+ *
+ * @see org.springframework.ws.soap.security.xwss.callback.SpringPlainTextPasswordValidationCallbackHandler
+ * @since 3.1
+ */
+public class VerifiedCredentialCache {
+
+	/** Default maximum number of cached verifications. */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	/** Default time to live of cached verifications, in milliseconds: one minute. */
+	public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	private static final Log logger = LogFactory.getLog(VerifiedCredentialCache.class);
+
+	private final Map<Key, Verification> verifications = new LinkedHashMap<Key, Verification>(16, 0.75f, true);
+
+	private final SecretKeySpec key;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	/** Creates a new {@code VerifiedCredentialCache} with a random key. */
+	public VerifiedCredentialCache() {
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+	}
+
+	/** Sets the maximum number of cached verifications. Defaults to 1000. */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be larger than 0");
+		this.maxSize = maxSize;
+	}
+
+	/** Sets the time after which a cached verification expires, in milliseconds. Defaults to one minute. */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be larger than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Returns the result of the cached successful verification of the given username and password by the given
+	 * authentication manager.
+	 *
+	 * @param authenticationManager the authentication manager that verifies the credentials
+	 * @param username the presented username
+	 * @param password the presented password
+	 * @return a copy of the authentication that resulted from the verification, without credentials, or {@code null} if
+	 *         no unexpired verification of this username and password by this manager is cached
+	 */
+	public Authentication get(AuthenticationManager authenticationManager, String username, String password) {
+		Assert.notNull(authenticationManager, "'authenticationManager' must not be null");
+		if (username == null || password == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		Key key = new Key(authenticationManager, username);
+		byte[] mac = mac(username, password);
+		Verification verification;
+		synchronized (verifications) {
+			verification = verifications.get(key);
+			if (verification != null && System.nanoTime() - verification.expiresAt >= 0) {
+				verifications.remove(key);
+				verification = null;
+			}
+		}
+		if (verification != null && MessageDigest.isEqual(mac, verification.mac)) {
+			hitCount.incrementAndGet();
+			return (Authentication) SerializationUtils.deserialize(verification.authentication);
+		}
+		missCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Caches the successful verification of the given username and password by the given authentication manager. The
+	 * given authentication itself is not modified.
+	 *
+	 * @param authenticationManager the authentication manager that verified the credentials
+	 * @param username the verified username
+	 * @param password the verified password
+	 * @param authentication the authentication that resulted from the verification
+	 */
+	public void put(AuthenticationManager authenticationManager, String username, String password,
+			Authentication authentication) {
+		Assert.notNull(authenticationManager, "'authenticationManager' must not be null");
+		Assert.notNull(authentication, "'authentication' must not be null");
+		if (username == null || password == null) {
+			return;
+		}
+		byte[] serialized = serializeWithoutCredentials(authentication);
+		if (serialized == null) {
+			return;
+		}
+		Verification verification = new Verification(mac(username, password), serialized,
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeToLive));
+		synchronized (verifications) {
+			verifications.put(new Key(authenticationManager, username), verification);
+			while (verifications.size() > maxSize) {
+				verifications.remove(verifications.keySet().iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * Removes the cached verifications of the given username by all authentication managers, for instance after its
+	 * password has been changed.
+	 */
+	public void remove(String username) {
+		synchronized (verifications) {
+			Iterator<Key> iterator = verifications.keySet().iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().username.equals(username)) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	/** Removes all cached verifications. The hit and miss counts are not reset. */
+	public void clear() {
+		synchronized (verifications) {
+			verifications.clear();
+		}
+	}
+
+	/** Returns the number of cached verifications. */
+	public int getSize() {
+		synchronized (verifications) {
+			return verifications.size();
+		}
+	}
+
+	/** Returns the number of lookups that found a cached verification. */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/** Returns the number of lookups that did not find a cached verification. */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	private static byte[] serializeWithoutCredentials(Authentication authentication) {
+		try {
+			Object copy = SerializationUtils.deserialize(SerializationUtils.serialize(authentication));
+			if (copy instanceof CredentialsContainer) {
+				((CredentialsContainer) copy).eraseCredentials();
+			}
+			return SerializationUtils.serialize(copy);
+		} catch (RuntimeException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Not caching verification, as [" + authentication.getClass().getName()
+						+ "] could not be serialized", ex);
+			}
+			return null;
+		}
+	}
+
+	private byte[] mac(String username, String password) {
+		try {
+			Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(key);
+			mac.update(username.getBytes(StandardCharsets.UTF_8));
+			mac.update((byte) 0);
+			return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+		} catch (GeneralSecurityException ex) {
+			throw new IllegalStateException("Could not compute " + MAC_ALGORITHM, ex);
+		}
+	}
+
+	/** Identifies the verifications of a username by an authentication manager, compared by identity. */
+	private static class Key {
+
+		private final AuthenticationManager authenticationManager;
+
+		private final String username;
+
+		private Key(AuthenticationManager authenticationManager, String username) {
+			this.authenticationManager = authenticationManager;
+			this.username = username;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key otherKey = (Key) other;
+			return otherKey.authenticationManager == authenticationManager && otherKey.username.equals(username);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(authenticationManager) + username.hashCode();
+		}
+	}
+
+	private static class Verification {
+
+		private final byte[] mac;
+
+		private final byte[] authentication;
+
+		private final long expiresAt;
+
+		private Verification(byte[] mac, byte[] authentication, long expiresAt) {
+			this.mac = mac;
+			this.authentication = authentication;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
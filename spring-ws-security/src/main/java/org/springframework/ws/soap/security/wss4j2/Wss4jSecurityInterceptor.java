@@ -17,47 +17,103 @@
 package org.springframework.ws.soap.security.wss4j2;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
 import java.security.Principal;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
 
+import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.EncryptionActionToken;
+import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.SignatureActionToken;
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.derivedKey.ConversationConstants;
+import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
 import org.apache.wss4j.common.principal.WSUsernameTokenPrincipalImpl;
+import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.action.Action;
+import org.apache.wss4j.dom.action.EncryptionAction;
+import org.apache.wss4j.dom.action.SignatureAction;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.HandlerAction;
 import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandler;
 import org.apache.wss4j.dom.handler.WSHandlerConstants;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecDKEncrypt;
+import org.apache.wss4j.dom.message.WSSecDKSign;
+import org.apache.wss4j.dom.message.WSSecEncryptedKey;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.token.SecurityContextToken;
 import org.apache.wss4j.dom.message.token.Timestamp;
+import org.apache.wss4j.dom.processor.Processor;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.SignatureTrustValidator;
 import org.apache.wss4j.dom.validate.TimestampValidator;
+import org.apache.wss4j.dom.validate.Validator;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.util.StringUtils;
+import org.springframework.ws.client.WebServiceClientException;
+import org.springframework.ws.client.core.WebServiceTemplate;
 import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.soap.SoapFault;
+import org.springframework.ws.soap.SoapHeader;
+import org.springframework.ws.soap.SoapHeaderElement;
 import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.SoapVersion;
 import org.springframework.ws.soap.security.AbstractWsSecurityInterceptor;
 import org.springframework.ws.soap.security.WsSecuritySecurementException;
 import org.springframework.ws.soap.security.WsSecurityValidationException;
 import org.springframework.ws.soap.security.callback.CallbackHandlerChain;
 import org.springframework.ws.soap.security.callback.CleanupCallback;
+import org.springframework.ws.soap.security.support.CertificateValidationCache;
 import org.springframework.ws.soap.security.wss4j2.callback.UsernameTokenPrincipalCallback;
+import org.springframework.ws.soap.security.wss4j2.support.ParallelEncryptedKeyProcessor;
+import org.springframework.ws.soap.security.wss4j2.support.ParallelEncryptionAction;
+import org.springframework.ws.soap.security.wss4j2.support.ReloadableCrypto;
+import org.springframework.ws.soap.security.wss4j2.support.SecureConversationSession;
+import org.springframework.ws.soap.security.wss4j2.support.SecureConversationSessionStore;
+import org.springframework.ws.soap.soap12.Soap12Fault;
+import org.springframework.ws.transport.context.TransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
+import org.springframework.xml.DocumentBuilderFactoryUtils;
+import org.springframework.xml.transform.TransformerHelper;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  * A WS-Security endpoint interceptor based on Apache's WSS4J. This interceptor supports messages created by the
@@ -143,6 +199,36 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 
 	public static final String SECUREMENT_USER_PROPERTY_NAME = "Wss4jSecurityInterceptor.securementUser";
 
+	/** Name of the message context property that holds the secure conversation session of the current exchange. */
+	public static final String SECURE_CONVERSATION_SESSION_PROPERTY_NAME = "Wss4jSecurityInterceptor.secureConversationSession";
+
+	private static final String CARRIED_KEY_NAME_LN = "CarriedKeyName";
+
+	/** Validation actions that only need the security header, and not the rest of the message. */
+	private static final List<Integer> HEADER_ONLY_VALIDATION_ACTIONS = Arrays.asList(WSConstants.NO_SECURITY,
+			WSConstants.UT, WSConstants.UT_NOPASSWORD, WSConstants.TS, WSConstants.ST_UNSIGNED);
+
+	/** Keys of the actions that WSS4J registers by default. */
+	private static final int[] WSS_CONFIG_ACTIONS = { WSConstants.UT, WSConstants.UT_NOPASSWORD, WSConstants.ENCR,
+			WSConstants.SIGN, WSConstants.DKT_SIGN, WSConstants.DKT_ENCR, WSConstants.ST_SIGNED, WSConstants.ST_UNSIGNED,
+			WSConstants.TS, WSConstants.UT_SIGN, WSConstants.SC, WSConstants.CUSTOM_TOKEN };
+
+	/** Keys of the processors that WSS4J registers by default. */
+	private static final QName[] WSS_CONFIG_PROCESSORS = { WSConstants.SAML_TOKEN, WSConstants.SAML2_TOKEN,
+			WSConstants.ENCRYPTED_ASSERTION, WSConstants.ENCRYPTED_KEY, WSConstants.SIGNATURE, WSConstants.TIMESTAMP,
+			WSConstants.USERNAME_TOKEN, WSConstants.REFERENCE_LIST, WSConstants.SIGNATURE_CONFIRMATION,
+			WSConstants.DERIVED_KEY_TOKEN_05_02, WSConstants.DERIVED_KEY_TOKEN_05_12,
+			WSConstants.SECURITY_CONTEXT_TOKEN_05_02, WSConstants.SECURITY_CONTEXT_TOKEN_05_12, WSConstants.BINARY_TOKEN,
+			WSConstants.ENCRYPTED_DATA };
+
+	/** Keys of the validators that WSS4J registers by default. */
+	private static final QName[] WSS_CONFIG_VALIDATORS = { WSConstants.SAML_TOKEN, WSConstants.SAML2_TOKEN,
+			WSConstants.SIGNATURE, WSConstants.TIMESTAMP, WSConstants.USERNAME_TOKEN };
+
+	/** Fault code of messages within a secure conversation session that is not known. */
+	private static final QName BAD_CONTEXT_TOKEN = new QName(ConversationConstants.WSC_NS_05_12, "BadContextToken",
+			"wsc");
+
 	private String securementActions;
 
 	private String securementUsername;
@@ -189,6 +275,29 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 	// To maintain same behavior as default, this flag is set to true
 	private boolean removeSecurityHeader = true;
 
+	private CertificateValidationCache certificateValidationCache;
+
+	private ReplayCache nonceReplayCache;
+
+	private ReplayCache timestampReplayCache;
+
+	private ReplayCache samlOneTimeUseReplayCache;
+
+	private SecureConversationSessionStore secureConversationSessionStore;
+
+	private boolean headerOnlyValidation;
+
+	private Executor encryptionExecutor;
+
+	private long encryptionTimeout = 60 * 1000;
+
+	private final TransformerHelper transformerHelper = new TransformerHelper();
+
+	private final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactoryUtils.newInstance();
+
+	private final Map<Crypto, String> trustAnchorsVersions = new ConcurrentReferenceHashMap<Crypto, String>(16,
+			ConcurrentReferenceHashMap.ReferenceType.WEAK);
+
 	/**
 	 * Create a {@link WSSecurityEngine} by default.
 	 */
@@ -533,6 +642,122 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 		this.enableRevocation = enableRevocation;
 	}
 
+	/**
+	 * Sets the cache of successful certificate path validations, used when verifying trust in the certificates of signed
+	 * messages. By default, no validations are cached.
+	 * <p>
+	 * Cached validations are bound to the certificates of the key and trust store of a {@link Merlin} signature
+	 * {@code Crypto}, or to the instance of any other {@code Crypto}.
+	 */
+	public void setCertificateValidationCache(CertificateValidationCache certificateValidationCache) {
+		this.certificateValidationCache = certificateValidationCache;
+	}
+
+	/**
+	 * Sets the cache used to detect replayed {@code UsernameToken} nonces in incoming messages. By default, nonces are not
+	 * checked for replays.
+	 *
+	 * @see org.springframework.ws.soap.security.wss4j2.support.TimeBucketedReplayCache
+	 * @see org.springframework.ws.soap.security.wss4j2.support.MappedFileReplayCache
+	 */
+	public void setNonceReplayCache(ReplayCache nonceReplayCache) {
+		this.nonceReplayCache = nonceReplayCache;
+	}
+
+	/**
+	 * Sets the cache used to detect replayed signed timestamps in incoming messages. By default, timestamps are not
+	 * checked for replays.
+	 *
+	 * @see org.springframework.ws.soap.security.wss4j2.support.TimeBucketedReplayCache
+	 * @see org.springframework.ws.soap.security.wss4j2.support.MappedFileReplayCache
+	 */
+	public void setTimestampReplayCache(ReplayCache timestampReplayCache) {
+		this.timestampReplayCache = timestampReplayCache;
+	}
+
+	/**
+	 * Sets the cache used to detect replayed SAML assertions with a {@code OneTimeUse} condition in incoming messages. By
+	 * default, such assertions are not checked for replays.
+	 *
+	 * @see org.springframework.ws.soap.security.wss4j2.support.TimeBucketedReplayCache
+	 * @see org.springframework.ws.soap.security.wss4j2.support.MappedFileReplayCache
+	 */
+	public void setSamlOneTimeUseReplayCache(ReplayCache samlOneTimeUseReplayCache) {
+		this.samlOneTimeUseReplayCache = samlOneTimeUseReplayCache;
+	}
+
+	/**
+	 * Sets the store of WS-SecureConversation sessions. When set, the {@code Signature} and {@code Encrypt} securement
+	 * actions sign and encrypt messages with keys derived from the secret of a session with the partner, avoiding the
+	 * public key operations per message. By default, no sessions are used.
+	 * <p>
+	 * A client uses a session per destination URI. Until it has received a response secured within a new session, it
+	 * sends the secret of the session along with its requests, encrypted for the
+	 * {@link #setSecurementEncryptionUser(String) encryption user}, and signed by the
+	 * {@link #setSecurementSignatureUser(String) signature user} if the {@code Signature} action is configured. A server
+	 * only accepts such a secret if it is signed by a trusted certificate, and responds within the session of the request.
+	 * The {@code Signature} validation action is therefore required when sessions are used.
+	 * <p>
+	 * A server rejects messages within a session that it does not know, for instance because it has removed the session
+	 * from its store, with a {@code wsc:BadContextToken} fault. A client removes its session with the destination when it
+	 * receives a WS-Security or WS-SecureConversation fault in response to a request within the session, so that the next
+	 * request establishes a new session.
+	 * <p>
+	 * A session received by a server is bound to the certificate that signed its secret: messages within the session that
+	 * are also signed with another certificate are rejected, and signatures made with keys derived from the session are
+	 * trusted only as long as that certificate is. The signature and encryption actions of a private copy of the
+	 * configured {@link #setWssConfig(WSSConfig) WSSConfig} are replaced to that end.
+	 *
+	 * @see SecureConversationSessionStore
+	 */
+	public void setSecureConversationSessionStore(SecureConversationSessionStore secureConversationSessionStore) {
+		this.secureConversationSessionStore = secureConversationSessionStore;
+	}
+
+	/**
+	 * Sets the executor used to encrypt and decrypt the parts of a message in parallel, such as a {@code ForkJoinPool}
+	 * with a bounded parallelism. Use a bounded executor: if it rejects a part, the part is processed in the calling
+	 * thread. By default, parts are encrypted and decrypted one after the other in the calling thread.
+	 * <p>
+	 * All parts of a message are still encrypted with the same symmetric key. Parallel processing only pays off for
+	 * messages with several large parts; the encryption action and the {@code EncryptedKey} processor of a private copy of the
+	 * configured {@link #setWssConfig(WSSConfig) WSSConfig} are replaced to that end.
+	 *
+	 * @see ParallelEncryptionAction
+	 * @see ParallelEncryptedKeyProcessor
+	 */
+	public void setEncryptionExecutor(Executor encryptionExecutor) {
+		this.encryptionExecutor = encryptionExecutor;
+	}
+
+	/**
+	 * Sets the maximum time to wait for the parts of a message that are encrypted or decrypted on the
+	 * {@link #setEncryptionExecutor(Executor) encryptionExecutor}, in milliseconds. Messages whose parts are not
+	 * processed in time are rejected. Defaults to one minute.
+	 */
+	public void setEncryptionTimeout(long encryptionTimeout) {
+		Assert.isTrue(encryptionTimeout > 0, "'encryptionTimeout' must be larger than 0");
+		this.encryptionTimeout = encryptionTimeout;
+	}
+
+	/**
+	 * Sets whether incoming messages are validated by copying only their security headers, rather than by converting
+	 * the entire message to a DOM document. Defaults to {@code false}.
+	 * <p>
+	 * This only applies when none of the validation actions needs the rest of the message, that is when they consist of
+	 * {@code UsernameToken}, {@code UsernameTokenNoPassword}, {@code Timestamp}, {@code SAMLTokenUnsigned} and
+	 * {@code NoSecurity} actions only. The message itself is then not modified, apart from the removal of the security
+	 * header. Combined with an {@link org.springframework.ws.soap.axiom.AxiomSoapMessageFactory} that does not cache
+	 * payloads, this means that the body of the message is not read by this interceptor, but streamed to the endpoint.
+	 * <p>
+	 * Security headers that do need the rest of the message, for instance because they contain a signature over the
+	 * body, fail validation in this mode, just like they fail validation when the {@code Signature} action is not
+	 * configured.
+	 */
+	public void setHeaderOnlyValidation(boolean headerOnlyValidation) {
+		this.headerOnlyValidation = headerOnlyValidation;
+	}
+
 	/**
 	 * Set the WS-I Basic Security Profile compliance mode. Default is {@code true}.
 	 */
@@ -580,9 +805,72 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 				Assert.notNull(validationSignatureCrypto, "validationSignatureCrypto is required");
 			}
 		}
+		if (secureConversationSessionStore != null) {
+			// the secret of a session is only accepted if it is signed by a trusted certificate
+			Assert.isTrue(validationActions != null && validationActionsVector.contains(WSConstants.SIGN),
+					"secureConversationSessionStore requires the Signature validation action");
+		}
 		// securement actions are not to be validated at start up as they could
 		// be configured dynamically via the message context
 
+		if (certificateValidationCache != null || secureConversationSessionStore != null || encryptionExecutor != null) {
+			// customize a private copy, as the configured WSSConfig could be shared with other interceptors
+			wssConfig = copyWssConfig(wssConfig != null ? wssConfig : securityEngine.getWssConfig());
+			securityEngine.setWssConfig(wssConfig);
+		}
+		if (certificateValidationCache != null) {
+			wssConfig.setValidator(WSConstants.SIGNATURE, new CachingSignatureTrustValidator());
+		}
+		if (secureConversationSessionStore != null || encryptionExecutor != null) {
+			EncryptionAction encryptionAction = new EncryptionAction();
+			if (encryptionExecutor != null) {
+				encryptionAction = new ParallelEncryptionAction(encryptionExecutor, encryptionTimeout);
+				wssConfig.setProcessor(WSConstants.ENCRYPTED_KEY, new ParallelEncryptedKeyProcessor(
+						wssConfig.getProcessor(WSConstants.ENCRYPTED_KEY), encryptionExecutor, encryptionTimeout));
+			}
+			if (secureConversationSessionStore != null) {
+				wssConfig.setAction(WSConstants.SIGN, new SecureConversationSignatureAction());
+				encryptionAction = new SecureConversationEncryptionAction(encryptionAction);
+			}
+			wssConfig.setAction(WSConstants.ENCR, encryptionAction);
+		}
+	}
+
+	/**
+	 * Returns a copy of the given configuration, including the actions, processors, and validators it registers for the
+	 * keys that WSS4J registers by default. Entries registered for other keys are not copied.
+	 */
+	private static WSSConfig copyWssConfig(WSSConfig source) throws WSSecurityException {
+		WSSConfig copy = WSSConfig.getNewInstance();
+		copy.setIdAllocator(source.getIdAllocator());
+		copy.setCurrentTime(source.getCurrentTime());
+		for (int key : WSS_CONFIG_ACTIONS) {
+			Action action = source.getAction(key);
+			if (!isSameType(action, copy.getAction(key))) {
+				copy.setAction(key, action);
+			}
+		}
+		for (QName key : WSS_CONFIG_PROCESSORS) {
+			Processor processor = source.getProcessor(key);
+			if (!isSameType(processor, copy.getProcessor(key))) {
+				copy.setProcessor(key, processor);
+			}
+		}
+		for (QName key : WSS_CONFIG_VALIDATORS) {
+			Validator validator = source.getValidator(key);
+			if (!isSameType(validator, copy.getValidator(key))) {
+				copy.setValidator(key, validator);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Indicates whether the given entries are of the same type, in which case the default registration of the copy, which
+	 * creates a new instance per message, is kept.
+	 */
+	private static boolean isSameType(Object source, Object copy) {
+		return source == null ? copy == null : copy != null && source.getClass() == copy.getClass();
 	}
 
 	@Override
@@ -606,7 +894,15 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 
 		Document envelopeAsDocument = soapMessage.getDocument();
 		try {
+			SecureConversationSession session = getSecurementSession(soapMessage, messageContext,
+					securementActionsVector);
+			if (session != null && !session.isEstablished()) {
+				addEncryptedSessionSecret(envelopeAsDocument, session, requestData);
+			}
 			handler.doSenderAction(envelopeAsDocument, requestData, securementActionsVector, false);
+			if (session != null) {
+				addSecurityContextToken(session, requestData);
+			}
 		} catch (WSSecurityException ex) {
 			throw new Wss4jSecuritySecurementException(ex.getMessage(), ex);
 		}
@@ -668,6 +964,12 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 
 		requestData.setCallbackHandler(validationCallbackHandler);
 
+		requestData.setNonceReplayCache(nonceReplayCache);
+
+		requestData.setTimestampReplayCache(timestampReplayCache);
+
+		requestData.setSamlOneTimeUseReplayCache(samlOneTimeUseReplayCache);
+
 		messageContext.setProperty(WSHandlerConstants.TTL_TIMESTAMP, Integer.toString(validationTimeToLive));
 
 		requestData.setAllowRSA15KeyTransportAlgorithm(allowRSA15KeyTransportAlgorithm);
@@ -693,12 +995,30 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 			return;
 		}
 
-		Document envelopeAsDocument = soapMessage.getDocument();
+		boolean headerOnly = headerOnlyValidation
+				&& HEADER_ONLY_VALIDATION_ACTIONS.containsAll(validationActionsVector);
+		Document envelopeAsDocument;
+		if (headerOnly) {
+			try {
+				envelopeAsDocument = createSecurityHeaderDocument(soapMessage);
+			} catch (ParserConfigurationException ex) {
+				throw new Wss4jSecurityValidationException(ex.getMessage(), ex);
+			} catch (TransformerException ex) {
+				throw new Wss4jSecurityValidationException(ex.getMessage(), ex);
+			}
+		} else {
+			envelopeAsDocument = soapMessage.getDocument();
+		}
 
 		// Header processing
 
+		SecureConversationCallbackHandler secureConversationCallbackHandler = null;
 		try {
 			RequestData validationData = initializeValidationRequestData(messageContext);
+			if (secureConversationSessionStore != null) {
+				secureConversationCallbackHandler = new SecureConversationCallbackHandler(validationData);
+				validationData.setCallbackHandler(secureConversationCallbackHandler);
+			}
 
 			String actor = validationActor;
 			if (actor == null) {
@@ -724,17 +1044,56 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 			verifyTimestamp(result);
 
 			processPrincipal(result);
+
+			if (secureConversationSessionStore != null) {
+				processSecureConversation(result, messageContext);
+			}
 		} catch (WSSecurityException ex) {
+			if (secureConversationCallbackHandler != null && secureConversationCallbackHandler.unknownIdentifier != null) {
+				throw createUnknownSessionException(secureConversationCallbackHandler.unknownIdentifier);
+			}
 			throw new Wss4jSecurityValidationException(ex.getMessage(), ex);
 		}
 
-		soapMessage.setDocument(envelopeAsDocument);
+		if (!headerOnly) {
+			soapMessage.setDocument(envelopeAsDocument);
+		}
 
 		if (this.getRemoveSecurityHeader()) {
 			soapMessage.getEnvelope().getHeader().removeHeaderElement(WS_SECURITY_NAME);
 		}
 	}
 
+	/**
+	 * Creates a document that contains an envelope with copies of the security headers of the given message, and an
+	 * empty body. The body of the given message is not read.
+	 */
+	private Document createSecurityHeaderDocument(SoapMessage soapMessage)
+			throws ParserConfigurationException, TransformerException {
+		Document document;
+		synchronized (documentBuilderFactory) {
+			document = documentBuilderFactory.newDocumentBuilder().newDocument();
+		}
+		SoapVersion version = soapMessage.getVersion();
+		Element envelope = createSoapElement(document, version.getEnvelopeName());
+		document.appendChild(envelope);
+		Element header = createSoapElement(document, version.getHeaderName());
+		envelope.appendChild(header);
+		envelope.appendChild(createSoapElement(document, version.getBodyName()));
+		SoapHeader soapHeader = soapMessage.getSoapHeader();
+		if (soapHeader != null) {
+			Iterator<SoapHeaderElement> headerElements = soapHeader.examineHeaderElements(WS_SECURITY_NAME);
+			while (headerElements.hasNext()) {
+				transformerHelper.transform(headerElements.next().getSource(), new DOMResult(header));
+			}
+		}
+		return document;
+	}
+
+	private static Element createSoapElement(Document document, QName name) {
+		return document.createElementNS(name.getNamespaceURI(), "soap:" + name.getLocalPart());
+	}
+
 	/**
 	 * Checks whether the received headers match the configured validation actions. Subclasses could override this method
 	 * for custom verification behavior.
@@ -745,6 +1104,17 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 	 */
 	protected void checkResults(List<WSSecurityEngineResult> results, List<Integer> validationActions)
 			throws Wss4jSecurityValidationException {
+		if (secureConversationSessionStore != null) {
+			// security context and derived key tokens are not actions
+			List<WSSecurityEngineResult> actionResults = new ArrayList<WSSecurityEngineResult>(results.size());
+			for (WSSecurityEngineResult result : results) {
+				Integer action = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+				if (action == null || (action != WSConstants.SCT && action != WSConstants.DKT)) {
+					actionResults.add(result);
+				}
+			}
+			results = actionResults;
+		}
 		if (!handler.checkReceiverResultsAnyOrder(results, validationActions)) {
 			throw new Wss4jSecurityValidationException("Security processing failed (actions mismatch)");
 		}
@@ -779,6 +1149,17 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 		if (!CollectionUtils.isEmpty(results)) {
 			WSSecurityEngineResult actionResult = results.get(0);
 			X509Certificate returnCert = (X509Certificate) actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE);
+			if (returnCert == null) {
+				String identifier = getSecureConversationIdentifier(actionResult, result.getResults());
+				if (identifier != null) {
+					// trust the derived keys of a session as long as the certificate that established it
+					returnCert = getSessionCertificate(identifier, result);
+					if (returnCert == null) {
+						// created by this side, or established without a signature
+						return;
+					}
+				}
+			}
 			Credential credential = new Credential();
 			credential.setCertificates(new X509Certificate[] { returnCert });
 
@@ -786,7 +1167,8 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 			requestData.setSigVerCrypto(validationSignatureCrypto);
 			requestData.setEnableRevocation(enableRevocation);
 
-			SignatureTrustValidator validator = new SignatureTrustValidator();
+			SignatureTrustValidator validator = certificateValidationCache != null ? new CachingSignatureTrustValidator()
+					: new SignatureTrustValidator();
 			validator.validate(credential, requestData);
 		}
 	}
@@ -838,6 +1220,312 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 		}
 	}
 
+	/**
+	 * Establishes the secure conversation session of a validated message, and puts it in the message context.
+	 */
+	private void processSecureConversation(WSHandlerResult result, MessageContext messageContext)
+			throws WSSecurityException {
+		List<WSSecurityEngineResult> results = result.getActionResults().get(WSConstants.SCT);
+		if (CollectionUtils.isEmpty(results)) {
+			return;
+		}
+		SecurityContextToken token = (SecurityContextToken) results.get(0)
+				.get(WSSecurityEngineResult.TAG_SECURITY_CONTEXT_TOKEN);
+		String identifier = token.getIdentifier();
+		SecureConversationSession session = secureConversationSessionStore.getSession(identifier);
+		if (session == null) {
+			WSSecurityEngineResult secretResult = findSessionSecret(result.getResults(), identifier);
+			if (secretResult == null) {
+				throw createUnknownSessionException(identifier);
+			}
+			X509Certificate certificate = getSigningCertificate(result,
+					(Element) secretResult.get(WSSecurityEngineResult.TAG_TOKEN_ELEMENT));
+			if (certificate == null) {
+				throw new Wss4jSecurityValidationException(
+						"Secret of secure conversation session [" + identifier + "] is not signed");
+			}
+			session = secureConversationSessionStore.addSession(identifier,
+					(byte[]) secretResult.get(WSSecurityEngineResult.TAG_SECRET), certificate);
+			if (session == null) {
+				throw new Wss4jSecurityValidationException(
+						"Conflicting secure conversation session [" + identifier + "]");
+			}
+		} else {
+			checkSessionCertificate(session, result);
+			session.markEstablished();
+		}
+		messageContext.setProperty(SECURE_CONVERSATION_SESSION_PROPERTY_NAME, session);
+	}
+
+	/**
+	 * Creates the exception that rejects a message within an unknown session with a {@code wsc:BadContextToken} fault,
+	 * upon which the client establishes a new session.
+	 */
+	private static Wss4jSecurityFaultException createUnknownSessionException(String identifier) {
+		return new Wss4jSecurityFaultException(BAD_CONTEXT_TOKEN,
+				"Unknown secure conversation session [" + identifier + "]", null);
+	}
+
+	/**
+	 * Returns the result of the encrypted key that carries the secret of the given session, if any.
+	 */
+	private WSSecurityEngineResult findSessionSecret(List<WSSecurityEngineResult> results, String identifier) {
+		for (WSSecurityEngineResult result : results) {
+			Integer action = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+			if (action != null && action == WSConstants.ENCR) {
+				Element element = (Element) result.get(WSSecurityEngineResult.TAG_TOKEN_ELEMENT);
+				if (element != null && WSConstants.ENC_KEY_LN.equals(element.getLocalName())
+						&& identifier.equals(getCarriedKeyName(element))) {
+					return result;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the certificate of the signature that covers the given element, or {@code null} if the element is not signed
+	 * with a certificate.
+	 */
+	@SuppressWarnings("unchecked")
+	private X509Certificate getSigningCertificate(WSHandlerResult result, Element element) {
+		List<WSSecurityEngineResult> results = result.getActionResults().get(WSConstants.SIGN);
+		if (results != null && element != null) {
+			for (WSSecurityEngineResult signatureResult : results) {
+				X509Certificate certificate = (X509Certificate) signatureResult
+						.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE);
+				if (certificate != null) {
+					List<WSDataRef> dataRefs = (List<WSDataRef>) signatureResult
+							.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+					if (dataRefs != null) {
+						for (WSDataRef dataRef : dataRefs) {
+							if (dataRef.getProtectedElement() == element) {
+								return certificate;
+							}
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the identifier of the secure conversation session whose secret the key of the given signature was derived
+	 * from, or {@code null} if the signature was not made within a known session.
+	 */
+	private String getSecureConversationIdentifier(WSSecurityEngineResult signatureResult,
+			List<WSSecurityEngineResult> results) throws WSSecurityException {
+		Object principal = signatureResult.get(WSSecurityEngineResult.TAG_PRINCIPAL);
+		if (secureConversationSessionStore == null || !(principal instanceof WSDerivedKeyTokenPrincipal)) {
+			return null;
+		}
+		String baseTokenId = ((WSDerivedKeyTokenPrincipal) principal).getBasetokenId();
+		if (baseTokenId == null) {
+			return null;
+		}
+		String identifier = XMLUtils.getIDFromReference(baseTokenId);
+		if (secureConversationSessionStore.getSession(identifier) != null
+				|| findSessionSecret(results, identifier) != null) {
+			return identifier;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the certificate that the session with the given identifier is bound to, or that signs its secret in the
+	 * given results if the session is established by this message.
+	 */
+	private X509Certificate getSessionCertificate(String identifier, WSHandlerResult result) {
+		SecureConversationSession session = secureConversationSessionStore.getSession(identifier);
+		if (session != null) {
+			return session.getCertificate();
+		}
+		WSSecurityEngineResult secretResult = findSessionSecret(result.getResults(), identifier);
+		return secretResult != null ? getSigningCertificate(result,
+				(Element) secretResult.get(WSSecurityEngineResult.TAG_TOKEN_ELEMENT)) : null;
+	}
+
+	/**
+	 * Checks that the certificate signatures of a message received within the given session are made with the
+	 * certificate that the session is bound to.
+	 */
+	private void checkSessionCertificate(SecureConversationSession session, WSHandlerResult result)
+			throws Wss4jSecurityValidationException {
+		List<WSSecurityEngineResult> results = result.getActionResults().get(WSConstants.SIGN);
+		if (session.getCertificate() == null || results == null) {
+			return;
+		}
+		for (WSSecurityEngineResult signatureResult : results) {
+			X509Certificate certificate = (X509Certificate) signatureResult
+					.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE);
+			if (certificate != null && !certificate.equals(session.getCertificate())) {
+				throw new Wss4jSecurityValidationException("Secure conversation session [" + session.getIdentifier()
+						+ "] was established by another principal");
+			}
+		}
+	}
+
+	/**
+	 * Returns the secure conversation session to secure the given message with, or {@code null} if the message is not to
+	 * be secured within a session. A client uses the current session with the destination of the request, a server the
+	 * session of the request.
+	 */
+	private SecureConversationSession getSecurementSession(SoapMessage soapMessage, MessageContext messageContext,
+			List<HandlerAction> actions) {
+		if (secureConversationSessionStore == null) {
+			return null;
+		}
+		boolean signOrEncrypt = false;
+		for (HandlerAction action : actions) {
+			if (action.getAction() == WSConstants.SIGN || action.getAction() == WSConstants.ENCR) {
+				signOrEncrypt = true;
+			}
+		}
+		if (!signOrEncrypt) {
+			return null;
+		}
+		if (soapMessage == messageContext.getRequest()) {
+			URI destination = getDestination(messageContext);
+			if (destination == null) {
+				return null;
+			}
+			SecureConversationSession session = secureConversationSessionStore.getPartnerSession(destination.toString());
+			messageContext.setProperty(SECURE_CONVERSATION_SESSION_PROPERTY_NAME, session);
+			return session;
+		}
+		return (SecureConversationSession) messageContext.getProperty(SECURE_CONVERSATION_SESSION_PROPERTY_NAME);
+	}
+
+	private URI getDestination(MessageContext messageContext) {
+		URI destination = (URI) messageContext.getProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY);
+		if (destination == null) {
+			TransportContext transportContext = TransportContextHolder.getTransportContext();
+			if (transportContext != null) {
+				try {
+					destination = transportContext.getConnection().getUri();
+				} catch (URISyntaxException ex) {
+					// ignore
+				}
+			}
+		}
+		return destination;
+	}
+
+	/**
+	 * Adds the secret of a session that is not established yet to the security header, encrypted for the encryption user.
+	 * The encrypted key carries the identifier of the session as its name.
+	 */
+	private void addEncryptedSessionSecret(Document document, SecureConversationSession session,
+			RequestData requestData) throws WSSecurityException {
+		WSSecHeader secHeader = new WSSecHeader((String) handler.getOption(WSHandlerConstants.ACTOR),
+				Boolean.parseBoolean((String) handler.getOption(WSHandlerConstants.MUST_UNDERSTAND)), document);
+		secHeader.insertSecurityHeader();
+
+		WSSecEncryptedKey encryptedKey = new WSSecEncryptedKey(secHeader);
+		encryptedKey.setIdAllocator(wssConfig.getIdAllocator());
+		encryptedKey.setUserInfo((String) handler.getOption(WSHandlerConstants.ENCRYPTION_USER));
+		String keyIdentifier = (String) handler.getOption(WSHandlerConstants.ENC_KEY_ID);
+		if (keyIdentifier != null) {
+			encryptedKey.setKeyIdentifierType(WSHandlerConstants.getKeyIdentifier(keyIdentifier));
+		}
+		String keyTransportAlgorithm = (String) handler.getOption(WSHandlerConstants.ENC_KEY_TRANSPORT);
+		encryptedKey.setKeyEncAlgo(
+				keyTransportAlgorithm != null ? keyTransportAlgorithm : WSConstants.KEYTRANSPORT_RSAOAEP);
+		encryptedKey.prepare(handler.loadEncryptionCrypto(requestData),
+				new SecretKeySpec(session.getSecret(), "AES"));
+
+		Element encryptedKeyElement = encryptedKey.getEncryptedKeyElement();
+		Element carriedKeyName = encryptedKeyElement.getOwnerDocument().createElementNS(WSConstants.ENC_NS,
+				WSConstants.ENC_PREFIX + ":" + CARRIED_KEY_NAME_LN);
+		carriedKeyName.setTextContent(session.getIdentifier());
+		encryptedKeyElement.appendChild(carriedKeyName);
+		encryptedKey.prependToHeader();
+	}
+
+	/**
+	 * Adds the security context token of the given session to the top of the security header, preceded by the encrypted
+	 * secret of the session, if any.
+	 */
+	private void addSecurityContextToken(SecureConversationSession session, RequestData requestData)
+			throws WSSecurityException {
+		Element securityHeader = requestData.getSecHeader().getSecurityHeaderElement();
+		SecurityContextToken token = new SecurityContextToken(ConversationConstants.VERSION_05_12,
+				securityHeader.getOwnerDocument(), session.getIdentifier());
+		WSSecurityUtil.prependChildElement(securityHeader, token.getElement());
+		Element encryptedSecret = findEncryptedSessionSecret(securityHeader, session.getIdentifier());
+		if (encryptedSecret != null) {
+			WSSecurityUtil.prependChildElement(securityHeader, encryptedSecret);
+		}
+	}
+
+	private static Element findEncryptedSessionSecret(Element securityHeader, String identifier) {
+		for (Node child = securityHeader.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && WSConstants.ENC_NS.equals(child.getNamespaceURI())
+					&& WSConstants.ENC_KEY_LN.equals(child.getLocalName())
+					&& identifier.equals(getCarriedKeyName((Element) child))) {
+				return (Element) child;
+			}
+		}
+		return null;
+	}
+
+	private static String getCarriedKeyName(Element encryptedKey) {
+		for (Node child = encryptedKey.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && WSConstants.ENC_NS.equals(child.getNamespaceURI())
+					&& CARRIED_KEY_NAME_LN.equals(child.getLocalName())) {
+				return child.getTextContent().trim();
+			}
+		}
+		return null;
+	}
+
+	private static SecureConversationSession getSecureConversationSession(RequestData requestData) {
+		return (SecureConversationSession) ((MessageContext) requestData.getMsgContext())
+				.getProperty(SECURE_CONVERSATION_SESSION_PROPERTY_NAME);
+	}
+
+	/**
+	 * Removes the secure conversation session of the request if the fault is a WS-Security or WS-SecureConversation
+	 * fault, for instance because the server does not know the session (anymore), so that the next request establishes a
+	 * new session.
+	 */
+	@Override
+	public boolean handleFault(MessageContext messageContext) throws WebServiceClientException {
+		if (secureConversationSessionStore != null && messageContext.getResponse() instanceof SoapMessage) {
+			SecureConversationSession session = (SecureConversationSession) messageContext
+					.getProperty(SECURE_CONVERSATION_SESSION_PROPERTY_NAME);
+			SoapFault fault = ((SoapMessage) messageContext.getResponse()).getSoapBody().getFault();
+			if (session != null && fault != null && isSecurityFault(fault)) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Removing " + session + " after security fault [" + fault.getFaultStringOrReason() + "]");
+				}
+				secureConversationSessionStore.removeSession(session.getIdentifier());
+			}
+		}
+		return super.handleFault(messageContext);
+	}
+
+	private static boolean isSecurityFault(SoapFault fault) {
+		if (isSecurityFaultCode(fault.getFaultCode())) {
+			return true;
+		}
+		if (fault instanceof Soap12Fault) {
+			for (Iterator<QName> iterator = ((Soap12Fault) fault).getFaultSubcodes(); iterator.hasNext();) {
+				if (isSecurityFaultCode(iterator.next())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isSecurityFaultCode(QName faultCode) {
+		String namespace = faultCode != null ? faultCode.getNamespaceURI() : null;
+		return WSConstants.WSSE_NS.equals(namespace) || ConversationConstants.WSC_NS_05_12.equals(namespace)
+				|| ConversationConstants.WSC_NS_05_02.equals(namespace);
+	}
+
 	@Override
 	protected void cleanUp() {
 		if (validationCallbackHandler != null) {
@@ -851,4 +1539,202 @@ public class Wss4jSecurityInterceptor extends AbstractWsSecurityInterceptor impl
 			}
 		}
 	}
+
+	private String getTrustAnchorsVersion(Crypto crypto) throws WSSecurityException {
+		crypto = ReloadableCrypto.getCrypto(crypto);
+		// Crypto implementations do not override equals, so the versions are kept per instance
+		String version = trustAnchorsVersions.get(crypto);
+		if (version == null) {
+			if (crypto instanceof Merlin) {
+				try {
+					version = CertificateValidationCache.getTrustAnchorsVersion(((Merlin) crypto).getKeyStore(),
+							((Merlin) crypto).getTrustStore());
+				} catch (GeneralSecurityException ex) {
+					throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+				}
+			} else {
+				version = crypto.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(crypto));
+			}
+			trustAnchorsVersions.put(crypto, version);
+		}
+		return version;
+	}
+
+	private static String getCertificateConstraints(RequestData data) {
+		Collection<Pattern> subjectConstraints = data.getSubjectCertConstraints();
+		Collection<Pattern> issuerConstraints = data.getIssuerDNPatterns();
+		if (CollectionUtils.isEmpty(subjectConstraints) && CollectionUtils.isEmpty(issuerConstraints)) {
+			return "";
+		}
+		StringBuilder builder = new StringBuilder();
+		appendPatterns(builder.append(";subject="), subjectConstraints);
+		appendPatterns(builder.append(";issuer="), issuerConstraints);
+		return builder.toString();
+	}
+
+	private static void appendPatterns(StringBuilder builder, Collection<Pattern> patterns) {
+		if (patterns != null) {
+			for (Pattern pattern : patterns) {
+				builder.append(pattern.flags()).append('/').append(pattern.pattern()).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * {@link SignatureTrustValidator} that consults the {@link CertificateValidationCache} before verifying trust in a
+	 * certificate chain. The subject and issuer constraints of the request are part of the cache key, so that a chain
+	 * validated without constraints is not accepted by an interceptor that has them.
+	 */
+	private class CachingSignatureTrustValidator extends SignatureTrustValidator {
+
+		@Override
+		protected void verifyTrustInCerts(X509Certificate[] certificates, Crypto crypto, RequestData data,
+				boolean enableRevocation) throws WSSecurityException {
+			String version = getTrustAnchorsVersion(crypto) + getCertificateConstraints(data);
+			if (!certificateValidationCache.isValid(certificates, version, enableRevocation)) {
+				super.verifyTrustInCerts(certificates, crypto, data, enableRevocation);
+				certificateValidationCache.setValid(certificates, version, enableRevocation);
+			}
+		}
+	}
+
+	/**
+	 * {@link SignatureAction} that signs messages with a key derived from the secret of the secure conversation session
+	 * of the exchange, if any. A message that carries the secret of a session that is not established yet is signed with
+	 * the private key of the signature user instead, including the encrypted secret.
+	 */
+	private class SecureConversationSignatureAction extends SignatureAction {
+
+		@Override
+		public void execute(WSHandler handler, SecurityActionToken actionToken, RequestData reqData)
+				throws WSSecurityException {
+			SignatureActionToken signatureToken = actionToken != null ? (SignatureActionToken) actionToken
+					: reqData.getSignatureToken();
+			SecureConversationSession session = getSecureConversationSession(reqData);
+			if (session == null) {
+				super.execute(handler, signatureToken, reqData);
+				return;
+			}
+			WSSecHeader secHeader = reqData.getSecHeader();
+			if (!session.isEstablished()) {
+				Element encryptedSecret = findEncryptedSessionSecret(secHeader.getSecurityHeaderElement(),
+						session.getIdentifier());
+				if (encryptedSecret != null) {
+					List<WSEncryptionPart> parts = signatureToken.getParts();
+					if (parts.isEmpty()) {
+						parts.add(WSSecurityUtil.getDefaultEncryptionPart(secHeader.getSecurityHeaderDoc()));
+					}
+					parts.add(new WSEncryptionPart(encryptedSecret.getAttributeNS(null, "Id")));
+					super.execute(handler, signatureToken, reqData);
+					return;
+				}
+			}
+			WSSecDKSign sign = new WSSecDKSign(secHeader);
+			sign.setIdAllocator(reqData.getWssConfig().getIdAllocator());
+			sign.setAddInclusivePrefixes(reqData.isAddInclusivePrefixes());
+			sign.setTokenIdentifier(session.getIdentifier());
+			sign.setCustomValueType(WSConstants.WSC_SCT_05_12);
+			sign.setSignatureAlgorithm(WSConstants.HMAC_SHA256);
+			sign.setDerivedKeyLength(32);
+			if (signatureToken.getDigestAlgorithm() != null) {
+				sign.setDigestAlgorithm(signatureToken.getDigestAlgorithm());
+			}
+			if (signatureToken.getC14nAlgorithm() != null) {
+				sign.setSigCanonicalization(signatureToken.getC14nAlgorithm());
+			}
+			sign.getParts().addAll(signatureToken.getParts());
+			sign.build(session.getSecret());
+			reqData.getSignatureValues().add(sign.getSignatureValue());
+		}
+	}
+
+	/**
+	 * {@link EncryptionAction} that encrypts messages with a key derived from the secret of the secure conversation
+	 * session of the exchange, if any. Other messages are encrypted by the given action.
+	 */
+	private class SecureConversationEncryptionAction extends EncryptionAction {
+
+		private final EncryptionAction encryptionAction;
+
+		private SecureConversationEncryptionAction(EncryptionAction encryptionAction) {
+			this.encryptionAction = encryptionAction;
+		}
+
+		@Override
+		public void execute(WSHandler handler, SecurityActionToken actionToken, RequestData reqData)
+				throws WSSecurityException {
+			EncryptionActionToken encryptionToken = actionToken != null ? (EncryptionActionToken) actionToken
+					: reqData.getEncryptionToken();
+			SecureConversationSession session = getSecureConversationSession(reqData);
+			if (session == null) {
+				encryptionAction.execute(handler, encryptionToken, reqData);
+				return;
+			}
+			WSSecDKEncrypt encrypt = new WSSecDKEncrypt(reqData.getSecHeader());
+			encrypt.setIdAllocator(reqData.getWssConfig().getIdAllocator());
+			encrypt.setTokenIdentifier(session.getIdentifier());
+			encrypt.setCustomValueType(WSConstants.WSC_SCT_05_12);
+			if (encryptionToken.getSymmetricAlgorithm() != null) {
+				encrypt.setSymmetricEncAlgorithm(encryptionToken.getSymmetricAlgorithm());
+			}
+			encrypt.getParts().addAll(encryptionToken.getParts());
+			encrypt.build(session.getSecret());
+		}
+	}
+
+	/**
+	 * Callback handler that provides the secrets of secure conversation sessions, either from the session store, or from
+	 * an encrypted key in the message being validated. Other callbacks are passed on to the validation callback handler.
+	 */
+	private class SecureConversationCallbackHandler implements CallbackHandler {
+
+		private final RequestData requestData;
+
+		/** Identifier of a security context token whose secret could not be provided, if any. */
+		private String unknownIdentifier;
+
+		private SecureConversationCallbackHandler(RequestData requestData) {
+			this.requestData = requestData;
+		}
+
+		@Override
+		public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+			for (Callback callback : callbacks) {
+				if (callback instanceof WSPasswordCallback
+						&& ((WSPasswordCallback) callback).getUsage() == WSPasswordCallback.SECURITY_CONTEXT_TOKEN) {
+					WSPasswordCallback passwordCallback = (WSPasswordCallback) callback;
+					byte[] secret = getSecret(passwordCallback.getIdentifier());
+					if (secret != null) {
+						passwordCallback.setKey(secret);
+						continue;
+					}
+					if (passwordCallback.getIdentifier() != null) {
+						unknownIdentifier = passwordCallback.getIdentifier();
+					}
+				}
+				if (validationCallbackHandler == null) {
+					throw new UnsupportedCallbackException(callback);
+				}
+				validationCallbackHandler.handle(new Callback[] { callback });
+			}
+		}
+
+		private byte[] getSecret(String identifier) {
+			if (identifier == null) {
+				return null;
+			}
+			SecureConversationSession session = secureConversationSessionStore.getSession(identifier);
+			if (session != null) {
+				return session.getSecret();
+			}
+			if (requestData.getWsDocInfo() != null) {
+				WSSecurityEngineResult result = findSessionSecret(requestData.getWsDocInfo().getResults(), identifier);
+				if (result != null) {
+					return (byte[]) result.get(WSSecurityEngineResult.TAG_SECRET);
+				}
+			}
+			return null;
+		}
+	}
+
 }
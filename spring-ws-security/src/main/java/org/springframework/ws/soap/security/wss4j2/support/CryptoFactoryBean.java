@@ -16,17 +16,25 @@
 
 package org.springframework.ws.soap.security.wss4j2.support;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.Merlin;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.ws.soap.security.support.ResourceModificationMonitor;
 
 /**
  * Spring factory bean for a WSS4J {@link Crypto}. Allows for strong-typed property configuration, or configuration
@@ -34,6 +42,11 @@ import org.springframework.util.Assert;
  * <p>
  * Requires either individual properties, or the {@link #setConfiguration(java.util.Properties) configuration} property
  * to be set.
+ * <p>
+ * When a {@link #setReloadInterval(long) reloadInterval} is set, the {@code Crypto} is recreated when its key store or
+ * trust store file changes, so that certificates can be rotated without restarting the application. The new
+ * {@code Crypto} is loaded on a background thread, and then swapped in atomically: the created object is a
+ * {@link ReloadableCrypto} that delegates to the last successfully loaded one.
  *
  * @author Tareq Abed Rabbo
  * @author Arjen Poutsma
@@ -41,14 +54,22 @@ import org.springframework.util.Assert;
  * @see org.apache.ws.security.components.crypto.Crypto
  * @since 2.3.0
  */
-public class CryptoFactoryBean implements FactoryBean<Crypto>, InitializingBean {
+public class CryptoFactoryBean implements FactoryBean<Crypto>, InitializingBean, DisposableBean {
 
 	private Properties configuration = new Properties();
 
 	private Crypto crypto;
 
+	private long reloadInterval;
+
+	private ResourceModificationMonitor monitor;
+
 	private static final String CRYPTO_PROVIDER_PROPERTY = "org.apache.wss4j.crypto.provider";
 
+	private static final String[] FILE_PROPERTIES = { "org.apache.ws.security.crypto.merlin.file",
+			"org.apache.wss4j.crypto.merlin.keystore.file", "org.apache.ws.security.crypto.merlin.truststore.file",
+			"org.apache.wss4j.crypto.merlin.truststore.file" };
+
 	/**
 	 * Sets the configuration of the Crypto. Setting this property overrides all previously set configuration, through the
 	 * type-safe properties
@@ -158,12 +179,55 @@ public class CryptoFactoryBean implements FactoryBean<Crypto>, InitializingBean
 		this.configuration.setProperty("org.apache.ws.security.crypto.merlin.keystore.alias", defaultX509Alias);
 	}
 
+	/**
+	 * Sets the interval at which the key store and trust store files are checked for modifications, in milliseconds.
+	 * When either has been modified, the {@code Crypto} is recreated. Defaults to {@code 0}, which disables reloading.
+	 */
+	public void setReloadInterval(long reloadInterval) {
+		this.reloadInterval = reloadInterval;
+	}
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		if (!configuration.containsKey(CRYPTO_PROVIDER_PROPERTY)) {
 			configuration.setProperty(CRYPTO_PROVIDER_PROPERTY, Merlin.class.getName());
 		}
-		this.crypto = CryptoFactory.getInstance(configuration);
+		Crypto loaded = CryptoFactory.getInstance(configuration);
+		List<Resource> resources = getStoreResources();
+		if (reloadInterval > 0 && !resources.isEmpty()) {
+			final ReloadableCrypto reloadableCrypto = new ReloadableCrypto(loaded);
+			this.crypto = reloadableCrypto;
+			this.monitor = new ResourceModificationMonitor("crypto " + resources, resources, reloadInterval,
+					new Callable<Object>() {
+
+						@Override
+						public Object call() throws Exception {
+							reloadableCrypto.setCrypto(CryptoFactory.getInstance(configuration));
+							return null;
+						}
+					});
+			this.monitor.start();
+		} else {
+			this.crypto = loaded;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (monitor != null) {
+			monitor.stop();
+		}
+	}
+
+	private List<Resource> getStoreResources() {
+		List<Resource> resources = new ArrayList<Resource>();
+		for (String property : FILE_PROPERTIES) {
+			String path = configuration.getProperty(property);
+			if (StringUtils.hasLength(path)) {
+				resources.add(new File(path).exists() ? new FileSystemResource(path) : new ClassPathResource(path));
+			}
+		}
+		return resources;
 	}
 
 	@Override
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ReplayCache} that keeps its identifiers in a memory-mapped file, so that replay protection survives a restart
+ * of the application. Like the {@link TimeBucketedReplayCache}, it is suitable for use as the nonce, timestamp, or SAML
+ * one-time use replay cache of a {@link org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor}.
+ * <p>
+ * The file holds a fixed number of slots, divided into groups of {@value #GROUP_SIZE}. Each slot holds a 128-bit hash of
+ * an identifier and its expiry time. An identifier is stored in the group determined by its hash, in a free or expired
+ * slot. Unexpired identifiers are never replaced: if the group of an unknown identifier is full, the cache reports the
+ * identifier as {@linkplain #contains(String) contained}, so that the message that carries it is rejected as a replay
+ * rather than accepted without protection. Such rejections are logged and {@linkplain #getRejectionCount() counted}; the
+ * capacity should comfortably exceed the number of identifiers received within their time to live. Groups are locked
+ * independently of each other, and stored identifiers do not occupy the heap.
+ * <p>
+ * The file is locked exclusively while the cache is open, so that it is used by a single cache instance at a time. It is
+ * recreated if it was written with a different capacity.
+ *
+ * @since 3.1
+ */
+public class MappedFileReplayCache implements ReplayCache {
+
+	/** Number of slots in a group. */
+	public static final int GROUP_SIZE = 8;
+
+	/** Default time to live of identifiers added without expiry, in milliseconds: one hour. */
+	public static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000;
+
+	private static final int MAGIC = 0x53575243;
+
+	private static final int HEADER_SIZE = 16;
+
+	private static final int SLOT_SIZE = 24;
+
+	private static final int LOCK_COUNT = 64;
+
+	private static final Log logger = LogFactory.getLog(MappedFileReplayCache.class);
+
+	private final RandomAccessFile file;
+
+	private final FileLock fileLock;
+
+	private final MappedByteBuffer buffer;
+
+	private final int groupCount;
+
+	private final Object[] locks = new Object[LOCK_COUNT];
+
+	private final AtomicLong rejectionCount = new AtomicLong();
+
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	/**
+	 * Creates a new {@code MappedFileReplayCache} that uses the given file, creating it if it does not exist.
+	 *
+	 * @param file the file to use
+	 * @param capacity the number of identifiers the cache can hold, rounded up to a multiple of {@value #GROUP_SIZE}
+	 * @throws IOException in case of I/O errors, or if the file is locked by another cache
+	 */
+	public MappedFileReplayCache(File file, int capacity) throws IOException {
+		Assert.notNull(file, "'file' must not be null");
+		Assert.isTrue(capacity > 0, "'capacity' must be larger than 0");
+		this.groupCount = (capacity + GROUP_SIZE - 1) / GROUP_SIZE;
+		long size = HEADER_SIZE + (long) groupCount * GROUP_SIZE * SLOT_SIZE;
+		Assert.isTrue(size <= Integer.MAX_VALUE, "'capacity' too large");
+		this.file = new RandomAccessFile(file, "rw");
+		try {
+			this.fileLock = lock(this.file, file);
+			boolean valid = this.file.length() == size && this.file.readInt() == MAGIC
+					&& this.file.readInt() == groupCount;
+			if (!valid) {
+				this.file.setLength(0);
+				this.file.setLength(size);
+			}
+			this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			if (!valid) {
+				this.buffer.putInt(0, MAGIC);
+				this.buffer.putInt(4, groupCount);
+			}
+		} catch (IOException ex) {
+			this.file.close();
+			throw ex;
+		}
+		for (int i = 0; i < LOCK_COUNT; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/** Sets the time to live of identifiers added without an expiry, in milliseconds. Defaults to one hour. */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be larger than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	@Override
+	public void add(String identifier) {
+		add(identifier, System.currentTimeMillis() + timeToLive);
+	}
+
+	@Override
+	public void add(String identifier, Instant expiry) {
+		add(identifier, expiry != null ? expiry.toEpochMilli() : System.currentTimeMillis() + timeToLive);
+	}
+
+	/**
+	 * Indicates whether the given identifier is contained in this cache. Also returns {@code true} for an unknown
+	 * identifier that could not be stored, because its group is full.
+	 */
+	@Override
+	public boolean contains(String identifier) {
+		long[] hash = hash(identifier);
+		int group = getGroup(hash);
+		long now = System.currentTimeMillis();
+		synchronized (getLock(group)) {
+			if (findSlot(group, hash, now) >= 0) {
+				return true;
+			}
+			if (findFreeSlot(group, now) < 0) {
+				rejectionCount.incrementAndGet();
+				if (logger.isWarnEnabled()) {
+					logger.warn("Replay cache group is full; rejecting identifier [" + identifier
+							+ "]. Consider increasing the capacity.");
+				}
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/** Returns the number of identifiers that were rejected because their group was full. */
+	public long getRejectionCount() {
+		return rejectionCount.get();
+	}
+
+	/** Writes the contents of this cache to the file, and closes it, releasing its lock. */
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		try {
+			fileLock.release();
+		} finally {
+			file.close();
+		}
+	}
+
+	private void add(String identifier, long expiresAt) {
+		long[] hash = hash(identifier);
+		int group = getGroup(hash);
+		long now = System.currentTimeMillis();
+		if (expiresAt <= now) {
+			return;
+		}
+		synchronized (getLock(group)) {
+			int slot = findSlot(group, hash, now);
+			if (slot < 0) {
+				slot = findFreeSlot(group, now);
+			}
+			if (slot < 0) {
+				// never replace an unexpired identifier; contains() rejects this one
+				rejectionCount.incrementAndGet();
+				if (logger.isWarnEnabled()) {
+					logger.warn("Replay cache group is full; not storing identifier [" + identifier + "]");
+				}
+				return;
+			}
+			int offset = offset(slot);
+			buffer.putLong(offset, hash[0]);
+			buffer.putLong(offset + 8, hash[1]);
+			buffer.putLong(offset + 16, expiresAt);
+		}
+	}
+
+	/** Returns the slot of the unexpired identifier with the given hash, or {@code -1}. */
+	private int findSlot(int group, long[] hash, long now) {
+		int first = group * GROUP_SIZE;
+		for (int slot = first; slot < first + GROUP_SIZE; slot++) {
+			int offset = offset(slot);
+			if (buffer.getLong(offset + 16) > now && buffer.getLong(offset) == hash[0]
+					&& buffer.getLong(offset + 8) == hash[1]) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/** Returns a free or expired slot, or {@code -1} if there is none. */
+	private int findFreeSlot(int group, long now) {
+		int first = group * GROUP_SIZE;
+		for (int slot = first; slot < first + GROUP_SIZE; slot++) {
+			if (buffer.getLong(offset(slot) + 16) <= now) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	private static FileLock lock(RandomAccessFile randomAccessFile, File file) throws IOException {
+		FileLock lock;
+		try {
+			lock = randomAccessFile.getChannel().tryLock();
+		} catch (OverlappingFileLockException ex) {
+			lock = null;
+		}
+		if (lock == null) {
+			throw new IOException("Replay cache file [" + file + "] is in use by another cache");
+		}
+		return lock;
+	}
+
+	private int getGroup(long[] hash) {
+		return (int) ((hash[0] & Long.MAX_VALUE) % groupCount);
+	}
+
+	private Object getLock(int group) {
+		return locks[group % LOCK_COUNT];
+	}
+
+	private static int offset(int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	private static long[] hash(String identifier) {
+		Assert.notNull(identifier, "'identifier' must not be null");
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256").digest(identifier.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+		long[] hash = new long[2];
+		for (int i = 0; i < 16; i++) {
+			hash[i / 8] = (hash[i / 8] << 8) | (digest[i] & 0xff);
+		}
+		return hash;
+	}
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import javax.crypto.SecretKey;
+
+import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.crypto.AlgorithmSuite;
+import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.processor.Processor;
+import org.apache.wss4j.dom.util.EncryptionUtils;
+import org.apache.wss4j.dom.util.SignatureUtils;
+import org.apache.wss4j.dom.util.X509Util;
+import org.springframework.util.Assert;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * WSS4J {@link Processor} for {@code EncryptedKey} elements that decrypts the parts referenced by the key on an
+ * {@link Executor}, rather than one after the other on the calling thread. The counterpart of the
+ * {@link ParallelEncryptionAction}, but it decrypts messages encrypted by any sender.
+ * <p>
+ * The key itself, and the first part that references it, are decrypted by the given delegate processor, so that all
+ * checks WSS4J applies to encrypted keys are retained. The other parts are copied into documents of their own,
+ * decrypted concurrently, and copied back into the message once all of them are done.
+ * <p>
+ * Parts that cannot be decrypted independently of the message, such as attachments and encrypted headers, are
+ * decrypted on the calling thread. Keys that reference a single part are processed by the delegate entirely. The other
+ * parts are subject to the same checks that WSS4J applies to them: the Basic Security Profile rule on their encryption
+ * algorithm (R5620), if enforced, and the symmetric key length and encryption algorithm of the
+ * {@linkplain RequestData#getAlgorithmSuite() algorithm suite}, if any. Keys that reference the same part more than
+ * once are rejected.
+ *
+ * @see org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor#setEncryptionExecutor(Executor)
+ * @since 3.1
+ */
+public class ParallelEncryptedKeyProcessor implements Processor {
+
+	private final Processor delegate;
+
+	private final Executor executor;
+
+	private final long timeout;
+
+	/**
+	 * Creates a new {@code ParallelEncryptedKeyProcessor} that waits at most one minute for the parts of a message.
+	 *
+	 * @param delegate the processor that decrypts the key, typically WSS4J's own {@code EncryptedKeyProcessor}
+	 * @param executor the executor to decrypt parts on
+	 */
+	public ParallelEncryptedKeyProcessor(Processor delegate, Executor executor) {
+		this(delegate, executor, ParallelProcessingUtils.DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new {@code ParallelEncryptedKeyProcessor}.
+	 *
+	 * @param delegate the processor that decrypts the key, typically WSS4J's own {@code EncryptedKeyProcessor}
+	 * @param executor the executor to decrypt parts on
+	 * @param timeout the maximum time to wait for the parts of a message, in milliseconds
+	 */
+	public ParallelEncryptedKeyProcessor(Processor delegate, Executor executor, long timeout) {
+		Assert.notNull(delegate, "'delegate' must not be null");
+		Assert.notNull(executor, "'executor' must not be null");
+		Assert.isTrue(timeout > 0, "'timeout' must be larger than 0");
+		this.delegate = delegate;
+		this.executor = executor;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public List<WSSecurityEngineResult> handleToken(Element elem, RequestData data) throws WSSecurityException {
+		Element referenceList = XMLUtils.getDirectChildElement(elem, "ReferenceList", WSConstants.ENC_NS);
+		List<Element> dataReferences = getDataReferences(referenceList);
+		if (dataReferences.size() < 2) {
+			return delegate.handleToken(elem, data);
+		}
+		checkDuplicateReferences(dataReferences);
+		List<Node> nextSiblings = new ArrayList<Node>(dataReferences.size());
+		for (int i = 1; i < dataReferences.size(); i++) {
+			Element dataReference = dataReferences.get(i);
+			nextSiblings.add(dataReference.getNextSibling());
+			referenceList.removeChild(dataReference);
+		}
+		List<WSSecurityEngineResult> results;
+		try {
+			results = delegate.handleToken(elem, data);
+		} finally {
+			for (int i = dataReferences.size() - 1; i > 0; i--) {
+				referenceList.insertBefore(dataReferences.get(i), nextSiblings.get(i - 1));
+			}
+		}
+		WSSecurityEngineResult result = results.get(0);
+		byte[] secret = (byte[]) result.get(WSSecurityEngineResult.TAG_SECRET);
+		@SuppressWarnings("unchecked")
+		List<WSDataRef> firstDataRefs = (List<WSDataRef>) result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+		List<WSDataRef> dataRefs = new ArrayList<WSDataRef>(dataReferences.size());
+		if (firstDataRefs != null) {
+			dataRefs.addAll(firstDataRefs);
+		}
+		dataRefs.addAll(decryptDataReferences(dataReferences.subList(1, dataReferences.size()), secret, elem, data));
+		result.put(WSSecurityEngineResult.TAG_DATA_REF_URIS, dataRefs);
+		return results;
+	}
+
+	private static List<Element> getDataReferences(Element referenceList) {
+		List<Element> dataReferences = new ArrayList<Element>();
+		if (referenceList != null) {
+			for (Node child = referenceList.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child.getNodeType() == Node.ELEMENT_NODE && WSConstants.ENC_NS.equals(child.getNamespaceURI())
+						&& "DataReference".equals(child.getLocalName())) {
+					dataReferences.add((Element) child);
+				}
+			}
+		}
+		return dataReferences;
+	}
+
+	/** Rejects data references that reference the same part, as each part can only be replaced once. */
+	private static void checkDuplicateReferences(List<Element> dataReferences) throws WSSecurityException {
+		Set<String> ids = new HashSet<String>();
+		for (Element dataReference : dataReferences) {
+			String id = XMLUtils.getIDFromReference(dataReference.getAttributeNS(null, "URI"));
+			if (id == null) {
+				throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, "badReferenceURI");
+			}
+			if (!ids.add(id)) {
+				throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, "duplicateError");
+			}
+		}
+	}
+
+	private List<WSDataRef> decryptDataReferences(List<Element> dataReferences, byte[] secret, Element elem,
+			RequestData data) throws WSSecurityException {
+		Document doc = elem.getOwnerDocument();
+		WSDocInfo wsDocInfo = data.getWsDocInfo();
+		WSDataRef[] dataRefs = new WSDataRef[dataReferences.size()];
+		Element[] encryptedData = new Element[dataReferences.size()];
+		Element[] decryptedParents = new Element[dataReferences.size()];
+		List<FutureTask<WSDataRef>> tasks = new ArrayList<FutureTask<WSDataRef>>(dataReferences.size());
+		for (int i = 0; i < dataReferences.size(); i++) {
+			String id = XMLUtils.getIDFromReference(dataReferences.get(i).getAttributeNS(null, "URI"));
+			Element encData = EncryptionUtils.findEncryptedDataElement(doc, wsDocInfo, id);
+			if (data.isRequireSignedEncryptedDataElements()) {
+				SignatureUtils.verifySignedElement(encData, wsDocInfo.getResultsByTag(WSConstants.SIGN));
+			}
+			String algorithm = X509Util.getEncAlgo(encData);
+			if (algorithm == null) {
+				throw new WSSecurityException(WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, "badEncAlgo",
+						new Object[] { "null" });
+			}
+			SecretKey key;
+			try {
+				key = KeyUtils.prepareSecretKey(algorithm, secret);
+			} catch (IllegalArgumentException ex) {
+				throw new WSSecurityException(WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, ex, "badEncAlgo",
+						new Object[] { algorithm });
+			}
+			checkEncryptionAlgorithm(algorithm, key, data);
+			if (isEncryptedHeader(encData) || EncryptionUtils.getCipherValueFromEncryptedData(encData) == null) {
+				dataRefs[i] = EncryptionUtils.decryptEncryptedData(doc, id, encData, key, algorithm,
+						data.getAttachmentCallbackHandler(), data.getEncryptionSerializer());
+				tasks.add(null);
+				continue;
+			}
+			encryptedData[i] = encData;
+			Element copy;
+			if (X509Util.isContent(encData)) {
+				// WSS4J decrypts content relative to the parent of the EncryptedData, so copy that as well
+				decryptedParents[i] = ParallelProcessingUtils.copyToPrivateDocument((Element) encData.getParentNode(),
+						false);
+				copy = (Element) decryptedParents[i]
+						.appendChild(decryptedParents[i].getOwnerDocument().importNode(encData, true));
+			} else {
+				copy = ParallelProcessingUtils.copyToPrivateDocument(encData, true);
+				decryptedParents[i] = (Element) copy.getParentNode();
+			}
+			FutureTask<WSDataRef> task = new FutureTask<WSDataRef>(
+					new DecryptionTask(copy, id, key, algorithm, data));
+			ParallelProcessingUtils.execute(executor, task);
+			tasks.add(task);
+		}
+		List<WSDataRef> decrypted = ParallelProcessingUtils.getResults(tasks, timeout);
+		for (int i = 0; i < tasks.size(); i++) {
+			if (tasks.get(i) != null) {
+				dataRefs[i] = decrypted.get(i);
+			}
+		}
+		List<WSDataRef> result = new ArrayList<WSDataRef>(dataRefs.length);
+		for (int i = 0; i < dataRefs.length; i++) {
+			if (encryptedData[i] != null) {
+				replaceEncryptedData(encryptedData[i], decryptedParents[i], dataRefs[i]);
+			}
+			result.add(dataRefs[i]);
+		}
+		return result;
+	}
+
+	/** Applies the checks WSS4J's {@code EncryptedKeyProcessor} applies to the algorithm of each referenced part. */
+	private static void checkEncryptionAlgorithm(String algorithm, SecretKey key, RequestData data)
+			throws WSSecurityException {
+		if (!WSConstants.TRIPLE_DES.equals(algorithm) && !WSConstants.AES_128.equals(algorithm)
+				&& !WSConstants.AES_128_GCM.equals(algorithm) && !WSConstants.AES_256.equals(algorithm)
+				&& !WSConstants.AES_256_GCM.equals(algorithm)) {
+			data.getBSPEnforcer().handleBSPRule(BSPRule.R5620);
+		}
+		AlgorithmSuite algorithmSuite = data.getAlgorithmSuite();
+		if (algorithmSuite != null) {
+			AlgorithmSuiteValidator validator = new AlgorithmSuiteValidator(algorithmSuite);
+			validator.checkSymmetricKeyLength(key.getEncoded().length);
+			validator.checkSymmetricEncryptionAlgorithm(algorithm);
+		}
+	}
+
+	private static boolean isEncryptedHeader(Element encData) {
+		Node parent = encData.getParentNode();
+		return parent != null && WSConstants.WSSE11_NS.equals(parent.getNamespaceURI())
+				&& "EncryptedHeader".equals(parent.getLocalName());
+	}
+
+	/**
+	 * Replaces the given {@code EncryptedData} element with the children of its decrypted parent in the private
+	 * document, and updates the given data reference accordingly.
+	 */
+	private static void replaceEncryptedData(Element encData, Element decryptedParent, WSDataRef dataRef) {
+		Node parent = encData.getParentNode();
+		Document doc = encData.getOwnerDocument();
+		Map<Node, Node> imported = new IdentityHashMap<Node, Node>();
+		for (Node child = decryptedParent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			imported.put(child, parent.insertBefore(doc.importNode(child, true), encData));
+		}
+		parent.removeChild(encData);
+		Element protectedElement = dataRef.getProtectedElement() == decryptedParent ? (Element) parent
+				: (Element) imported.get(dataRef.getProtectedElement());
+		dataRef.setProtectedElement(protectedElement);
+		dataRef.setXpath(EncryptionUtils.getXPath(protectedElement));
+		dataRef.setEncryptedElement(encData);
+	}
+
+	/** Decrypts the copy of an {@code EncryptedData} element in its private document. */
+	private static class DecryptionTask implements Callable<WSDataRef> {
+
+		private final Element copy;
+
+		private final String id;
+
+		private final SecretKey key;
+
+		private final String algorithm;
+
+		private final RequestData data;
+
+		private DecryptionTask(Element copy, String id, SecretKey key, String algorithm, RequestData data) {
+			this.copy = copy;
+			this.id = id;
+			this.key = key;
+			this.algorithm = algorithm;
+			this.data = data;
+		}
+
+		@Override
+		public WSDataRef call() throws WSSecurityException {
+			return EncryptionUtils.decryptEncryptedData(copy.getOwnerDocument(), id, copy, key, algorithm,
+					data.getAttachmentCallbackHandler(), data.getEncryptionSerializer());
+		}
+	}
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.wss4j.common.EncryptionActionToken;
+import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.action.EncryptionAction;
+import org.apache.wss4j.dom.callback.CallbackLookup;
+import org.apache.wss4j.dom.callback.DOMCallbackLookup;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandler;
+import org.apache.wss4j.dom.message.WSSecEncrypt;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.apache.xml.security.encryption.XMLCipher;
+import org.springframework.util.Assert;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * WSS4J {@link EncryptionAction} that encrypts the parts of a message on an {@link Executor}, rather than one after
+ * the other on the calling thread.
+ * <p>
+ * WSS4J encrypts all parts in the document of the message, which cannot be modified by several threads at once. This
+ * action therefore copies each part into a document of its own, encrypts the copies concurrently, and replaces the
+ * original parts with the results once all of them are done. All parts are encrypted with the same symmetric key, but
+ * each with its own cipher instance and initialization vector, so that the resulting message is identical to one
+ * encrypted by WSS4J itself. The first part is always encrypted by WSS4J, which also creates the
+ * {@code EncryptedKey} and its {@code ReferenceList}, to which the references to the other parts are added.
+ * <p>
+ * Parts that cannot be encrypted independently of the message, such as attachments, encrypted headers, and parts that
+ * contain or are contained by other parts, are left to WSS4J. Messages with a single part are encrypted by WSS4J
+ * entirely.
+ *
+ * @see org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor#setEncryptionExecutor(Executor)
+ * @see ParallelEncryptedKeyProcessor
+ * @since 3.1
+ */
+public class ParallelEncryptionAction extends EncryptionAction {
+
+	private final Executor executor;
+
+	private final long timeout;
+
+	/**
+	 * Creates a new {@code ParallelEncryptionAction} that waits at most one minute for the parts of a message.
+	 *
+	 * @param executor the executor to encrypt parts on
+	 */
+	public ParallelEncryptionAction(Executor executor) {
+		this(executor, ParallelProcessingUtils.DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new {@code ParallelEncryptionAction}.
+	 *
+	 * @param executor the executor to encrypt parts on
+	 * @param timeout the maximum time to wait for the parts of a message, in milliseconds
+	 */
+	public ParallelEncryptionAction(Executor executor, long timeout) {
+		Assert.notNull(executor, "'executor' must not be null");
+		Assert.isTrue(timeout > 0, "'timeout' must be larger than 0");
+		this.executor = executor;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void execute(WSHandler handler, SecurityActionToken actionToken, RequestData reqData)
+			throws WSSecurityException {
+		EncryptionActionToken encryptionToken = actionToken != null ? (EncryptionActionToken) actionToken
+				: reqData.getEncryptionToken();
+		List<WSEncryptionPart> parts = encryptionToken.getParts();
+		if (parts.size() < 2 || reqData.isStoreBytesInAttachment() || reqData.isExpandXopInclude()
+				|| encryptionToken.isGetSymmetricKeyFromCallbackHandler()
+				|| (!encryptionToken.isEncSymmetricEncryptionKey() && encryptionToken.getKey() == null)) {
+			super.execute(handler, encryptionToken, reqData);
+			return;
+		}
+		Document doc = reqData.getSecHeader().getSecurityHeaderElement().getOwnerDocument();
+		List<EncryptedPart> parallelParts = findParallelParts(parts, doc);
+		if (parallelParts.isEmpty()) {
+			super.execute(handler, encryptionToken, reqData);
+			return;
+		}
+		String algorithm = encryptionToken.getSymmetricAlgorithm() != null ? encryptionToken.getSymmetricAlgorithm()
+				: WSConstants.AES_128;
+		byte[] originalKey = encryptionToken.getKey();
+		try {
+			byte[] key = originalKey;
+			if (key == null) {
+				key = KeyUtils.getKeyGenerator(algorithm).generateKey().getEncoded();
+				encryptionToken.setKey(key);
+			}
+			List<FutureTask<Element>> tasks = new ArrayList<FutureTask<Element>>(parallelParts.size());
+			for (EncryptedPart parallelPart : parallelParts) {
+				parallelPart.id = reqData.getWssConfig().getIdAllocator().createId("ED-", parallelPart.element);
+				parallelPart.copy = ParallelProcessingUtils.copyToPrivateDocument(parallelPart.element, true);
+				FutureTask<Element> task = new FutureTask<Element>(
+						new EncryptionTask(parallelPart.copy, parallelPart.id, algorithm, key, parallelPart.content));
+				ParallelProcessingUtils.execute(executor, task);
+				tasks.add(task);
+			}
+			List<WSEncryptionPart> sequentialParts = new ArrayList<WSEncryptionPart>(parts);
+			for (EncryptedPart parallelPart : parallelParts) {
+				sequentialParts.remove(parallelPart.part);
+			}
+			encryptionToken.setParts(sequentialParts);
+			try {
+				super.execute(handler, encryptionToken, reqData);
+			} finally {
+				encryptionToken.setParts(parts);
+			}
+			List<Element> encryptedData = ParallelProcessingUtils.getResults(tasks, timeout);
+			replaceParts(parts.get(0), parallelParts, encryptedData, reqData, doc);
+		} finally {
+			encryptionToken.setKey(originalKey);
+		}
+	}
+
+	/**
+	 * Returns the parts that can be encrypted in parallel: those that identify a single element in the message, other
+	 * than the first part, and that do not overlap with any other part. Returns an empty list if any of the parts is an
+	 * attachment or an encrypted header.
+	 */
+	private List<EncryptedPart> findParallelParts(List<WSEncryptionPart> parts, Document doc)
+			throws WSSecurityException {
+		CallbackLookup callbackLookup = new DOMCallbackLookup(doc);
+		List<List<Element>> partElements = new ArrayList<List<Element>>(parts.size());
+		for (WSEncryptionPart part : parts) {
+			if (!isElementOrContent(part)) {
+				return Collections.emptyList();
+			}
+			partElements.add(WSSecurityUtil.findElements(part, callbackLookup, doc));
+		}
+		if (partElements.get(0).isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<EncryptedPart> parallelParts = new ArrayList<EncryptedPart>();
+		for (int i = 1; i < parts.size(); i++) {
+			List<Element> elements = partElements.get(i);
+			if (elements.size() == 1 && !overlaps(elements.get(0), i, partElements)) {
+				parallelParts.add(new EncryptedPart(parts.get(i), elements.get(0)));
+			}
+		}
+		return parallelParts;
+	}
+
+	private static boolean isElementOrContent(WSEncryptionPart part) {
+		String modifier = part.getEncModifier();
+		return ("Element".equals(modifier) || "Content".equals(modifier))
+				&& (part.getId() == null || !part.getId().startsWith("cid:"));
+	}
+
+	private static boolean overlaps(Element element, int index, List<List<Element>> partElements) {
+		for (int i = 0; i < partElements.size(); i++) {
+			if (i == index) {
+				continue;
+			}
+			for (Element other : partElements.get(i)) {
+				if (isAncestorOrSelf(element, other) || isAncestorOrSelf(other, element)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isAncestorOrSelf(Node ancestor, Node node) {
+		for (Node current = node; current != null; current = current.getParentNode()) {
+			if (current == ancestor) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replaces the parts encrypted in parallel with the given {@code EncryptedData} elements, which are given the key
+	 * info of the first part, and adds references to them to the reference list of the first part.
+	 */
+	private void replaceParts(WSEncryptionPart firstPart, List<EncryptedPart> parallelParts,
+			List<Element> encryptedData, RequestData reqData, Document doc) throws WSSecurityException {
+		Element securityHeader = reqData.getSecHeader().getSecurityHeaderElement();
+		Element firstEncryptedData = XMLUtils.findElementById(doc.getDocumentElement(), firstPart.getEncId(), false);
+		Element referenceList = findReferenceList(securityHeader, firstPart.getEncId());
+		if (firstEncryptedData == null || referenceList == null) {
+			throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, "noEncElement",
+					new Object[] { firstPart.getEncId() });
+		}
+		Element keyInfo = XMLUtils.getDirectChildElement(firstEncryptedData, "KeyInfo", WSConstants.SIG_NS);
+		List<String> ids = new ArrayList<String>(parallelParts.size());
+		for (int i = 0; i < parallelParts.size(); i++) {
+			EncryptedPart parallelPart = parallelParts.get(i);
+			Element imported = (Element) doc.importNode(encryptedData.get(i), true);
+			if (keyInfo != null) {
+				Element keyInfoCopy = (Element) keyInfo.cloneNode(true);
+				ParallelProcessingUtils.declareNamespaces(keyInfo.getParentNode(), keyInfoCopy);
+				removeIds(keyInfoCopy);
+				Element cipherData = XMLUtils.getDirectChildElement(imported, "CipherData", WSConstants.ENC_NS);
+				imported.insertBefore(keyInfoCopy, cipherData);
+			}
+			Element element = parallelPart.element;
+			if (parallelPart.content) {
+				while (element.getFirstChild() != null) {
+					element.removeChild(element.getFirstChild());
+				}
+				element.appendChild(imported);
+			} else {
+				element.getParentNode().replaceChild(imported, element);
+			}
+			parallelPart.part.setEncId(parallelPart.id);
+			ids.add(parallelPart.id);
+		}
+		WSSecEncrypt.createDataRefList(doc, referenceList, ids);
+	}
+
+	private static Element findReferenceList(Element securityHeader, String encId) {
+		for (Element referenceList : XMLUtils.findElements(securityHeader, "ReferenceList", WSConstants.ENC_NS)) {
+			for (Node child = referenceList.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child.getNodeType() == Node.ELEMENT_NODE && "DataReference".equals(child.getLocalName())
+						&& ("#" + encId).equals(((Element) child).getAttributeNS(null, "URI"))) {
+					return referenceList;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void removeIds(Element element) {
+		NamedNodeMap attributes = element.getAttributes();
+		for (int i = attributes.getLength() - 1; i >= 0; i--) {
+			Attr attribute = (Attr) attributes.item(i);
+			if ("Id".equals(attribute.getLocalName())) {
+				element.removeAttributeNode(attribute);
+			}
+		}
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				removeIds((Element) child);
+			}
+		}
+	}
+
+	/** A part that is encrypted in parallel. */
+	private static class EncryptedPart {
+
+		private final WSEncryptionPart part;
+
+		private final Element element;
+
+		private final boolean content;
+
+		private String id;
+
+		private Element copy;
+
+		private EncryptedPart(WSEncryptionPart part, Element element) {
+			this.part = part;
+			this.element = element;
+			this.content = "Content".equals(part.getEncModifier());
+		}
+	}
+
+	/** Encrypts the copy of a part in its private document, and returns the resulting {@code EncryptedData}. */
+	private static class EncryptionTask implements Callable<Element> {
+
+		private final Element copy;
+
+		private final String id;
+
+		private final String algorithm;
+
+		private final byte[] key;
+
+		private final boolean content;
+
+		private EncryptionTask(Element copy, String id, String algorithm, byte[] key, boolean content) {
+			this.copy = copy;
+			this.id = id;
+			this.algorithm = algorithm;
+			this.key = key;
+			this.content = content;
+		}
+
+		@Override
+		public Element call() throws WSSecurityException {
+			try {
+				XMLCipher cipher = XMLCipher.getInstance(algorithm);
+				cipher.init(XMLCipher.ENCRYPT_MODE, KeyUtils.prepareSecretKey(algorithm, key));
+				cipher.getEncryptedData().setId(id);
+				Element parent = content ? copy : (Element) copy.getParentNode();
+				cipher.doFinal(copy.getOwnerDocument(), copy, content);
+				return XMLUtils.getDirectChildElement(parent, "EncryptedData", WSConstants.ENC_NS);
+			} catch (Exception ex) {
+				throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex);
+			}
+		}
+	}
+
+}
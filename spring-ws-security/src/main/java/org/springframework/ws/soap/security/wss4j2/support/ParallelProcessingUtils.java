@@ -0,0 +1,146 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.springframework.xml.DocumentBuilderFactoryUtils;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Helper methods shared by the {@link ParallelEncryptionAction} and the {@link ParallelEncryptedKeyProcessor}.
+ *
+ * @since 3.1
+ */
+abstract class ParallelProcessingUtils {
+
+	/** Default maximum time to wait for the parts of a message, in milliseconds: one minute. */
+	static final long DEFAULT_TIMEOUT = 60 * 1000;
+
+	private static final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactoryUtils.newInstance();
+
+	/**
+	 * Imports a copy of the given element into a new document, under a wrapper element that declares the namespaces in
+	 * scope of the original, so that the copy is serialized just like the original. The copy can then be modified by
+	 * another thread than the one that owns the document of the original.
+	 *
+	 * @param element the element to copy
+	 * @param deep whether to copy the descendants of the element, or only its attributes
+	 * @return the copy, the only child of the wrapper element
+	 */
+	static Element copyToPrivateDocument(Element element, boolean deep) throws WSSecurityException {
+		DocumentBuilder documentBuilder;
+		try {
+			synchronized (documentBuilderFactory) {
+				documentBuilder = documentBuilderFactory.newDocumentBuilder();
+			}
+		} catch (ParserConfigurationException ex) {
+			throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+		}
+		Document document = documentBuilder.newDocument();
+		Element wrapper = document.createElementNS(null, "wrapper");
+		document.appendChild(wrapper);
+		declareNamespaces(element.getParentNode(), wrapper);
+		return (Element) wrapper.appendChild(document.importNode(element, deep));
+	}
+
+	/**
+	 * Declares the namespaces in scope of the given node on the given target element, unless the target declares them
+	 * already.
+	 */
+	static void declareNamespaces(Node node, Element target) {
+		for (Node current = node; current != null
+				&& current.getNodeType() == Node.ELEMENT_NODE; current = current.getParentNode()) {
+			NamedNodeMap attributes = current.getAttributes();
+			for (int i = 0; i < attributes.getLength(); i++) {
+				Attr attribute = (Attr) attributes.item(i);
+				if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())
+						&& !target.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attribute.getLocalName())) {
+					target.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attribute.getName(), attribute.getValue());
+				}
+			}
+		}
+	}
+
+	/** Executes the given task on the given executor, or on the calling thread if the executor rejects it. */
+	static void execute(Executor executor, FutureTask<?> task) {
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException ex) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Returns the results of the given tasks, waiting at most the given time for all of them together. The result of a
+	 * {@code null} task is {@code null}. If a task fails or does not complete in time, the remaining tasks are
+	 * cancelled, and the {@link WSSecurityException} the task failed with, if any, is rethrown.
+	 *
+	 * @param tasks the tasks to wait for, may contain {@code null}
+	 * @param timeout the maximum time to wait, in milliseconds
+	 * @return the results, in the order of the tasks
+	 */
+	static <T> List<T> getResults(List<FutureTask<T>> tasks, long timeout) throws WSSecurityException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		List<T> results = new ArrayList<T>(tasks.size());
+		boolean completed = false;
+		try {
+			for (FutureTask<T> task : tasks) {
+				results.add(task != null ? task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+						: null);
+			}
+			completed = true;
+			return results;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+		} catch (TimeoutException ex) {
+			throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof WSSecurityException) {
+				throw (WSSecurityException) ex.getCause();
+			}
+			throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+		} finally {
+			if (!completed) {
+				for (FutureTask<T> task : tasks) {
+					if (task != null) {
+						task.cancel(true);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import java.io.InputStream;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.springframework.util.Assert;
+
+/**
+ * WSS4J {@link Crypto} that delegates to a target that can be replaced at runtime. Created by the
+ * {@link CryptoFactoryBean} when a {@link CryptoFactoryBean#setReloadInterval(long) reloadInterval} is set.
+ * <p>
+ * A replacement target is fully loaded before it is swapped in, so that each invocation sees either the old or the new
+ * key and trust stores, never a partially loaded one.
+ *
+ * @since 3.1
+ */
+public class ReloadableCrypto implements Crypto {
+
+	private volatile Crypto crypto;
+
+	/**
+	 * Creates a new {@code ReloadableCrypto} with the given initial target.
+	 *
+	 * @param crypto the crypto to delegate to
+	 */
+	public ReloadableCrypto(Crypto crypto) {
+		setCrypto(crypto);
+	}
+
+	/** Returns the current target. */
+	public Crypto getCrypto() {
+		return crypto;
+	}
+
+	/** Replaces the current target. */
+	public void setCrypto(Crypto crypto) {
+		Assert.notNull(crypto, "'crypto' must not be null");
+		this.crypto = crypto;
+	}
+
+	/**
+	 * Returns the current target of the given crypto if it is a {@code ReloadableCrypto}, or the crypto itself otherwise.
+	 */
+	public static Crypto getCrypto(Crypto crypto) {
+		return crypto instanceof ReloadableCrypto ? ((ReloadableCrypto) crypto).getCrypto() : crypto;
+	}
+
+	@Override
+	public String getCryptoProvider() {
+		return crypto.getCryptoProvider();
+	}
+
+	@Override
+	public void setCryptoProvider(String provider) {
+		crypto.setCryptoProvider(provider);
+	}
+
+	@Override
+	public String getTrustProvider() {
+		return crypto.getTrustProvider();
+	}
+
+	@Override
+	public void setTrustProvider(String provider) {
+		crypto.setTrustProvider(provider);
+	}
+
+	@Override
+	public String getDefaultX509Identifier() throws WSSecurityException {
+		return crypto.getDefaultX509Identifier();
+	}
+
+	@Override
+	public void setDefaultX509Identifier(String identifier) {
+		crypto.setDefaultX509Identifier(identifier);
+	}
+
+	@Override
+	public void setCertificateFactory(CertificateFactory certFactory) {
+		crypto.setCertificateFactory(certFactory);
+	}
+
+	@Override
+	public CertificateFactory getCertificateFactory() throws WSSecurityException {
+		return crypto.getCertificateFactory();
+	}
+
+	@Override
+	public X509Certificate loadCertificate(InputStream in) throws WSSecurityException {
+		return crypto.loadCertificate(in);
+	}
+
+	@Override
+	public byte[] getSKIBytesFromCert(X509Certificate cert) throws WSSecurityException {
+		return crypto.getSKIBytesFromCert(cert);
+	}
+
+	@Override
+	public byte[] getBytesFromCertificates(X509Certificate[] certs) throws WSSecurityException {
+		return crypto.getBytesFromCertificates(certs);
+	}
+
+	@Override
+	public X509Certificate[] getCertificatesFromBytes(byte[] data) throws WSSecurityException {
+		return crypto.getCertificatesFromBytes(data);
+	}
+
+	@Override
+	public X509Certificate[] getX509Certificates(CryptoType cryptoType) throws WSSecurityException {
+		return crypto.getX509Certificates(cryptoType);
+	}
+
+	@Override
+	public String getX509Identifier(X509Certificate cert) throws WSSecurityException {
+		return crypto.getX509Identifier(cert);
+	}
+
+	@Override
+	public PrivateKey getPrivateKey(X509Certificate certificate, CallbackHandler callbackHandler)
+			throws WSSecurityException {
+		return crypto.getPrivateKey(certificate, callbackHandler);
+	}
+
+	@Override
+	public PrivateKey getPrivateKey(PublicKey publicKey, CallbackHandler callbackHandler) throws WSSecurityException {
+		return crypto.getPrivateKey(publicKey, callbackHandler);
+	}
+
+	@Override
+	public PrivateKey getPrivateKey(String identifier, String password) throws WSSecurityException {
+		return crypto.getPrivateKey(identifier, password);
+	}
+
+	@Override
+	public void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
+			Collection<Pattern> subjectCertConstraints, Collection<Pattern> issuerCertConstraints)
+			throws WSSecurityException {
+		crypto.verifyTrust(certs, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+	}
+
+	@Override
+	public void verifyTrust(PublicKey publicKey) throws WSSecurityException {
+		crypto.verifyTrust(publicKey);
+	}
+
+}
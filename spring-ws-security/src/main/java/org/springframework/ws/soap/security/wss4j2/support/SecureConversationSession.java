@@ -0,0 +1,124 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import java.security.cert.X509Certificate;
+
+import org.springframework.util.Assert;
+
+/**
+ * A WS-SecureConversation session with a partner: the identifier of its {@code SecurityContextToken}, and the secret
+ * from which the keys used to sign and encrypt messages within the session are derived. A session received from a
+ * partner is bound to the certificate that signed its secret, if any: messages within the session are attributed to the
+ * owner of that certificate.
+ * <p>
+ * Sessions are created and held by a {@link SecureConversationSessionStore}.
+ *
+ * @see SecureConversationSessionStore
+ * @since 3.1
+ */
+public class SecureConversationSession {
+
+	private final String identifier;
+
+	private final byte[] secret;
+
+	private final long expiresAt;
+
+	private final X509Certificate certificate;
+
+	private volatile boolean established;
+
+	/**
+	 * Creates a new {@code SecureConversationSession}.
+	 *
+	 * @param identifier the identifier of the security context token
+	 * @param secret the shared secret
+	 * @param expiresAt the time at which the session expires, in milliseconds since the epoch
+	 * @param established whether the partner is known to hold the session
+	 */
+	public SecureConversationSession(String identifier, byte[] secret, long expiresAt, boolean established) {
+		this(identifier, secret, expiresAt, established, null);
+	}
+
+	/**
+	 * Creates a new {@code SecureConversationSession} that is bound to the given certificate.
+	 *
+	 * @param identifier the identifier of the security context token
+	 * @param secret the shared secret
+	 * @param expiresAt the time at which the session expires, in milliseconds since the epoch
+	 * @param established whether the partner is known to hold the session
+	 * @param certificate the certificate that signed the secret of the session, may be {@code null}
+	 */
+	public SecureConversationSession(String identifier, byte[] secret, long expiresAt, boolean established,
+			X509Certificate certificate) {
+		Assert.hasLength(identifier, "'identifier' must not be empty");
+		Assert.notNull(secret, "'secret' must not be null");
+		this.identifier = identifier;
+		this.secret = secret.clone();
+		this.expiresAt = expiresAt;
+		this.established = established;
+		this.certificate = certificate;
+	}
+
+	/** Returns the identifier of the security context token of this session. */
+	public String getIdentifier() {
+		return identifier;
+	}
+
+	/** Returns the shared secret of this session. */
+	public byte[] getSecret() {
+		return secret.clone();
+	}
+
+	/** Returns the time at which this session expires, in milliseconds since the epoch. */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * Returns the certificate that signed the secret of this session when the partner established it, or {@code null}
+	 * if the session was created locally, or if its secret was not signed.
+	 */
+	public X509Certificate getCertificate() {
+		return certificate;
+	}
+
+	/** Indicates whether this session has expired. */
+	public boolean isExpired() {
+		return System.currentTimeMillis() >= expiresAt;
+	}
+
+	/**
+	 * Indicates whether the partner is known to hold this session. Until then, the secret is sent along with every message
+	 * secured within the session.
+	 */
+	public boolean isEstablished() {
+		return established;
+	}
+
+	/** Marks this session as established, after a message secured within it has been received from the partner. */
+	public void markEstablished() {
+		this.established = true;
+	}
+
+	@Override
+	public String toString() {
+		return "SecureConversationSession[" + identifier + "]";
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Store of {@link SecureConversationSession WS-SecureConversation sessions}, used by the
+ * {@link org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor} to sign and encrypt messages with keys
+ * derived from a shared secret, rather than with the private and public keys of the partners.
+ * <p>
+ * On the client side, the store holds a current session per partner, which it creates on first use, and renews when
+ * the session is about to expire. On the server side, the store holds the sessions established by clients, each bound
+ * to the certificate that signed its secret. Sessions are looked up by the identifier of their security context token on
+ * both sides, and are removed once expired. The time to live of sessions held by a server should be at least as long as
+ * the one used by its clients.
+ * <p>
+ * The store holds at most {@link #setMaxSize(int) maxSize} sessions. When it is full, expired sessions are removed
+ * first, and then the least recently used ones. A server rejects the next request within a session that it has removed
+ * with a fault, upon which the client {@link #removeSession(String) removes} the session as well, and establishes a new
+ * one with its following request.
+ * <p>
+ * A store can be shared between several interceptors.
+ *
+ * @see org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor#setSecureConversationSessionStore(SecureConversationSessionStore)
+ * @since 3.1
+ */
+public class SecureConversationSessionStore {
+
+	/** Default time to live of sessions, in milliseconds: one hour. */
+	public static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000;
+
+	/** Default time before expiry at which client sessions are renewed, in milliseconds: five minutes. */
+	public static final long DEFAULT_RENEW_BEFORE = 5 * 60 * 1000;
+
+	/** Default length of session secrets, in bytes. */
+	public static final int DEFAULT_SECRET_LENGTH = 32;
+
+	/** Default maximum number of sessions. */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	private static final Log logger = LogFactory.getLog(SecureConversationSessionStore.class);
+
+	private final Map<String, SecureConversationSession> sessions = new LinkedHashMap<String, SecureConversationSession>(
+			16, 0.75f, true);
+
+	private final Map<String, SecureConversationSession> partnerSessions = new HashMap<String, SecureConversationSession>();
+
+	private final SecureRandom random = new SecureRandom();
+
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	private long renewBefore = DEFAULT_RENEW_BEFORE;
+
+	private int secretLength = DEFAULT_SECRET_LENGTH;
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	/** Sets the time to live of sessions, in milliseconds. Defaults to one hour. */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be larger than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Sets the time before expiry at which a client session is replaced by a new one, in milliseconds. Defaults to five
+	 * minutes. Must be smaller than the {@link #setTimeToLive(long) timeToLive}.
+	 */
+	public void setRenewBefore(long renewBefore) {
+		Assert.isTrue(renewBefore >= 0, "'renewBefore' must not be negative");
+		this.renewBefore = renewBefore;
+	}
+
+	/** Sets the length of the secrets of newly created sessions, in bytes. Defaults to 32. */
+	public void setSecretLength(int secretLength) {
+		Assert.isTrue(secretLength >= 16, "'secretLength' must be at least 16");
+		this.secretLength = secretLength;
+	}
+
+	/** Sets the maximum number of sessions held by this store. Defaults to 10000. */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be larger than 0");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the current session with the given partner, creating a new one if there is none, or if the current one is
+	 * about to expire.
+	 *
+	 * @param partner the partner, typically the URI of the endpoint the client sends messages to
+	 * @return the current session with the partner
+	 */
+	public SecureConversationSession getPartnerSession(String partner) {
+		Assert.notNull(partner, "'partner' must not be null");
+		synchronized (sessions) {
+			SecureConversationSession session = partnerSessions.get(partner);
+			if (session == null || needsRenewal(session)) {
+				byte[] secret = new byte[secretLength];
+				random.nextBytes(secret);
+				session = new SecureConversationSession("urn:uuid:" + UUID.randomUUID(), secret,
+						System.currentTimeMillis() + timeToLive, false);
+				put(session);
+				partnerSessions.put(partner, session);
+			}
+			return session;
+		}
+	}
+
+	/**
+	 * Returns the unexpired session with the given identifier.
+	 *
+	 * @param identifier the identifier of the security context token of the session
+	 * @return the session, or {@code null} if there is no such session, or if it has expired
+	 */
+	public SecureConversationSession getSession(String identifier) {
+		synchronized (sessions) {
+			SecureConversationSession session = sessions.get(identifier);
+			if (session != null && session.isExpired()) {
+				remove(identifier);
+				return null;
+			}
+			return session;
+		}
+	}
+
+	/**
+	 * Adds an established session with the given identifier and secret, as received from a partner.
+	 *
+	 * @param identifier the identifier of the security context token of the session
+	 * @param secret the shared secret
+	 * @return the added session, or the existing session if it has the same secret and no certificate; {@code null} if
+	 *         a different session with the same identifier exists
+	 */
+	public SecureConversationSession addSession(String identifier, byte[] secret) {
+		return addSession(identifier, secret, null);
+	}
+
+	/**
+	 * Adds an established session with the given identifier and secret, as received from a partner, and binds it to the
+	 * certificate that signed the secret.
+	 *
+	 * @param identifier the identifier of the security context token of the session
+	 * @param secret the shared secret
+	 * @param certificate the certificate that signed the secret, may be {@code null}
+	 * @return the added session, or the existing session if it has the same secret and certificate; {@code null} if a
+	 *         different session with the same identifier exists
+	 */
+	public SecureConversationSession addSession(String identifier, byte[] secret, X509Certificate certificate) {
+		synchronized (sessions) {
+			SecureConversationSession existing = getSession(identifier);
+			if (existing == null) {
+				SecureConversationSession session = new SecureConversationSession(identifier, secret,
+						System.currentTimeMillis() + timeToLive, true, certificate);
+				put(session);
+				return session;
+			}
+			return Arrays.equals(existing.getSecret(), secret)
+					&& ObjectUtils.nullSafeEquals(existing.getCertificate(), certificate) ? existing : null;
+		}
+	}
+
+	/**
+	 * Removes the session with the given identifier.
+	 *
+	 * @param identifier the identifier of the security context token of the session
+	 */
+	public void removeSession(String identifier) {
+		synchronized (sessions) {
+			remove(identifier);
+		}
+	}
+
+	/** Returns the number of sessions in this store, including expired sessions that have not been removed yet. */
+	public int size() {
+		synchronized (sessions) {
+			return sessions.size();
+		}
+	}
+
+	/** Removes all sessions from this store. */
+	public void clear() {
+		synchronized (sessions) {
+			partnerSessions.clear();
+			sessions.clear();
+		}
+	}
+
+	private boolean needsRenewal(SecureConversationSession session) {
+		return System.currentTimeMillis() >= session.getExpiresAt() - renewBefore;
+	}
+
+	private void put(SecureConversationSession session) {
+		if (sessions.size() >= maxSize) {
+			removeExpiredSessions();
+		}
+		sessions.put(session.getIdentifier(), session);
+		Iterator<SecureConversationSession> iterator = sessions.values().iterator();
+		while (sessions.size() > maxSize) {
+			SecureConversationSession eldest = iterator.next();
+			iterator.remove();
+			partnerSessions.values().remove(eldest);
+			if (logger.isWarnEnabled()) {
+				logger.warn("Secure conversation session store is full; removed " + eldest);
+			}
+		}
+	}
+
+	private void remove(String identifier) {
+		SecureConversationSession session = sessions.remove(identifier);
+		if (session != null) {
+			partnerSessions.values().remove(session);
+		}
+	}
+
+	private void removeExpiredSessions() {
+		for (Iterator<SecureConversationSession> iterator = sessions.values().iterator(); iterator.hasNext();) {
+			SecureConversationSession session = iterator.next();
+			if (session.isExpired()) {
+				iterator.remove();
+				partnerSessions.values().remove(session);
+			}
+		}
+	}
+
+}
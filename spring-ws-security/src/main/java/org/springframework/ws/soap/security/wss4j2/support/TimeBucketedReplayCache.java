@@ -0,0 +1,212 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.springframework.util.Assert;
+
+/**
+ * In-memory {@link ReplayCache} designed for a high number of messages per second. Suitable for use as the nonce,
+ * timestamp, or SAML one-time use replay cache of a
+ * {@link org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor}, and can be shared between several
+ * interceptors.
+ * <p>
+ * Identifiers are spread over a number of independently locked stripes, so that concurrent messages rarely contend for
+ * the same lock. Within a stripe, identifiers are grouped in buckets by the time at which they expire. Expired
+ * identifiers are removed a bucket at a time as time progresses, so that expiry takes constant amortized time, and no
+ * background thread or sorted structure is needed.
+ *
+ * @see org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor#setNonceReplayCache(ReplayCache)
+ * @see org.springframework.ws.soap.security.wss4j2.Wss4jSecurityInterceptor#setTimestampReplayCache(ReplayCache)
+ * @since 3.1
+ */
+public class TimeBucketedReplayCache implements ReplayCache {
+
+	/** Default number of stripes. */
+	public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+	/** Default time to live of identifiers added without expiry, in milliseconds: one hour. */
+	public static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000;
+
+	/** Default duration of an expiry bucket, in milliseconds: one second. */
+	public static final long DEFAULT_BUCKET_DURATION = 1000;
+
+	private final Stripe[] stripes;
+
+	private final long bucketDuration;
+
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	/** Creates a new {@code TimeBucketedReplayCache} with the default concurrency level and bucket duration. */
+	public TimeBucketedReplayCache() {
+		this(DEFAULT_CONCURRENCY_LEVEL, DEFAULT_BUCKET_DURATION);
+	}
+
+	/**
+	 * Creates a new {@code TimeBucketedReplayCache} with the given concurrency level and bucket duration.
+	 *
+	 * @param concurrencyLevel the number of stripes, rounded up to a power of two
+	 * @param bucketDuration the time span of the expiry times grouped in a bucket, in milliseconds
+	 */
+	public TimeBucketedReplayCache(int concurrencyLevel, long bucketDuration) {
+		Assert.isTrue(concurrencyLevel > 0, "'concurrencyLevel' must be larger than 0");
+		Assert.isTrue(bucketDuration > 0, "'bucketDuration' must be larger than 0");
+		int size = Integer.highestOneBit(concurrencyLevel);
+		if (size < concurrencyLevel) {
+			size <<= 1;
+		}
+		this.stripes = new Stripe[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.bucketDuration = bucketDuration;
+	}
+
+	/** Sets the time to live of identifiers added without an expiry, in milliseconds. Defaults to one hour. */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be larger than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	@Override
+	public void add(String identifier) {
+		long now = System.currentTimeMillis();
+		getStripe(identifier).add(identifier, now + timeToLive, now);
+	}
+
+	@Override
+	public void add(String identifier, Instant expiry) {
+		long now = System.currentTimeMillis();
+		getStripe(identifier).add(identifier, expiry != null ? expiry.toEpochMilli() : now + timeToLive, now);
+	}
+
+	@Override
+	public boolean contains(String identifier) {
+		return getStripe(identifier).contains(identifier, System.currentTimeMillis());
+	}
+
+	/** Returns the number of identifiers in this cache, including expired identifiers that have not been removed yet. */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	/** Removes all identifiers from this cache. */
+	@Override
+	public void close() {
+		for (Stripe stripe : stripes) {
+			stripe.clear();
+		}
+	}
+
+	private Stripe getStripe(String identifier) {
+		Assert.notNull(identifier, "'identifier' must not be null");
+		int hash = identifier.hashCode();
+		hash ^= (hash >>> 16);
+		return stripes[hash & (stripes.length - 1)];
+	}
+
+	private class Stripe {
+
+		private final Map<String, Long> expiries = new HashMap<String, Long>();
+
+		private final Map<Long, List<String>> buckets = new HashMap<Long, List<String>>();
+
+		/** All buckets up to and including this one have been removed. */
+		private long sweptBucket = Long.MIN_VALUE;
+
+		private synchronized void add(String identifier, long expiresAt, long now) {
+			sweep(now);
+			if (expiresAt <= now) {
+				return;
+			}
+			Long previous = expiries.put(identifier, expiresAt);
+			long bucket = expiresAt / bucketDuration;
+			if (previous != null && previous / bucketDuration == bucket) {
+				return;
+			}
+			List<String> identifiers = buckets.get(bucket);
+			if (identifiers == null) {
+				identifiers = new ArrayList<String>();
+				buckets.put(bucket, identifiers);
+			}
+			identifiers.add(identifier);
+		}
+
+		private synchronized boolean contains(String identifier, long now) {
+			sweep(now);
+			Long expiresAt = expiries.get(identifier);
+			return expiresAt != null && expiresAt > now;
+		}
+
+		private synchronized int size() {
+			return expiries.size();
+		}
+
+		private synchronized void clear() {
+			expiries.clear();
+			buckets.clear();
+		}
+
+		/** Removes the buckets whose expiry times have all passed. */
+		private void sweep(long now) {
+			long last = now / bucketDuration - 1;
+			if (last <= sweptBucket) {
+				return;
+			}
+			if (sweptBucket == Long.MIN_VALUE || last - sweptBucket > buckets.size()) {
+				for (Iterator<Map.Entry<Long, List<String>>> iterator = buckets.entrySet().iterator(); iterator
+						.hasNext();) {
+					Map.Entry<Long, List<String>> entry = iterator.next();
+					if (entry.getKey() <= last) {
+						expire(entry.getKey(), entry.getValue());
+						iterator.remove();
+					}
+				}
+			} else {
+				for (long bucket = sweptBucket + 1; bucket <= last; bucket++) {
+					List<String> identifiers = buckets.remove(bucket);
+					if (identifiers != null) {
+						expire(bucket, identifiers);
+					}
+				}
+			}
+			sweptBucket = last;
+		}
+
+		private void expire(long bucket, List<String> identifiers) {
+			for (String identifier : identifiers) {
+				Long expiresAt = expiries.get(identifier);
+				// the identifier may have been added again, with a later expiry
+				if (expiresAt != null && expiresAt / bucketDuration == bucket) {
+					expiries.remove(identifier);
+				}
+			}
+		}
+	}
+
+}
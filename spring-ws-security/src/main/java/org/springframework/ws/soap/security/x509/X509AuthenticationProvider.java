@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2014 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -31,6 +31,7 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.SpringSecurityMessageSource;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.util.Assert;
+import org.springframework.ws.soap.security.x509.cache.LoadingX509UserCache;
 import org.springframework.ws.soap.security.x509.cache.NullX509UserCache;
 import org.springframework.ws.soap.security.x509.cache.X509UserCache;
 
@@ -94,7 +95,14 @@ public class X509AuthenticationProvider implements AuthenticationProvider, Initi
 					messages.getMessage("X509AuthenticationProvider.certificateNull", "Certificate is null"));
 		}
 
-		UserDetails user = userCache.getUserFromCache(clientCertificate);
+		UserDetails user;
+
+		if (userCache instanceof LoadingX509UserCache) {
+			// lets the cache refresh users, and remember rejected certificates
+			user = ((LoadingX509UserCache) userCache).getUserDetails(clientCertificate, x509AuthoritiesPopulator);
+		} else {
+			user = userCache.getUserFromCache(clientCertificate);
+		}
 
 		if (user == null) {
 			if (logger.isDebugEnabled()) {
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.x509.cache;
+
+import java.security.MessageDigest;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.ws.soap.security.x509.X509AuthoritiesPopulator;
+import org.springframework.ws.support.PayloadDigestUtils;
+
+/**
+ * In-memory {@link X509UserCache} that is keyed by the SHA-256 fingerprint of certificates, rather than by the
+ * certificates themselves, so that lookups hash the encoded certificate once instead of comparing it with cached ones.
+ * The fingerprint of a certificate instance is computed only once: as the same instance is typically presented for
+ * many messages, fingerprints are kept in a weak map that is keyed by certificate identity.
+ * <p>
+ * When used by the {@link org.springframework.ws.soap.security.x509.X509AuthenticationProvider}, this cache also
+ * loads users through the {@link X509AuthoritiesPopulator}, and caches the certificates it rejects for the
+ * {@link #setRejectionTimeToLive(long) rejectionTimeToLive}, so that a client that keeps presenting a rejected
+ * certificate does not cause a lookup for every message. Only rejections of the certificate itself are cached; an
+ * {@link AuthenticationServiceException}, which signals that the user could not be loaded, is not. Cached users can be
+ * {@link #setRefreshAfter(long) refreshed} before they expire: the first lookup after the refresh time reloads the
+ * user, while concurrent lookups still return the cached one. A refresh that rejects the certificate replaces the
+ * cached user with the rejection, while a refresh that fails with an {@code AuthenticationServiceException} keeps the
+ * cached user, and is retried by a later lookup.
+ * <p>
+ * The cache holds at most {@link #setMaxSize(int) maxSize} entries, evicting the least recently used ones first.
+ * Entries expire after the {@link #setTimeToLive(long) timeToLive}. The number of hits, misses, and evictions, which
+ * include expirations, is available for monitoring.
+ *
+ * @see org.springframework.ws.soap.security.x509.X509AuthenticationProvider#setX509UserCache(X509UserCache)
+ * @since 3.1
+ */
+public class FingerprintX509UserCache implements LoadingX509UserCache {
+
+	/** Default maximum number of cached entries. */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	/** Default time to live of cached users, in milliseconds: ten minutes. */
+	public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+
+	/** Default time to live of cached rejections, in milliseconds: one minute. */
+	public static final long DEFAULT_REJECTION_TIME_TO_LIVE = 60 * 1000;
+
+	private static final Log logger = LogFactory.getLog(FingerprintX509UserCache.class);
+
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	private final Map<X509Certificate, String> fingerprints = new ConcurrentReferenceHashMap<X509Certificate, String>(
+			16, ConcurrentReferenceHashMap.ReferenceType.WEAK) {
+
+		@Override
+		protected int getHash(Object o) {
+			// identity, rather than the hash code of the encoded certificate
+			return super.getHash(System.identityHashCode(o));
+		}
+	};
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	private long rejectionTimeToLive = DEFAULT_REJECTION_TIME_TO_LIVE;
+
+	private long refreshAfter;
+
+	/** Sets the maximum number of cached entries. Defaults to 1000. */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be larger than 0");
+		this.maxSize = maxSize;
+	}
+
+	/** Sets the time after which a cached user expires, in milliseconds. Defaults to ten minutes. */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be larger than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Sets the time after which a cached rejection expires, in milliseconds. Defaults to one minute. Set to {@code 0} to
+	 * not cache rejections.
+	 */
+	public void setRejectionTimeToLive(long rejectionTimeToLive) {
+		Assert.isTrue(rejectionTimeToLive >= 0, "'rejectionTimeToLive' must not be negative");
+		this.rejectionTimeToLive = rejectionTimeToLive;
+	}
+
+	/**
+	 * Sets the time after which a cached user is reloaded through the {@link X509AuthoritiesPopulator} on its next
+	 * lookup, in milliseconds, so that changed authorities are picked up before the user expires. Should be smaller than
+	 * the {@link #setTimeToLive(long) timeToLive}. By default, cached users are not refreshed.
+	 */
+	public void setRefreshAfter(long refreshAfter) {
+		Assert.isTrue(refreshAfter >= 0, "'refreshAfter' must not be negative");
+		this.refreshAfter = refreshAfter;
+	}
+
+	/**
+	 * Returns the cached user for the given certificate, or loads it through the given populator if none is cached. The
+	 * loaded user, or the rejection of the certificate, is cached.
+	 *
+	 * @param certificate the presented certificate
+	 * @param populator the populator to load the user with
+	 * @return the user identified by the certificate
+	 * @throws AuthenticationException if the certificate is rejected, either now or by an earlier cached load
+	 */
+	@Override
+	public UserDetails getUserDetails(X509Certificate certificate, X509AuthoritiesPopulator populator)
+			throws AuthenticationException {
+		Assert.notNull(populator, "'populator' must not be null");
+		String fingerprint = getFingerprint(certificate);
+		Entry entry = fingerprint != null ? getEntry(fingerprint) : null;
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return load(certificate, fingerprint, populator);
+		}
+		hitCount.incrementAndGet();
+		if (entry.rejection != null) {
+			throw entry.rejection;
+		}
+		if (refreshAfter > 0 && System.nanoTime() - entry.refreshAt >= 0 && entry.refreshing.compareAndSet(false, true)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Refreshing cached user " + entry.user.getUsername());
+			}
+			try {
+				return load(certificate, fingerprint, populator);
+			} catch (AuthenticationServiceException ex) {
+				logger.warn("Could not refresh cached user " + entry.user.getUsername() + "; keeping it", ex);
+				return entry.user;
+			} finally {
+				entry.refreshing.set(false);
+			}
+		}
+		return entry.user;
+	}
+
+	@Override
+	public UserDetails getUserFromCache(X509Certificate userCertificate) {
+		String fingerprint = getFingerprint(userCertificate);
+		Entry entry = fingerprint != null ? getEntry(fingerprint) : null;
+		if (entry == null || entry.user == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return entry.user;
+	}
+
+	@Override
+	public void putUserInCache(X509Certificate key, UserDetails user) {
+		Assert.notNull(user, "'user' must not be null");
+		String fingerprint = getFingerprint(key);
+		if (fingerprint != null) {
+			putEntry(fingerprint, new Entry(user, null, timeToLive, refreshAfter));
+		}
+	}
+
+	@Override
+	public void removeUserFromCache(X509Certificate key) {
+		String fingerprint = getFingerprint(key);
+		if (fingerprint != null) {
+			synchronized (entries) {
+				entries.remove(fingerprint);
+			}
+		}
+	}
+
+	/** Removes all cached entries. The statistics are not reset. */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/** Returns the number of cached entries, including rejections. */
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/** Returns the number of lookups that found a cached user or rejection. */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/** Returns the number of lookups that did not find a cached user or rejection. */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/** Returns the number of entries that were removed because the cache was full, or because they expired. */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	private UserDetails load(X509Certificate certificate, String fingerprint, X509AuthoritiesPopulator populator)
+			throws AuthenticationException {
+		UserDetails user;
+		try {
+			user = populator.getUserDetails(certificate);
+		} catch (AuthenticationException ex) {
+			// AuthenticationServiceExceptions signal a failure to load the user, rather than a rejection
+			if (fingerprint != null && !(ex instanceof AuthenticationServiceException)) {
+				if (rejectionTimeToLive > 0) {
+					putEntry(fingerprint, new Entry(null, ex, rejectionTimeToLive, 0));
+				} else {
+					synchronized (entries) {
+						entries.remove(fingerprint);
+					}
+				}
+			}
+			throw ex;
+		}
+		if (fingerprint != null && user != null) {
+			putEntry(fingerprint, new Entry(user, null, timeToLive, refreshAfter));
+		}
+		return user;
+	}
+
+	private Entry getEntry(String fingerprint) {
+		synchronized (entries) {
+			Entry entry = entries.get(fingerprint);
+			if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+				entries.remove(fingerprint);
+				evictionCount.incrementAndGet();
+				return null;
+			}
+			return entry;
+		}
+	}
+
+	private void putEntry(String fingerprint, Entry entry) {
+		synchronized (entries) {
+			entries.put(fingerprint, entry);
+			Iterator<String> iterator = entries.keySet().iterator();
+			while (entries.size() > maxSize) {
+				iterator.next();
+				iterator.remove();
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 fingerprint of the given certificate, or {@code null} if the certificate cannot be encoded.
+	 */
+	private String getFingerprint(X509Certificate certificate) {
+		if (certificate == null) {
+			return null;
+		}
+		String fingerprint = fingerprints.get(certificate);
+		if (fingerprint != null) {
+			return fingerprint;
+		}
+		try {
+			MessageDigest digest = PayloadDigestUtils.createDigest();
+			digest.update(certificate.getEncoded());
+			fingerprint = PayloadDigestUtils.toHexString(digest);
+			fingerprints.put(certificate, fingerprint);
+			return fingerprint;
+		} catch (CertificateEncodingException ex) {
+			logger.warn("Could not encode certificate " + certificate.getSubjectDN() + "; not caching it", ex);
+			return null;
+		}
+	}
+
+	/** A cached user, or a cached rejection. */
+	private static class Entry {
+
+		private final UserDetails user;
+
+		private final AuthenticationException rejection;
+
+		private final long expiresAt;
+
+		private final long refreshAt;
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private Entry(UserDetails user, AuthenticationException rejection, long timeToLive, long refreshAfter) {
+			this.user = user;
+			this.rejection = rejection;
+			long now = System.nanoTime();
+			this.expiresAt = now + TimeUnit.MILLISECONDS.toNanos(timeToLive);
+			this.refreshAt = now + TimeUnit.MILLISECONDS.toNanos(refreshAfter);
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.x509.cache;
+
+import java.security.cert.X509Certificate;
+
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.ws.soap.security.x509.X509AuthoritiesPopulator;
+
+/**
+ * Extension of the {@link X509UserCache} that loads the users it does not hold itself, so that it controls when users
+ * are loaded, refreshed, and rejected. Used by the
+ * {@link org.springframework.ws.soap.security.x509.X509AuthenticationProvider} instead of its own get and put.
+ *
+ * @see FingerprintX509UserCache
+ * @since 3.1
+ */
+public interface LoadingX509UserCache extends X509UserCache {
+
+	/**
+	 * Returns the cached user for the given certificate, or loads it through the given populator.
+	 *
+	 * @param certificate the presented certificate
+	 * @param populator the populator to load the user with
+	 * @return the user identified by the certificate
+	 * @throws AuthenticationException if the certificate is rejected
+	 */
+	UserDetails getUserDetails(X509Certificate certificate, X509AuthoritiesPopulator populator)
+			throws AuthenticationException;
+
+}
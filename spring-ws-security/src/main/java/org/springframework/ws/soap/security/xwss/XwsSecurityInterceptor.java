@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2014 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,22 +18,46 @@ package org.springframework.ws.soap.security.xwss;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.soap.AttachmentPart;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPConstants;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.mime.Attachment;
+import org.springframework.ws.soap.SoapHeader;
+import org.springframework.ws.soap.SoapHeaderElement;
 import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.SoapVersion;
 import org.springframework.ws.soap.saaj.SaajSoapMessage;
 import org.springframework.ws.soap.security.AbstractWsSecurityInterceptor;
 import org.springframework.ws.soap.security.WsSecurityValidationException;
 import org.springframework.ws.soap.security.callback.CleanupCallback;
 import org.springframework.ws.soap.security.xwss.callback.XwssCallbackHandlerChain;
+import org.springframework.xml.DocumentBuilderFactoryUtils;
+import org.springframework.xml.transform.TransformerHelper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import com.sun.xml.wss.ProcessingContext;
 import com.sun.xml.wss.XWSSProcessor;
@@ -54,8 +78,14 @@ import com.sun.xml.wss.impl.WssSoapFaultException;
  * <a href="http://java.sun.com/webservices/docs/1.6/tutorial/doc/XWS-SecurityIntro4.html#wp529900">Java Web Services
  * Tutorial</a>.
  * <p>
- * <b>Note</b> that this interceptor depends on SAAJ, and thus requires {@code SaajSoapMessage}s to operate. This means
- * that you must use a {@code SaajSoapMessageFactory} to create the SOAP messages.
+ * <b>Note</b> that XWSS depends on SAAJ. {@code SaajSoapMessage}s are processed directly. Other SOAP messages, such as
+ * the {@code AxiomSoapMessage}s created by an {@code AxiomSoapMessageFactory}, are converted to a SAAJ message before
+ * processing, and the result is written back to them afterwards. If the policy only consists of username tokens and
+ * timestamps, only the security headers are converted, and the body is left as it is. Otherwise, the whole envelope is
+ * converted through its {@link SoapMessage#getDocument() document}, since XWSS may sign or encrypt the body. This costs
+ * about as much as parsing the message with SAAJ in the first place, so use a {@code SaajSoapMessageFactory} if all
+ * messages are signed or encrypted. The attachments of such messages are passed to XWSS, so that they can be signed and
+ * verified, but they are not written back: policies that encrypt or decrypt attachments are rejected for them.
  *
  * @author Arjen Poutsma
  * @see #setCallbackHandler(javax.security.auth.callback.CallbackHandler)
@@ -67,12 +97,32 @@ import com.sun.xml.wss.impl.WssSoapFaultException;
  */
 public class XwsSecurityInterceptor extends AbstractWsSecurityInterceptor implements InitializingBean {
 
+	private static final String XWSS_CONFIG_NAMESPACE = "http://java.sun.com/xml/ns/xwss/config";
+
+	/** Policy elements that only read or write the security header, and not the rest of the message. */
+	private static final List<String> HEADER_ONLY_POLICY_ELEMENTS = Arrays.asList("SecurityConfiguration",
+			"UsernameToken", "RequireUsernameToken", "Timestamp", "RequireTimestamp");
+
 	private XWSSProcessor processor;
 
+	private boolean headerOnlyPolicy;
+
 	private CallbackHandler callbackHandler;
 
 	private Resource policyConfiguration;
 
+	private final TransformerHelper transformerHelper = new TransformerHelper();
+
+	private final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactoryUtils.newInstance();
+
+	private volatile MessageFactory soap11MessageFactory;
+
+	private volatile MessageFactory soap12MessageFactory;
+
+	public XwsSecurityInterceptor() {
+		documentBuilderFactory.setNamespaceAware(true);
+	}
+
 	/**
 	 * Sets the handler to resolve XWSS callbacks. Setting either this propery, or {@code callbackHandlers}, is required.
 	 *
@@ -116,6 +166,29 @@ public class XwsSecurityInterceptor extends AbstractWsSecurityInterceptor implem
 				is.close();
 			}
 		}
+		headerOnlyPolicy = isHeaderOnlyPolicy(policyConfiguration);
+	}
+
+	/**
+	 * Indicates whether the given policy configuration only consists of username tokens and timestamps, so that XWSS does
+	 * not need anything but the security header of a message.
+	 */
+	private boolean isHeaderOnlyPolicy(Resource policyConfiguration) throws Exception {
+		Document policy;
+		try (InputStream is = policyConfiguration.getInputStream()) {
+			synchronized (documentBuilderFactory) {
+				policy = documentBuilderFactory.newDocumentBuilder().parse(is);
+			}
+		}
+		NodeList elements = policy.getElementsByTagNameNS("*", "*");
+		for (int i = 0; i < elements.getLength(); i++) {
+			Element element = (Element) elements.item(i);
+			if (!XWSS_CONFIG_NAMESPACE.equals(element.getNamespaceURI())
+					|| !HEADER_ONLY_POLICY_ELEMENTS.contains(element.getLocalName())) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -123,18 +196,25 @@ public class XwsSecurityInterceptor extends AbstractWsSecurityInterceptor implem
 	 *
 	 * @param soapMessage the message to be secured
 	 * @throws XwsSecuritySecurementException in case of errors
-	 * @throws IllegalArgumentException when soapMessage is not a {@code SaajSoapMessage}
 	 */
 	@Override
 	protected void secureMessage(SoapMessage soapMessage, MessageContext messageContext)
 			throws XwsSecuritySecurementException {
-		Assert.isTrue(soapMessage instanceof SaajSoapMessage, "XwsSecurityInterceptor requires a SaajSoapMessage. "
-				+ "Use a SaajSoapMessageFactory to create the SOAP messages.");
-		SaajSoapMessage saajSoapMessage = (SaajSoapMessage) soapMessage;
 		try {
-			ProcessingContext context = processor.createProcessingContext(saajSoapMessage.getSaajMessage());
+			boolean headerOnly = isHeaderOnly(soapMessage);
+			ProcessingContext context = processor.createProcessingContext(getSaajMessage(soapMessage, headerOnly));
 			SOAPMessage result = processor.secureOutboundMessage(context);
-			saajSoapMessage.setSaajMessage(result);
+			if (!headerOnly && !hasSameAttachments(soapMessage, result)) {
+				throw new XwsSecuritySecurementException(
+						"Cannot secure attachments of " + ClassUtils.getShortName(soapMessage.getClass()) + "; use SAAJ");
+			}
+			setSaajMessage(soapMessage, result, headerOnly);
+		} catch (SOAPException ex) {
+			throw new XwsSecuritySecurementException("Could not convert message to SAAJ: " + ex.getMessage(), ex);
+		} catch (ParserConfigurationException ex) {
+			throw new XwsSecuritySecurementException("Could not convert message to SAAJ: " + ex.getMessage(), ex);
+		} catch (TransformerException ex) {
+			throw new XwsSecuritySecurementException("Could not convert message from SAAJ: " + ex.getMessage(), ex);
 		} catch (XWSSecurityException ex) {
 			throw new XwsSecuritySecurementException(ex.getMessage(), ex);
 		} catch (WssSoapFaultException ex) {
@@ -147,18 +227,25 @@ public class XwsSecurityInterceptor extends AbstractWsSecurityInterceptor implem
 	 *
 	 * @param soapMessage the message to be validated
 	 * @throws XwsSecurityValidationException in case of errors
-	 * @throws IllegalArgumentException when soapMessage is not a {@code SaajSoapMessage}
 	 */
 	@Override
 	protected void validateMessage(SoapMessage soapMessage, MessageContext messageContext)
 			throws WsSecurityValidationException {
-		Assert.isTrue(soapMessage instanceof SaajSoapMessage, "XwsSecurityInterceptor requires a SaajSoapMessage. "
-				+ "Use a SaajSoapMessageFactory to create the SOAP messages.");
-		SaajSoapMessage saajSoapMessage = (SaajSoapMessage) soapMessage;
 		try {
-			ProcessingContext context = processor.createProcessingContext(saajSoapMessage.getSaajMessage());
+			boolean headerOnly = isHeaderOnly(soapMessage);
+			ProcessingContext context = processor.createProcessingContext(getSaajMessage(soapMessage, headerOnly));
 			SOAPMessage result = processor.verifyInboundMessage(context);
-			saajSoapMessage.setSaajMessage(result);
+			if (!headerOnly && !hasSameAttachments(soapMessage, result)) {
+				throw new XwsSecurityValidationException(
+						"Cannot validate attachments of " + ClassUtils.getShortName(soapMessage.getClass()) + "; use SAAJ");
+			}
+			setSaajMessage(soapMessage, result, headerOnly);
+		} catch (SOAPException ex) {
+			throw new XwsSecurityValidationException("Could not convert message to SAAJ: " + ex.getMessage(), ex);
+		} catch (ParserConfigurationException ex) {
+			throw new XwsSecurityValidationException("Could not convert message to SAAJ: " + ex.getMessage(), ex);
+		} catch (TransformerException ex) {
+			throw new XwsSecurityValidationException("Could not convert message from SAAJ: " + ex.getMessage(), ex);
 		} catch (XWSSecurityException ex) {
 			throw new XwsSecurityValidationException(ex.getMessage(), ex);
 		} catch (WssSoapFaultException ex) {
@@ -166,6 +253,132 @@ public class XwsSecurityInterceptor extends AbstractWsSecurityInterceptor implem
 		}
 	}
 
+	/**
+	 * Indicates whether only the security headers of the given message need to be converted to SAAJ. This requires a
+	 * header-only policy, and a message that is not a {@code SaajSoapMessage} and has a header to write the result to.
+	 */
+	private boolean isHeaderOnly(SoapMessage soapMessage) {
+		return headerOnlyPolicy && !(soapMessage instanceof SaajSoapMessage) && soapMessage.getSoapHeader() != null;
+	}
+
+	/**
+	 * Returns the SAAJ message of the given SOAP message. Messages other than {@code SaajSoapMessage}s are converted to a
+	 * new SAAJ message: either only their security headers, or their entire envelope, including their attachments.
+	 */
+	private SOAPMessage getSaajMessage(SoapMessage soapMessage, boolean headerOnly)
+			throws SOAPException, ParserConfigurationException, TransformerException {
+		if (soapMessage instanceof SaajSoapMessage) {
+			return ((SaajSoapMessage) soapMessage).getSaajMessage();
+		}
+		if (headerOnly) {
+			return createSecurityHeaderMessage(soapMessage);
+		}
+		SOAPMessage saajMessage = getMessageFactory(soapMessage.getVersion()).createMessage();
+		saajMessage.getSOAPPart().setContent(new DOMSource(soapMessage.getDocument()));
+		Iterator<Attachment> attachments = soapMessage.getAttachments();
+		while (attachments.hasNext()) {
+			Attachment attachment = attachments.next();
+			AttachmentPart attachmentPart = saajMessage.createAttachmentPart(attachment.getDataHandler());
+			attachmentPart.setContentId(attachment.getContentId());
+			saajMessage.addAttachmentPart(attachmentPart);
+		}
+		return saajMessage;
+	}
+
+	/**
+	 * Creates a SAAJ message that contains copies of the security headers of the given message, and an empty body. The
+	 * body of the given message is not read.
+	 */
+	private SOAPMessage createSecurityHeaderMessage(SoapMessage soapMessage)
+			throws SOAPException, ParserConfigurationException, TransformerException {
+		Document document;
+		synchronized (documentBuilderFactory) {
+			document = documentBuilderFactory.newDocumentBuilder().newDocument();
+		}
+		SoapVersion version = soapMessage.getVersion();
+		Element envelope = createSoapElement(document, version.getEnvelopeName());
+		document.appendChild(envelope);
+		Element header = createSoapElement(document, version.getHeaderName());
+		envelope.appendChild(header);
+		envelope.appendChild(createSoapElement(document, version.getBodyName()));
+		Iterator<SoapHeaderElement> headerElements = soapMessage.getSoapHeader().examineHeaderElements(WS_SECURITY_NAME);
+		while (headerElements.hasNext()) {
+			transformerHelper.transform(headerElements.next().getSource(), new DOMResult(header));
+		}
+		SOAPMessage saajMessage = getMessageFactory(version).createMessage();
+		saajMessage.getSOAPPart().setContent(new DOMSource(document));
+		return saajMessage;
+	}
+
+	private static Element createSoapElement(Document document, QName name) {
+		return document.createElementNS(name.getNamespaceURI(), "soap:" + name.getLocalPart());
+	}
+
+	/**
+	 * Indicates whether the given processed SAAJ message still has the attachments of the given SOAP message, so that
+	 * only its envelope needs to be written back. Always {@code true} for {@code SaajSoapMessage}s, which are processed
+	 * in place.
+	 */
+	static boolean hasSameAttachments(SoapMessage soapMessage, SOAPMessage saajMessage) throws SOAPException {
+		if (soapMessage instanceof SaajSoapMessage) {
+			return true;
+		}
+		Iterator<Attachment> attachments = soapMessage.getAttachments();
+		Iterator<?> attachmentParts = saajMessage.getAttachments();
+		while (attachments.hasNext() && attachmentParts.hasNext()) {
+			AttachmentPart attachmentPart = (AttachmentPart) attachmentParts.next();
+			if (attachmentPart.getDataHandler() != attachments.next().getDataHandler()) {
+				return false;
+			}
+		}
+		return !attachments.hasNext() && !attachmentParts.hasNext();
+	}
+
+	/**
+	 * Stores the processed SAAJ message in the given SOAP message. Of messages other than {@code SaajSoapMessage}s,
+	 * either the security headers or the entire envelope are replaced by the processed ones.
+	 */
+	private void setSaajMessage(SoapMessage soapMessage, SOAPMessage saajMessage, boolean headerOnly)
+			throws SOAPException, TransformerException {
+		if (soapMessage instanceof SaajSoapMessage) {
+			((SaajSoapMessage) soapMessage).setSaajMessage(saajMessage);
+		} else if (headerOnly) {
+			SoapHeader soapHeader = soapMessage.getSoapHeader();
+			while (soapHeader.examineHeaderElements(WS_SECURITY_NAME).hasNext()) {
+				soapHeader.removeHeaderElement(WS_SECURITY_NAME);
+			}
+			SOAPHeader processedHeader = saajMessage.getSOAPHeader();
+			if (processedHeader != null) {
+				Iterator<?> securityHeaders = processedHeader.getChildElements(WS_SECURITY_NAME);
+				while (securityHeaders.hasNext()) {
+					transformerHelper.transform(new DOMSource((Element) securityHeaders.next()), soapHeader.getResult());
+				}
+			}
+		} else {
+			// XWSS adds DOM Level 1 attributes, which not all SOAP implementations accept, so copy the envelope first
+			DOMResult result = new DOMResult();
+			transformerHelper.transform(new DOMSource(saajMessage.getSOAPPart()), result);
+			soapMessage.setDocument((Document) result.getNode());
+		}
+	}
+
+	private MessageFactory getMessageFactory(SoapVersion version) throws SOAPException {
+		if (version == SoapVersion.SOAP_12) {
+			MessageFactory messageFactory = soap12MessageFactory;
+			if (messageFactory == null) {
+				messageFactory = MessageFactory.newInstance(SOAPConstants.SOAP_1_2_PROTOCOL);
+				soap12MessageFactory = messageFactory;
+			}
+			return messageFactory;
+		}
+		MessageFactory messageFactory = soap11MessageFactory;
+		if (messageFactory == null) {
+			messageFactory = MessageFactory.newInstance(SOAPConstants.SOAP_1_1_PROTOCOL);
+			soap11MessageFactory = messageFactory;
+		}
+		return messageFactory;
+	}
+
 	@Override
 	protected void cleanUp() {
 		if (callbackHandler != null) {
@@ -106,6 +106,8 @@ public class CryptographyCallbackHandler extends AbstractCallbackHandler {
 	 *      com.sun.xml.wss.impl.callback.DecryptionKeyCallback.X509IssuerSerialBasedRequest)
 	 * @see #handleX509SubjectKeyIdentifierBasedRequest(com.sun.xml.wss.impl.callback.DecryptionKeyCallback,
 	 *      com.sun.xml.wss.impl.callback.DecryptionKeyCallback.X509SubjectKeyIdentifierBasedRequest)
+	 * @see #handleThumbprintBasedRequest(com.sun.xml.wss.impl.callback.DecryptionKeyCallback,
+	 *      com.sun.xml.wss.impl.callback.DecryptionKeyCallback.ThumbprintBasedRequest)
 	 */
 	protected final void handlePrivateKeyRequest(DecryptionKeyCallback callback,
 			DecryptionKeyCallback.PrivateKeyRequest request) throws IOException, UnsupportedCallbackException {
@@ -118,6 +120,8 @@ public class CryptographyCallbackHandler extends AbstractCallbackHandler {
 		} else if (request instanceof DecryptionKeyCallback.X509SubjectKeyIdentifierBasedRequest) {
 			handleX509SubjectKeyIdentifierBasedRequest(callback,
 					(DecryptionKeyCallback.X509SubjectKeyIdentifierBasedRequest) request);
+		} else if (request instanceof DecryptionKeyCallback.ThumbprintBasedRequest) {
+			handleThumbprintBasedRequest(callback, (DecryptionKeyCallback.ThumbprintBasedRequest) request);
 		} else {
 			throw new UnsupportedCallbackException(callback);
 		}
@@ -161,6 +165,15 @@ public class CryptographyCallbackHandler extends AbstractCallbackHandler {
 		throw new UnsupportedCallbackException(callback);
 	}
 
+	/**
+	 * Template method that handles {@code DecryptionKeyCallback}s with {@code ThumbprintBasedRequest}s. Called from
+	 * {@code handlePrivateKeyRequest()}. Default implementation throws an {@code UnsupportedCallbackException}.
+	 */
+	protected void handleThumbprintBasedRequest(DecryptionKeyCallback callback,
+			DecryptionKeyCallback.ThumbprintBasedRequest request) throws IOException, UnsupportedCallbackException {
+		throw new UnsupportedCallbackException(callback);
+	}
+
 	/**
 	 * Method that handles {@code DecryptionKeyCallback}s with {@code SymmetricKeyRequest} . Called from
 	 * {@code handleDecryptionKeyCallback()}. Default implementation delegates to specific handling methods.
@@ -388,6 +401,8 @@ public class CryptographyCallbackHandler extends AbstractCallbackHandler {
 	 *      com.sun.xml.wss.impl.callback.SignatureVerificationKeyCallback.X509IssuerSerialBasedRequest)
 	 * @see #handleX509SubjectKeyIdentifierBasedRequest(com.sun.xml.wss.impl.callback.SignatureVerificationKeyCallback,
 	 *      com.sun.xml.wss.impl.callback.SignatureVerificationKeyCallback.X509SubjectKeyIdentifierBasedRequest)
+	 * @see #handleThumbprintBasedRequest(com.sun.xml.wss.impl.callback.SignatureVerificationKeyCallback,
+	 *      com.sun.xml.wss.impl.callback.SignatureVerificationKeyCallback.ThumbprintBasedRequest)
 	 */
 	protected final void handleX509CertificateRequest(SignatureVerificationKeyCallback callback,
 			SignatureVerificationKeyCallback.X509CertificateRequest request)
@@ -400,6 +415,8 @@ public class CryptographyCallbackHandler extends AbstractCallbackHandler {
 		} else if (request instanceof SignatureVerificationKeyCallback.X509SubjectKeyIdentifierBasedRequest) {
 			handleX509SubjectKeyIdentifierBasedRequest(callback,
 					(SignatureVerificationKeyCallback.X509SubjectKeyIdentifierBasedRequest) request);
+		} else if (request instanceof SignatureVerificationKeyCallback.ThumbprintBasedRequest) {
+			handleThumbprintBasedRequest(callback, (SignatureVerificationKeyCallback.ThumbprintBasedRequest) request);
 		} else {
 			throw new UnsupportedCallbackException(callback);
 		}
@@ -433,4 +450,14 @@ public class CryptographyCallbackHandler extends AbstractCallbackHandler {
 			SignatureVerificationKeyCallback.PublicKeyBasedRequest request) throws IOException, UnsupportedCallbackException {
 		throw new UnsupportedCallbackException(callback);
 	}
+
+	/**
+	 * Template method that handles {@code SignatureVerificationKeyCallback}s with {@code ThumbprintBasedRequest}s. Called
+	 * from {@code handleX509CertificateRequest()}. Default implementation throws an {@code UnsupportedCallbackException}.
+	 */
+	protected void handleThumbprintBasedRequest(SignatureVerificationKeyCallback callback,
+			SignatureVerificationKeyCallback.ThumbprintBasedRequest request)
+			throws IOException, UnsupportedCallbackException {
+		throw new UnsupportedCallbackException(callback);
+	}
 }
@@ -18,9 +18,11 @@ package org.springframework.ws.soap.security.xwss.callback;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.CertPathBuilder;
@@ -31,14 +33,20 @@ import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.PKIXBuilderParameters;
 import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import javax.crypto.SecretKey;
 
 import org.apache.xml.security.utils.RFC2253Parser;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.ws.soap.security.support.CertificateValidationCache;
 import org.springframework.ws.soap.security.support.KeyStoreUtils;
+import org.springframework.ws.soap.security.support.ReloadableKeyStore;
 
 import com.sun.xml.wss.impl.callback.CertificateValidationCallback;
 import com.sun.xml.wss.impl.callback.DecryptionKeyCallback;
@@ -123,6 +131,19 @@ import com.sun.xml.wss.impl.callback.SignatureVerificationKeyCallback;
  * <h3>Handled callbacks</h3> This class handles {@code CertificateValidationCallback}s, {@code DecryptionKeyCallback}s,
  * {@code EncryptionKeyCallback}s, {@code SignatureKeyCallback}s, and {@code SignatureVerificationKeyCallback}s. It
  * throws an {@code UnsupportedCallbackException} for others.
+ * <p>
+ * <h3>Indexes</h3> The certificates in the key and trust store are indexed by subject key identifier, by issuer name and
+ * serial number, by public key, and by SHA-1 thumbprint when this handler is initialized, so that looking up a
+ * certificate or private key does not require iterating over all entries of a store. The indexes are rebuilt when a
+ * store is set; call {@link #rebuildIndexes()} after changing the entries of a store that has already been set.
+ * Indexes of a {@link ReloadableKeyStore} are built on the reloading thread before its new snapshot is exposed, and each
+ * lookup resolves aliases against the snapshot its index was built from, so lookups never rebuild an index. The reload
+ * listener is removed when this handler is {@link #destroy() destroyed}.
+ * <p>
+ * <h3>Validation cache</h3> Validating the certification path of a certificate is expensive. Successful validations can
+ * be cached by setting a {@link #setCertificateValidationCache(CertificateValidationCache) certificateValidationCache}.
+ * Cached validations are bound to the contents of the trust store, so they no longer apply when the trust store is
+ * replaced by one with different certificates.
  *
  * @author Arjen Poutsma
  * @see KeyStore
@@ -136,7 +157,7 @@ import com.sun.xml.wss.impl.callback.SignatureVerificationKeyCallback;
  *      standard Java trust store mechanism</a>
  * @since 1.0.0
  */
-public class KeyStoreCallbackHandler extends CryptographyCallbackHandler implements InitializingBean {
+public class KeyStoreCallbackHandler extends CryptographyCallbackHandler implements InitializingBean, DisposableBean {
 
 	private static final String X_509_CERTIFICATE_TYPE = "X.509";
 
@@ -156,6 +177,14 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 
 	private boolean revocationEnabled = false;
 
+	private CertificateValidationCache certificateValidationCache;
+
+	private volatile KeyStoreIndex keyStoreIndex;
+
+	private volatile KeyStoreIndex trustStoreIndex;
+
+	private final ReloadableKeyStore.ReloadListener reloadListener = new IndexRebuildingReloadListener();
+
 	private static X509Certificate getCertificate(String alias, KeyStore store) throws IOException {
 		try {
 			return (X509Certificate) store.getCertificate(alias);
@@ -164,24 +193,9 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 		}
 	}
 
-	private static X509Certificate getCertificate(PublicKey pk, KeyStore store) throws IOException {
-		try {
-			Enumeration<String> aliases = store.aliases();
-			while (aliases.hasMoreElements()) {
-				String alias = aliases.nextElement();
-				Certificate cert = store.getCertificate(alias);
-				if (cert == null || !X_509_CERTIFICATE_TYPE.equals(cert.getType())) {
-					continue;
-				}
-				X509Certificate x509Cert = (X509Certificate) cert;
-				if (x509Cert.getPublicKey().equals(pk)) {
-					return x509Cert;
-				}
-			}
-		} catch (GeneralSecurityException e) {
-			throw new IOException(e.getMessage());
-		}
-		return null;
+	private static X509Certificate getCertificate(Object key, KeyStoreIndex index) throws IOException {
+		String alias = index.getAlias(key);
+		return alias != null ? getCertificate(alias, index.getStore()) : null;
 	}
 
 	/** Sets the key store alias for the default certificate and private key. */
@@ -198,6 +212,7 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 	 */
 	public void setKeyStore(KeyStore keyStore) {
 		this.keyStore = keyStore;
+		this.keyStoreIndex = null;
 	}
 
 	/**
@@ -242,6 +257,7 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 	 */
 	public void setTrustStore(KeyStore trustStore) {
 		this.trustStore = trustStore;
+		this.trustStoreIndex = null;
 	}
 
 	/**
@@ -251,6 +267,13 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 		this.revocationEnabled = revocationEnabled;
 	}
 
+	/**
+	 * Sets the cache of successful certificate path validations. By default, no validations are cached.
+	 */
+	public void setCertificateValidationCache(CertificateValidationCache certificateValidationCache) {
+		this.certificateValidationCache = certificateValidationCache;
+	}
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		if (keyStore == null) {
@@ -265,6 +288,39 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 		if (symmetricKeyPassword == null) {
 			symmetricKeyPassword = privateKeyPassword;
 		}
+		rebuildIndexes();
+		if (keyStore instanceof ReloadableKeyStore) {
+			((ReloadableKeyStore) keyStore).addReloadListener(reloadListener);
+		}
+		if (trustStore instanceof ReloadableKeyStore && trustStore != keyStore) {
+			((ReloadableKeyStore) trustStore).addReloadListener(reloadListener);
+		}
+	}
+
+	/** Unregisters this handler from the reloadable key and trust store, if any. */
+	@Override
+	public void destroy() {
+		if (keyStore instanceof ReloadableKeyStore) {
+			((ReloadableKeyStore) keyStore).removeReloadListener(reloadListener);
+		}
+		if (trustStore instanceof ReloadableKeyStore) {
+			((ReloadableKeyStore) trustStore).removeReloadListener(reloadListener);
+		}
+	}
+
+	/**
+	 * Rebuilds the indexes of the key and trust store. Call this method after entries have been added to or removed from
+	 * either store.
+	 *
+	 * @throws GeneralSecurityException in case of errors
+	 */
+	public void rebuildIndexes() throws GeneralSecurityException {
+		keyStoreIndex = new KeyStoreIndex(ReloadableKeyStore.getSnapshot(keyStore));
+		trustStoreIndex = new KeyStoreIndex(ReloadableKeyStore.getSnapshot(trustStore));
+		if (logger.isDebugEnabled()) {
+			logger.debug("Indexed " + keyStoreIndex.size() + " key store certificates and " + trustStoreIndex.size()
+					+ " trust store certificates");
+		}
 	}
 
 	@Override
@@ -391,6 +447,13 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 		request.setPrivateKey(key);
 	}
 
+	@Override
+	protected final void handleThumbprintBasedRequest(DecryptionKeyCallback callback,
+			DecryptionKeyCallback.ThumbprintBasedRequest request) throws IOException {
+		PrivateKey key = getPrivateKeyByThumbprint(request.getThumbprintIdentifier());
+		request.setPrivateKey(key);
+	}
+
 	//
 	// Signature verification
 	//
@@ -402,6 +465,13 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 		request.setX509Certificate(certificate);
 	}
 
+	@Override
+	protected final void handleThumbprintBasedRequest(SignatureVerificationKeyCallback callback,
+			SignatureVerificationKeyCallback.ThumbprintBasedRequest request) throws IOException {
+		X509Certificate certificate = getCertificateFromTrustStoreByThumbprint(request.getThumbprintIdentifier());
+		request.setX509Certificate(certificate);
+	}
+
 	// Certificate methods
 
 	protected X509Certificate getCertificate(String alias) throws IOException {
@@ -409,7 +479,7 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 	}
 
 	protected X509Certificate getCertificate(PublicKey pk) throws IOException {
-		return getCertificate(pk, keyStore);
+		return getCertificate(pk, getKeyStoreIndex());
 	}
 
 	protected X509Certificate getCertificateFromTrustStore(String alias) throws IOException {
@@ -417,95 +487,52 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 	}
 
 	protected X509Certificate getCertificateFromTrustStore(byte[] subjectKeyIdentifier) throws IOException {
-		try {
-			Enumeration<String> aliases = trustStore.aliases();
-			while (aliases.hasMoreElements()) {
-				String alias = aliases.nextElement();
-				Certificate cert = trustStore.getCertificate(alias);
-				if (cert == null || !X_509_CERTIFICATE_TYPE.equals(cert.getType())) {
-					continue;
-				}
-				X509Certificate x509Cert = (X509Certificate) cert;
-				byte[] keyId = getSubjectKeyIdentifier(x509Cert);
-				if (keyId == null) {
-					// Cert does not contain a key identifier
-					continue;
-				}
-				if (Arrays.equals(subjectKeyIdentifier, keyId)) {
-					return x509Cert;
-				}
-			}
-		} catch (GeneralSecurityException e) {
-			throw new IOException(e.getMessage());
-		}
-		return null;
+		return getCertificate(KeyStoreIndex.subjectKeyIdentifierKey(subjectKeyIdentifier), getTrustStoreIndex());
 	}
 
 	protected X509Certificate getCertificateFromTrustStore(PublicKey pk) throws IOException {
-		return getCertificate(pk, trustStore);
+		return getCertificate(pk, getTrustStoreIndex());
 	}
 
 	protected X509Certificate getCertificateFromTrustStore(String issuerName, BigInteger serialNumber)
 			throws IOException {
-		try {
-			Enumeration<String> aliases = trustStore.aliases();
-			while (aliases.hasMoreElements()) {
-				String alias = aliases.nextElement();
-				Certificate cert = trustStore.getCertificate(alias);
-				if (cert == null || !X_509_CERTIFICATE_TYPE.equals(cert.getType())) {
-					continue;
-				}
-				X509Certificate x509Cert = (X509Certificate) cert;
-				String thisIssuerName = RFC2253Parser.normalize(x509Cert.getIssuerDN().getName());
-				BigInteger thisSerialNumber = x509Cert.getSerialNumber();
-				if (thisIssuerName.equals(issuerName) && thisSerialNumber.equals(serialNumber)) {
-					return x509Cert;
-				}
-			}
-		} catch (GeneralSecurityException e) {
-			throw new IOException(e.getMessage());
-		}
-		return null;
+		return getCertificate(KeyStoreIndex.issuerSerialKey(issuerName, serialNumber), getTrustStoreIndex());
+	}
+
+	protected X509Certificate getCertificateFromTrustStoreByThumbprint(byte[] thumbprint) throws IOException {
+		return getCertificate(KeyStoreIndex.thumbprintKey(thumbprint), getTrustStoreIndex());
 	}
 
 	// Private Key methods
 
 	protected PrivateKey getPrivateKey(String alias) throws IOException {
+		return getPrivateKey(alias, keyStore);
+	}
+
+	private PrivateKey getPrivateKey(String alias, KeyStore store) throws IOException {
 		try {
-			return (PrivateKey) keyStore.getKey(alias, privateKeyPassword);
+			return (PrivateKey) store.getKey(alias, privateKeyPassword);
 		} catch (GeneralSecurityException e) {
 			throw new IOException(e.getMessage());
 		}
 	}
 
 	protected PrivateKey getPrivateKey(PublicKey publicKey) throws IOException {
-		try {
-			Enumeration<String> aliases = keyStore.aliases();
-			while (aliases.hasMoreElements()) {
-				String alias = aliases.nextElement();
-				if (keyStore.isKeyEntry(alias)) {
-					// Just returning the first one here
-					return (PrivateKey) keyStore.getKey(alias, privateKeyPassword);
-				}
-			}
-		} catch (GeneralSecurityException e) {
-			throw new IOException(e.getMessage());
+		KeyStoreIndex index = getKeyStoreIndex();
+		String alias = index.getKeyAlias(publicKey);
+		if (alias == null) {
+			// Just returning the first one here
+			alias = index.getFirstKeyAlias();
 		}
-		return null;
+		return alias != null ? getPrivateKey(alias, index.getStore()) : null;
 	}
 
 	protected PrivateKey getPrivateKey(X509Certificate certificate) throws IOException {
 		try {
-			Enumeration<String> aliases = keyStore.aliases();
-			while (aliases.hasMoreElements()) {
-				String alias = aliases.nextElement();
-				if (!keyStore.isKeyEntry(alias)) {
-					continue;
-				}
-				Certificate cert = keyStore.getCertificate(alias);
-				if (cert != null && cert.equals(certificate)) {
-					return (PrivateKey) keyStore.getKey(alias, privateKeyPassword);
-				}
+			KeyStoreIndex index = getKeyStoreIndex();
+			String alias = index.getKeyAlias(KeyStoreIndex.thumbprintKey(certificate));
+			if (alias != null && certificate.equals(index.getStore().getCertificate(alias))) {
+				return getPrivateKey(alias, index.getStore());
 			}
 		} catch (GeneralSecurityException e) {
 			throw new IOException(e.getMessage());
@@ -514,61 +541,58 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 	}
 
 	protected PrivateKey getPrivateKey(byte[] keyIdentifier) throws IOException {
-		try {
-			Enumeration<String> aliases = keyStore.aliases();
-			while (aliases.hasMoreElements()) {
-				String alias = aliases.nextElement();
-				if (!keyStore.isKeyEntry(alias)) {
-					continue;
-				}
-				Certificate cert = keyStore.getCertificate(alias);
-				if (cert == null || !"X.509".equals(cert.getType())) {
-					continue;
-				}
-				X509Certificate x509Cert = (X509Certificate) cert;
-				byte[] keyId = getSubjectKeyIdentifier(x509Cert);
-				if (keyId == null) {
-					// Cert does not contain a key identifier
-					continue;
-				}
-				if (Arrays.equals(keyIdentifier, keyId)) {
-					return (PrivateKey) keyStore.getKey(alias, privateKeyPassword);
-				}
+		return getPrivateKeyByIndexKey(KeyStoreIndex.subjectKeyIdentifierKey(keyIdentifier));
+	}
+
+	protected PrivateKey getPrivateKey(String issuerName, BigInteger serialNumber) throws IOException {
+		return getPrivateKeyByIndexKey(KeyStoreIndex.issuerSerialKey(issuerName, serialNumber));
+	}
+
+	protected PrivateKey getPrivateKeyByThumbprint(byte[] thumbprint) throws IOException {
+		return getPrivateKeyByIndexKey(KeyStoreIndex.thumbprintKey(thumbprint));
+	}
+
+	private PrivateKey getPrivateKeyByIndexKey(Object key) throws IOException {
+		KeyStoreIndex index = getKeyStoreIndex();
+		String alias = index.getKeyAlias(key);
+		return alias != null ? getPrivateKey(alias, index.getStore()) : null;
+	}
+
+	/** Returns the key store index, building it only if a key store has been set since the last build. */
+	private KeyStoreIndex getKeyStoreIndex() throws IOException {
+		KeyStoreIndex index = keyStoreIndex;
+		if (index == null) {
+			try {
+				index = new KeyStoreIndex(ReloadableKeyStore.getSnapshot(keyStore));
+			} catch (GeneralSecurityException e) {
+				throw new IOException(e.getMessage());
 			}
-		} catch (GeneralSecurityException e) {
-			throw new IOException(e.getMessage());
+			keyStoreIndex = index;
 		}
-		return null;
+		return index;
 	}
 
-	protected PrivateKey getPrivateKey(String issuerName, BigInteger serialNumber) throws IOException {
-		try {
-			Enumeration<String> aliases = keyStore.aliases();
-			while (aliases.hasMoreElements()) {
-				String alias = aliases.nextElement();
-				if (!keyStore.isKeyEntry(alias)) {
-					continue;
-				}
-				Certificate cert = keyStore.getCertificate(alias);
-				if (cert == null || !"X.509".equals(cert.getType())) {
-					continue;
-				}
-				X509Certificate x509Cert = (X509Certificate) cert;
-				String thisIssuerName = RFC2253Parser.normalize(x509Cert.getIssuerDN().getName());
-				BigInteger thisSerialNumber = x509Cert.getSerialNumber();
-				if (thisIssuerName.equals(issuerName) && thisSerialNumber.equals(serialNumber)) {
-					return (PrivateKey) keyStore.getKey(alias, privateKeyPassword);
-				}
+	/** Returns the trust store index, building it only if a trust store has been set since the last build. */
+	private KeyStoreIndex getTrustStoreIndex() throws IOException {
+		KeyStoreIndex index = trustStoreIndex;
+		if (index == null) {
+			try {
+				index = new KeyStoreIndex(ReloadableKeyStore.getSnapshot(trustStore));
+			} catch (GeneralSecurityException e) {
+				throw new IOException(e.getMessage());
 			}
-		} catch (GeneralSecurityException e) {
-			throw new IOException(e.getMessage());
+			trustStoreIndex = index;
 		}
-		return null;
+		return index;
 	}
 
 	// Utility methods
 
 	protected final byte[] getSubjectKeyIdentifier(X509Certificate cert) {
+		return extractSubjectKeyIdentifier(cert);
+	}
+
+	private static byte[] extractSubjectKeyIdentifier(X509Certificate cert) {
 		byte[] subjectKeyIdentifier = cert.getExtensionValue(SUBJECT_KEY_IDENTIFIER_OID);
 		if (subjectKeyIdentifier == null) {
 			return null;
@@ -663,13 +687,31 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 				return false;
 			}
 
+			X509Certificate[] certificates = new X509Certificate[] { certificate };
+			KeyStoreIndex trustIndex;
+			try {
+				trustIndex = getTrustStoreIndex();
+			} catch (IOException ex) {
+				throw new CertificateValidationCallback.CertificateValidationException("Could not index trust store", ex);
+			}
+			String trustAnchorsVersion = trustIndex.getTrustAnchorsVersion();
+			if (certificateValidationCache != null) {
+				if (certificateValidationCache.isValid(certificates, trustAnchorsVersion, revocationEnabled)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Certificate with DN [" + certificate.getSubjectX500Principal().getName()
+								+ "] validated from cache");
+					}
+					return true;
+				}
+			}
+
 			X509CertSelector certSelector = new X509CertSelector();
 			certSelector.setCertificate(certificate);
 
 			PKIXBuilderParameters parameters;
 			CertPathBuilder builder;
 			try {
-				parameters = createBuilderParameters(trustStore, certSelector);
+				parameters = createBuilderParameters(trustIndex.getStore(), certSelector);
 				parameters.setRevocationEnabled(revocationEnabled);
 				builder = CertPathBuilder.getInstance("PKIX");
 			} catch (GeneralSecurityException ex) {
@@ -692,6 +734,9 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 				}
 				return false;
 			}
+			if (certificateValidationCache != null) {
+				certificateValidationCache.setValid(certificates, trustAnchorsVersion, revocationEnabled);
+			}
 			if (logger.isDebugEnabled()) {
 				logger.debug("Certificate with DN [" + certificate.getSubjectX500Principal().getName() + "] validated");
 			}
@@ -704,19 +749,12 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 				return false;
 			}
 			try {
-				Enumeration<String> aliases = keyStore.aliases();
-				while (aliases.hasMoreElements()) {
-					String alias = aliases.nextElement();
-					if (keyStore.isKeyEntry(alias)) {
-						X509Certificate x509Cert = (X509Certificate) keyStore.getCertificate(alias);
-						if (x509Cert != null) {
-							if (x509Cert.equals(cert)) {
-								return true;
-							}
-						}
-					}
-				}
-				return false;
+				KeyStoreIndex index = getKeyStoreIndex();
+				String alias = index.getKeyAlias(KeyStoreIndex.thumbprintKey(cert));
+				return alias != null && cert.equals(index.getStore().getCertificate(alias));
+			} catch (IOException e) {
+				throw new CertificateValidationCallback.CertificateValidationException(
+						"Could not determine whether certificate is contained in main key store", e);
 			} catch (GeneralSecurityException e) {
 				throw new CertificateValidationCallback.CertificateValidationException(
 						"Could not determine whether certificate is contained in main key store", e);
@@ -724,4 +762,165 @@ public class KeyStoreCallbackHandler extends CryptographyCallbackHandler impleme
 		}
 	}
 
+	/**
+	 * Builds the index of a reloaded key or trust store from its new snapshot, and publishes it together with that
+	 * snapshot, before the snapshot is exposed by the store.
+	 */
+	private class IndexRebuildingReloadListener implements ReloadableKeyStore.ReloadListener {
+
+		@Override
+		public void reloading(ReloadableKeyStore reloadedStore, KeyStore snapshot) {
+			try {
+				KeyStoreIndex index = new KeyStoreIndex(snapshot);
+				if (reloadedStore == keyStore) {
+					keyStoreIndex = index;
+				}
+				if (reloadedStore == trustStore) {
+					trustStoreIndex = index;
+				}
+			} catch (GeneralSecurityException ex) {
+				logger.warn("Could not index reloaded key store", ex);
+			}
+		}
+	}
+
+	/**
+	 * Immutable index of the X.509 certificates in a key store. Maps subject key identifiers, issuer names and serial
+	 * numbers, public keys and thumbprints to the alias of the first entry with a matching certificate, preferring key
+	 * entries over trusted certificate entries. Also holds the trust anchors version of the store, used as part of the
+	 * key of cached certificate validations.
+	 */
+	private static final class KeyStoreIndex {
+
+		private static final String THUMBPRINT_ALGORITHM = "SHA-1";
+
+		private final Map<Object, String> aliases = new HashMap<Object, String>();
+
+		private final Set<String> keyAliases = new HashSet<String>();
+
+		private final String firstKeyAlias;
+
+		private final String trustAnchorsVersion;
+
+		private final KeyStore store;
+
+		private int size;
+
+		private KeyStoreIndex(KeyStore store) throws GeneralSecurityException {
+			this.store = store;
+			this.trustAnchorsVersion = CertificateValidationCache.getTrustAnchorsVersion(store);
+			String firstKeyAlias = null;
+			if (store != null) {
+				Enumeration<String> storeAliases = store.aliases();
+				while (storeAliases.hasMoreElements()) {
+					String alias = storeAliases.nextElement();
+					boolean keyEntry = store.isKeyEntry(alias);
+					if (keyEntry && firstKeyAlias == null) {
+						firstKeyAlias = alias;
+					}
+					Certificate cert = store.getCertificate(alias);
+					if (cert == null || !X_509_CERTIFICATE_TYPE.equals(cert.getType())) {
+						continue;
+					}
+					X509Certificate x509Cert = (X509Certificate) cert;
+					if (keyEntry) {
+						keyAliases.add(alias);
+					}
+					byte[] keyId = extractSubjectKeyIdentifier(x509Cert);
+					if (keyId != null) {
+						put(subjectKeyIdentifierKey(keyId), alias, keyEntry);
+					}
+					String issuerName = RFC2253Parser.normalize(x509Cert.getIssuerDN().getName());
+					put(issuerSerialKey(issuerName, x509Cert.getSerialNumber()), alias, keyEntry);
+					put(x509Cert.getPublicKey(), alias, keyEntry);
+					put(thumbprintKey(x509Cert), alias, keyEntry);
+					size++;
+				}
+			}
+			this.firstKeyAlias = firstKeyAlias;
+		}
+
+		private void put(Object key, String alias, boolean keyEntry) {
+			String existing = aliases.get(key);
+			if (existing == null || (keyEntry && !keyAliases.contains(existing))) {
+				aliases.put(key, alias);
+			}
+		}
+
+		/** Returns the alias of the certificate entry or key entry with the given key. */
+		private String getAlias(Object key) {
+			return aliases.get(key);
+		}
+
+		/** Returns the alias of the key entry with the given key. */
+		private String getKeyAlias(Object key) {
+			String alias = aliases.get(key);
+			return alias != null && keyAliases.contains(alias) ? alias : null;
+		}
+
+		private String getFirstKeyAlias() {
+			return firstKeyAlias;
+		}
+
+		private int size() {
+			return size;
+		}
+
+		private String getTrustAnchorsVersion() {
+			return trustAnchorsVersion;
+		}
+
+		/** Returns the key store this index was built from. */
+		private KeyStore getStore() {
+			return store;
+		}
+
+		private static Object subjectKeyIdentifierKey(byte[] subjectKeyIdentifier) {
+			return new BinaryKey("ski", subjectKeyIdentifier);
+		}
+
+		private static Object thumbprintKey(byte[] thumbprint) {
+			return new BinaryKey("thumbprint", thumbprint);
+		}
+
+		private static Object thumbprintKey(X509Certificate certificate) throws GeneralSecurityException {
+			MessageDigest digest = MessageDigest.getInstance(THUMBPRINT_ALGORITHM);
+			return thumbprintKey(digest.digest(certificate.getEncoded()));
+		}
+
+		private static Object issuerSerialKey(String issuerName, BigInteger serialNumber) {
+			return serialNumber + ":" + issuerName;
+		}
+	}
+
+	/** Index key for binary identifiers, compared by content. */
+	private static final class BinaryKey {
+
+		private final String type;
+
+		private final ByteBuffer value;
+
+		private BinaryKey(String type, byte[] value) {
+			this.type = type;
+			this.value = ByteBuffer.wrap(value.clone());
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof BinaryKey)) {
+				return false;
+			}
+			BinaryKey other = (BinaryKey) o;
+			return type.equals(other.type) && value.equals(other.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + value.hashCode();
+		}
+	}
+
 }
@@ -30,6 +30,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.Assert;
 import org.springframework.ws.soap.security.callback.AbstractCallbackHandler;
 import org.springframework.ws.soap.security.callback.CleanupCallback;
+import org.springframework.ws.soap.security.support.VerifiedCredentialCache;
 
 import com.sun.xml.wss.impl.callback.PasswordValidationCallback;
 
@@ -43,6 +44,9 @@ import com.sun.xml.wss.impl.callback.PasswordValidationCallback;
  * <p>
  * This class only handles {@code PasswordValidationCallback}s that contain a {@code PlainTextPasswordRequest}, and
  * throws an {@code UnsupportedCallbackException} for others.
+ * <p>
+ * Successful authentications can be kept in a {@link VerifiedCredentialCache}, so that clients that present the same
+ * credentials with every message are not authenticated again for each of them.
  *
  * @author Arjen Poutsma
  * @see org.springframework.security.authentication.UsernamePasswordAuthenticationToken
@@ -57,11 +61,21 @@ public class SpringPlainTextPasswordValidationCallbackHandler extends AbstractCa
 
 	private boolean ignoreFailure = false;
 
+	private VerifiedCredentialCache verifiedCredentialCache;
+
 	/** Sets the Spring Security authentication manager. Required. */
 	public void setAuthenticationManager(AuthenticationManager authenticationManager) {
 		this.authenticationManager = authenticationManager;
 	}
 
+	/**
+	 * Sets the cache of successful authentications. Not required, but can benefit performance when the authentication
+	 * manager uses an expensive password encoder.
+	 */
+	public void setVerifiedCredentialCache(VerifiedCredentialCache verifiedCredentialCache) {
+		this.verifiedCredentialCache = verifiedCredentialCache;
+	}
+
 	public void setIgnoreFailure(boolean ignoreFailure) {
 		this.ignoreFailure = ignoreFailure;
 	}
@@ -98,12 +112,27 @@ public class SpringPlainTextPasswordValidationCallbackHandler extends AbstractCa
 		public boolean validate(PasswordValidationCallback.Request request)
 				throws PasswordValidationCallback.PasswordValidationException {
 			PasswordValidationCallback.PlainTextPasswordRequest plainTextRequest = (PasswordValidationCallback.PlainTextPasswordRequest) request;
+			String username = plainTextRequest.getUsername();
+			String password = plainTextRequest.getPassword();
+			if (verifiedCredentialCache != null) {
+				Authentication authResult = verifiedCredentialCache.get(authenticationManager, username, password);
+				if (authResult != null) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Authentication success (cached): " + authResult.toString());
+					}
+					SecurityContextHolder.getContext().setAuthentication(authResult);
+					return true;
+				}
+			}
 			try {
-				Authentication authResult = authenticationManager.authenticate(
-						new UsernamePasswordAuthenticationToken(plainTextRequest.getUsername(), plainTextRequest.getPassword()));
+				Authentication authResult = authenticationManager
+						.authenticate(new UsernamePasswordAuthenticationToken(username, password));
 				if (logger.isDebugEnabled()) {
 					logger.debug("Authentication success: " + authResult.toString());
 				}
+				if (verifiedCredentialCache != null) {
+					verifiedCredentialCache.put(authenticationManager, username, password, authResult);
+				}
 				SecurityContextHolder.getContext().setAuthentication(authResult);
 				return true;
 			} catch (AuthenticationException failed) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.support;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+public class CertificateValidationCacheTest {
+
+	private CertificateValidationCache cache;
+
+	private X509Certificate[] certificates;
+
+	private X509Certificate[] otherCertificates;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+
+		cache = new CertificateValidationCache();
+		certificates = new X509Certificate[] { loadCertificate("/private.jks", "JCEKS", "123456", "rsakey") };
+		otherCertificates = new X509Certificate[] {
+				loadCertificate("/org/springframework/ws/soap/security/xwss/test-keystore.jks", "JKS", "password", "alias") };
+	}
+
+	@Test
+	public void validation() {
+
+		assertThat(cache.isValid(certificates, "v1", false)).isFalse();
+
+		cache.setValid(certificates, "v1", false);
+
+		assertThat(cache.isValid(certificates, "v1", false)).isTrue();
+		assertThat(cache.isValid(otherCertificates, "v1", false)).isFalse();
+		assertThat(cache.isValid(certificates, "v2", false)).isFalse();
+		assertThat(cache.isValid(certificates, "v1", true)).isFalse();
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(4);
+		assertThat(cache.getHitRatio()).isEqualTo(0.2);
+	}
+
+	@Test
+	public void maxSize() {
+
+		cache.setMaxSize(1);
+		cache.setValid(certificates, "v1", false);
+		cache.setValid(otherCertificates, "v1", false);
+
+		assertThat(cache.getSize()).isEqualTo(1);
+		assertThat(cache.isValid(certificates, "v1", false)).isFalse();
+		assertThat(cache.isValid(otherCertificates, "v1", false)).isTrue();
+	}
+
+	@Test
+	public void revocationTimeToLive() throws Exception {
+
+		cache.setRevocationTimeToLive(1);
+		cache.setValid(certificates, "v1", false);
+		cache.setValid(certificates, "v1", true);
+		Thread.sleep(10);
+
+		assertThat(cache.isValid(certificates, "v1", false)).isTrue();
+		assertThat(cache.isValid(certificates, "v1", true)).isFalse();
+	}
+
+	@Test
+	public void clear() {
+
+		cache.setValid(certificates, "v1", false);
+		cache.clear();
+
+		assertThat(cache.getSize()).isEqualTo(0);
+		assertThat(cache.isValid(certificates, "v1", false)).isFalse();
+	}
+
+	@Test
+	public void trustAnchorsVersion() throws Exception {
+
+		KeyStore first = createTrustStore("first", certificates[0], "second", otherCertificates[0]);
+		KeyStore second = createTrustStore("a", otherCertificates[0], "b", certificates[0]);
+		KeyStore third = createTrustStore("first", certificates[0], null, null);
+
+		String version = CertificateValidationCache.getTrustAnchorsVersion(first);
+
+		assertThat(CertificateValidationCache.getTrustAnchorsVersion(second)).isEqualTo(version);
+		assertThat(CertificateValidationCache.getTrustAnchorsVersion(third)).isNotEqualTo(version);
+		assertThat(CertificateValidationCache.getTrustAnchorsVersion(third, null)).isEqualTo(
+				CertificateValidationCache.getTrustAnchorsVersion(third));
+	}
+
+	private static KeyStore createTrustStore(String alias1, X509Certificate certificate1, String alias2,
+			X509Certificate certificate2) throws Exception {
+		KeyStore trustStore = KeyStore.getInstance("JKS");
+		trustStore.load(null, null);
+		trustStore.setCertificateEntry(alias1, certificate1);
+		if (alias2 != null) {
+			trustStore.setCertificateEntry(alias2, certificate2);
+		}
+		return trustStore;
+	}
+
+	private static X509Certificate loadCertificate(String location, String type, String password, String alias)
+			throws Exception {
+		KeyStore keyStore = KeyStore.getInstance(type);
+		try (InputStream is = new ClassPathResource(location).getInputStream()) {
+			keyStore.load(is, password.toCharArray());
+		}
+		return (X509Certificate) keyStore.getCertificate(alias);
+	}
+}
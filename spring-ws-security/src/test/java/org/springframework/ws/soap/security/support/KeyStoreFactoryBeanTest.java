@@ -0,0 +1,166 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ws.soap.security.support;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+public class KeyStoreFactoryBeanTest {
+
+	@TempDir
+	File tempDir;
+
+	private Certificate certificate;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+
+		KeyStore keyStore = KeyStore.getInstance("JKS");
+		try (InputStream is = new ClassPathResource("/org/springframework/ws/soap/security/xwss/test-keystore.jks")
+				.getInputStream()) {
+			keyStore.load(is, "password".toCharArray());
+		}
+		certificate = keyStore.getCertificate("alias");
+	}
+
+	@Test
+	public void load() throws Exception {
+
+		File file = writeTrustStore("first");
+		KeyStoreFactoryBean factoryBean = createFactoryBean(file, 0);
+
+		KeyStore keyStore = factoryBean.getObject();
+
+		assertThat(keyStore).isNotInstanceOf(ReloadableKeyStore.class);
+		assertThat(keyStore.containsAlias("first")).isTrue();
+	}
+
+	@Test
+	public void reload() throws Exception {
+
+		File file = writeTrustStore("first");
+		KeyStoreFactoryBean factoryBean = createFactoryBean(file, 10);
+		try {
+			KeyStore keyStore = factoryBean.getObject();
+			final AtomicReference<KeyStore> reloaded = new AtomicReference<KeyStore>();
+			((ReloadableKeyStore) keyStore).addReloadListener(new ReloadableKeyStore.ReloadListener() {
+
+				@Override
+				public void reloading(ReloadableKeyStore keyStore, KeyStore snapshot) {
+					// the new snapshot is not exposed yet
+					assertThat(keyStore.getSnapshot()).isNotSameAs(snapshot);
+					reloaded.set(snapshot);
+				}
+			});
+
+			assertThat(keyStore.containsAlias("first")).isTrue();
+
+			writeTrustStore("second");
+			assertThat(file.setLastModified(file.lastModified() + 2000)).isTrue();
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (reloaded.get() != ((ReloadableKeyStore) keyStore).getSnapshot()
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+
+			assertThat(reloaded.get()).isSameAs(((ReloadableKeyStore) keyStore).getSnapshot());
+			assertThat(keyStore.containsAlias("first")).isFalse();
+			assertThat(keyStore.containsAlias("second")).isTrue();
+			assertThat(keyStore.getCertificate("second")).isEqualTo(certificate);
+		} finally {
+			factoryBean.destroy();
+		}
+	}
+
+	@Test
+	public void failedReload() throws Exception {
+
+		File file = writeTrustStore("first");
+		KeyStoreFactoryBean factoryBean = createFactoryBean(file, 10);
+		try {
+			ReloadableKeyStore keyStore = (ReloadableKeyStore) factoryBean.getObject();
+			KeyStore snapshot = keyStore.getSnapshot();
+
+			try (OutputStream os = new FileOutputStream(file)) {
+				os.write(new byte[] { 1, 2, 3 });
+			}
+			assertThat(file.setLastModified(file.lastModified() + 2000)).isTrue();
+			Thread.sleep(100);
+
+			assertThat(keyStore.getSnapshot()).isSameAs(snapshot);
+			assertThat(keyStore.containsAlias("first")).isTrue();
+
+			long lastModified = file.lastModified();
+			writeTrustStore("second");
+			assertThat(file.setLastModified(lastModified)).isTrue();
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (keyStore.getSnapshot() == snapshot && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+
+			assertThat(keyStore.containsAlias("second")).isTrue();
+		} finally {
+			factoryBean.destroy();
+		}
+	}
+
+	@Test
+	public void loadRejected() throws Exception {
+
+		KeyStore snapshot = KeyStore.getInstance("JKS");
+		snapshot.load(null, null);
+		ReloadableKeyStore keyStore = new ReloadableKeyStore(snapshot);
+
+		assertThatIOException().isThrownBy(() -> keyStore.load(null, null));
+	}
+
+	private KeyStoreFactoryBean createFactoryBean(File file, long reloadInterval) throws Exception {
+		KeyStoreFactoryBean factoryBean = new KeyStoreFactoryBean();
+		factoryBean.setLocation(new FileSystemResource(file));
+		factoryBean.setType("JKS");
+		factoryBean.setPassword("changeit");
+		factoryBean.setReloadInterval(reloadInterval);
+		factoryBean.afterPropertiesSet();
+		return factoryBean;
+	}
+
+	private File writeTrustStore(String alias) throws Exception {
+		KeyStore trustStore = KeyStore.getInstance("JKS");
+		trustStore.load(null, null);
+		trustStore.setCertificateEntry(alias, certificate);
+		File file = new File(tempDir, "truststore.jks");
+		try (OutputStream os = new FileOutputStream(file)) {
+			trustStore.store(os, "changeit".toCharArray());
+		}
+		return file;
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ws.soap.security.support;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+public class VerifiedCredentialCacheTest {
+
+	private VerifiedCredentialCache cache;
+
+	private AuthenticationManager manager;
+
+	private Authentication authentication;
+
+	@BeforeEach
+	public void setUp() {
+
+		cache = new VerifiedCredentialCache();
+		manager = authentication -> authentication;
+		TestingAuthenticationToken token = new TestingAuthenticationToken("Bert", "Ernie",
+				Collections.<GrantedAuthority> singletonList(new SimpleGrantedAuthority("ROLE_USER")));
+		token.setDetails("details");
+		authentication = token;
+	}
+
+	@Test
+	public void verification() {
+
+		assertThat(cache.get(manager, "Bert", "Ernie")).isNull();
+
+		cache.put(manager, "Bert", "Ernie", authentication);
+
+		assertCopy(cache.get(manager, "Bert", "Ernie"));
+		assertThat(cache.get(manager, "Bert", "Elmo")).isNull();
+		assertThat(cache.get(manager, "Elmo", "Ernie")).isNull();
+		assertThat(cache.get(manager, "Bert", null)).isNull();
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(4);
+	}
+
+	@Test
+	public void maxSize() {
+
+		cache.setMaxSize(1);
+		cache.put(manager, "Bert", "Ernie", authentication);
+		cache.put(manager, "Elmo", "Grover", authentication);
+
+		assertThat(cache.getSize()).isEqualTo(1);
+		assertThat(cache.get(manager, "Bert", "Ernie")).isNull();
+		assertCopy(cache.get(manager, "Elmo", "Grover"));
+	}
+
+	@Test
+	public void copies() {
+
+		cache.put(manager, "Bert", "Ernie", authentication);
+
+		Authentication first = cache.get(manager, "Bert", "Ernie");
+		Authentication second = cache.get(manager, "Bert", "Ernie");
+
+		assertThat(first).isNotSameAs(second);
+		first.setAuthenticated(false);
+		assertThat(second.isAuthenticated()).isTrue();
+		assertThat(authentication.isAuthenticated()).isTrue();
+	}
+
+	@Test
+	public void erasesCredentials() {
+
+		UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken("Bert", "Ernie",
+				Collections.<GrantedAuthority> singletonList(new SimpleGrantedAuthority("ROLE_USER")));
+		token.setDetails("details");
+		cache.put(manager, "Bert", "Ernie", token);
+
+		Authentication result = cache.get(manager, "Bert", "Ernie");
+
+		assertThat(result).isExactlyInstanceOf(UsernamePasswordAuthenticationToken.class);
+		assertThat(result.isAuthenticated()).isTrue();
+		assertThat(result.getCredentials()).isNull();
+		assertThat(result.getPrincipal()).isEqualTo("Bert");
+		assertThat(result.getDetails()).isEqualTo("details");
+		assertThat(token.getCredentials()).isEqualTo("Ernie");
+	}
+
+	@Test
+	public void notSerializable() {
+
+		TestingAuthenticationToken token = new TestingAuthenticationToken(new Object(), "Ernie");
+		cache.put(manager, "Bert", "Ernie", token);
+
+		assertThat(cache.getSize()).isEqualTo(0);
+		assertThat(cache.get(manager, "Bert", "Ernie")).isNull();
+	}
+
+	@Test
+	public void otherManager() {
+
+		AuthenticationManager other = authentication -> authentication;
+		cache.put(manager, "Bert", "Ernie", authentication);
+
+		assertThat(cache.get(other, "Bert", "Ernie")).isNull();
+		assertCopy(cache.get(manager, "Bert", "Ernie"));
+
+		cache.put(other, "Bert", "Elmo", authentication);
+
+		assertThat(cache.getSize()).isEqualTo(2);
+		assertCopy(cache.get(manager, "Bert", "Ernie"));
+		assertCopy(cache.get(other, "Bert", "Elmo"));
+
+		cache.remove("Bert");
+
+		assertThat(cache.getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void timeToLive() throws Exception {
+
+		cache.setTimeToLive(1);
+		cache.put(manager, "Bert", "Ernie", authentication);
+		Thread.sleep(10);
+
+		assertThat(cache.get(manager, "Bert", "Ernie")).isNull();
+		assertThat(cache.getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void remove() {
+
+		cache.put(manager, "Bert", "Ernie", authentication);
+		cache.remove("Bert");
+
+		assertThat(cache.get(manager, "Bert", "Ernie")).isNull();
+	}
+
+	private void assertCopy(Authentication result) {
+
+		assertThat(result).isNotNull().isNotSameAs(authentication).isExactlyInstanceOf(authentication.getClass());
+		assertThat(result.isAuthenticated()).isTrue();
+		assertThat(result.getPrincipal()).isEqualTo(authentication.getPrincipal());
+		assertThat(result.getDetails()).isEqualTo(authentication.getDetails());
+		assertThat(result.getAuthorities()).containsExactlyElementsOf(authentication.getAuthorities());
+	}
+
+}
@@ -16,8 +16,14 @@
 
 package org.springframework.ws.soap.security.wss4j2;
 
+import static org.assertj.core.api.Assertions.*;
+
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
@@ -28,12 +34,41 @@ import org.w3c.dom.Document;
 
 public abstract class Wss4jMessageInterceptorEncryptionTestCase extends Wss4jTestCase {
 
+	private static final String MULTI_PART_ENCRYPTION_PARTS = "{Content}{http://schemas.xmlsoap.org/soap/envelope/}Body;"
+			+ "{Element}{http://test}header1;{Content}{http://test}header2";
+
 	protected Wss4jSecurityInterceptor interceptor;
 
+	protected Wss4jSecurityInterceptor parallelInterceptor;
+
+	private ForkJoinPool executor;
+
+	private AtomicInteger executedTasks;
+
 	@Override
 	protected void onSetup() throws Exception {
 
-		interceptor = new Wss4jSecurityInterceptor();
+		interceptor = createInterceptor();
+		interceptor.afterPropertiesSet();
+
+		executor = new ForkJoinPool(2);
+		executedTasks = new AtomicInteger();
+		parallelInterceptor = createInterceptor();
+		parallelInterceptor.setEncryptionExecutor(task -> {
+			executedTasks.incrementAndGet();
+			executor.execute(task);
+		});
+		parallelInterceptor.afterPropertiesSet();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	private Wss4jSecurityInterceptor createInterceptor() throws Exception {
+
+		Wss4jSecurityInterceptor interceptor = new Wss4jSecurityInterceptor();
 		interceptor.setValidationActions("Encrypt");
 		interceptor.setSecurementActions("Encrypt");
 
@@ -55,8 +90,7 @@ public abstract class Wss4jMessageInterceptorEncryptionTestCase extends Wss4jTes
 		cryptoFactoryBean.afterPropertiesSet();
 		interceptor.setValidationDecryptionCrypto(cryptoFactoryBean.getObject());
 		interceptor.setSecurementEncryptionCrypto(cryptoFactoryBean.getObject());
-
-		interceptor.afterPropertiesSet();
+		return interceptor;
 	}
 
 	@Test
@@ -85,4 +119,95 @@ public abstract class Wss4jMessageInterceptorEncryptionTestCase extends Wss4jTes
 		assertXpathExists("Encryption error", "/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security/xenc:EncryptedKey",
 				document);
 	}
+
+	@Test
+	public void testEncryptAndDecryptPartsInParallel() throws Exception {
+
+		SoapMessage message = encryptMultiPartMessage(parallelInterceptor);
+		assertThat(executedTasks.get()).isEqualTo(2);
+		assertMultiPartMessageDecrypted(message, parallelInterceptor);
+		assertThat(executedTasks.get()).isEqualTo(4);
+	}
+
+	@Test
+	public void testEncryptPartsInParallelAndDecryptSequentially() throws Exception {
+
+		SoapMessage message = encryptMultiPartMessage(parallelInterceptor);
+		assertThat(executedTasks.get()).isEqualTo(2);
+		assertMultiPartMessageDecrypted(message, interceptor);
+	}
+
+	@Test
+	public void testEncryptSequentiallyAndDecryptPartsInParallel() throws Exception {
+
+		SoapMessage message = encryptMultiPartMessage(interceptor);
+		assertMultiPartMessageDecrypted(message, parallelInterceptor);
+		assertThat(executedTasks.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testDecryptPartsInParallelWithBspCompliance() throws Exception {
+
+		Wss4jSecurityInterceptor bspInterceptor = createInterceptor();
+		bspInterceptor.setEncryptionExecutor(task -> {
+			executedTasks.incrementAndGet();
+			executor.execute(task);
+		});
+		bspInterceptor.setBspCompliant(true);
+		bspInterceptor.afterPropertiesSet();
+		SoapMessage message = encryptMultiPartMessage(interceptor);
+		assertMultiPartMessageDecrypted(message, bspInterceptor);
+		assertThat(executedTasks.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testDecryptPartsInParallelTimeout() throws Exception {
+
+		Wss4jSecurityInterceptor timeoutInterceptor = createInterceptor();
+		// an executor that never runs its tasks
+		Executor executor = task -> {};
+		timeoutInterceptor.setEncryptionExecutor(executor);
+		timeoutInterceptor.setEncryptionTimeout(100);
+		timeoutInterceptor.afterPropertiesSet();
+		SoapMessage message = encryptMultiPartMessage(interceptor);
+		MessageContext messageContext = new DefaultMessageContext(message, getSoap11MessageFactory());
+
+		assertThatExceptionOfType(Wss4jSecurityValidationException.class)
+				.isThrownBy(() -> timeoutInterceptor.validateMessage(message, messageContext));
+	}
+
+	private SoapMessage encryptMultiPartMessage(Wss4jSecurityInterceptor interceptor) throws Exception {
+
+		SoapMessage message = loadSoap11Message("multiPart-soap.xml");
+		MessageContext messageContext = getSoap11MessageContext(message);
+		interceptor.setSecurementEncryptionUser("rsakey");
+		interceptor.setSecurementEncryptionParts(MULTI_PART_ENCRYPTION_PARTS);
+		interceptor.secureMessage(message, messageContext);
+		Document document = getDocument(message);
+
+		assertXpathEvaluatesTo("Encryption error", "3", "count(//xenc:EncryptedData)", document);
+		assertXpathEvaluatesTo("Encryption error", "3",
+				"count(/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security/xenc:EncryptedKey/xenc:ReferenceList/xenc:DataReference)",
+				document);
+		assertXpathNotExists("Encryption error", "//test:header1", document);
+		assertXpathNotExists("Encryption error", "//test:value", document);
+		assertXpathNotExists("Encryption error", "//echo:echoRequest", document);
+		return message;
+	}
+
+	private void assertMultiPartMessageDecrypted(SoapMessage message, Wss4jSecurityInterceptor interceptor)
+			throws Exception {
+
+		MessageContext messageContext = new DefaultMessageContext(message, getSoap11MessageFactory());
+		interceptor.validateMessage(message, messageContext);
+		Document document = getDocument((SoapMessage) messageContext.getRequest());
+
+		assertXpathEvaluatesTo("Decryption error", "Hello", "/SOAP-ENV:Envelope/SOAP-ENV:Body/echo:echoRequest/text()",
+				document);
+		assertXpathEvaluatesTo("Decryption error", "test1", "/SOAP-ENV:Envelope/SOAP-ENV:Header/test:header1/text()",
+				document);
+		assertXpathEvaluatesTo("Decryption error", "test2",
+				"/SOAP-ENV:Envelope/SOAP-ENV:Header/test:header2/test:value/text()", document);
+		assertXpathNotExists("Decryption error", "//xenc:EncryptedData", document);
+	}
 }
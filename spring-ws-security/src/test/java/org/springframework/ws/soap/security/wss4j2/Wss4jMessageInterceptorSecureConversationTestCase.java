@@ -0,0 +1,333 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.soap.security.wss4j2;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Properties;
+
+import javax.xml.namespace.QName;
+import javax.xml.soap.MimeHeaders;
+
+import org.apache.axiom.om.OMXMLBuilderFactory;
+import org.apache.axiom.soap.SOAPModelBuilder;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.action.EncryptionAction;
+import org.apache.wss4j.dom.action.SignatureAction;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.ws.client.core.WebServiceTemplate;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.soap.SoapFault;
+import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.axiom.AxiomSoapMessage;
+import org.springframework.ws.soap.saaj.SaajSoapMessage;
+import org.springframework.ws.soap.security.WsSecurityValidationException;
+import org.springframework.ws.soap.security.wss4j2.callback.KeyStoreCallbackHandler;
+import org.springframework.ws.soap.security.wss4j2.support.CryptoFactoryBean;
+import org.springframework.ws.soap.security.wss4j2.support.SecureConversationSession;
+import org.springframework.ws.soap.security.wss4j2.support.SecureConversationSessionStore;
+import org.w3c.dom.Document;
+
+public abstract class Wss4jMessageInterceptorSecureConversationTestCase extends Wss4jTestCase {
+
+	private static final URI DESTINATION = URI.create("http://example.com/echo");
+
+	private Crypto crypto;
+
+	private SecureConversationSessionStore clientStore;
+
+	private SecureConversationSessionStore serverStore;
+
+	@Override
+	protected void onSetup() throws Exception {
+
+		CryptoFactoryBean cryptoFactoryBean = new CryptoFactoryBean();
+		Properties cryptoFactoryBeanConfig = new Properties();
+		cryptoFactoryBeanConfig.setProperty("org.apache.ws.security.crypto.provider",
+				"org.apache.ws.security.components.crypto.Merlin");
+		cryptoFactoryBeanConfig.setProperty("org.apache.ws.security.crypto.merlin.keystore.type", "jceks");
+		cryptoFactoryBeanConfig.setProperty("org.apache.ws.security.crypto.merlin.keystore.password", "123456");
+
+		// from the class path
+		cryptoFactoryBeanConfig.setProperty("org.apache.ws.security.crypto.merlin.file", "private.jks");
+		cryptoFactoryBean.setConfiguration(cryptoFactoryBeanConfig);
+		cryptoFactoryBean.afterPropertiesSet();
+		crypto = cryptoFactoryBean.getObject();
+
+		clientStore = new SecureConversationSessionStore();
+		serverStore = new SecureConversationSessionStore();
+	}
+
+	private Wss4jSecurityInterceptor createInterceptor(String actions, SecureConversationSessionStore store)
+			throws Exception {
+		return createInterceptor(actions, actions, store);
+	}
+
+	private Wss4jSecurityInterceptor createInterceptor(String securementActions, String validationActions,
+			SecureConversationSessionStore store) throws Exception {
+
+		Wss4jSecurityInterceptor interceptor = new Wss4jSecurityInterceptor();
+		interceptor.setSecurementActions(securementActions);
+		interceptor.setValidationActions(validationActions);
+		interceptor.setSecurementUsername("rsakey");
+		interceptor.setSecurementPassword("123456");
+		interceptor.setSecurementEncryptionUser("rsakey");
+		interceptor.setSecurementSignatureCrypto(crypto);
+		interceptor.setSecurementEncryptionCrypto(crypto);
+		interceptor.setValidationSignatureCrypto(crypto);
+		interceptor.setValidationDecryptionCrypto(crypto);
+		KeyStoreCallbackHandler callbackHandler = new KeyStoreCallbackHandler();
+		callbackHandler.setPrivateKeyPassword("123456");
+		interceptor.setValidationCallbackHandler(callbackHandler);
+		interceptor.setSecureConversationSessionStore(store);
+		interceptor.afterPropertiesSet();
+		return interceptor;
+	}
+
+	@Test
+	public void testEstablishSession() throws Exception {
+
+		Wss4jSecurityInterceptor client = createInterceptor("Signature Encrypt", clientStore);
+		Wss4jSecurityInterceptor server = createInterceptor("Signature Encrypt", serverStore);
+
+		// the first request carries the signed and encrypted secret of the session
+		SoapMessage request = loadSoap11Message("empty-soap.xml");
+		MessageContext clientContext = new DefaultMessageContext(request, getSoap11MessageFactory());
+		clientContext.setProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY, DESTINATION);
+		client.secureMessage(request, clientContext);
+		SecureConversationSession session = (SecureConversationSession) clientContext
+				.getProperty(Wss4jSecurityInterceptor.SECURE_CONVERSATION_SESSION_PROPERTY_NAME);
+
+		assertThat(session).isNotNull();
+		assertThat(session.isEstablished()).isFalse();
+		Document document = getDocument(request);
+		assertXpathEvaluatesTo("No session secret", session.getIdentifier(),
+				"/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security/xenc:EncryptedKey/xenc:CarriedKeyName", document);
+		assertXpathExists("No certificate signature",
+				"/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security/ds:Signature/ds:KeyInfo/wsse:SecurityTokenReference/ds:X509Data",
+				document);
+
+		SoapMessage response = exchange(request, server);
+
+		SecureConversationSession serverSession = serverStore.getSession(session.getIdentifier());
+		assertThat(serverSession).isNotNull();
+		assertThat(serverSession.getCertificate()).isEqualTo(crypto.getX509Certificates(rsakey())[0]);
+		assertXpathNotExists("Session secret in response", "//xenc:EncryptedKey", getDocument(response));
+
+		client.validateMessage(response, clientContext);
+
+		assertThat(session.isEstablished()).isTrue();
+
+		// subsequent requests are secured with derived keys only
+		request = loadSoap11Message("empty-soap.xml");
+		clientContext = new DefaultMessageContext(request, getSoap11MessageFactory());
+		clientContext.setProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY, DESTINATION);
+		client.secureMessage(request, clientContext);
+
+		document = getDocument(request);
+		assertXpathNotExists("Session secret in request", "//xenc:EncryptedKey", document);
+		assertXpathNotExists("Certificate signature", "//ds:X509Data", document);
+
+		response = exchange(request, server);
+		client.validateMessage(response, clientContext);
+
+		assertThat(serverStore.size()).isEqualTo(1);
+		assertThat(clientStore.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void testUnknownSession() throws Exception {
+
+		Wss4jSecurityInterceptor client = createInterceptor("Signature Encrypt", clientStore);
+		Wss4jSecurityInterceptor server = createInterceptor("Signature Encrypt", serverStore);
+
+		SoapMessage request = loadSoap11Message("empty-soap.xml");
+		MessageContext clientContext = new DefaultMessageContext(request, getSoap11MessageFactory());
+		clientContext.setProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY, DESTINATION);
+		client.secureMessage(request, clientContext);
+		client.validateMessage(exchange(request, server), clientContext);
+
+		serverStore.clear();
+
+		SoapMessage secondRequest = loadSoap11Message("empty-soap.xml");
+		clientContext = new DefaultMessageContext(secondRequest, getSoap11MessageFactory());
+		clientContext.setProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY, DESTINATION);
+		client.secureMessage(secondRequest, clientContext);
+		SecureConversationSession session = (SecureConversationSession) clientContext
+				.getProperty(Wss4jSecurityInterceptor.SECURE_CONVERSATION_SESSION_PROPERTY_NAME);
+
+		MessageContext serverContext = new DefaultMessageContext(transfer(secondRequest), getSoap11MessageFactory());
+
+		assertThat(server.handleRequest(serverContext, null)).isFalse();
+		SoapFault fault = ((SoapMessage) serverContext.getResponse()).getSoapBody().getFault();
+		assertThat(fault.getFaultCode()).isEqualTo(
+				new QName("http://docs.oasis-open.org/ws-sx/ws-secureconversation/200512", "BadContextToken"));
+
+		// the client drops the session, and establishes a new one with the next request
+		clientContext.setResponse(transfer((SoapMessage) serverContext.getResponse()));
+
+		assertThat(client.handleFault(clientContext)).isTrue();
+		assertThat(clientStore.getSession(session.getIdentifier())).isNull();
+
+		SoapMessage thirdRequest = loadSoap11Message("empty-soap.xml");
+		clientContext = new DefaultMessageContext(thirdRequest, getSoap11MessageFactory());
+		clientContext.setProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY, DESTINATION);
+		client.secureMessage(thirdRequest, clientContext);
+		SecureConversationSession newSession = (SecureConversationSession) clientContext
+				.getProperty(Wss4jSecurityInterceptor.SECURE_CONVERSATION_SESSION_PROPERTY_NAME);
+
+		assertThat(newSession.getIdentifier()).isNotEqualTo(session.getIdentifier());
+		assertXpathEvaluatesTo("No session secret", newSession.getIdentifier(),
+				"/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security/xenc:EncryptedKey/xenc:CarriedKeyName",
+				getDocument(thirdRequest));
+
+		client.validateMessage(exchange(thirdRequest, server), clientContext);
+
+		assertThat(newSession.isEstablished()).isTrue();
+	}
+
+	@Test
+	public void testSessionCertificateNoLongerTrusted() throws Exception {
+
+		Wss4jSecurityInterceptor client = createInterceptor("Signature Encrypt", clientStore);
+		Wss4jSecurityInterceptor server = createInterceptor("Signature Encrypt", serverStore);
+
+		SoapMessage request = loadSoap11Message("empty-soap.xml");
+		MessageContext clientContext = new DefaultMessageContext(request, getSoap11MessageFactory());
+		clientContext.setProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY, DESTINATION);
+		client.secureMessage(request, clientContext);
+		client.validateMessage(exchange(request, server), clientContext);
+
+		// bind the session to a certificate that the server does not trust
+		SecureConversationSession session = (SecureConversationSession) clientContext
+				.getProperty(Wss4jSecurityInterceptor.SECURE_CONVERSATION_SESSION_PROPERTY_NAME);
+		KeyStore keyStore = KeyStore.getInstance("JKS");
+		try (InputStream is = new ClassPathResource("/org/springframework/ws/soap/security/xwss/test-keystore.jks")
+				.getInputStream()) {
+			keyStore.load(is, "password".toCharArray());
+		}
+		serverStore.clear();
+		serverStore.addSession(session.getIdentifier(), session.getSecret(),
+				(X509Certificate) keyStore.getCertificate("alias"));
+
+		final SoapMessage secondRequest = loadSoap11Message("empty-soap.xml");
+		clientContext = new DefaultMessageContext(secondRequest, getSoap11MessageFactory());
+		clientContext.setProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY, DESTINATION);
+		client.secureMessage(secondRequest, clientContext);
+
+		assertThatExceptionOfType(WsSecurityValidationException.class)
+				.isThrownBy(() -> exchange(secondRequest, server));
+	}
+
+	@Test
+	public void testPrivateWssConfig() throws Exception {
+
+		WSSConfig config = WSSConfig.getNewInstance();
+		Wss4jSecurityInterceptor interceptor = new Wss4jSecurityInterceptor();
+		interceptor.setWssConfig(config);
+		interceptor.setSecurementActions("Signature Encrypt");
+		interceptor.setValidationActions("Signature Encrypt");
+		interceptor.setValidationSignatureCrypto(crypto);
+		interceptor.setSecureConversationSessionStore(clientStore);
+		interceptor.afterPropertiesSet();
+
+		assertThat(config.getAction(WSConstants.SIGN).getClass()).isEqualTo(SignatureAction.class);
+		assertThat(config.getAction(WSConstants.ENCR).getClass()).isEqualTo(EncryptionAction.class);
+	}
+
+	@Test
+	public void testSignatureValidationRequired() throws Exception {
+
+		assertThatIllegalArgumentException().isThrownBy(() -> createInterceptor("Encrypt", serverStore));
+	}
+
+	@Test
+	public void testUnsignedSessionSecret() throws Exception {
+
+		Wss4jSecurityInterceptor client = createInterceptor("Encrypt", "Signature Encrypt", clientStore);
+		Wss4jSecurityInterceptor server = createInterceptor("Signature Encrypt", serverStore);
+
+		final SoapMessage unsignedRequest = loadSoap11Message("empty-soap.xml");
+		MessageContext unsignedContext = new DefaultMessageContext(unsignedRequest, getSoap11MessageFactory());
+		unsignedContext.setProperty(WebServiceTemplate.DESTINATION_URI_PROPERTY, DESTINATION);
+		client.secureMessage(unsignedRequest, unsignedContext);
+
+		assertThatExceptionOfType(WsSecurityValidationException.class)
+				.isThrownBy(() -> exchange(unsignedRequest, server));
+		assertThat(serverStore.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testNoDestination() throws Exception {
+
+		Wss4jSecurityInterceptor client = createInterceptor("Signature Encrypt", clientStore);
+
+		SoapMessage request = loadSoap11Message("empty-soap.xml");
+		MessageContext clientContext = new DefaultMessageContext(request, getSoap11MessageFactory());
+		client.secureMessage(request, clientContext);
+
+		assertThat(clientStore.size()).isEqualTo(0);
+		assertXpathExists("No certificate signature", "//ds:X509Data", getDocument(request));
+	}
+
+	private static CryptoType rsakey() {
+		CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+		cryptoType.setAlias("rsakey");
+		return cryptoType;
+	}
+
+	/**
+	 * Sends the given request to the given server interceptor, and returns the secured response.
+	 */
+	private SoapMessage exchange(SoapMessage request, Wss4jSecurityInterceptor server) throws Exception {
+
+		SoapMessage received = transfer(request);
+		MessageContext serverContext = new DefaultMessageContext(received, getSoap11MessageFactory());
+		server.validateMessage(received, serverContext);
+		SoapMessage response = loadSoap11Message("empty-soap.xml");
+		serverContext.setResponse(response);
+		server.secureMessage(response, serverContext);
+		return transfer(response);
+	}
+
+	private SoapMessage transfer(SoapMessage message) throws Exception {
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		message.writeTo(os);
+		InputStream is = new ByteArrayInputStream(os.toByteArray());
+		if (axiomTest) {
+			SOAPModelBuilder builder = OMXMLBuilderFactory.createSOAPModelBuilder(is, null);
+			org.apache.axiom.soap.SOAPMessage soapMessage = builder.getSOAPMessage();
+			builder.detach();
+			return new AxiomSoapMessage(soapMessage, "", true, true);
+		}
+		MimeHeaders mimeHeaders = new MimeHeaders();
+		mimeHeaders.addHeader("Content-Type", "text/xml");
+		return new SaajSoapMessage(saajSoap11MessageFactory.createMessage(mimeHeaders, is), saajSoap11MessageFactory);
+	}
+}
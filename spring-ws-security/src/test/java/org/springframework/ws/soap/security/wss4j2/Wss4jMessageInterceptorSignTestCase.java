@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2010 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,13 +18,19 @@ package org.springframework.ws.soap.security.wss4j2;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.regex.Pattern;
 
+import org.apache.wss4j.dom.handler.RequestData;
 import org.junit.jupiter.api.Test;
 import org.springframework.ws.WebServiceMessage;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.security.WsSecurityValidationException;
+import org.springframework.ws.soap.security.support.CertificateValidationCache;
 import org.springframework.ws.soap.security.wss4j2.support.CryptoFactoryBean;
 import org.w3c.dom.Document;
 
@@ -32,13 +38,15 @@ public abstract class Wss4jMessageInterceptorSignTestCase extends Wss4jTestCase
 
 	protected Wss4jSecurityInterceptor interceptor;
 
+	private CryptoFactoryBean cryptoFactoryBean;
+
 	@Override
 	protected void onSetup() throws Exception {
 
 		interceptor = new Wss4jSecurityInterceptor();
 		interceptor.setValidationActions("Signature");
 
-		CryptoFactoryBean cryptoFactoryBean = new CryptoFactoryBean();
+		cryptoFactoryBean = new CryptoFactoryBean();
 		Properties cryptoFactoryBeanConfig = new Properties();
 		cryptoFactoryBeanConfig.setProperty("org.apache.ws.security.crypto.provider",
 				"org.apache.ws.security.components.crypto.Merlin");
@@ -69,6 +77,55 @@ public abstract class Wss4jMessageInterceptorSignTestCase extends Wss4jTestCase
 				getDocument(message));
 	}
 
+	@Test
+	public void testValidateCertificateWithValidationCache() throws Exception {
+
+		CertificateValidationCache cache = new CertificateValidationCache();
+		interceptor = new Wss4jSecurityInterceptor();
+		interceptor.setValidationActions("Signature");
+		interceptor.setValidationSignatureCrypto(cryptoFactoryBean.getObject());
+		interceptor.setCertificateValidationCache(cache);
+		interceptor.afterPropertiesSet();
+
+		for (int i = 0; i < 2; i++) {
+			SoapMessage message = loadSoap11Message("signed-soap.xml");
+			MessageContext messageContext = new DefaultMessageContext(message, getSoap11MessageFactory());
+			interceptor.validateMessage(message, messageContext);
+		}
+
+		assertThat(cache.getMissCount()).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void testValidateCertificateWithValidationCacheAndIssuerConstraints() throws Exception {
+
+		final List<Pattern> issuerConstraints = new ArrayList<>();
+		CertificateValidationCache cache = new CertificateValidationCache();
+		interceptor = new Wss4jSecurityInterceptor() {
+
+			@Override
+			protected RequestData initializeValidationRequestData(MessageContext messageContext) {
+				RequestData requestData = super.initializeValidationRequestData(messageContext);
+				requestData.setIssuerDNPatterns(issuerConstraints);
+				return requestData;
+			}
+		};
+		interceptor.setValidationActions("Signature");
+		interceptor.setValidationSignatureCrypto(cryptoFactoryBean.getObject());
+		interceptor.setCertificateValidationCache(cache);
+		interceptor.afterPropertiesSet();
+
+		SoapMessage message = loadSoap11Message("signed-soap.xml");
+		interceptor.validateMessage(message, new DefaultMessageContext(message, getSoap11MessageFactory()));
+
+		issuerConstraints.add(Pattern.compile("CN=nobody"));
+		SoapMessage constrained = loadSoap11Message("signed-soap.xml");
+
+		assertThatExceptionOfType(WsSecurityValidationException.class).isThrownBy(() -> interceptor
+				.validateMessage(constrained, new DefaultMessageContext(constrained, getSoap11MessageFactory())));
+	}
+
 	@Test
 	public void testValidateCertificateWithSignatureConfirmation() throws Exception {
 
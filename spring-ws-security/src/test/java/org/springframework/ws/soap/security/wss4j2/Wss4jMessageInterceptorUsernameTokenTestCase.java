@@ -25,7 +25,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.axiom.AxiomSoapMessage;
 import org.springframework.ws.soap.security.wss4j2.callback.SimplePasswordValidationCallbackHandler;
+import org.springframework.ws.soap.security.wss4j2.support.TimeBucketedReplayCache;
 import org.w3c.dom.Document;
 
 public abstract class Wss4jMessageInterceptorUsernameTokenTestCase extends Wss4jTestCase {
@@ -66,6 +68,32 @@ public abstract class Wss4jMessageInterceptorUsernameTokenTestCase extends Wss4j
 		assertValidateUsernameToken(message);
 	}
 
+	@Test
+	public void testValidateUsernameTokenNonceReplay() throws Exception {
+
+		Wss4jSecurityInterceptor interceptor = new Wss4jSecurityInterceptor();
+		interceptor.setSecurementActions("UsernameToken");
+		interceptor.setSecurementUsername("Bert");
+		interceptor.setSecurementPassword("Ernie");
+		interceptor.setSecurementPasswordType(WSConstants.PW_DIGEST);
+
+		SoapMessage message = loadSoap11Message("empty-soap.xml");
+		MessageContext messageContext = new DefaultMessageContext(message, getSoap11MessageFactory());
+		interceptor.handleRequest(messageContext);
+
+		TimeBucketedReplayCache replayCache = new TimeBucketedReplayCache();
+		interceptor = prepareInterceptor("UsernameToken", true, true);
+		interceptor.setNonceReplayCache(replayCache);
+		interceptor.setRemoveSecurityHeader(false);
+		interceptor.validateMessage(message, messageContext);
+
+		assertThat(replayCache.size()).isEqualTo(1);
+
+		final Wss4jSecurityInterceptor replayInterceptor = interceptor;
+		assertThatExceptionOfType(Wss4jSecurityValidationException.class)
+				.isThrownBy(() -> replayInterceptor.validateMessage(message, messageContext));
+	}
+
 	@Test
 	public void testValidateUsernameTokenWithQualifiedType() throws Exception {
 
@@ -77,6 +105,48 @@ public abstract class Wss4jMessageInterceptorUsernameTokenTestCase extends Wss4j
 		assertValidateUsernameToken(message);
 	}
 
+	@Test
+	public void testValidateUsernameTokenHeaderOnly() throws Exception {
+
+		Wss4jSecurityInterceptor interceptor = prepareInterceptor("UsernameToken", true, false);
+		interceptor.setHeaderOnlyValidation(true);
+		SoapMessage message = loadSoap11Message("usernameTokenPlainText-soap.xml");
+		MessageContext messageContext = new DefaultMessageContext(message, getSoap11MessageFactory());
+		interceptor.validateMessage(message, messageContext);
+
+		if (axiomTest) {
+			assertThat(((AxiomSoapMessage) message).getAxiomMessage().getSOAPEnvelope().getBody().isComplete()).isFalse();
+		}
+		assertValidateUsernameToken(message);
+		assertXpathEvaluatesTo("Invalid payload", "QQQ", "/SOAP-ENV:Envelope/SOAP-ENV:Body/*/text()",
+				getDocument(message));
+	}
+
+	@Test
+	public void testValidateUsernameTokenHeaderOnlySoap12() throws Exception {
+
+		Wss4jSecurityInterceptor interceptor = prepareInterceptor("UsernameToken", true, false);
+		interceptor.setHeaderOnlyValidation(true);
+		SoapMessage message = loadSoap12Message("usernameTokenPlainText-soap12.xml");
+		MessageContext messageContext = new DefaultMessageContext(message, getSoap12MessageFactory());
+		interceptor.validateMessage(message, messageContext);
+
+		assertThat(message.getSoapHeader().examineAllHeaderElements().hasNext()).isFalse();
+	}
+
+	@Test
+	public void testValidateUsernameTokenHeaderOnlyInvalidPassword() throws Exception {
+
+		users.setProperty("Bert", "Elmo");
+		Wss4jSecurityInterceptor interceptor = prepareInterceptor("UsernameToken", true, false);
+		interceptor.setHeaderOnlyValidation(true);
+		SoapMessage message = loadSoap11Message("usernameTokenPlainText-soap.xml");
+		MessageContext messageContext = new DefaultMessageContext(message, getSoap11MessageFactory());
+
+		assertThatExceptionOfType(Wss4jSecurityValidationException.class)
+				.isThrownBy(() -> interceptor.validateMessage(message, messageContext));
+	}
+
 	@Test
 	public void testAddUsernameTokenPlainText() throws Exception {
 		Wss4jSecurityInterceptor interceptor = prepareInterceptor("UsernameToken", false, false);
@@ -20,6 +20,7 @@ import static org.assertj.core.api.Assertions.*;
 
 import java.util.Properties;
 
+import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -65,4 +66,25 @@ public class CryptoFactoryBeanTest {
 		assertThat(result).isNotNull();
 		assertThat(result).isInstanceOf(Merlin.class);
 	}
+
+	@Test
+	public void testReload() throws Exception {
+
+		factoryBean.setKeyStoreType("jceks");
+		factoryBean.setKeyStorePassword("123456");
+		factoryBean.setKeyStoreLocation(new ClassPathResource("private.jks"));
+		factoryBean.setReloadInterval(60000);
+		factoryBean.afterPropertiesSet();
+		try {
+			Object result = factoryBean.getObject();
+
+			assertThat(result).isInstanceOf(ReloadableCrypto.class);
+			assertThat(((ReloadableCrypto) result).getCrypto()).isInstanceOf(Merlin.class);
+			CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+			cryptoType.setAlias("rsakey");
+			assertThat(((ReloadableCrypto) result).getX509Certificates(cryptoType)).hasSize(1);
+		} finally {
+			factoryBean.destroy();
+		}
+	}
 }
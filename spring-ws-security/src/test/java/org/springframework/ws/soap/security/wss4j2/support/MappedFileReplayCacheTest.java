@@ -0,0 +1,134 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedFileReplayCacheTest {
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	public void addAndContains() throws Exception {
+
+		MappedFileReplayCache cache = new MappedFileReplayCache(new File(tempDir, "replay"), 64);
+		try {
+			assertThat(cache.contains("nonce")).isFalse();
+
+			cache.add("nonce");
+
+			assertThat(cache.contains("nonce")).isTrue();
+			assertThat(cache.contains("other")).isFalse();
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void expiry() throws Exception {
+
+		MappedFileReplayCache cache = new MappedFileReplayCache(new File(tempDir, "replay"), 64);
+		try {
+			cache.add("nonce", Instant.now().plusMillis(20));
+			cache.add("expired", Instant.now().minusMillis(1));
+
+			assertThat(cache.contains("nonce")).isTrue();
+			assertThat(cache.contains("expired")).isFalse();
+
+			Thread.sleep(50);
+
+			assertThat(cache.contains("nonce")).isFalse();
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void persistence() throws Exception {
+
+		File file = new File(tempDir, "replay");
+		MappedFileReplayCache cache = new MappedFileReplayCache(file, 64);
+		cache.add("nonce");
+		cache.close();
+
+		cache = new MappedFileReplayCache(file, 64);
+		try {
+			assertThat(cache.contains("nonce")).isTrue();
+		} finally {
+			cache.close();
+		}
+
+		cache = new MappedFileReplayCache(file, 128);
+		try {
+			assertThat(cache.contains("nonce")).isFalse();
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void fullGroupRejects() throws Exception {
+
+		MappedFileReplayCache cache = new MappedFileReplayCache(new File(tempDir, "replay"), 1);
+		try {
+			cache.add("first", Instant.now().plusMillis(50));
+			for (int i = 1; i < MappedFileReplayCache.GROUP_SIZE; i++) {
+				cache.add("nonce" + i, Instant.now().plusSeconds(60));
+			}
+
+			assertThat(cache.contains("first")).isTrue();
+			assertThat(cache.contains("other")).isTrue();
+			assertThat(cache.getRejectionCount()).isEqualTo(1);
+
+			cache.add("other");
+
+			assertThat(cache.contains("first")).isTrue();
+			assertThat(cache.getRejectionCount()).isEqualTo(2);
+
+			Thread.sleep(100);
+
+			assertThat(cache.contains("other")).isFalse();
+			cache.add("other");
+			assertThat(cache.contains("other")).isTrue();
+			for (int i = 1; i < MappedFileReplayCache.GROUP_SIZE; i++) {
+				assertThat(cache.contains("nonce" + i)).isTrue();
+			}
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void locked() throws Exception {
+
+		File file = new File(tempDir, "replay");
+		MappedFileReplayCache cache = new MappedFileReplayCache(file, 64);
+		try {
+			assertThatIOException().isThrownBy(() -> new MappedFileReplayCache(file, 64));
+		} finally {
+			cache.close();
+		}
+
+		new MappedFileReplayCache(file, 64).close();
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.callback.DOMCallbackLookup;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.processor.Processor;
+import org.apache.xml.security.Init;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+public class ParallelEncryptedKeyProcessorTest {
+
+	@Test
+	public void duplicateDataReference() throws Exception {
+
+		String encryptedKey = "<xenc:EncryptedKey xmlns:xenc='http://www.w3.org/2001/04/xmlenc#'><xenc:ReferenceList>"
+				+ "<xenc:DataReference URI='#ED-1'/><xenc:DataReference URI='#ED-2'/>"
+				+ "<xenc:DataReference URI='#ED-1'/></xenc:ReferenceList></xenc:EncryptedKey>";
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		Document document = documentBuilderFactory.newDocumentBuilder()
+				.parse(new InputSource(new StringReader(encryptedKey)));
+		Processor delegate = (elem, data) -> {
+			throw new AssertionError("Key decrypted");
+		};
+		ParallelEncryptedKeyProcessor processor = new ParallelEncryptedKeyProcessor(delegate, task -> {
+			throw new AssertionError("Part scheduled");
+		});
+		RequestData data = new RequestData();
+		data.setDisableBSPEnforcement(true);
+
+		assertThatExceptionOfType(WSSecurityException.class)
+				.isThrownBy(() -> processor.handleToken(document.getDocumentElement(), data));
+	}
+
+	@Test
+	public void nonCompliantEncryptionAlgorithm() throws Exception {
+
+		Init.init();
+		String message = "<root xmlns:xenc='http://www.w3.org/2001/04/xmlenc#'><xenc:EncryptedKey><xenc:ReferenceList>"
+				+ "<xenc:DataReference URI='#ED-1'/><xenc:DataReference URI='#ED-2'/></xenc:ReferenceList>"
+				+ "</xenc:EncryptedKey>"
+				+ "<xenc:EncryptedData Id='ED-1'><xenc:EncryptionMethod Algorithm='" + WSConstants.AES_192 + "'/>"
+				+ "<xenc:CipherData><xenc:CipherValue>AAAA</xenc:CipherValue></xenc:CipherData></xenc:EncryptedData>"
+				+ "<xenc:EncryptedData Id='ED-2'><xenc:EncryptionMethod Algorithm='" + WSConstants.AES_192 + "'/>"
+				+ "<xenc:CipherData><xenc:CipherValue>AAAA</xenc:CipherValue></xenc:CipherData></xenc:EncryptedData>"
+				+ "</root>";
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		Document document = documentBuilderFactory.newDocumentBuilder().parse(new InputSource(new StringReader(message)));
+		Processor delegate = (elem, data) -> {
+			WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.ENCR);
+			result.put(WSSecurityEngineResult.TAG_SECRET, new byte[24]);
+			return Collections.singletonList(result);
+		};
+		ParallelEncryptedKeyProcessor processor = new ParallelEncryptedKeyProcessor(delegate, task -> {
+			throw new AssertionError("Part scheduled");
+		});
+		RequestData data = new RequestData();
+		WSDocInfo wsDocInfo = new WSDocInfo(document);
+		wsDocInfo.setCallbackLookup(new DOMCallbackLookup(document));
+		data.setWsDocInfo(wsDocInfo);
+
+		assertThatExceptionOfType(WSSecurityException.class).isThrownBy(
+				() -> processor.handleToken((Element) document.getDocumentElement().getFirstChild(), data));
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+public class SecureConversationSessionStoreTest {
+
+	private SecureConversationSessionStore store;
+
+	@BeforeEach
+	public void setUp() {
+		store = new SecureConversationSessionStore();
+	}
+
+	@Test
+	public void partnerSession() {
+
+		SecureConversationSession session = store.getPartnerSession("http://example.com/a");
+
+		assertThat(session.isEstablished()).isFalse();
+		assertThat(session.getIdentifier()).startsWith("urn:uuid:");
+		assertThat(session.getSecret()).hasSize(SecureConversationSessionStore.DEFAULT_SECRET_LENGTH);
+		assertThat(store.getPartnerSession("http://example.com/a")).isSameAs(session);
+		assertThat(store.getPartnerSession("http://example.com/b")).isNotSameAs(session);
+		assertThat(store.getSession(session.getIdentifier())).isSameAs(session);
+		assertThat(store.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void renewal() {
+
+		store.setTimeToLive(1000);
+		store.setRenewBefore(1000);
+
+		SecureConversationSession session = store.getPartnerSession("http://example.com");
+
+		assertThat(store.getPartnerSession("http://example.com")).isNotSameAs(session);
+	}
+
+	@Test
+	public void addSession() {
+
+		byte[] secret = new byte[] { 1, 2, 3 };
+		SecureConversationSession session = store.addSession("urn:uuid:1", secret);
+
+		assertThat(session.isEstablished()).isTrue();
+		assertThat(session.getSecret()).isEqualTo(secret);
+		assertThat(store.addSession("urn:uuid:1", secret)).isSameAs(session);
+		assertThat(store.addSession("urn:uuid:1", new byte[] { 4, 5, 6 })).isNull();
+		assertThat(store.getSession("urn:uuid:1")).isSameAs(session);
+	}
+
+	@Test
+	public void addSessionWithCertificate() throws Exception {
+
+		X509Certificate certificate = loadCertificate();
+		byte[] secret = new byte[] { 1, 2, 3 };
+		SecureConversationSession session = store.addSession("urn:uuid:1", secret, certificate);
+
+		assertThat(session.getCertificate()).isSameAs(certificate);
+		assertThat(store.addSession("urn:uuid:1", secret, certificate)).isSameAs(session);
+		assertThat(store.addSession("urn:uuid:1", secret)).isNull();
+	}
+
+	@Test
+	public void maxSize() {
+
+		store.setMaxSize(2);
+		SecureConversationSession partnerSession = store.getPartnerSession("http://example.com");
+		store.addSession("urn:uuid:1", new byte[] { 1, 2, 3 });
+		store.getSession(partnerSession.getIdentifier());
+		store.addSession("urn:uuid:2", new byte[] { 4, 5, 6 });
+
+		assertThat(store.size()).isEqualTo(2);
+		assertThat(store.getSession("urn:uuid:1")).isNull();
+		assertThat(store.getSession(partnerSession.getIdentifier())).isSameAs(partnerSession);
+
+		store.getSession("urn:uuid:2");
+		store.addSession("urn:uuid:3", new byte[] { 7, 8, 9 });
+
+		assertThat(store.getSession(partnerSession.getIdentifier())).isNull();
+		assertThat(store.getPartnerSession("http://example.com")).isNotSameAs(partnerSession);
+	}
+
+	@Test
+	public void expiry() throws Exception {
+
+		store.setTimeToLive(10);
+		store.addSession("urn:uuid:1", new byte[] { 1, 2, 3 });
+
+		Thread.sleep(20);
+
+		assertThat(store.getSession("urn:uuid:1")).isNull();
+		assertThat(store.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void removeSession() {
+
+		SecureConversationSession session = store.getPartnerSession("http://example.com");
+
+		store.removeSession(session.getIdentifier());
+
+		assertThat(store.getSession(session.getIdentifier())).isNull();
+		assertThat(store.getPartnerSession("http://example.com")).isNotSameAs(session);
+	}
+
+	private static X509Certificate loadCertificate() throws Exception {
+		KeyStore keyStore = KeyStore.getInstance("JCEKS");
+		try (InputStream is = new ClassPathResource("/private.jks").getInputStream()) {
+			keyStore.load(is, "123456".toCharArray());
+		}
+		return (X509Certificate) keyStore.getCertificate("rsakey");
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ws.soap.security.wss4j2.support;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TimeBucketedReplayCacheTest {
+
+	private TimeBucketedReplayCache cache;
+
+	@BeforeEach
+	public void setUp() {
+		cache = new TimeBucketedReplayCache(4, 10);
+	}
+
+	@Test
+	public void addAndContains() {
+
+		assertThat(cache.contains("nonce")).isFalse();
+
+		cache.add("nonce");
+
+		assertThat(cache.contains("nonce")).isTrue();
+		assertThat(cache.contains("other")).isFalse();
+		assertThat(cache.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void expiry() throws Exception {
+
+		cache.add("nonce", Instant.now().plusMillis(20));
+		cache.add("expired", Instant.now().minusMillis(1));
+
+		assertThat(cache.contains("nonce")).isTrue();
+		assertThat(cache.contains("expired")).isFalse();
+
+		Thread.sleep(50);
+
+		assertThat(cache.contains("nonce")).isFalse();
+		assertThat(cache.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void timeToLive() throws Exception {
+
+		cache.setTimeToLive(20);
+		cache.add("nonce");
+		Thread.sleep(50);
+
+		assertThat(cache.contains("nonce")).isFalse();
+	}
+
+	@Test
+	public void addAgainExtendsExpiry() throws Exception {
+
+		cache.add("nonce", Instant.now().plusMillis(20));
+		cache.add("nonce", Instant.now().plusSeconds(60));
+		Thread.sleep(50);
+
+		assertThat(cache.contains("nonce")).isTrue();
+	}
+
+	@Test
+	public void close() {
+
+		cache.add("nonce");
+		cache.close();
+
+		assertThat(cache.contains("nonce")).isFalse();
+	}
+
+	@Test
+	public void concurrentAdds() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				final int thread = i;
+				futures.add(executor.submit((Callable<Void>) () -> {
+					for (int j = 0; j < 1000; j++) {
+						cache.add(thread + "-" + j);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(cache.size()).isEqualTo(4000);
+		assertThat(cache.contains("3-999")).isTrue();
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.ws.soap.security.x509.cache;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.easymock.EasyMock.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.ws.soap.security.x509.X509AuthoritiesPopulator;
+
+public class FingerprintX509UserCacheTest {
+
+	private FingerprintX509UserCache cache;
+
+	private X509Certificate certificate;
+
+	private CountingPopulator populator;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+
+		cache = new FingerprintX509UserCache();
+		certificate = (X509Certificate) loadKeyStore("/org/springframework/ws/soap/security/xwss/test-keystore.jks",
+				"JKS", "password").getCertificate("alias");
+		populator = new CountingPopulator();
+	}
+
+	@Test
+	public void getUserDetails() throws Exception {
+
+		UserDetails user = cache.getUserDetails(certificate, populator);
+
+		assertThat(user.getUsername()).isEqualTo("Bert1");
+		assertThat(cache.getUserDetails(certificate, populator)).isSameAs(user);
+		assertThat(cache.getUserDetails(copy(certificate), populator)).isSameAs(user);
+		assertThat(populator.count.get()).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(2);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void fingerprintComputedOncePerCertificate() throws Exception {
+
+		X509Certificate mock = createMock(X509Certificate.class);
+		expect(mock.getEncoded()).andReturn(certificate.getEncoded()).once();
+		replay(mock);
+
+		UserDetails user = cache.getUserDetails(mock, populator);
+
+		assertThat(cache.getUserDetails(mock, populator)).isSameAs(user);
+		assertThat(cache.getUserFromCache(mock)).isSameAs(user);
+		assertThat(cache.getUserDetails(certificate, populator)).isSameAs(user);
+		verify(mock);
+	}
+
+	@Test
+	public void putUserInCache() throws Exception {
+
+		UserDetails user = createUser("Ernie");
+
+		assertThat(cache.getUserFromCache(certificate)).isNull();
+
+		cache.putUserInCache(certificate, user);
+
+		assertThat(cache.getUserFromCache(copy(certificate))).isSameAs(user);
+
+		cache.removeUserFromCache(certificate);
+
+		assertThat(cache.getUserFromCache(certificate)).isNull();
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void rejection() {
+
+		populator.reject = true;
+
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> cache.getUserDetails(certificate, populator));
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> cache.getUserDetails(certificate, populator));
+		assertThat(populator.count.get()).isEqualTo(1);
+		assertThat(cache.getUserFromCache(certificate)).isNull();
+	}
+
+	@Test
+	public void rejectionNotCached() {
+
+		cache.setRejectionTimeToLive(0);
+		populator.reject = true;
+
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> cache.getUserDetails(certificate, populator));
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> cache.getUserDetails(certificate, populator));
+		assertThat(populator.count.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void serviceFailureNotCached() {
+
+		populator.failure = true;
+
+		assertThatExceptionOfType(InternalAuthenticationServiceException.class)
+				.isThrownBy(() -> cache.getUserDetails(certificate, populator));
+
+		populator.failure = false;
+
+		assertThat(cache.getUserDetails(certificate, populator).getUsername()).isEqualTo("Bert2");
+		assertThat(populator.count.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void failedRefreshKeepsUser() throws Exception {
+
+		cache.setRefreshAfter(10);
+		UserDetails user = cache.getUserDetails(certificate, populator);
+		Thread.sleep(50);
+		populator.failure = true;
+
+		assertThat(cache.getUserDetails(certificate, populator)).isSameAs(user);
+		assertThat(cache.getUserFromCache(certificate)).isSameAs(user);
+
+		populator.failure = false;
+
+		assertThat(cache.getUserDetails(certificate, populator).getUsername()).isEqualTo("Bert3");
+	}
+
+	@Test
+	public void rejectedRefreshWithoutRejectionCaching() throws Exception {
+
+		cache.setRefreshAfter(10);
+		cache.setRejectionTimeToLive(0);
+		cache.getUserDetails(certificate, populator);
+		Thread.sleep(50);
+		populator.reject = true;
+
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> cache.getUserDetails(certificate, populator));
+		assertThat(cache.getUserFromCache(certificate)).isNull();
+	}
+
+	@Test
+	public void refresh() throws Exception {
+
+		cache.setRefreshAfter(10);
+		UserDetails user = cache.getUserDetails(certificate, populator);
+		Thread.sleep(50);
+
+		UserDetails refreshed = cache.getUserDetails(certificate, populator);
+
+		assertThat(refreshed).isNotSameAs(user);
+		assertThat(refreshed.getUsername()).isEqualTo("Bert2");
+		assertThat(cache.getUserDetails(certificate, populator)).isSameAs(refreshed);
+
+		Thread.sleep(50);
+		populator.reject = true;
+
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> cache.getUserDetails(certificate, populator));
+		assertThat(cache.getUserFromCache(certificate)).isNull();
+	}
+
+	@Test
+	public void timeToLive() throws Exception {
+
+		cache.setTimeToLive(10);
+		cache.putUserInCache(certificate, createUser("Ernie"));
+		Thread.sleep(50);
+
+		assertThat(cache.getUserFromCache(certificate)).isNull();
+		assertThat(cache.getSize()).isEqualTo(0);
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void maxSize() throws Exception {
+
+		X509Certificate other = (X509Certificate) loadKeyStore("/private.jks", "JCEKS", "123456")
+				.getCertificate("rsakey");
+		cache.setMaxSize(1);
+		cache.putUserInCache(certificate, createUser("Ernie"));
+		cache.putUserInCache(other, createUser("Elmo"));
+
+		assertThat(cache.getSize()).isEqualTo(1);
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+		assertThat(cache.getUserFromCache(certificate)).isNull();
+		assertThat(cache.getUserFromCache(other).getUsername()).isEqualTo("Elmo");
+	}
+
+	private static KeyStore loadKeyStore(String location, String type, String password) throws Exception {
+		KeyStore keyStore = KeyStore.getInstance(type);
+		try (InputStream is = new ClassPathResource(location).getInputStream()) {
+			keyStore.load(is, password.toCharArray());
+		}
+		return keyStore;
+	}
+
+	private static X509Certificate copy(X509Certificate certificate) throws Exception {
+		CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+		return (X509Certificate) certificateFactory
+				.generateCertificate(new ByteArrayInputStream(certificate.getEncoded()));
+	}
+
+	private static UserDetails createUser(String username) {
+		return new User(username, "", Collections.<GrantedAuthority> emptyList());
+	}
+
+	private static class CountingPopulator implements X509AuthoritiesPopulator {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		private volatile boolean reject;
+
+		private volatile boolean failure;
+
+		@Override
+		public UserDetails getUserDetails(X509Certificate userCertificate) throws AuthenticationException {
+			int call = count.incrementAndGet();
+			if (reject) {
+				throw new BadCredentialsException("Rejected");
+			}
+			if (failure) {
+				throw new InternalAuthenticationServiceException("Unavailable");
+			}
+			return createUser("Bert" + call);
+		}
+	}
+
+}
@@ -28,9 +28,12 @@ import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 
+import org.apache.axiom.om.OMXMLBuilderFactory;
+import org.apache.axiom.soap.SOAPModelBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.ws.soap.axiom.AxiomSoapMessage;
 import org.springframework.ws.soap.saaj.SaajSoapMessage;
 import org.springframework.xml.xpath.XPathExpression;
 import org.springframework.xml.xpath.XPathExpressionFactory;
@@ -99,5 +102,19 @@ public abstract class AbstractXwssMessageInterceptorTestCase {
 		}
 	}
 
+	protected AxiomSoapMessage loadAxiomMessage(String fileName) throws IOException {
+
+		Resource resource = new ClassPathResource(fileName, getClass());
+
+		assertThat(resource.exists()).isTrue();
+
+		try (InputStream is = resource.getInputStream()) {
+			SOAPModelBuilder builder = OMXMLBuilderFactory.createSOAPModelBuilder(is, null);
+			org.apache.axiom.soap.SOAPMessage soapMessage = builder.getSOAPMessage();
+			builder.detach();
+			return new AxiomSoapMessage(soapMessage, "", true, true);
+		}
+	}
+
 	protected void onSetup() throws Exception {}
 }
@@ -18,6 +18,7 @@ package org.springframework.ws.soap.security.xwss;
 
 import static org.assertj.core.api.Assertions.*;
 
+import javax.activation.DataHandler;
 import javax.xml.soap.MessageFactory;
 import javax.xml.soap.SOAPMessage;
 
@@ -26,6 +27,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.axiom.AxiomSoapMessage;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
 import org.springframework.ws.soap.saaj.SaajSoapMessage;
 import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
 import org.springframework.ws.soap.security.WsSecurityValidationException;
@@ -198,4 +201,23 @@ public class XwsSecurityInterceptorTest {
 
 		assertThat(((SaajSoapMessage) context.getResponse()).getSaajMessage()).isEqualTo(validatedResponse);
 	}
+	@Test
+	public void testHasSameAttachments() throws Exception {
+
+		AxiomSoapMessage message = new AxiomSoapMessageFactory().createWebServiceMessage();
+		DataHandler dataHandler = new DataHandler("Bert", "text/plain");
+		message.addAttachment("attachment", dataHandler);
+
+		SOAPMessage processed = messageFactory.createMessage();
+		processed.addAttachmentPart(processed.createAttachmentPart(dataHandler));
+
+		assertThat(XwsSecurityInterceptor.hasSameAttachments(message, processed)).isTrue();
+
+		SOAPMessage changed = messageFactory.createMessage();
+		changed.addAttachmentPart(changed.createAttachmentPart(new DataHandler("Ernie", "text/plain")));
+
+		assertThat(XwsSecurityInterceptor.hasSameAttachments(message, changed)).isFalse();
+		assertThat(XwsSecurityInterceptor.hasSameAttachments(message, messageFactory.createMessage())).isFalse();
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2005-2010 the original author or authors.
+ * Copyright 2005-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,13 +17,28 @@
 package org.springframework.ws.soap.security.xwss;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+import javax.activation.DataHandler;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.transform.dom.DOMSource;
 
+import org.apache.axiom.om.OMXMLBuilderFactory;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+import org.springframework.ws.soap.axiom.AxiomSoapMessage;
 import org.springframework.ws.soap.saaj.SaajSoapMessage;
 import org.springframework.ws.soap.security.callback.AbstractCallbackHandler;
 
@@ -268,4 +283,184 @@ public class XwssMessageInterceptorUsernameTokenTest extends AbstractXwssMessage
 		assertThat(result).isNotNull();
 		assertXpathNotExists("/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security", result);
 	}
+	@Test
+	public void testAddUsernameTokenPlainTextAxiom() throws Exception {
+
+		interceptor.setPolicyConfiguration(new ClassPathResource("usernameToken-plainText-config.xml", getClass()));
+
+		CallbackHandler handler = new AbstractCallbackHandler() {
+
+			@Override
+			protected void handleInternal(Callback callback) {
+
+				if (callback instanceof UsernameCallback) {
+					((UsernameCallback) callback).setUsername("Bert");
+				} else if (callback instanceof PasswordCallback) {
+					((PasswordCallback) callback).setPassword("Ernie");
+				}
+			}
+		};
+
+		interceptor.setCallbackHandler(handler);
+		interceptor.afterPropertiesSet();
+		AxiomSoapMessage message = loadAxiomMessage("empty-soap.xml");
+		interceptor.secureMessage(message, null);
+		SOAPMessage result = toSaajMessage(message);
+
+		assertXpathEvaluatesTo("Bert",
+				"/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security/wsse:UsernameToken/wsse:Username/text()", result);
+		assertXpathEvaluatesTo("Ernie",
+				"/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security/wsse:UsernameToken/wsse:Password/text()", result);
+	}
+
+	@Test
+	public void testValidateUsernameTokenPlainTextAxiom() throws Exception {
+
+		interceptor.setPolicyConfiguration(new ClassPathResource("requireUsernameToken-plainText-config.xml", getClass()));
+
+		CallbackHandler handler = new AbstractCallbackHandler() {
+
+			@Override
+			protected void handleInternal(Callback callback) {
+
+				PasswordValidationCallback validationCallback = (PasswordValidationCallback) callback;
+				validationCallback.setValidator(request -> {
+
+					PasswordValidationCallback.PlainTextPasswordRequest passwordRequest = (PasswordValidationCallback.PlainTextPasswordRequest) request;
+
+					return "Bert".equals(passwordRequest.getUsername()) && "Ernie".equals(passwordRequest.getPassword());
+				});
+			}
+		};
+
+		interceptor.setCallbackHandler(handler);
+		interceptor.afterPropertiesSet();
+		AxiomSoapMessage message = loadAxiomMessage("usernameTokenPlainText-soap.xml");
+		interceptor.validateMessage(message, null);
+		SOAPMessage result = toSaajMessage(message);
+
+		assertXpathNotExists("/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security", result);
+		assertThat(message.getSoapBody().getPayloadSource()).isNotNull();
+	}
+
+	@Test
+	public void testValidateUsernameTokenPlainTextAxiomWithAttachment() throws Exception {
+
+		interceptor.setPolicyConfiguration(new ClassPathResource("requireUsernameToken-plainText-config.xml", getClass()));
+
+		CallbackHandler handler = new AbstractCallbackHandler() {
+
+			@Override
+			protected void handleInternal(Callback callback) {
+
+				PasswordValidationCallback validationCallback = (PasswordValidationCallback) callback;
+				validationCallback.setValidator(request -> true);
+			}
+		};
+
+		interceptor.setCallbackHandler(handler);
+		interceptor.afterPropertiesSet();
+		AxiomSoapMessage message = loadAxiomMessage("usernameTokenPlainText-soap.xml");
+		DataHandler dataHandler = new DataHandler("Bert", "text/plain");
+		message.addAttachment("attachment", dataHandler);
+		interceptor.validateMessage(message, null);
+
+		assertXpathNotExists("/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security", toSaajMessage(message));
+		assertThat(message.getAttachment("attachment").getDataHandler()).isSameAs(dataHandler);
+	}
+
+	@Test
+	public void testValidateUsernameTokenPlainTextAxiomLeavesBodyUnread() throws Exception {
+
+		interceptor.setPolicyConfiguration(new ClassPathResource("requireUsernameToken-plainText-config.xml", getClass()));
+		interceptor.setCallbackHandler(new AcceptingCallbackHandler());
+		interceptor.afterPropertiesSet();
+		AxiomSoapMessage message = createStreamingAxiomMessage(createLargeMessage(10));
+		interceptor.validateMessage(message, null);
+
+		assertThat(message.getAxiomMessage().getSOAPEnvelope().getBody().isComplete()).isFalse();
+		SOAPMessage result = toSaajMessage(message);
+
+		assertXpathNotExists("/SOAP-ENV:Envelope/SOAP-ENV:Header/wsse:Security", result);
+		assertXpathEvaluatesTo("10", "count(/SOAP-ENV:Envelope/SOAP-ENV:Body/*/*)", result);
+	}
+
+	@Test
+	public void testValidateLargeMessageAxiomComparedToSaaj() throws Exception {
+
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported(),
+				"Thread allocation counters not available");
+
+		interceptor.setPolicyConfiguration(new ClassPathResource("requireUsernameToken-plainText-config.xml", getClass()));
+		interceptor.setCallbackHandler(new AcceptingCallbackHandler());
+		interceptor.afterPropertiesSet();
+		byte[] content = createLargeMessage(50000);
+		MessageFactory messageFactory = MessageFactory.newInstance();
+		MimeHeaders mimeHeaders = new MimeHeaders();
+		mimeHeaders.addHeader("Content-Type", "text/xml");
+
+		long axiomBytes = allocatedBytes(() -> {
+			interceptor.validateMessage(createStreamingAxiomMessage(content), null);
+			return null;
+		});
+		long saajBytes = allocatedBytes(() -> {
+			SaajSoapMessage message = new SaajSoapMessage(
+					messageFactory.createMessage(mimeHeaders, new ByteArrayInputStream(content)));
+			interceptor.validateMessage(message, null);
+			return null;
+		});
+
+		// the SAAJ message is parsed completely, while only the header of the Axiom message is converted
+		assertThat(axiomBytes).isLessThan(saajBytes / 10);
+	}
+
+	private static long allocatedBytes(Callable<Void> callable) throws Exception {
+
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		callable.call(); // warm up
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		callable.call();
+		return threadBean.getThreadAllocatedBytes(threadId) - before;
+	}
+
+	private byte[] createLargeMessage(int symbols) throws Exception {
+
+		String envelope;
+		try (InputStream is = new ClassPathResource("usernameTokenPlainText-soap.xml", getClass()).getInputStream()) {
+			envelope = new String(StreamUtils.copyToByteArray(is), StandardCharsets.UTF_8);
+		}
+		StringBuilder payload = new StringBuilder("<tru:StockSymbols xmlns:tru=\"http://fabrikam123.com/payloads\">");
+		for (int i = 0; i < symbols; i++) {
+			payload.append("<tru:StockSymbol>QQQ</tru:StockSymbol>");
+		}
+		payload.append("</tru:StockSymbols>");
+		envelope = envelope.replaceFirst("<tru:StockSymbol [^>]*>QQQ</tru:StockSymbol>", payload.toString());
+		return envelope.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static AxiomSoapMessage createStreamingAxiomMessage(byte[] content) {
+
+		org.apache.axiom.soap.SOAPMessage soapMessage = OMXMLBuilderFactory
+				.createSOAPModelBuilder(new ByteArrayInputStream(content), null).getSOAPMessage();
+		return new AxiomSoapMessage(soapMessage, "", false, true);
+	}
+
+	private static class AcceptingCallbackHandler extends AbstractCallbackHandler {
+
+		@Override
+		protected void handleInternal(Callback callback) {
+			((PasswordValidationCallback) callback).setValidator(request -> true);
+		}
+	}
+
+	private SOAPMessage toSaajMessage(AxiomSoapMessage message) throws Exception {
+
+		SOAPMessage saajMessage = MessageFactory.newInstance().createMessage();
+		saajMessage.getSOAPPart().setContent(new DOMSource(message.getDocument()));
+		return saajMessage;
+	}
 }
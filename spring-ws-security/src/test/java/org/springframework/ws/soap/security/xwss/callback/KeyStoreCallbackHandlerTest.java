@@ -16,16 +16,51 @@
 
 package org.springframework.ws.soap.security.xwss.callback;
 
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.xml.security.utils.RFC2253Parser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.ws.soap.security.support.CertificateValidationCache;
+import org.springframework.ws.soap.security.support.ReloadableKeyStore;
+
+import com.sun.xml.wss.impl.callback.CertificateValidationCallback;
+
+import com.sun.xml.wss.impl.callback.DecryptionKeyCallback;
+import com.sun.xml.wss.impl.callback.SignatureVerificationKeyCallback;
 
 public class KeyStoreCallbackHandlerTest {
 
 	private KeyStoreCallbackHandler handler;
 
+	private KeyStore keyStore;
+
+	private X509Certificate certificate;
+
+	private PrivateKey privateKey;
+
 	@BeforeEach
-	public void setUp() {
+	public void setUp() throws Exception {
 		handler = new KeyStoreCallbackHandler();
+		keyStore = KeyStore.getInstance("JKS");
+		try (InputStream is = new ClassPathResource("/org/springframework/ws/soap/security/xwss/test-keystore.jks")
+				.getInputStream()) {
+			keyStore.load(is, "password".toCharArray());
+		}
+		certificate = (X509Certificate) keyStore.getCertificate("alias");
+		privateKey = (PrivateKey) keyStore.getKey("alias", "password".toCharArray());
 	}
 
 	@Test
@@ -34,4 +69,190 @@ public class KeyStoreCallbackHandlerTest {
 		System.setProperty("javax.net.ssl.trustStore", "/System/Library/Frameworks/JavaVM.framework/Versions/1.5.0/Home/");
 		handler.loadDefaultTrustStore();
 	}
+
+	@Test
+	public void testGetPrivateKey() throws Exception {
+
+		handler.setKeyStore(keyStore);
+		handler.setTrustStore(createTrustStore());
+		handler.setPrivateKeyPassword("password");
+		handler.afterPropertiesSet();
+
+		String issuerName = RFC2253Parser.normalize(certificate.getIssuerDN().getName());
+		assertThat(handler.getPrivateKey(issuerName, certificate.getSerialNumber())).isEqualTo(privateKey);
+		assertThat(handler.getPrivateKey(certificate)).isEqualTo(privateKey);
+		assertThat(handler.getPrivateKey(certificate.getPublicKey())).isEqualTo(privateKey);
+		assertThat(handler.getPrivateKeyByThumbprint(thumbprint(certificate))).isEqualTo(privateKey);
+		assertThat(handler.getCertificate(certificate.getPublicKey())).isEqualTo(certificate);
+
+		DecryptionKeyCallback.ThumbprintBasedRequest request = new DecryptionKeyCallback.ThumbprintBasedRequest(
+				thumbprint(certificate));
+		handler.handleInternal(new DecryptionKeyCallback(request));
+		assertThat(request.getPrivateKey()).isEqualTo(privateKey);
+	}
+
+	@Test
+	public void testGetPrivateKeyUnknown() throws Exception {
+
+		handler.setKeyStore(keyStore);
+		handler.setTrustStore(createTrustStore());
+		handler.setPrivateKeyPassword("password");
+		handler.afterPropertiesSet();
+
+		String issuerName = RFC2253Parser.normalize(certificate.getIssuerDN().getName());
+		assertThat(handler.getPrivateKey(issuerName, certificate.getSerialNumber().add(BigInteger.ONE))).isNull();
+		assertThat(handler.getPrivateKeyByThumbprint(new byte[20])).isNull();
+	}
+
+	@Test
+	public void testGetCertificateFromTrustStore() throws Exception {
+
+		handler.setKeyStore(keyStore);
+		handler.setTrustStore(createTrustStore());
+		handler.afterPropertiesSet();
+
+		String issuerName = RFC2253Parser.normalize(certificate.getIssuerDN().getName());
+		assertThat(handler.getCertificateFromTrustStore(issuerName, certificate.getSerialNumber()))
+				.isEqualTo(certificate);
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isEqualTo(certificate);
+		assertThat(handler.getCertificateFromTrustStoreByThumbprint(thumbprint(certificate))).isEqualTo(certificate);
+
+		SignatureVerificationKeyCallback.ThumbprintBasedRequest request = new SignatureVerificationKeyCallback.ThumbprintBasedRequest(
+				thumbprint(certificate));
+		handler.handleInternal(new SignatureVerificationKeyCallback(request));
+		assertThat(request.getX509Certificate()).isEqualTo(certificate);
+	}
+
+	@Test
+	public void testTrustedCertificateEntryHasNoPrivateKey() throws Exception {
+
+		KeyStore trustStore = createTrustStore();
+		handler.setKeyStore(trustStore);
+		handler.setTrustStore(trustStore);
+		handler.afterPropertiesSet();
+
+		String issuerName = RFC2253Parser.normalize(certificate.getIssuerDN().getName());
+		assertThat(handler.getCertificate(certificate.getPublicKey())).isEqualTo(certificate);
+		assertThat(handler.getPrivateKey(issuerName, certificate.getSerialNumber())).isNull();
+		assertThat(handler.getPrivateKey(certificate)).isNull();
+	}
+
+	@Test
+	public void testRebuildIndexes() throws Exception {
+
+		KeyStore trustStore = KeyStore.getInstance("JKS");
+		trustStore.load(null, null);
+		handler.setKeyStore(keyStore);
+		handler.setTrustStore(trustStore);
+		handler.afterPropertiesSet();
+
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isNull();
+
+		trustStore.setCertificateEntry("trusted", certificate);
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isNull();
+
+		handler.rebuildIndexes();
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isEqualTo(certificate);
+
+		handler.setTrustStore(createTrustStore());
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isEqualTo(certificate);
+	}
+
+	@Test
+	public void testReloadableTrustStore() throws Exception {
+
+		KeyStore emptyStore = KeyStore.getInstance("JKS");
+		emptyStore.load(null, null);
+		ReloadableKeyStore trustStore = new ReloadableKeyStore(emptyStore);
+		handler.setKeyStore(keyStore);
+		handler.setTrustStore(trustStore);
+		handler.afterPropertiesSet();
+
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isNull();
+
+		trustStore.setSnapshot(createTrustStore());
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isEqualTo(certificate);
+		assertThat(handler.getCertificateFromTrustStoreByThumbprint(thumbprint(certificate))).isEqualTo(certificate);
+
+		trustStore.setSnapshot(emptyStore);
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isNull();
+	}
+
+	@Test
+	public void testDestroyRemovesReloadListener() throws Exception {
+
+		KeyStore emptyStore = KeyStore.getInstance("JKS");
+		emptyStore.load(null, null);
+		ReloadableKeyStore trustStore = new ReloadableKeyStore(emptyStore);
+		handler.setKeyStore(keyStore);
+		handler.setTrustStore(trustStore);
+		handler.afterPropertiesSet();
+		handler.destroy();
+
+		trustStore.setSnapshot(createTrustStore());
+
+		assertThat(handler.getCertificateFromTrustStore(certificate.getPublicKey())).isNull();
+	}
+
+	@Test
+	public void testValidateCertificateWithValidationCache() throws Exception {
+
+		KeyStore privateStore = KeyStore.getInstance("JCEKS");
+		try (InputStream is = new ClassPathResource("/private.jks").getInputStream()) {
+			privateStore.load(is, "123456".toCharArray());
+		}
+		X509Certificate trustedCertificate = (X509Certificate) privateStore.getCertificate("rsakey");
+		KeyStore emptyStore = KeyStore.getInstance("JKS");
+		emptyStore.load(null, null);
+		KeyStore trustStore = KeyStore.getInstance("JKS");
+		trustStore.load(null, null);
+		trustStore.setCertificateEntry("trusted", trustedCertificate);
+
+		final AtomicInteger builds = new AtomicInteger();
+		handler = new KeyStoreCallbackHandler() {
+
+			@Override
+			protected PKIXBuilderParameters createBuilderParameters(KeyStore trustStore, X509CertSelector certSelector)
+					throws GeneralSecurityException {
+				builds.incrementAndGet();
+				return super.createBuilderParameters(trustStore, certSelector);
+			}
+		};
+		CertificateValidationCache cache = new CertificateValidationCache();
+		handler.setCertificateValidationCache(cache);
+		handler.setKeyStore(emptyStore);
+		handler.setTrustStore(trustStore);
+		handler.afterPropertiesSet();
+
+		CertificateValidationCallback callback = new CertificateValidationCallback(trustedCertificate);
+		handler.handleInternal(callback);
+		assertThat(callback.getResult()).isTrue();
+		assertThat(builds.get()).isEqualTo(1);
+
+		callback = new CertificateValidationCallback(trustedCertificate);
+		handler.handleInternal(callback);
+		assertThat(callback.getResult()).isTrue();
+		assertThat(builds.get()).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(1);
+
+		trustStore.deleteEntry("trusted");
+		trustStore.setCertificateEntry("other", certificate);
+		handler.rebuildIndexes();
+
+		callback = new CertificateValidationCallback(trustedCertificate);
+		handler.handleInternal(callback);
+		assertThat(callback.getResult()).isFalse();
+		assertThat(builds.get()).isEqualTo(2);
+	}
+
+	private KeyStore createTrustStore() throws Exception {
+		KeyStore trustStore = KeyStore.getInstance("JKS");
+		trustStore.load(null, null);
+		trustStore.setCertificateEntry("trusted", certificate);
+		return trustStore;
+	}
+
+	private static byte[] thumbprint(X509Certificate certificate) throws Exception {
+		return MessageDigest.getInstance("SHA-1").digest(certificate.getEncoded());
+	}
 }
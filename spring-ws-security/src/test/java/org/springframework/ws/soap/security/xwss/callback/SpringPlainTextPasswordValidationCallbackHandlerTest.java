@@ -32,6 +32,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.ws.soap.security.callback.CleanupCallback;
+import org.springframework.ws.soap.security.support.VerifiedCredentialCache;
 
 import com.sun.xml.wss.impl.callback.PasswordValidationCallback;
 
@@ -101,6 +102,42 @@ public class SpringPlainTextPasswordValidationCallbackHandlerTest {
 		verify(authenticationManager);
 	}
 
+	@Test
+	public void testAuthenticateUserPlainTextCached() throws Exception {
+
+		VerifiedCredentialCache cache = new VerifiedCredentialCache();
+		callbackHandler.setVerifiedCredentialCache(cache);
+		Authentication authResult = new TestingAuthenticationToken(username, password,
+				Collections.<GrantedAuthority> emptyList());
+		expect(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password)))
+				.andReturn(authResult).once();
+		expect(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, "Elmo")))
+				.andThrow(new BadCredentialsException(""));
+
+		replay(authenticationManager);
+
+		callbackHandler.handleInternal(callback);
+		assertThat(callback.getResult()).isTrue();
+		SecurityContextHolder.clearContext();
+
+		callback = new PasswordValidationCallback(
+				new PasswordValidationCallback.PlainTextPasswordRequest(username, password));
+		callbackHandler.handleInternal(callback);
+		assertThat(callback.getResult()).isTrue();
+		Authentication cached = SecurityContextHolder.getContext().getAuthentication();
+		assertThat(cached).isNotSameAs(authResult);
+		assertThat(cached.isAuthenticated()).isTrue();
+		assertThat(cached.getPrincipal()).isEqualTo(authResult.getPrincipal());
+
+		callback = new PasswordValidationCallback(
+				new PasswordValidationCallback.PlainTextPasswordRequest(username, "Elmo"));
+		callbackHandler.handleInternal(callback);
+		assertThat(callback.getResult()).isFalse();
+		assertThat(cache.getHitCount()).isEqualTo(1);
+
+		verify(authenticationManager);
+	}
+
 	@Test
 	public void testCleanUp() throws Exception {
 
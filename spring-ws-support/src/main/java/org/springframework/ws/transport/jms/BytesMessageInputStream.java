@@ -27,49 +27,97 @@ import org.springframework.util.Assert;
 
 /**
  * Input stream that wraps a {@link BytesMessage}.
+ * <p>
+ * Reads are passed on to the message in bulk. Since {@link BytesMessage#readBytes(byte[], int)} does not take an
+ * offset, reads into the middle of an array go through a scratch buffer that is allocated once, and sized according to
+ * the {@linkplain BytesMessage#getBodyLength() body length} of the message.
  *
  * @author Arjen Poutsma
  * @since 1.5.0
  */
 class BytesMessageInputStream extends InputStream {
 
+	private static final int MAX_BUFFER_SIZE = 8192;
+
 	private final BytesMessage message;
 
+	private final long bodyLength;
+
+	private long position;
+
+	private byte[] buffer;
+
 	BytesMessageInputStream(BytesMessage message) {
 		Assert.notNull(message, "'message' must not be null");
 		this.message = message;
+		this.bodyLength = getBodyLength(message);
 	}
 
-	@Override
-	public int read(byte b[]) throws IOException {
+	private static long getBodyLength(BytesMessage message) {
 		try {
-			return message.readBytes(b);
+			return message.getBodyLength();
 		} catch (JMSException ex) {
-			throw new JmsTransportException(ex);
+			// message is not readable (yet), so we cannot tell
+			return -1;
 		}
 	}
 
+	@Override
+	public int read(byte b[]) throws IOException {
+		return read(b, 0, b.length);
+	}
+
 	@Override
 	public int read(byte b[], int off, int len) throws IOException {
-		if (off == 0) {
-			try {
-				return message.readBytes(b, len);
-			} catch (JMSException ex) {
-				throw new JmsTransportException(ex);
+		if (len == 0) {
+			return 0;
+		}
+		try {
+			int count;
+			if (off == 0) {
+				count = message.readBytes(b, len);
+			} else {
+				byte[] buffer = getBuffer();
+				count = message.readBytes(buffer, Math.min(len, buffer.length));
+				if (count > 0) {
+					System.arraycopy(buffer, 0, b, off, count);
+				}
+			}
+			if (count > 0) {
+				position += count;
 			}
-		} else {
-			return super.read(b, off, len);
+			return count;
+		} catch (JMSException ex) {
+			throw new JmsTransportException(ex);
 		}
 	}
 
 	@Override
 	public int read() throws IOException {
 		try {
-			return message.readByte();
+			int b = message.readUnsignedByte();
+			position++;
+			return b;
 		} catch (MessageEOFException ex) {
 			return -1;
 		} catch (JMSException ex) {
 			throw new JmsTransportException(ex);
 		}
 	}
+
+	@Override
+	public int available() throws IOException {
+		if (bodyLength < 0) {
+			return 0;
+		}
+		return (int) Math.min(Math.max(bodyLength - position, 0), Integer.MAX_VALUE);
+	}
+
+	private byte[] getBuffer() {
+		if (buffer == null) {
+			int size = bodyLength >= 0 ? (int) Math.min(Math.max(bodyLength, 1), MAX_BUFFER_SIZE) : MAX_BUFFER_SIZE;
+			buffer = new byte[size];
+		}
+		return buffer;
+	}
 }
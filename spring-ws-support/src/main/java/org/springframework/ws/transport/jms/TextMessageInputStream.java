@@ -16,10 +16,17 @@
 
 package org.springframework.ws.transport.jms;
 
-import java.io.ByteArrayInputStream;
-import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 
 import javax.jms.JMSException;
 import javax.jms.TextMessage;
@@ -28,25 +35,98 @@ import org.springframework.util.Assert;
 
 /**
  * Input stream that wraps a {@link javax.jms.TextMessage}.
+ * <p>
+ * The text of the message is encoded in small chunks as the stream is read, rather than into a single byte array up
+ * front.
  *
  * @author Arjen Poutsma
  * @since 1.5.3
  */
-class TextMessageInputStream extends FilterInputStream {
+class TextMessageInputStream extends InputStream {
 
-	TextMessageInputStream(TextMessage message, String encoding) throws IOException {
-		super(createInputStream(message, encoding));
-	}
+	private static final int BUFFER_SIZE = 8192;
+
+	private final CharBuffer chars;
+
+	private final CharsetEncoder encoder;
+
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private boolean encoded;
+
+	private boolean flushed;
 
-	private static InputStream createInputStream(TextMessage message, String encoding) throws IOException {
+	TextMessageInputStream(TextMessage message, String encoding) throws IOException {
 		Assert.notNull(message, "'message' must not be null");
 		Assert.notNull(encoding, "'encoding' must not be null");
 		try {
 			String text = message.getText();
-			byte[] contents = text != null ? text.getBytes(encoding) : new byte[0];
-			return new ByteArrayInputStream(contents);
+			this.chars = CharBuffer.wrap(text != null ? text : "");
 		} catch (JMSException ex) {
 			throw new JmsTransportException(ex);
 		}
+		this.encoder = createEncoder(encoding);
+		this.bytes.flip();
+	}
+
+	private static CharsetEncoder createEncoder(String encoding) throws UnsupportedEncodingException {
+		try {
+			// same replacement behavior as String.getBytes(String)
+			return Charset.forName(encoding).newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		} catch (IllegalCharsetNameException ex) {
+			throw new UnsupportedEncodingException(encoding);
+		} catch (UnsupportedCharsetException ex) {
+			throw new UnsupportedEncodingException(encoding);
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!bytes.hasRemaining() && !fill()) {
+			return -1;
+		}
+		return bytes.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int count = 0;
+		while (count < len) {
+			if (!bytes.hasRemaining() && !fill()) {
+				break;
+			}
+			int n = Math.min(len - count, bytes.remaining());
+			bytes.get(b, off + count, n);
+			count += n;
+		}
+		return count > 0 ? count : -1;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return bytes.remaining();
+	}
+
+	private boolean fill() throws IOException {
+		if (flushed) {
+			return false;
+		}
+		bytes.clear();
+		if (!encoded) {
+			CoderResult result = encoder.encode(chars, bytes, true);
+			if (result.isError()) {
+				result.throwException();
+			}
+			encoded = result.isUnderflow();
+		}
+		if (encoded) {
+			flushed = encoder.flush(bytes).isUnderflow();
+		}
+		bytes.flip();
+		return bytes.hasRemaining();
 	}
 }
@@ -45,12 +45,18 @@ class TextMessageOutputStream extends FilterOutputStream {
 		this.encoding = encoding;
 	}
 
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		// bypass the byte-by-byte implementation of FilterOutputStream
+		out.write(b, off, len);
+	}
+
 	@Override
 	public void flush() throws IOException {
 		super.flush();
 		try {
-			ByteArrayOutputStream baos = (ByteArrayOutputStream) out;
-			String text = new String(baos.toByteArray(), encoding);
+			// decode straight from the buffer, rather than from a copy of it
+			String text = ((ByteArrayOutputStream) out).toString(encoding);
 			message.setText(text);
 		} catch (JMSException ex) {
 			throw new JmsTransportException(ex);
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.transport.xmpp;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jivesoftware.smack.StanzaListener;
+import org.jivesoftware.smack.XMPPConnection;
+import org.jivesoftware.smack.filter.StanzaTypeFilter;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.packet.Stanza;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+import org.springframework.ws.transport.WebServiceConnection;
+import org.springframework.ws.transport.WebServiceMessageSender;
+import org.springframework.ws.transport.xmpp.support.XmppTransportUtils;
+
+/**
+ * {@link WebServiceMessageSender} implementation that multiplexes many concurrent requests over one or more XMPP
+ * connections.
+ * <p>
+ * Where the {@link XmppMessageSender} creates a {@link org.jivesoftware.smack.StanzaCollector} for every exchange, this
+ * sender registers a single listener per {@linkplain #setConnections(List) connection} when it is initialized. Incoming
+ * messages are routed to the waiting request by their thread ID, so the cost of receiving a response does not depend on
+ * the number of requests in flight. Requests are distributed over the connected connections in a round-robin fashion.
+ * <p>
+ * The number of in-flight requests, timed out requests, and responses that did not match any request are exposed
+ * through getters, so that they can be published as metrics.
+ * <p>
+ * This message sender supports URI's of the following format: <blockquote> <tt><b>xmpp:</b></tt><i>to</i> </blockquote>
+ * The <i>to</i> represents a Jabber ID.
+ *
+ * @see XmppMessageSender
+ * @since 3.1
+ */
+public class MultiplexingXmppMessageSender implements WebServiceMessageSender, InitializingBean, DisposableBean {
+
+	/** Default timeout for receive operations: -1 indicates a blocking receive without timeout. */
+	public static final long DEFAULT_RECEIVE_TIMEOUT = -1;
+
+	/** Default encoding used to read from and write to {@link org.jivesoftware.smack.packet.Message} messages. */
+	public static final String DEFAULT_MESSAGE_ENCODING = "UTF-8";
+
+	private static final Log logger = LogFactory.getLog(MultiplexingXmppMessageSender.class);
+
+	private final ConcurrentMap<String, CompletableFuture<Message>> pendingResponses = new ConcurrentHashMap<String, CompletableFuture<Message>>();
+
+	private final StanzaListener responseListener = new ResponseListener();
+
+	private final AtomicInteger connectionIndex = new AtomicInteger();
+
+	private final AtomicLong threadCounter = new AtomicLong();
+
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	private final AtomicLong unmatchedResponseCount = new AtomicLong();
+
+	private final String threadPrefix = UUID.randomUUID().toString() + '-';
+
+	private List<XMPPConnection> connections = Collections.emptyList();
+
+	private long receiveTimeout = DEFAULT_RECEIVE_TIMEOUT;
+
+	private String messageEncoding = DEFAULT_MESSAGE_ENCODING;
+
+	/** Sets a single {@code XMPPConnection} to use. Either this property or {@code connections} is required. */
+	public void setConnection(XMPPConnection connection) {
+		Assert.notNull(connection, "'connection' must not be null");
+		this.connections = Collections.singletonList(connection);
+	}
+
+	/** Sets the pool of {@code XMPPConnection}s to distribute requests over. */
+	public void setConnections(List<XMPPConnection> connections) {
+		Assert.notEmpty(connections, "'connections' must not be empty");
+		this.connections = new ArrayList<XMPPConnection>(connections);
+	}
+
+	/**
+	 * Set the timeout to use for receive calls. The default is -1, which means no timeout.
+	 */
+	public void setReceiveTimeout(long receiveTimeout) {
+		this.receiveTimeout = receiveTimeout;
+	}
+
+	/**
+	 * Sets the encoding used to read from {@link org.jivesoftware.smack.packet.Message} object. Defaults to
+	 * {@code UTF-8}.
+	 */
+	public void setMessageEncoding(String messageEncoding) {
+		this.messageEncoding = messageEncoding;
+	}
+
+	/** Returns the number of requests that are currently waiting for a response. */
+	public int getInFlightRequestCount() {
+		return pendingResponses.size();
+	}
+
+	/** Returns the number of requests for which no response was received within the receive timeout. */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/** Returns the number of received messages that did not belong to any waiting request. */
+	public long getUnmatchedResponseCount() {
+		return unmatchedResponseCount.get();
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notEmpty(connections, "'connection' or 'connections' is required");
+		StanzaTypeFilter messageFilter = new StanzaTypeFilter(Message.class);
+		for (XMPPConnection connection : connections) {
+			connection.addSyncStanzaListener(responseListener, messageFilter);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		for (XMPPConnection connection : connections) {
+			connection.removeSyncStanzaListener(responseListener);
+		}
+		for (CompletableFuture<Message> pendingResponse : pendingResponses.values()) {
+			pendingResponse.cancel(false);
+		}
+		pendingResponses.clear();
+	}
+
+	@Override
+	public WebServiceConnection createConnection(URI uri) throws IOException {
+		String to = XmppTransportUtils.getTo(uri);
+		String thread = createThread();
+		MultiplexingXmppSenderConnection connection = new MultiplexingXmppSenderConnection(selectConnection(), to,
+				thread, this);
+		connection.setReceiveTimeout(receiveTimeout);
+		connection.setMessageEncoding(messageEncoding);
+		return connection;
+	}
+
+	@Override
+	public boolean supports(URI uri) {
+		return uri.getScheme().equals(XmppTransportConstants.XMPP_URI_SCHEME);
+	}
+
+	/**
+	 * Creates a new thread ID. Default implementation appends a counter to a random prefix that is created once per
+	 * sender, which is considerably cheaper than a random UUID per request.
+	 */
+	protected String createThread() {
+		return threadPrefix + threadCounter.incrementAndGet();
+	}
+
+	/**
+	 * Selects the connection to send the next request over. Default implementation picks the next connected connection
+	 * in a round-robin fashion, and falls back to the next connection if none are connected.
+	 */
+	protected XMPPConnection selectConnection() {
+		int size = connections.size();
+		int start = (connectionIndex.getAndIncrement() & Integer.MAX_VALUE) % size;
+		for (int i = 0; i < size; i++) {
+			XMPPConnection connection = connections.get((start + i) % size);
+			if (connection.isConnected()) {
+				return connection;
+			}
+		}
+		return connections.get(start);
+	}
+
+	/*
+	 * Package-friendly response routing, used by MultiplexingXmppSenderConnection
+	 */
+
+	CompletableFuture<Message> registerResponse(String thread) {
+		CompletableFuture<Message> response = new CompletableFuture<Message>();
+		CompletableFuture<Message> existing = pendingResponses.putIfAbsent(thread, response);
+		Assert.state(existing == null, "A request with thread [" + thread + "] is already in flight");
+		return response;
+	}
+
+	void unregisterResponse(String thread) {
+		pendingResponses.remove(thread);
+	}
+
+	void responseTimedOut(String thread) {
+		if (pendingResponses.remove(thread) != null) {
+			timeoutCount.incrementAndGet();
+		}
+	}
+
+	private class ResponseListener implements StanzaListener {
+
+		@Override
+		public void processStanza(Stanza packet) {
+			Message message = (Message) packet;
+			String thread = message.getThread();
+			CompletableFuture<Message> response = thread != null ? pendingResponses.remove(thread) : null;
+			if (response != null) {
+				response.complete(message);
+			} else {
+				unmatchedResponseCount.incrementAndGet();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Received XMPP message with thread [" + thread + "] that matches no pending request");
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.transport.xmpp;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jivesoftware.smack.XMPPConnection;
+import org.jivesoftware.smack.packet.Message;
+import org.springframework.ws.WebServiceMessage;
+
+/**
+ * Client-side XMPP connection created by the {@link MultiplexingXmppMessageSender}. Rather than collecting the response
+ * itself, it registers with the sender before the request is sent, and waits for the sender to hand over the response
+ * with the same thread ID.
+ *
+ * @since 3.1
+ */
+public class MultiplexingXmppSenderConnection extends XmppSenderConnection {
+
+	private final MultiplexingXmppMessageSender messageSender;
+
+	private final String thread;
+
+	private CompletableFuture<Message> response;
+
+	MultiplexingXmppSenderConnection(XMPPConnection connection, String to, String thread,
+			MultiplexingXmppMessageSender messageSender) {
+		super(connection, to, thread);
+		this.messageSender = messageSender;
+		this.thread = thread;
+	}
+
+	@Override
+	protected void onSendAfterWrite(WebServiceMessage message) throws IOException {
+		// register before sending, so that a fast response cannot arrive before we are listening
+		response = messageSender.registerResponse(thread);
+		try {
+			super.onSendAfterWrite(message);
+		} catch (IOException ex) {
+			messageSender.unregisterResponse(thread);
+			response = null;
+			throw ex;
+		}
+	}
+
+	@Override
+	protected Message receiveResponseMessage() throws IOException {
+		if (response == null) {
+			return null;
+		}
+		long receiveTimeout = getReceiveTimeout();
+		try {
+			return receiveTimeout >= 0 ? response.get(receiveTimeout, TimeUnit.MILLISECONDS) : response.get();
+		} catch (TimeoutException ex) {
+			messageSender.responseTimedOut(thread);
+			return null;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException(ex);
+		} catch (ExecutionException ex) {
+			throw new IOException(ex.getCause());
+		} catch (CancellationException ex) {
+			throw new IOException("XMPP request [" + thread + "] was cancelled", ex);
+		} finally {
+			messageSender.unregisterResponse(thread);
+		}
+	}
+
+	@Override
+	protected void onClose() throws IOException {
+		if (response != null && !response.isDone()) {
+			messageSender.unregisterResponse(thread);
+		}
+	}
+
+}
@@ -95,6 +95,10 @@ public class XmppSenderConnection extends AbstractSenderConnection {
 		this.receiveTimeout = receiveTimeout;
 	}
 
+	long getReceiveTimeout() {
+		return receiveTimeout;
+	}
+
 	/*
 	* URI
 	*/
@@ -150,19 +154,36 @@ public class XmppSenderConnection extends AbstractSenderConnection {
 
 	@Override
 	protected void onReceiveBeforeRead() throws IOException {
+		responseMessage = receiveResponseMessage();
+	}
+
+	/**
+	 * Waits for the response message that belongs to this connection's thread. Returns {@code null} when no response
+	 * arrived within the receive timeout.
+	 * <p>
+	 * Default implementation creates a {@link StanzaCollector} for the thread of the request message. Can be overridden
+	 * in subclasses that route responses differently.
+	 *
+	 * @return the response message, or {@code null}
+	 * @throws IOException in case of I/O errors
+	 */
+	protected Message receiveResponseMessage() throws IOException {
 		StanzaFilter packetFilter = createPacketFilter();
 
 		StanzaCollector collector = connection.createStanzaCollector(packetFilter);
 		try {
 			Stanza packet = receiveTimeout >= 0 ? collector.nextResult(receiveTimeout) : collector.nextResult();
 			if (packet instanceof Message) {
-				responseMessage = (Message) packet;
+				return (Message) packet;
 			} else if (packet != null) {
 				throw new IllegalArgumentException(
 						"Wrong packet type: [" + packet.getClass() + "]. Only Messages can be handled.");
 			}
+			return null;
 		} catch (InterruptedException e) {
 			throw new IOException(e);
+		} finally {
+			collector.cancel();
 		}
 	}
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.transport.jms;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.InputStream;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileCopyUtils;
+
+public class BytesMessageInputStreamTest {
+
+	private byte[] contents;
+
+	private ActiveMQBytesMessage message;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+
+		contents = new byte[20000];
+		for (int i = 0; i < contents.length; i++) {
+			contents[i] = (byte) i;
+		}
+		message = new ActiveMQBytesMessage();
+		message.writeBytes(contents);
+		message.reset();
+	}
+
+	@Test
+	public void readSingleBytes() throws Exception {
+
+		InputStream is = new BytesMessageInputStream(message);
+
+		assertThat(is.available()).isEqualTo(contents.length);
+
+		for (byte b : contents) {
+			assertThat(is.read()).isEqualTo(b & 0xFF);
+		}
+
+		assertThat(is.read()).isEqualTo(-1);
+		assertThat(is.available()).isEqualTo(0);
+	}
+
+	@Test
+	public void readWithOffset() throws Exception {
+
+		InputStream is = new BytesMessageInputStream(message);
+		byte[] result = new byte[contents.length];
+		int offset = 0;
+		int count;
+		while (offset < result.length && (count = is.read(result, offset, 1000)) != -1) {
+			offset += count;
+		}
+
+		assertThat(offset).isEqualTo(contents.length);
+		assertThat(result).isEqualTo(contents);
+		assertThat(is.read(new byte[10], 5, 5)).isEqualTo(-1);
+	}
+
+	@Test
+	public void readBulk() throws Exception {
+
+		byte[] result = FileCopyUtils.copyToByteArray(new BytesMessageInputStream(message));
+
+		assertThat(result).isEqualTo(contents);
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.transport.jms;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileCopyUtils;
+
+public class TextMessageInputStreamTest {
+
+	@Test
+	public void read() throws Exception {
+
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			builder.append("<föö>€").append(i).append("</föö>");
+		}
+		String text = builder.toString();
+		ActiveMQTextMessage message = new ActiveMQTextMessage();
+		message.setText(text);
+
+		byte[] result = FileCopyUtils.copyToByteArray(new TextMessageInputStream(message, "UTF-8"));
+
+		assertThat(result).isEqualTo(text.getBytes("UTF-8"));
+	}
+
+	@Test
+	public void readEmpty() throws Exception {
+
+		ActiveMQTextMessage message = new ActiveMQTextMessage();
+
+		assertThat(new TextMessageInputStream(message, "UTF-8").read()).isEqualTo(-1);
+	}
+
+	@Test
+	public void unsupportedEncoding() {
+
+		assertThatExceptionOfType(UnsupportedEncodingException.class)
+				.isThrownBy(() -> new TextMessageInputStream(new ActiveMQTextMessage(), "NO-SUCH-ENCODING"));
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+
+		String text = "<root>éè</root>";
+		ActiveMQTextMessage message = new ActiveMQTextMessage();
+		OutputStream os = new TextMessageOutputStream(message, "UTF-8");
+		byte[] bytes = text.getBytes("UTF-8");
+		os.write(bytes, 0, bytes.length);
+		os.flush();
+
+		assertThat(message.getText()).isEqualTo(text);
+		assertThat(FileCopyUtils.copyToByteArray(new TextMessageInputStream(message, "UTF-8"))).isEqualTo(bytes);
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2005-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.ws.transport.xmpp;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.easymock.EasyMock.*;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import javax.xml.soap.MessageFactory;
+
+import org.easymock.Capture;
+import org.jivesoftware.smack.StanzaListener;
+import org.jivesoftware.smack.XMPPConnection;
+import org.jivesoftware.smack.filter.StanzaFilter;
+import org.jivesoftware.smack.packet.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+import org.springframework.ws.transport.WebServiceConnection;
+
+public class MultiplexingXmppMessageSenderTest {
+
+	private static final String RESPONSE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV='http://schemas.xmlsoap.org/soap/envelope/'>"
+			+ "<SOAP-ENV:Body><response xmlns='http://springframework.org/spring-ws'/></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+	private MultiplexingXmppMessageSender messageSender;
+
+	private SaajSoapMessageFactory messageFactory;
+
+	private XMPPConnection connectionMock;
+
+	private Capture<StanzaListener> listener;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+
+		messageFactory = new SaajSoapMessageFactory(MessageFactory.newInstance());
+		connectionMock = createNiceMock(XMPPConnection.class);
+		listener = newCapture();
+		connectionMock.addSyncStanzaListener(capture(listener), anyObject(StanzaFilter.class));
+		expect(connectionMock.isConnected()).andReturn(true).anyTimes();
+
+		messageSender = new MultiplexingXmppMessageSender();
+		messageSender.setConnection(connectionMock);
+	}
+
+	@Test
+	public void routesResponseByThread() throws Exception {
+
+		Capture<Message> request = newCapture();
+		connectionMock.sendStanza(capture(request));
+		expectLastCall().andAnswer(() -> {
+			Message unrelated = new Message();
+			unrelated.setThread("unrelated");
+			listener.getValue().processStanza(unrelated);
+
+			Message response = new Message();
+			response.setThread(request.getValue().getThread());
+			response.setBody(RESPONSE);
+			listener.getValue().processStanza(response);
+			return null;
+		});
+		replay(connectionMock);
+
+		messageSender.afterPropertiesSet();
+
+		WebServiceConnection connection = messageSender.createConnection(new URI("xmpp:server@example.com"));
+		WebServiceMessage requestMessage = messageFactory.createWebServiceMessage();
+		connection.send(requestMessage);
+
+		assertThat(messageSender.getInFlightRequestCount()).isEqualTo(0);
+
+		WebServiceMessage responseMessage = connection.receive(messageFactory);
+		connection.close();
+
+		assertThat(responseMessage).isNotNull();
+		assertThat(responseMessage.getPayloadSource()).isNotNull();
+		assertThat(messageSender.getUnmatchedResponseCount()).isEqualTo(1);
+		assertThat(messageSender.getTimeoutCount()).isEqualTo(0);
+
+		verify(connectionMock);
+	}
+
+	@Test
+	public void timeout() throws Exception {
+
+		replay(connectionMock);
+
+		messageSender.setReceiveTimeout(10);
+		messageSender.afterPropertiesSet();
+
+		WebServiceConnection connection = messageSender.createConnection(new URI("xmpp:server@example.com"));
+		connection.send(messageFactory.createWebServiceMessage());
+
+		assertThat(messageSender.getInFlightRequestCount()).isEqualTo(1);
+
+		WebServiceMessage responseMessage = connection.receive(messageFactory);
+		connection.close();
+
+		assertThat(responseMessage).isNull();
+		assertThat(messageSender.getInFlightRequestCount()).isEqualTo(0);
+		assertThat(messageSender.getTimeoutCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void roundRobin() throws Exception {
+
+		XMPPConnection otherConnectionMock = createNiceMock(XMPPConnection.class);
+		expect(otherConnectionMock.isConnected()).andReturn(true).anyTimes();
+		replay(connectionMock, otherConnectionMock);
+
+		messageSender.setConnections(Arrays.asList(connectionMock, otherConnectionMock));
+
+		assertThat(messageSender.selectConnection()).isSameAs(connectionMock);
+		assertThat(messageSender.selectConnection()).isSameAs(otherConnectionMock);
+		assertThat(messageSender.selectConnection()).isSameAs(connectionMock);
+	}
+
+	@Test
+	public void uniqueThreads() {
+		assertThat(messageSender.createThread()).isNotEqualTo(messageSender.createThread());
+	}
+
+}
@@ -26,6 +26,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.util.Assert;
 import org.springframework.ws.WebServiceMessage;
 import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.context.AsyncResponseUtils;
 import org.springframework.ws.context.DefaultMessageContext;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
@@ -179,6 +180,7 @@ public class MockWebServiceClient {
 			MessageContext messageContext = new DefaultMessageContext(request, messageFactory);
 
 			messageReceiver.receive(messageContext);
+			AsyncResponseUtils.awaitAsyncResponse(messageContext);
 
 			return new MockWebServiceClientResponseActions(messageContext);
 		} catch (Exception ex) {